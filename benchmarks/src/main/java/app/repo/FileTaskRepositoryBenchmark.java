@@ -0,0 +1,76 @@
+package app.repo;
+
+import app.bench.DatasetGenerator;
+import app.model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * tasks.csv 的載入、單筆寫入（含整檔重寫）與整檔重寫本身，依任務數量比較。
+ * 檔案放在暫存目錄，每個參數組合重新產生。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class FileTaskRepositoryBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Path dir;
+    private Path file;
+    private FileTaskRepository repo;
+    private List<Task> tasks;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("bench-repo");
+        file = dir.resolve("tasks.csv");
+        tasks = new DatasetGenerator(42, LocalDateTime.now()).tasks(size);
+        repo = new FileTaskRepository(file);
+        repo.upsertAll(tasks);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public FileTaskRepository load() throws IOException {
+        return new FileTaskRepository(file);
+    }
+
+    @Benchmark
+    public void upsert() {
+        Task t = tasks.get(next++ % tasks.size()).copy();
+        t.setEstimatedMinutes(t.getEstimatedMinutes() + 5);
+        repo.upsert(t);
+    }
+
+    @Benchmark
+    public void saveToDisk() {
+        repo.saveToDisk();
+    }
+}
@@ -0,0 +1,53 @@
+package app.server;
+
+import app.bench.DatasetGenerator;
+import app.model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /tasks 回應的 JSON 產生：單一任務與整個清單。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonUtilBenchmark {
+    @Param({"1000", "100000"})
+    public int size;
+
+    private List<Task> tasks;
+    private Task single;
+
+    @Setup
+    public void setup() {
+        tasks = new DatasetGenerator(42, LocalDateTime.now()).tasks(size);
+        single = tasks.get(0).copy();
+        single.setDescription("含 \"引號\" 與\n換行的描述");
+    }
+
+    @Benchmark
+    public String task() {
+        return MiniHttpServer.JsonUtil.toJson(single);
+    }
+
+    @Benchmark
+    public String taskList() {
+        return MiniHttpServer.JsonUtil.toJson(tasks);
+    }
+}
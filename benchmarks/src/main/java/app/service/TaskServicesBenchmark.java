@@ -0,0 +1,86 @@
+package app.service;
+
+import app.bench.DatasetGenerator;
+import app.model.Task;
+import app.repo.FileTaskRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查詢路徑：建議排序、統計報告（增量維護的快照與整份清單重算）、依條件篩選。
+ * 平行化門檻沿用 {@link app.util.ParallelExec} 的預設值，與伺服器實際執行相同。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class TaskServicesBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Path dir;
+    private List<Task> tasks;
+    private TaskService taskService;
+    private final StatsService stats = new StatsService();
+    private final SuggestionService suggestions = new SuggestionService();
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("bench-services");
+        tasks = new DatasetGenerator(42, LocalDateTime.now()).tasks(size);
+        FileTaskRepository repo = new FileTaskRepository(dir.resolve("tasks.csv"));
+        repo.upsertAll(tasks);
+        taskService = new TaskService(repo);
+        taskService.addListener(stats);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dir.resolve("tasks.csv"));
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public List<Task> sortBySmartHeuristics() {
+        return suggestions.sortBySmartHeuristics(tasks);
+    }
+
+    @Benchmark
+    public String buildStatsReport() {
+        return stats.buildStatsReport();
+    }
+
+    @Benchmark
+    public String buildStatsReportScan() {
+        return stats.buildStatsReport(tasks);
+    }
+
+    @Benchmark
+    public List<Task> filterByStatusAndTag() {
+        return taskService.filter("PENDING", null, "work");
+    }
+
+    @Benchmark
+    public List<Task> filterByPriority() {
+        return taskService.filter(null, "HIGH", null);
+    }
+}
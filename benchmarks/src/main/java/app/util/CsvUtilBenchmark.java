@@ -0,0 +1,67 @@
+package app.util;
+
+import app.bench.ParallelBench;
+import app.model.Task;
+import app.repo.TaskCsv;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * tasks.csv 單列的解析與組合：一般的列，以及描述含逗號、引號、換行而需要加引號的列。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvUtilBenchmark {
+    private List<String> plainColumns;
+    private List<String> quotedColumns;
+    private String plainLine;
+    private String quotedLine;
+
+    @Setup
+    public void setup() {
+        Task t = ParallelBench.generate(1, new Random(42)).get(0);
+        plainColumns = TaskCsv.toColumns(t);
+        Task q = t.copy();
+        q.setTitle("整理 \"Q3\" 報告, 第二版");
+        q.setDescription("第一行, 含逗號\n第二行 \"引號\"\n第三行");
+        quotedColumns = TaskCsv.toColumns(q);
+        plainLine = CsvUtil.join(plainColumns);
+        quotedLine = CsvUtil.join(quotedColumns);
+    }
+
+    @Benchmark
+    public List<String> parsePlain() {
+        return CsvUtil.parse(plainLine);
+    }
+
+    @Benchmark
+    public List<String> parseQuoted() {
+        return CsvUtil.parse(quotedLine);
+    }
+
+    @Benchmark
+    public String joinPlain() {
+        return CsvUtil.join(plainColumns);
+    }
+
+    @Benchmark
+    public String joinQuoted() {
+        return CsvUtil.join(quotedColumns);
+    }
+}
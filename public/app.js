@@ -29,7 +29,7 @@
     const res = await fetch(url);
     const data = await res.json();
     renderTasks(data);
-    renderStats(data);
+    renderStats();
     renderCalendar(data);
     updateShareLink();
   }
@@ -188,23 +188,22 @@
 
   fetchTasks();
 
-  function renderStats(tasks){
+  async function renderStats(){
     const svg = document.getElementById('chart');
     if(!svg) return;
     const w = 600, h = 160, pad = 24; // 手繪感：用不規則線條
     svg.setAttribute('viewBox', `0 0 ${w} ${h}`);
-    svg.innerHTML = '';
-    // 統計：近 7 天完成數
+    // 統計：近 7 天完成數（由後端每日彙總提供，不需下載全部任務）
     const days = Array.from({length:7}, (_,i)=>i).map(i=>{
       const d = new Date(); d.setDate(d.getDate() - (6-i)); return d.toISOString().slice(0,10);
     });
     const map = new Map(days.map(d=>[d,0]));
-    for(const t of tasks){
-      if(t.status==='COMPLETED' && t.completedAt){
-        const day = t.completedAt.slice(0,10);
-        if(map.has(day)) map.set(day, map.get(day)+1);
-      }
-    }
+    try {
+      const res = await fetch(`/stats/daily?start=${days[0]}&end=${days[6]}`);
+      const data = await res.json();
+      for(const d of data.days){ if(map.has(d.date)) map.set(d.date, d.completed); }
+    } catch(e) {}
+    svg.innerHTML = '';
     const vals = Array.from(map.values());
     const maxV = Math.max(1, ...vals);
     const barW = (w - pad*2) / vals.length * 0.7;
@@ -251,9 +250,6 @@
     calEl.innerHTML = '';
     currentDateLabel.textContent = anchor.toISOString().slice(0,10);
     const grid = document.createElement('div'); grid.className='cal-grid';
-    // 在 Day/Week 視圖同步渲染時間軸
-    if (view!=='month') renderTimeline(tasks);
-    else { timeline.classList.add('hidden'); timeContainer.innerHTML=''; }
     let days = [];
     if (view==='day') {
       days = [new Date(anchor)];
@@ -265,28 +261,55 @@
       const s = startOfMonth(anchor); const start = startOfWeek(s); for(let i=0;i<42;i++) days.push(addDays(start,i));
       grid.style.gridTemplateColumns = 'repeat(7, 1fr)';
     }
+    // 依可見區間向後端取任務，重覆任務會在區間內展開成多次出現
+    try {
+      const res = await fetch(`/tasks?start=${fmtDate(days[0])}&end=${fmtDate(days[days.length-1])}`);
+      tasks = await res.json();
+    } catch(e) {}
+    // 在 Day/Week 視圖同步渲染時間軸
+    if (view!=='month') renderTimeline(tasks);
+    else { timeline.classList.add('hidden'); timeContainer.innerHTML=''; }
     // 搜尋/過濾
     const q = (searchInput?.value||'').trim().toLowerCase();
     const st = statusSelect?.value||'';
     const pr = prioritySelect?.value||'';
     const tg = (tagInput?.value||'').trim().toLowerCase();
-    if (q) tasks = tasks.filter(t => (t.title||'').toLowerCase().includes(q) || (t.tags||[]).some(tag=>tag.toLowerCase().includes(q)) );
+    if (q) {
+      // 後端全文索引（支援中文斷詞，最後一個詞為前綴）與前端的子字串比對取聯集；
+      // 後端查詢失敗時只剩前端比對，不會把任務全部濾掉
+      let hitIds = new Set();
+      try {
+        const res = await fetch(`/search?type=task&limit=1000&q=${encodeURIComponent(q)}`);
+        if (res.ok) hitIds = new Set((await res.json()).hits.map(h=>h.id));
+      } catch(e) {}
+      const local = t => (t.title||'').toLowerCase().includes(q) || (t.description||'').toLowerCase().includes(q)
+        || (t.tags||[]).some(tag=>tag.toLowerCase().includes(q));
+      tasks = tasks.filter(t => hitIds.has(t.id) || local(t));
+    }
     if (st) tasks = tasks.filter(t=> (t.status||'').toUpperCase()===st);
     if (pr) tasks = tasks.filter(t=> (t.priority||'').toUpperCase()===pr);
     if (tg) tasks = tasks.filter(t=> (t.tags||[]).some(x=>x.toLowerCase()===tg));
     const map = tasks.reduce((m,t)=>{ if(!t.dueDateTime) return m; const k=t.dueDateTime.slice(0,10); (m[k]||(m[k]=[])).push(t); return m; }, {});
-    // 熱力圖模式（僅月視圖）：根據某日完成數量改變背景濃淡
+    // 熱力圖模式（僅月視圖）：根據某日完成數量改變背景濃淡，數量取自後端每日彙總
+    let heatDays = {};
+    if (heatmapEnabled && view==='month') {
+      try {
+        const res = await fetch(`/stats/daily?start=${fmtDate(days[0])}&end=${fmtDate(days[days.length-1])}`);
+        const data = await res.json();
+        heatDays = Object.fromEntries(data.days.map(d=>[d.date, d.completed]));
+      } catch(e) {}
+    }
     const heat = (el,count)=>{ if(!heatmapEnabled || view!=='month') return; const alpha=Math.min(0.35, 0.06*count); el.style.background = `rgba(226, 121, 95, ${alpha})`; };
     days.forEach(d=>{
       const cell = document.createElement('div'); cell.className='cal-cell';
       const dateSpan = document.createElement('span'); dateSpan.className='cal-date'; dateSpan.textContent = d.getDate();
       cell.appendChild(dateSpan);
       const k = fmtDate(d);
-      heat(cell, (map[k]||[]).filter(x=>x.status==='COMPLETED').length);
+      heat(cell, heatDays[k]||0);
       // 多日選取（Shift 點擊）
       cell.addEventListener('click', (ev)=>{ if (!ev.shiftKey) return; if (multiSel.has(k)) multiSel.delete(k); else multiSel.add(k); updateSelUi(); });
       (map[k]||[]).forEach(t=>{
-        const a = document.createElement('a'); a.href='#'; a.className='cal-item'; a.textContent = t.title; a.title = t.title;
+        const a = document.createElement('a'); a.href='#'; a.className='cal-item'; a.textContent = (t.occurrenceDate ? '↻ ' : '') + t.title; a.title = t.title;
         // 類別色彩
         const cat = (t.category||'').toLowerCase(); if(cat==='work') a.classList.add('cat-work'); else if(cat==='personal') a.classList.add('cat-personal'); else if(cat==='study') a.classList.add('cat-study');
         // 拖拽改期：拖起任務 id
@@ -396,6 +419,25 @@
   weekStartSelect?.addEventListener('change', ()=>{ localStorage.setItem('weekStart', weekStartSelect.value); fetchTasks(); });
   (function initWeekStart(){ const ws=localStorage.getItem('weekStart')||'mon'; weekStartSelect.value=ws; })();
   [searchInput, statusSelect, prioritySelect, tagInput].forEach(x=> x && x.addEventListener('change', fetchTasks));
+  // 標籤自動完成：以最後一段（; 之後）為前綴向後端取熱門標籤，保留前面已輸入的標籤
+  function bindTagAutocomplete(input){
+    const list = input && input.list;
+    if (!list) return;
+    let timer = null;
+    input.addEventListener('input', ()=>{
+      clearTimeout(timer);
+      timer = setTimeout(async ()=>{
+        const v = input.value; const i = v.lastIndexOf(';');
+        const head = i>=0 ? v.slice(0, i+1) : ''; const prefix = v.slice(i+1).trim();
+        try {
+          const res = await fetch(`/tags?limit=8&prefix=${encodeURIComponent(prefix)}`);
+          const data = await res.json();
+          list.innerHTML = data.items.map(x=>`<option value="${escapeHtml(head + x.value)}">${x.count}</option>`).join('');
+        } catch(e) {}
+      }, 120);
+    });
+  }
+  [tagInput, formEl?.tags, el('#modalForm')?.tags].forEach(bindTagAutocomplete);
   let heatmapEnabled=false; el('#btnHeatmap')?.addEventListener('click', ()=>{ heatmapEnabled=!heatmapEnabled; fetchTasks(); });
   el('#btnShare')?.addEventListener('click', ()=>{ navigator.clipboard?.writeText(location.href); alert('連結已複製'); });
 
@@ -455,6 +497,7 @@
     modalForm.actualMinutes.value = task.actualMinutes||'';
     modalForm.reminderBeforeMinutes.value = task.reminderBeforeMinutes||'';
     modalForm.tags.value = (task.tags||[]).join(';');
+    modalForm.recurrence.value = task.recurrence||'NONE';
     modalForm.setAttribute('data-kind','task');
   }
   function closeModal(){ modal.classList.add('hidden'); modal.setAttribute('aria-hidden','true'); }
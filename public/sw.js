@@ -7,7 +7,7 @@ self.addEventListener('install', (e)=>{
 
 self.addEventListener('fetch', (e)=>{
   const url = new URL(e.request.url);
-  if (url.pathname.startsWith('/tasks')) return; // API 不快取
+  if (url.pathname.startsWith('/tasks') || url.pathname.startsWith('/stats') || url.pathname.startsWith('/reminders') || url.pathname.startsWith('/export') || url.pathname.startsWith('/search') || url.pathname.startsWith('/tags') || url.pathname.startsWith('/replication') || url.pathname.startsWith('/metrics')) return; // API 不快取
   e.respondWith(
     caches.match(e.request, {ignoreSearch:true}).then(r => r || fetch(e.request).then(res => {
       const clone = res.clone();
@@ -3,14 +3,29 @@ package app;
 import app.model.Task;
 import app.model.TaskPriority;
 import app.model.TaskStatus;
+import app.notify.ConsoleSink;
+import app.notify.NotificationPipeline;
+import app.notify.RollingFileSink;
+import app.notify.WebhookSink;
+import app.repo.ArchiveStore;
+import app.repo.FileOccurrenceRepository;
 import app.repo.FileTaskRepository;
 import app.repo.TaskRepository;
 import app.server.MiniHttpServer;
+import app.server.ReplicationFollower;
+import app.server.ReplicationLeader;
+import app.server.ReplicationLog;
+import app.service.ArchiveService;
+import app.service.RecurrenceService;
 import app.service.ReminderService;
 import app.service.SuggestionService;
 import app.service.TaskService;
 import app.service.StatsService;
+import app.service.Tenant;
+import app.service.TenantRegistry;
 
+import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -31,10 +46,90 @@ public class Main {
         TaskService taskService = new TaskService(repository);
         SuggestionService suggestionService = new SuggestionService();
         StatsService statsService = new StatsService();
-        ReminderService reminderService = new ReminderService(taskService);
-        reminderService.start();
+        taskService.addListener(statsService);
+        NotificationPipeline notifications = new NotificationPipeline();
+        notifications.addSink(new ConsoleSink());
+        notifications.addSink(new RollingFileSink(Paths.get("data", "logs", "reminders.log"), 1024 * 1024, 5));
+        String webhook = System.getProperty("reminder.webhook");
+        if (webhook != null && !webhook.isBlank()) notifications.addSink(new WebhookSink(URI.create(webhook)));
+        notifications.start();
+        // 唯讀複本：資料只來自主節點的異動串流，不自行提醒或封存
+        String replicationLeader = System.getProperty("replication.leader");
+        boolean follower = replicationLeader != null && !replicationLeader.isBlank();
 
-        MiniHttpServer httpServer = new MiniHttpServer(taskService);
+        ReminderService reminderService = new ReminderService(notifications);
+        taskService.addListener(reminderService);
+        if (!follower) reminderService.start();
+
+        RecurrenceService recurrenceService = new RecurrenceService(new FileOccurrenceRepository(Paths.get("data", "occurrences.csv")));
+        taskService.addListener(recurrenceService);
+
+        // 冷資料層：完成/取消超過 N 天的任務移入 data/archive；設為 0 停用
+        int archiveAfterDays = Integer.getInteger("tasks.archiveAfterDays", 30);
+        if (archiveAfterDays > 0) taskService.setArchive(new ArchiveStore(Paths.get("data", "archive")));
+
+        MiniHttpServer httpServer = new MiniHttpServer(taskService, statsService, notifications, recurrenceService);
+
+        // 其他使用者載入時各掛一個提醒監聽器；主節點在背景為尚未載入的使用者預先排程
+        httpServer.tenants().setReminders(reminderService);
+        if (!follower) {
+            Thread preload = new Thread(() -> {
+                try {
+                    httpServer.tenants().preloadReminders();
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("[reminder] preload failed: " + e);
+                }
+            }, "reminder-preload");
+            preload.setDaemon(true);
+            preload.start();
+        }
+
+        ReplicationFollower replicaOf = null;
+        ReplicationLeader replicationServer = null;
+        if (follower) {
+            httpServer.setReadOnly(true);
+            httpServer.tenants().setArchiveOnLoad(false);
+            replicaOf = new ReplicationFollower(httpServer.tenants(), replicationLeader, Paths.get("data", "replication.state"));
+            httpServer.addContext("/replication", replicaOf.statusHandler());
+            replicaOf.start();
+        } else if (Integer.getInteger("replication.port") != null) {
+            // 主節點：在任何寫入（含封存）之前掛上異動記錄
+            ReplicationLog replicationLog = new ReplicationLog();
+            TenantRegistry tenants = httpServer.tenants();
+            Tenant defaultTenant = tenants.acquire(TenantRegistry.DEFAULT);
+            replicationLog.attach(defaultTenant);
+            tenants.release(defaultTenant);
+            tenants.setOnLoad(replicationLog::attach);
+            replicationServer = new ReplicationLeader(replicationLog, tenants);
+            httpServer.addContext("/replication", replicationServer.statusHandler());
+            replicationServer.start(Integer.getInteger("replication.port"));
+        }
+
+        ArchiveService archiveService = null;
+        if (archiveAfterDays > 0 && !follower) {
+            archiveService = new ArchiveService(taskService, archiveAfterDays);
+            archiveService.start();
+        }
+
+        if (args.length > 0 && args[0].equals("serve")) {
+            // 無互動模式（分片部署時每個 shard 一個程序）：java app.Main serve [port]，直到程序被終止
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            ArchiveService archiver = archiveService;
+            ReplicationFollower replica = replicaOf;
+            ReplicationLeader replication = replicationServer;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                if (replica != null) replica.stop();
+                if (replication != null) replication.stop();
+                httpServer.stop();
+                reminderService.stop();
+                if (archiver != null) archiver.stop();
+                notifications.stop();
+            }));
+            httpServer.start(port);
+            System.out.println("HTTP 伺服器啟動於 http://localhost:" + port + "/tasks");
+            Thread.currentThread().join();
+            return;
+        }
 
         System.out.println("智慧任務與時間管理系統");
         System.out.println("輸入 help 以查看指令");
@@ -45,6 +140,12 @@ public class Main {
                 String line = scanner.nextLine().trim();
                 if (line.isEmpty()) continue;
 
+                // 唯讀複本的資料只來自主節點；本機寫入會與主節點分歧，與 HTTP 的唯讀模式一樣拒絕
+                if (follower && (line.equals("add") || line.equals("done") || line.equals("archive"))) {
+                    System.out.println("此節點是 " + replicationLeader + " 的唯讀複本，請在主節點執行 " + line + "。");
+                    continue;
+                }
+
                 switch (line) {
                     case "help":
                         printHelp();
@@ -76,7 +177,14 @@ public class Main {
                         }
                         break;
                     case "stats":
-                        System.out.println(statsService.buildStatsReport(taskService.listAll()));
+                        System.out.println(statsService.buildStatsReport());
+                        break;
+                    case "archive":
+                        if (archiveService == null) {
+                            System.out.println("封存未啟用（tasks.archiveAfterDays=0）。");
+                        } else {
+                            System.out.println("已封存 " + archiveService.runOnce() + " 筆任務。");
+                        }
                         break;
                     case "start-server":
                         httpServer.start(8080);
@@ -87,8 +195,12 @@ public class Main {
                         System.out.println("HTTP 伺服器已停止");
                         break;
                     case "exit":
+                        if (replicaOf != null) replicaOf.stop();
+                        if (replicationServer != null) replicationServer.stop();
                         httpServer.stop();
                         reminderService.stop();
+                        if (archiveService != null) archiveService.stop();
+                        notifications.stop();
                         System.out.println("再見！");
                         return;
                     default:
@@ -106,6 +218,7 @@ public class Main {
         System.out.println("  done           將任務標記為完成");
         System.out.println("  suggest        依建議排序顯示任務");
         System.out.println("  stats          顯示統計報告");
+        System.out.println("  archive        立即封存舊的已完成/已取消任務");
         System.out.println("  start-server   啟動內建 HTTP 伺服器");
         System.out.println("  stop-server    停止 HTTP 伺服器");
         System.out.println("  exit           離開程式");
@@ -0,0 +1,92 @@
+package app.bench;
+
+import app.model.Task;
+import app.model.TaskPriority;
+import app.model.TaskStatus;
+import app.service.ColumnarTaskStore;
+import app.service.StatsService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 列式（Task 物件）與欄式（{@link ColumnarTaskStore}）掃描的比較：彙總、依狀態/優先順序篩選、逾期清單。
+ * 兩邊結果相同才計時。
+ * <p>
+ * 執行：{@code java -cp out app.bench.ColumnarBench [sizes...]}
+ */
+public class ColumnarBench {
+    private static final int WARMUP = 5;
+    private static final int ROUNDS = 9;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[] {10_000, 100_000, 1_000_000};
+        System.out.printf(Locale.ROOT, "%-10s %-10s %12s %12s %8s%n", "size", "op", "rows(ms)", "cols(ms)", "speedup");
+        for (int n : sizes) {
+            List<Task> tasks = ParallelBench.generate(n, new Random(42));
+            ColumnarTaskStore columns = new ColumnarTaskStore();
+            for (Task t : tasks) columns.onTaskSaved(t);
+            LocalDateTime now = LocalDateTime.now().withSecond(0).withNano(0);
+
+            run(n, "aggregate",
+                    () -> rowAggregate(tasks, now),
+                    () -> { StatsService.Snapshot s = columns.aggregate(now);
+                            return Arrays.asList(s.getTotal(), s.getActive(), s.getOverdue(), s.getEstimatedSum(), s.getCompletionSecondsSum()); });
+            run(n, "filter",
+                    () -> tasks.stream()
+                            .filter(t -> t.getStatus() == TaskStatus.PENDING && t.getPriority() == TaskPriority.HIGH)
+                            .sorted((a, b) -> a.getCreatedAt().compareTo(b.getCreatedAt()))
+                            .map(Task::getId).collect(Collectors.toList()),
+                    () -> columns.select(ColumnarTaskStore.statusMask(TaskStatus.PENDING), TaskPriority.HIGH.ordinal(), null)
+                            .stream().map(Task::getId).collect(Collectors.toList()));
+            run(n, "overdue",
+                    () -> tasks.stream()
+                            .filter(t -> t.getStatus() == TaskStatus.PENDING || t.getStatus() == TaskStatus.IN_PROGRESS)
+                            .filter(t -> t.getDueDateTime() != null && t.getDueDateTime().isBefore(now))
+                            .count(),
+                    () -> (long) columns.dueBetween(ColumnarTaskStore.activeMask(), null, now).size());
+        }
+    }
+
+    private static List<Long> rowAggregate(List<Task> tasks, LocalDateTime now) {
+        long total = 0, active = 0, overdue = 0, estimated = 0, completionSeconds = 0;
+        for (Task t : tasks) {
+            total++;
+            estimated += t.getEstimatedMinutes();
+            boolean isActive = t.getStatus() == TaskStatus.PENDING || t.getStatus() == TaskStatus.IN_PROGRESS;
+            if (isActive) active++;
+            if (isActive && t.getDueDateTime() != null && t.getDueDateTime().isBefore(now)) overdue++;
+            if (t.getStatus() == TaskStatus.COMPLETED && t.getCreatedAt() != null && t.getCompletedAt() != null) {
+                completionSeconds += Duration.between(t.getCreatedAt(), t.getCompletedAt()).getSeconds();
+            }
+        }
+        return Arrays.asList(total, active, overdue, estimated, completionSeconds);
+    }
+
+    private static void run(int n, String op, Supplier<Object> rows, Supplier<Object> cols) {
+        if (!rows.get().equals(cols.get())) throw new IllegalStateException(op + " differs at size " + n);
+        double r = median(rows);
+        double c = median(cols);
+        System.out.printf(Locale.ROOT, "%-10d %-10s %12.2f %12.2f %7.2fx%n", n, op, r, c, r / c);
+    }
+
+    private static double median(Supplier<Object> op) {
+        for (int i = 0; i < WARMUP; i++) op.get();
+        double[] ms = new double[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long t0 = System.nanoTime();
+            op.get();
+            ms[i] = (System.nanoTime() - t0) / 1e6;
+        }
+        Arrays.sort(ms);
+        return ms[ROUNDS / 2];
+    }
+}
@@ -0,0 +1,459 @@
+package app.bench;
+
+import app.model.Note;
+import app.model.Task;
+import app.model.TaskPriority;
+import app.model.TaskStatus;
+import app.repo.NoteCsv;
+import app.repo.TaskCsv;
+import app.util.CsvUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+/**
+ * 可重現的測試資料產生器：同一個 seed 與 now 產生完全相同的任務與筆記，第 i 筆只由 (seed, i) 決定，
+ * 可任意切段平行產生。分布大致依實際使用：
+ * <ul>
+ *   <li>優先順序 LOW/MEDIUM/HIGH/CRITICAL 約 25/45/22/8%；狀態 PENDING/IN_PROGRESS/COMPLETED/CANCELLED 約 45/15/35/5%；</li>
+ *   <li>八成任務有截止時間，以 now 為中心（標準差約 10 天，過去最多 90 天、未來最多 180 天），落在整點或半點；</li>
+ *   <li>約一成為重覆任務（DAILY/WEEKLY/MONTHLY）；</li>
+ *   <li>標籤 0–3 個，取自 200 個標籤的 Zipf 分布（s=1.1，前幾個標籤佔大多數）；</li>
+ *   <li>標題中文與英文約 7:3；描述約四成為空，其餘部分含逗號、引號與換行（CSV 需加引號的情況）。</li>
+ * </ul>
+ * 輸出為 tasks.csv / notes.csv 的格式；大量輸出時直接組 CSV 列（不建立 Task 物件、不經 TagDictionary），
+ * 依 CPU 核心數分段平行產生、依序寫檔。{@code --verify} 以 {@link TaskCsv}/{@link NoteCsv} 的編碼核對前 10 萬列。
+ * <p>
+ * 執行：{@code java -cp out app.bench.DatasetGenerator [--tasks N] [--notes M] [--seed 42] [--out data] [--now "yyyy-MM-dd HH:mm"] [--verify]}
+ */
+public class DatasetGenerator {
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final int CHUNK = 1 << 15;
+    private static final int TAG_COUNT = 200;
+    private static final double ZIPF_S = 1.1;
+
+    private static final String[] CJK_VERBS = {"整理", "撰寫", "回覆", "檢查", "準備", "更新", "預約", "繳交", "討論", "修正", "安排", "確認"};
+    private static final String[] CJK_OBJECTS = {"季度報告", "會議記錄", "客戶郵件", "預算表", "簡報", "合約", "健檢", "房租", "讀書筆記",
+            "旅遊行程", "專案時程", "年度計畫", "保險文件", "牙醫", "發票"};
+    private static final String[] LATIN_VERBS = {"Review", "Write", "Fix", "Call", "Plan", "Update", "Prepare", "Email", "Book", "Refactor"};
+    private static final String[] LATIN_OBJECTS = {"quarterly report", "onboarding doc", "invoice", "slides", "budget", "release notes",
+            "dentist", "flight", "design review", "login bug"};
+    private static final String[] SENTENCES = {
+            "先跟主管確認範圍", "記得附上附件", "需要等對方回覆", "資料放在共用資料夾", "下週前完成初稿",
+            "Check the numbers before sending", "Ask for feedback", "Blocked on the vendor", "See the thread for context"};
+    private static final String[] BASE_TAGS = {"工作", "家庭", "健康", "學習", "財務", "work", "home", "errand", "urgent", "reading",
+            "運動", "會議", "郵件", "side-project", "shopping", "旅行"};
+    private static final String[] CATEGORIES = {"工作", "個人", "學習", "家庭", "健康"};
+    private static final int[] ESTIMATES = {15, 30, 30, 30, 45, 60, 60, 90, 120, 180, 240};
+    private static final int[] REMINDERS = {10, 30, 60, 1440};
+    private static final String[] NOTE_LINES = {"今天心情不錯", "開會重點：", "買牛奶, 雞蛋, 麵包", "Remember: \"slow is smooth\"",
+            "讀完第三章", "workout: 5k run", "電話 0912-345-678"};
+
+    private final long seed;
+    private final long nowMinute; // 以 UTC 計的分鐘數，只用於本地時間的加減
+    private final String[] tags = new String[TAG_COUNT];
+    private final double[] tagCdf = new double[TAG_COUNT];
+    private final long dateBase;
+    private final String[] dates = new String[800];
+
+    public DatasetGenerator(long seed, LocalDateTime now) {
+        this.seed = seed;
+        this.nowMinute = now.withSecond(0).withNano(0).toEpochSecond(ZoneOffset.UTC) / 60;
+        for (int i = 0; i < TAG_COUNT; i++) tags[i] = i < BASE_TAGS.length ? BASE_TAGS[i] : String.format(Locale.ROOT, "proj-%03d", i);
+        double sum = 0;
+        for (int i = 0; i < TAG_COUNT; i++) sum += 1 / Math.pow(i + 1, ZIPF_S);
+        double acc = 0;
+        for (int i = 0; i < TAG_COUNT; i++) {
+            acc += 1 / Math.pow(i + 1, ZIPF_S) / sum;
+            tagCdf[i] = acc;
+        }
+        tagCdf[TAG_COUNT - 1] = 1.0;
+        dateBase = Math.floorDiv(nowMinute, 60 * 24) - 400;
+        for (int k = 0; k < dates.length; k++) dates[k] = LocalDate.ofEpochDay(dateBase + k).toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> opt = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("expected --option, got " + args[i]);
+            boolean flag = i + 1 >= args.length || args[i + 1].startsWith("--");
+            opt.put(args[i].substring(2), flag ? "true" : args[++i]);
+        }
+        long tasks = Long.parseLong(opt.getOrDefault("tasks", "100000"));
+        long notes = Long.parseLong(opt.getOrDefault("notes", "10000"));
+        LocalDateTime now = opt.containsKey("now") ? LocalDateTime.parse(opt.get("now"), TaskCsv.DATE_TIME_FMT) : LocalDateTime.now();
+        DatasetGenerator gen = new DatasetGenerator(Long.parseLong(opt.getOrDefault("seed", "42")), now);
+        Path out = Paths.get(opt.getOrDefault("out", "data"));
+        Files.createDirectories(out);
+        if (opt.containsKey("verify")) {
+            gen.verify(Math.min(Math.max(tasks, notes), 100_000));
+            System.out.println("verify ok");
+        }
+        long t0 = System.nanoTime();
+        gen.writeTasks(out.resolve("tasks.csv"), tasks);
+        long t1 = System.nanoTime();
+        gen.writeNotes(out.resolve("notes.csv"), notes);
+        long t2 = System.nanoTime();
+        report(out.resolve("tasks.csv"), tasks, t1 - t0);
+        report(out.resolve("notes.csv"), notes, t2 - t1);
+    }
+
+    private static void report(Path file, long rows, long nanos) throws IOException {
+        double s = nanos / 1e9;
+        double mb = Files.size(file) / 1e6;
+        System.out.printf(Locale.ROOT, "%s: %d rows, %.1f MB in %.2fs (%.0f rows/s, %.0f MB/s)%n",
+                file, rows, mb, s, rows / Math.max(s, 1e-9), mb / Math.max(s, 1e-9));
+    }
+
+    /** 第 i 筆任務（建立 Task 物件；標籤與類別會登錄到 TagDictionary）。 */
+    public Task task(long i) {
+        TaskRow r = taskRow(i);
+        Task t = new Task();
+        t.setId(r.id);
+        t.setTitle(r.title);
+        t.setDescription(r.description);
+        t.setPriority(TaskPriority.values()[r.priority]);
+        t.setDueDateTime(r.due == Long.MIN_VALUE ? null : toDateTime(r.due));
+        t.setEstimatedMinutes(r.estimated);
+        t.setStatus(TaskStatus.values()[r.status]);
+        t.setCreatedAt(toDateTime(r.created));
+        t.setCompletedAt(r.completed == Long.MIN_VALUE ? null : toDateTime(r.completed));
+        t.setTags(Arrays.asList(r.tags));
+        t.setCategory(r.category);
+        t.setActualMinutes(r.actual < 0 ? null : r.actual);
+        t.setReminderBeforeMinutes(r.reminder < 0 ? null : r.reminder);
+        t.setSortOrder(null);
+        t.setRecurrence(r.recurrence);
+        return t;
+    }
+
+    public List<Task> tasks(int n) {
+        List<Task> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(task(i));
+        return out;
+    }
+
+    public Note note(long i) {
+        NoteRow r = noteRow(i);
+        Note n = new Note();
+        n.setId(r.id);
+        n.setDate(LocalDate.ofEpochDay(r.day));
+        n.setContent(r.content);
+        n.setCreatedAt(toDateTime(r.created));
+        n.setUpdatedAt(toDateTime(r.updated));
+        return n;
+    }
+
+    public List<Note> notes(int n) {
+        List<Note> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(note(i));
+        return out;
+    }
+
+    public void writeTasks(Path file, long n) throws IOException {
+        write(file, TaskCsv.HEADER, n, (i, out) -> appendTaskRow(taskRow(i), out));
+    }
+
+    public void writeNotes(Path file, long n) throws IOException {
+        write(file, NoteCsv.HEADER, n, (i, out) -> appendNoteRow(noteRow(i), out));
+    }
+
+    /** 直接組出的 CSV 列須與 TaskCsv/NoteCsv + CsvUtil.join 的結果逐字相同。 */
+    public void verify(long n) {
+        Utf8Buffer out = new Utf8Buffer(1024);
+        for (long i = 0; i < n; i++) {
+            out.len = 0;
+            appendTaskRow(taskRow(i), out);
+            String expected = CsvUtil.join(TaskCsv.toColumns(task(i))) + "\n";
+            if (!expected.equals(out.toString())) throw new IllegalStateException("task row " + i + " differs:\n" + expected + out);
+            out.len = 0;
+            appendNoteRow(noteRow(i), out);
+            expected = CsvUtil.join(NoteCsv.toColumns(note(i))) + "\n";
+            if (!expected.equals(out.toString())) throw new IllegalStateException("note row " + i + " differs:\n" + expected + out);
+        }
+    }
+
+    // 分段平行產生，最多保留 2 倍核心數的已完成區段等待依序寫出
+    private void write(Path file, String[] header, long n, BiConsumer<Long, Utf8Buffer> row) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "dataset-gen");
+            t.setDaemon(true);
+            return t;
+        });
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write((CsvUtil.join(header) + "\n").getBytes(StandardCharsets.UTF_8));
+            ArrayDeque<Future<Utf8Buffer>> window = new ArrayDeque<>();
+            for (long from = 0; from < n || !window.isEmpty(); ) {
+                while (from < n && window.size() < threads * 2) {
+                    long start = from, end = Math.min(n, from + CHUNK);
+                    window.add(pool.submit(() -> {
+                        Utf8Buffer buf = new Utf8Buffer((int) (end - start) * 200);
+                        for (long i = start; i < end; i++) row.accept(i, buf);
+                        return buf;
+                    }));
+                    from = end;
+                }
+                Utf8Buffer done = window.poll().get();
+                out.write(done.bytes, 0, done.len);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("generation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static final class TaskRow {
+        String id, title, description, category, recurrence;
+        String[] tags;
+        int priority, status, estimated, actual, reminder;
+        long due, created, completed;
+    }
+
+    private static final class NoteRow {
+        String id, content;
+        long day, created, updated;
+    }
+
+    private SplittableRandom rnd(long i, long stream) {
+        return new SplittableRandom(mix(seed + stream * GOLDEN + i * 0xD1B54A32D192ED03L));
+    }
+
+    private TaskRow taskRow(long i) {
+        SplittableRandom r = rnd(i, 1);
+        TaskRow t = new TaskRow();
+        t.id = new UUID(r.nextLong() & ~0xF000L | 0x4000L, r.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L).toString();
+        t.title = title(r);
+        t.description = description(r);
+        t.priority = pick(r.nextInt(100), 25, 70, 92);               // LOW/MEDIUM/HIGH/CRITICAL
+        t.status = pick(r.nextInt(100), 45, 60, 95);                 // PENDING/IN_PROGRESS/COMPLETED/CANCELLED
+        t.created = nowMinute - (long) (-Math.log(1 - r.nextDouble()) * 60 * 24 * 45) % (60 * 24 * 365);
+        t.estimated = ESTIMATES[r.nextInt(ESTIMATES.length)];
+        t.due = Long.MIN_VALUE;
+        if (r.nextInt(100) < 80) {
+            long days = Math.round(r.nextGaussian() * 10);
+            days = Math.max(-90, Math.min(180, days));
+            long dayStart = Math.floorDiv(nowMinute, 60 * 24) * 60 * 24;
+            t.due = dayStart + days * 60 * 24 + (9 + r.nextInt(10)) * 60 + (r.nextBoolean() ? 30 : 0);
+        }
+        t.completed = Long.MIN_VALUE;
+        t.actual = -1;
+        if (t.status == TaskStatus.COMPLETED.ordinal()) {
+            t.completed = Math.min(nowMinute, t.created + r.nextInt(60 * 24 * 14));
+            if (r.nextInt(10) < 7) t.actual = Math.max(5, (int) Math.round(t.estimated * Math.exp(r.nextGaussian() * 0.4)));
+        }
+        int tagCount = pick(r.nextInt(100), 20, 60, 90);           // 0/1/2/3 個
+        List<String> picked = new ArrayList<>(tagCount);
+        for (int k = 0; k < tagCount; k++) {
+            String tag = tags[zipf(r)];
+            if (!picked.contains(tag)) picked.add(tag);
+        }
+        t.tags = picked.toArray(new String[0]);
+        t.category = r.nextInt(100) < 60 ? CATEGORIES[r.nextInt(CATEGORIES.length)] : null;
+        t.reminder = r.nextInt(100) < 20 ? REMINDERS[r.nextInt(REMINDERS.length)] : -1;
+        int rec = r.nextInt(100);
+        t.recurrence = t.due == Long.MIN_VALUE || rec < 90 ? "NONE" : rec < 94 ? "DAILY" : rec < 98 ? "WEEKLY" : "MONTHLY";
+        return t;
+    }
+
+    private NoteRow noteRow(long i) {
+        SplittableRandom r = rnd(i, 2);
+        NoteRow n = new NoteRow();
+        n.id = new UUID(r.nextLong() & ~0xF000L | 0x4000L, r.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L).toString();
+        n.day = Math.floorDiv(nowMinute, 60 * 24) + r.nextInt(241) - 120;
+        StringBuilder c = new StringBuilder(NOTE_LINES[r.nextInt(NOTE_LINES.length)]);
+        int lines = r.nextInt(3);
+        for (int k = 0; k < lines; k++) c.append('\n').append(NOTE_LINES[r.nextInt(NOTE_LINES.length)]);
+        n.content = c.toString();
+        n.created = Math.min(nowMinute, n.day * 60 * 24 + r.nextInt(60 * 24));
+        n.updated = Math.min(nowMinute, n.created + (r.nextInt(4) == 0 ? r.nextInt(60 * 24 * 3) : 0));
+        return n;
+    }
+
+    private String title(SplittableRandom r) {
+        int kind = r.nextInt(100);
+        if (kind < 70) return CJK_VERBS[r.nextInt(CJK_VERBS.length)] + CJK_OBJECTS[r.nextInt(CJK_OBJECTS.length)];
+        String s = LATIN_VERBS[r.nextInt(LATIN_VERBS.length)] + " " + LATIN_OBJECTS[r.nextInt(LATIN_OBJECTS.length)];
+        if (kind < 80) return s + ", part " + (1 + r.nextInt(5));
+        if (kind < 85) return s + " \"v" + (1 + r.nextInt(3)) + "\"";
+        return s;
+    }
+
+    private String description(SplittableRandom r) {
+        if (r.nextInt(100) < 40) return "";
+        int n = 1 + r.nextInt(3);
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < n; k++) {
+            if (k > 0) sb.append(r.nextInt(4) == 0 ? "\n" : r.nextBoolean() ? ", " : "。");
+            sb.append(SENTENCES[r.nextInt(SENTENCES.length)]);
+        }
+        if (r.nextInt(20) == 0) sb.append(" (\"見附件\")");
+        return sb.toString();
+    }
+
+    private int zipf(SplittableRandom r) {
+        int i = Arrays.binarySearch(tagCdf, r.nextDouble());
+        return i >= 0 ? i : Math.min(TAG_COUNT - 1, -i - 1);
+    }
+
+    // 依累積門檻回傳 0..thresholds.length
+    private static int pick(int x, int... thresholds) {
+        for (int k = 0; k < thresholds.length; k++) if (x < thresholds[k]) return k;
+        return thresholds.length;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static LocalDateTime toDateTime(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+    }
+
+    private void appendTaskRow(TaskRow t, Utf8Buffer out) {
+        out.ascii(t.id).put(',');
+        out.field(t.title).put(',');
+        out.field(t.description).put(',');
+        out.ascii(TaskPriority.values()[t.priority].name()).put(',');
+        if (t.due != Long.MIN_VALUE) dateTime(out, t.due);
+        out.put(',').num(t.estimated).put(',');
+        out.ascii(TaskStatus.values()[t.status].name()).put(',');
+        dateTime(out, t.created).put(',');
+        if (t.completed != Long.MIN_VALUE) dateTime(out, t.completed);
+        out.put(',');
+        for (int k = 0; k < t.tags.length; k++) {
+            if (k > 0) out.put(';');
+            out.text(t.tags[k]);
+        }
+        out.put(',');
+        if (t.category != null) out.text(t.category);
+        out.put(',');
+        if (t.actual >= 0) out.num(t.actual);
+        out.put(',');
+        if (t.reminder >= 0) out.num(t.reminder);
+        out.put(',').put(',').ascii(t.recurrence).put('\n');
+    }
+
+    private void appendNoteRow(NoteRow n, Utf8Buffer out) {
+        out.ascii(n.id).put(',');
+        date(out, n.day).put(',');
+        out.field(n.content).put(',');
+        dateTime(out, n.created).put(',');
+        dateTime(out, n.updated).put('\n');
+    }
+
+    private Utf8Buffer dateTime(Utf8Buffer out, long minute) {
+        date(out, Math.floorDiv(minute, 60 * 24)).put(' ');
+        int m = Math.floorMod(minute, 60 * 24);
+        return out.two(m / 60).put(':').two(m % 60);
+    }
+
+    // 產生的日期集中在 now 前後，"yyyy-MM-dd" 先編好
+    private Utf8Buffer date(Utf8Buffer out, long epochDay) {
+        int k = (int) (epochDay - dateBase);
+        if (k >= 0 && k < dates.length) return out.ascii(dates[k]);
+        return out.ascii(LocalDate.ofEpochDay(epochDay).toString());
+    }
+
+    /** 直接編成 UTF-8 的輸出緩衝（省去 StringBuilder → String → byte[] 的兩次複製）。 */
+    static final class Utf8Buffer {
+        byte[] bytes;
+        int len;
+
+        Utf8Buffer(int capacity) {
+            bytes = new byte[Math.max(64, capacity)];
+        }
+
+        private void ensure(int extra) {
+            if (len + extra > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, len + extra));
+        }
+
+        Utf8Buffer put(char c) {
+            ensure(1);
+            bytes[len++] = (byte) c;
+            return this;
+        }
+
+        Utf8Buffer ascii(String s) {
+            int n = s.length();
+            ensure(n);
+            for (int k = 0; k < n; k++) bytes[len++] = (byte) s.charAt(k);
+            return this;
+        }
+
+        Utf8Buffer text(String s) {
+            int n = s.length();
+            ensure(n * 3);
+            for (int k = 0; k < n; k++) {
+                char c = s.charAt(k);
+                if (c < 0x80) {
+                    bytes[len++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[len++] = (byte) (0xC0 | c >> 6);
+                    bytes[len++] = (byte) (0x80 | c & 0x3F);
+                } else { // 詞彙表只有 BMP 字元，沒有代理對
+                    bytes[len++] = (byte) (0xE0 | c >> 12);
+                    bytes[len++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    bytes[len++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            return this;
+        }
+
+        // 與 CsvUtil.join 相同的引號規則
+        Utf8Buffer field(String s) {
+            boolean quote = false;
+            for (int k = 0; k < s.length() && !quote; k++) {
+                char c = s.charAt(k);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) return text(s);
+            put('"');
+            int from = 0;
+            for (int k = s.indexOf('"'); k >= 0; k = s.indexOf('"', k + 1)) {
+                text(s.substring(from, k + 1)).put('"');
+                from = k + 1;
+            }
+            return text(s.substring(from)).put('"');
+        }
+
+        Utf8Buffer num(int v) {
+            return ascii(Integer.toString(v));
+        }
+
+        Utf8Buffer two(int v) {
+            return put((char) ('0' + v / 10)).put((char) ('0' + v % 10));
+        }
+
+        @Override public String toString() {
+            return new String(bytes, 0, len, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package app.bench;
+
+import app.model.Task;
+import app.repo.TaskCsv;
+import app.util.CsvUtil;
+import app.util.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 對執行中的 {@code MiniHttpServer} 施加固定到達率（open-loop）的負載，依路由輸出延遲分布與吞吐量。
+ * <p>
+ * 第 i 個請求的預定送出時間為 {@code 開始 + i / rate}，不論前面的請求是否已回應；延遲由預定時間起算，
+ * 伺服器變慢時排隊的時間也算在內，不會因為負載端跟著放慢而低估尾端延遲（coordinated omission）。
+ * 負載端本身趕不上排程時，落後的請求照樣由預定時間計算。
+ * <p>
+ * 請求組合依前端實際的呼叫：清單（GET /tasks）、日曆區間（GET /tasks?start&end，週或月）、筆記區間、
+ * 完成、延後、改期（拖放到某天）與拖放排序。寫入類請求的對象由開始時讀到的任務 id 中隨機挑選。
+ * <p>
+ * 執行：{@code java -cp out app.bench.LoadGenerator [--url http://localhost:8080] [--rate 200] [--duration 30]
+ * [--warmup 5] [--mix list=15,range=35,notes=20,complete=5,snooze=10,reschedule=10,reorder=5]
+ * [--seed-tasks N] [--seed-notes M] [--max-inflight 5000] [--out results.json] [--random-seed 42]}
+ */
+public class LoadGenerator {
+    private static final String DEFAULT_MIX = "list=15,range=35,notes=20,complete=5,snooze=10,reschedule=10,reorder=5";
+    private static final Pattern ID = Pattern.compile("\"id\":\"([a-zA-Z0-9\\-]+)\"");
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final String base;
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(3))
+            .executor(Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2), r -> {
+                Thread t = new Thread(r, "load-client");
+                t.setDaemon(true);
+                return t;
+            }))
+            .build();
+    private final Map<String, Route> routes = new LinkedHashMap<>();
+    private final Random rnd;
+    private final LocalDate today = LocalDate.now();
+    private List<String> ids = new ArrayList<>();
+
+    static final class Route {
+        final String name;
+        final int weight;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+
+        Route(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+    }
+
+    public LoadGenerator(String base, String mix, long seed) {
+        this.base = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        this.rnd = new Random(seed);
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) throw new IllegalArgumentException("bad mix entry: " + part);
+            String name = kv[0].trim();
+            if (!List.of("list", "range", "notes", "complete", "snooze", "reschedule", "reorder").contains(name)) {
+                throw new IllegalArgumentException("unknown route in mix: " + name);
+            }
+            int w = Integer.parseInt(kv[1].trim());
+            if (w > 0) routes.put(name, new Route(name, w));
+        }
+        if (routes.isEmpty()) throw new IllegalArgumentException("empty mix: " + mix);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("expected --option value, got " + args[i]);
+            opt.put(args[i].substring(2), args[i + 1]);
+        }
+        LoadGenerator gen = new LoadGenerator(opt.getOrDefault("url", "http://localhost:8080"),
+                opt.getOrDefault("mix", DEFAULT_MIX), Long.parseLong(opt.getOrDefault("random-seed", "42")));
+        int seedTasks = Integer.parseInt(opt.getOrDefault("seed-tasks", "0"));
+        int seedNotes = Integer.parseInt(opt.getOrDefault("seed-notes", "0"));
+        if (seedTasks > 0 || seedNotes > 0) gen.seed(seedTasks, seedNotes);
+        gen.loadIds();
+        double rate = Double.parseDouble(opt.getOrDefault("rate", "200"));
+        double duration = Double.parseDouble(opt.getOrDefault("duration", "30"));
+        double warmup = Double.parseDouble(opt.getOrDefault("warmup", "5"));
+        int maxInflight = Integer.parseInt(opt.getOrDefault("max-inflight", "5000"));
+        System.out.printf(Locale.ROOT, "%s: %.0f req/s for %.0fs (+%.0fs warmup), %d task ids, mix=%s%n",
+                gen.base, rate, duration, warmup, gen.ids.size(), opt.getOrDefault("mix", DEFAULT_MIX));
+        Result r = gen.run(rate, duration, warmup, maxInflight);
+        String report = r.table();
+        System.out.print(report);
+        String out = opt.get("out");
+        if (out != null) {
+            Files.writeString(Paths.get(out), r.json(rate, duration), StandardCharsets.UTF_8);
+            System.out.println("results written to " + out);
+        }
+    }
+
+    /** 建立測試資料：以 CSV 匯入 N 筆任務（{@link DatasetGenerator}），再逐筆新增 M 則筆記。 */
+    public void seed(int tasks, int notes) throws IOException, InterruptedException {
+        if (tasks > 0) {
+            StringBuilder csv = new StringBuilder(CsvUtil.join(TaskCsv.HEADER)).append('\n');
+            for (Task t : new DatasetGenerator(rnd.nextLong(), LocalDateTime.now()).tasks(tasks)) csv.append(CsvUtil.join(TaskCsv.toColumns(t))).append('\n');
+            HttpResponse<String> res = client.send(HttpRequest.newBuilder(URI.create(base + "/tasks/import?format=csv"))
+                    .header("Content-Type", "text/csv; charset=utf-8")
+                    .POST(HttpRequest.BodyPublishers.ofString(csv.toString(), StandardCharsets.UTF_8)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            System.out.println("seeded tasks: HTTP " + res.statusCode() + " " + abbreviate(res.body()));
+        }
+        for (int i = 0; i < notes; i++) {
+            LocalDate d = today.plusDays(rnd.nextInt(120) - 60);
+            client.send(form("POST", "/notes", "date=" + d + "&content=" + enc("note " + i)), HttpResponse.BodyHandlers.discarding());
+        }
+        if (notes > 0) System.out.println("seeded notes: " + notes);
+    }
+
+    private void loadIds() throws IOException, InterruptedException {
+        HttpResponse<String> res = client.send(HttpRequest.newBuilder(URI.create(base + "/tasks")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (res.statusCode() != 200) throw new IOException("GET /tasks returned " + res.statusCode());
+        Matcher m = ID.matcher(res.body());
+        List<String> out = new ArrayList<>();
+        while (m.find()) out.add(m.group(1));
+        ids = out;
+    }
+
+    public Result run(double rate, double durationSeconds, double warmupSeconds, int maxInflight) throws InterruptedException {
+        long interval = (long) (1_000_000_000L / rate);
+        long total = (long) ((durationSeconds + warmupSeconds) * rate);
+        long start = System.nanoTime() + 100_000_000L; // 留 100ms 讓連線建立
+        long measureFrom = start + (long) (warmupSeconds * 1e9);
+        AtomicInteger inflight = new AtomicInteger();
+        long skipped = 0;
+        long lateMax = 0;
+        int totalWeight = routes.values().stream().mapToInt(r -> r.weight).sum();
+        List<Route> table = new ArrayList<>(routes.values());
+        for (long i = 0; i < total; i++) {
+            long intended = start + i * interval;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            else lateMax = Math.max(lateMax, -wait);
+            Route route = pick(table, totalWeight);
+            boolean measured = intended >= measureFrom;
+            if (inflight.get() >= maxInflight) {
+                // 負載端自我保護：視為錯誤，延遲不計入
+                if (measured) { skipped++; route.errors.incrementAndGet(); }
+                continue;
+            }
+            HttpRequest req = request(route.name);
+            inflight.incrementAndGet();
+            client.sendAsync(req, HttpResponse.BodyHandlers.discarding()).whenComplete((res, err) -> {
+                long micros = (System.nanoTime() - intended) / 1000;
+                if (measured) {
+                    route.latency.record(micros);
+                    if (err != null || res.statusCode() >= 400) route.errors.incrementAndGet();
+                }
+                inflight.decrementAndGet();
+            });
+        }
+        long end = System.nanoTime();
+        long deadline = end + TIMEOUT.toNanos() + 1_000_000_000L;
+        while (inflight.get() > 0 && System.nanoTime() < deadline) Thread.sleep(10);
+        return new Result(table, Math.max(1, end - measureFrom) / 1e9, skipped, lateMax / 1000);
+    }
+
+    private Route pick(List<Route> table, int totalWeight) {
+        int x = rnd.nextInt(totalWeight);
+        for (Route r : table) {
+            x -= r.weight;
+            if (x < 0) return r;
+        }
+        return table.get(table.size() - 1);
+    }
+
+    private HttpRequest request(String route) {
+        switch (route) {
+            case "list":
+                return get("/tasks");
+            case "range": {
+                // 週視圖或月視圖，以今天前後幾週為中心
+                boolean month = rnd.nextInt(3) == 0;
+                LocalDate from = month ? today.plusMonths(rnd.nextInt(5) - 2).withDayOfMonth(1).minusDays(6)
+                                       : today.plusWeeks(rnd.nextInt(9) - 4).minusDays(today.getDayOfWeek().getValue() % 7);
+                LocalDate to = from.plusDays(month ? 41 : 6);
+                return get("/tasks?start=" + from + "&end=" + to);
+            }
+            case "notes": {
+                LocalDate from = today.plusMonths(rnd.nextInt(5) - 2).withDayOfMonth(1).minusDays(6);
+                return get("/notes?start=" + from + "&end=" + from.plusDays(41));
+            }
+            case "complete":
+                return form("POST", "/tasks/" + anyId() + "/complete", "");
+            case "snooze":
+                return form("POST", "/tasks/" + anyId() + "/snooze", "minutes=15");
+            case "reschedule":
+                return form("PUT", "/tasks/" + anyId() + "/reschedule", "date=" + today.plusDays(rnd.nextInt(29) - 7));
+            case "reorder":
+                return form("PATCH", "/tasks/reorder", "from=" + anyId() + "&to=" + anyId());
+            default:
+                throw new IllegalArgumentException(route);
+        }
+    }
+
+    private String anyId() {
+        if (ids.isEmpty()) throw new IllegalStateException("no tasks on server; use --seed-tasks");
+        return ids.get(rnd.nextInt(ids.size()));
+    }
+
+    private HttpRequest get(String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create(base + pathAndQuery)).timeout(TIMEOUT).GET().build();
+    }
+
+    private HttpRequest form(String method, String path, String body) {
+        return HttpRequest.newBuilder(URI.create(base + path)).timeout(TIMEOUT)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .method(method, HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8)).build();
+    }
+
+    private static String enc(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8);
+    }
+
+    private static String abbreviate(String s) {
+        return s.length() > 200 ? s.substring(0, 200) + "..." : s;
+    }
+
+    public static final class Result {
+        private final List<Route> routes;
+        private final double seconds;
+        private final long skipped;
+        private final long lateMaxMicros;
+
+        Result(List<Route> routes, double seconds, long skipped, long lateMaxMicros) {
+            this.routes = routes;
+            this.seconds = seconds;
+            this.skipped = skipped;
+            this.lateMaxMicros = lateMaxMicros;
+        }
+
+        String table() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ROOT, "%-11s %8s %7s %9s %9s %9s %9s %9s %9s%n",
+                    "route", "count", "errors", "req/s", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)"));
+            LatencyHistogram all = new LatencyHistogram();
+            long errors = 0;
+            for (Route r : routes) {
+                row(sb, r.name, r.latency, r.errors.get());
+                all.add(r.latency);
+                errors += r.errors.get();
+            }
+            row(sb, "all", all, errors);
+            if (skipped > 0) sb.append("skipped (max-inflight reached): ").append(skipped).append('\n');
+            sb.append(String.format(Locale.ROOT, "generator max lateness: %.1f ms%n", lateMaxMicros / 1000.0));
+            return sb.toString();
+        }
+
+        private void row(StringBuilder sb, String name, LatencyHistogram h, long errors) {
+            sb.append(String.format(Locale.ROOT, "%-11s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    name, h.count(), errors, h.count() / seconds,
+                    h.percentile(50) / 1000.0, h.percentile(90) / 1000.0, h.percentile(99) / 1000.0,
+                    h.percentile(99.9) / 1000.0, h.max() / 1000.0));
+        }
+
+        String json(double rate, double duration) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\"rate\":").append(rate).append(",\"durationSeconds\":").append(duration)
+              .append(",\"skipped\":").append(skipped).append(",\"routes\":{");
+            boolean first = true;
+            for (Route r : routes) {
+                if (!first) sb.append(',');
+                first = false;
+                LatencyHistogram h = r.latency;
+                sb.append('"').append(r.name).append("\":{")
+                  .append("\"count\":").append(h.count())
+                  .append(",\"errors\":").append(r.errors.get())
+                  .append(",\"throughput\":").append(String.format(Locale.ROOT, "%.2f", h.count() / seconds))
+                  .append(",\"p50Micros\":").append(h.percentile(50))
+                  .append(",\"p90Micros\":").append(h.percentile(90))
+                  .append(",\"p99Micros\":").append(h.percentile(99))
+                  .append(",\"p999Micros\":").append(h.percentile(99.9))
+                  .append(",\"maxMicros\":").append(h.max())
+                  .append('}');
+            }
+            sb.append("}}\n");
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package app.bench;
+
+import app.model.Task;
+import app.model.TaskPriority;
+import app.model.TaskStatus;
+import app.repo.FileTaskRepository;
+import app.service.StatsService;
+import app.service.SuggestionService;
+import app.service.TaskService;
+import app.util.ParallelExec;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * 循序與平行路徑的比較，找出 tasks.parallelThreshold 的交叉點。
+ * 對每個資料量分別以循序與平行各跑數輪取中位數，並確認兩條路徑的結果相同。
+ * <p>
+ * 執行：{@code java -cp out -Dtasks.parallelism=32 app.bench.ParallelBench [sizes...]}
+ */
+public class ParallelBench {
+    private static final int WARMUP = 3;
+    private static final int ROUNDS = 7;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[] {1_000, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000, 1_000_000};
+        System.out.printf(Locale.ROOT, "parallelism=%d%n", ParallelExec.parallelism());
+        System.out.printf(Locale.ROOT, "%-10s %-8s %12s %12s %8s%n", "size", "op", "seq(ms)", "par(ms)", "speedup");
+        int original = ParallelExec.threshold();
+        SuggestionService suggestions = new SuggestionService();
+        StatsService stats = new StatsService();
+        int[] crossover = new int[3];
+        Arrays.fill(crossover, -1);
+        for (int n : sizes) {
+            List<Task> tasks = generate(n, new Random(42));
+            Path file = Files.createTempFile("bench-tasks", ".csv");
+            try {
+                FileTaskRepository repo = new FileTaskRepository(file);
+                repo.upsertAll(tasks);
+                TaskService taskService = new TaskService(repo);
+                String[] ops = {"suggest", "stats", "filter"};
+                List<Supplier<Object>> work = List.of(
+                        () -> ids(suggestions.sortBySmartHeuristics(tasks)),
+                        () -> stats.buildStatsReport(tasks),
+                        () -> ids(taskService.filter("PENDING", null, "tag3")));
+                for (int i = 0; i < ops.length; i++) {
+                    ParallelExec.setThreshold(Integer.MAX_VALUE);
+                    Object seqResult = work.get(i).get();
+                    double seq = median(work.get(i));
+                    ParallelExec.setThreshold(0);
+                    Object parResult = work.get(i).get();
+                    double par = median(work.get(i));
+                    if (!seqResult.equals(parResult)) throw new IllegalStateException(ops[i] + " differs at size " + n);
+                    if (par < seq && crossover[i] < 0) crossover[i] = n;
+                    if (par >= seq) crossover[i] = -1; // 交叉點需在之後的資料量都維持較快
+                    System.out.printf(Locale.ROOT, "%-10d %-8s %12.2f %12.2f %7.2fx%n", n, ops[i], seq, par, seq / par);
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+        ParallelExec.setThreshold(original);
+        String[] ops = {"suggest", "stats", "filter"};
+        for (int i = 0; i < ops.length; i++) {
+            System.out.printf(Locale.ROOT, "crossover %-8s %s%n", ops[i], crossover[i] < 0 ? "none" : String.valueOf(crossover[i]));
+        }
+    }
+
+    private static double median(Supplier<Object> op) {
+        for (int i = 0; i < WARMUP; i++) op.get();
+        double[] ms = new double[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long t0 = System.nanoTime();
+            op.get();
+            ms[i] = (System.nanoTime() - t0) / 1e6;
+        }
+        Arrays.sort(ms);
+        return ms[ROUNDS / 2];
+    }
+
+    private static List<String> ids(List<Task> tasks) {
+        List<String> out = new ArrayList<>(tasks.size());
+        for (Task t : tasks) out.add(t.getId());
+        return out;
+    }
+
+    public static List<Task> generate(int n, Random rnd) {
+        LocalDateTime now = LocalDateTime.now().withSecond(0).withNano(0); // 與 CSV 相同的分鐘精度
+        TaskPriority[] priorities = TaskPriority.values();
+        TaskStatus[] statuses = TaskStatus.values();
+        List<Task> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Task t = new Task();
+            t.setId(new UUID(rnd.nextLong(), rnd.nextLong()).toString());
+            t.setTitle("task " + i);
+            t.setPriority(priorities[rnd.nextInt(priorities.length)]);
+            t.setStatus(statuses[rnd.nextInt(statuses.length)]);
+            t.setEstimatedMinutes(5 * rnd.nextInt(24));
+            t.setCreatedAt(now.minusMinutes(rnd.nextInt(60 * 24 * 30)));
+            if (t.getStatus() == TaskStatus.COMPLETED) t.setCompletedAt(t.getCreatedAt().plusMinutes(rnd.nextInt(60 * 24 * 5)));
+            if (rnd.nextInt(4) > 0) t.setDueDateTime(now.plusMinutes(rnd.nextInt(60 * 24 * 14) - 60 * 24 * 3));
+            t.setTags(List.of("tag" + rnd.nextInt(20), "tag" + rnd.nextInt(20)));
+            out.add(t);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,21 @@
+package app.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/** 重覆任務單次出現的覆寫狀態（目前用於單次完成）。 */
+public class OccurrenceOverride {
+    private String taskId;
+    private LocalDate date;
+    private TaskStatus status;
+    private LocalDateTime completedAt;
+
+    public String getTaskId() { return taskId; }
+    public void setTaskId(String taskId) { this.taskId = taskId; }
+    public LocalDate getDate() { return date; }
+    public void setDate(LocalDate date) { this.date = date; }
+    public TaskStatus getStatus() { return status; }
+    public void setStatus(TaskStatus status) { this.status = status; }
+    public LocalDateTime getCompletedAt() { return completedAt; }
+    public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+}
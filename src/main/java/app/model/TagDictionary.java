@@ -0,0 +1,240 @@
+package app.model;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 標籤與類別的字典：每個相異字串配一個小整數 id（0..65535，以 short 存放），
+ * 任務的標籤組合（依原順序的 id 陣列）也只保存一份 {@link TagSet}，由所有相同組合的任務共用。
+ * 字串保留原樣（區分大小寫），輸出時由 id 表還原為同一字串，CSV/JSON 內容不變。
+ *
+ * <p>標籤組合以弱參考登錄：沒有任務再使用的組合被 GC 回收後，只屬於它的 id 會歸還並可重新配給，
+ * 租戶被逐出後字典因此跟著縮小。寫入（登錄組合）在鎖內；{@link #matchingIgnoreCase} 不加鎖。</p>
+ */
+public final class TagDictionary {
+    public static final int MAX_IDS = 1 << 16;
+
+    private static final TagDictionary INSTANCE = new TagDictionary();
+
+    // 以下欄位只在鎖內修改
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[64];   // id → 字串；空位為 null
+    private int[] refs = new int[64];          // id → 仍存活、含此 id 的組合數（同一組合重複出現則重複計）
+    private int[] free = new int[16];          // 已歸還、可重新配給的 id
+    private int freeCount;
+    private int nextId;
+    private final Map<Key, SetRef> sets = new HashMap<>();
+    private final ReferenceQueue<TagSet> cleared = new ReferenceQueue<>();
+
+    // 忽略大小寫的索引：摺疊後的字串 → 大小寫變體的 id；值整個替換、不原地修改，讀取不需加鎖
+    private final Map<String, int[]> folded = new ConcurrentHashMap<>();
+
+    private TagDictionary() {}
+
+    public static TagDictionary get() {
+        return INSTANCE;
+    }
+
+    /** 依原順序登錄標籤組合；null 元素略過，沒有元素時回傳 {@link TagSet#EMPTY}。 */
+    public TagSet of(List<String> tags) {
+        if (tags == null || tags.isEmpty()) return TagSet.EMPTY;
+        synchronized (this) {
+            expunge();
+            short[] arr = new short[tags.size()];
+            int n = 0;
+            for (String s : tags) {
+                if (s != null) arr[n++] = (short) idOf(s);
+            }
+            if (n == 0) return TagSet.EMPTY;
+            return setOf(n == arr.length ? arr : Arrays.copyOf(arr, n));
+        }
+    }
+
+    /** 只含 s 一個字串的組合（類別用）；s 為 null 時回傳 null。 */
+    public TagSet single(String s) {
+        if (s == null) return null;
+        synchronized (this) {
+            expunge();
+            return setOf(new short[] {(short) idOf(s)});
+        }
+    }
+
+    /** set 後面再加上 tag 的組合；tag 為 null 時回傳 set 本身。 */
+    public TagSet with(TagSet set, String tag) {
+        if (tag == null) return set;
+        synchronized (this) {
+            expunge();
+            short[] arr = Arrays.copyOf(set.ids, set.ids.length + 1);
+            arr[set.ids.length] = (short) idOf(tag);
+            return setOf(arr);
+        }
+    }
+
+    /** id 對應的字串；id 未配給時為 null。 */
+    public synchronized String name(int id) {
+        return id < nextId ? names[id] : null;
+    }
+
+    /**
+     * 與 s 忽略大小寫相等（同 {@link String#equalsIgnoreCase}）的所有 id；不存在時為空集合。
+     * 只查一次索引，不掃描字典；篩選時先取得一次，再以 {@link TagSet#intersects} 逐筆測位元。
+     */
+    public BitSet matchingIgnoreCase(String s) {
+        BitSet out = new BitSet();
+        if (s == null) return out;
+        int[] variants = folded.get(fold(s));
+        if (variants != null) {
+            for (int id : variants) out.set(id);
+        }
+        return out;
+    }
+
+    /** 目前仍有組合使用（或尚未被 GC 清除）的字串數。 */
+    public synchronized int size() {
+        expunge();
+        return ids.size();
+    }
+
+    private int idOf(String s) {
+        Integer id = ids.get(s);
+        if (id != null) return id;
+        int i;
+        if (freeCount > 0) {
+            i = free[--freeCount];
+        } else {
+            if (nextId == MAX_IDS) throw new IllegalStateException("Tag dictionary is full (" + MAX_IDS + " distinct tags/categories)");
+            i = nextId++;
+            if (i == names.length) {
+                names = Arrays.copyOf(names, i * 2);
+                refs = Arrays.copyOf(refs, i * 2);
+            }
+        }
+        names[i] = s;
+        ids.put(s, i);
+        folded.merge(fold(s), new int[] {i}, TagDictionary::concat);
+        return i;
+    }
+
+    private TagSet setOf(short[] arr) {
+        Key key = new Key(arr);
+        SetRef ref = sets.get(key);
+        TagSet set = ref == null ? null : ref.get();
+        if (set != null) return set;
+        String[] strs = new String[arr.length];
+        for (int i = 0; i < arr.length; i++) {
+            int id = Short.toUnsignedInt(arr[i]);
+            strs[i] = names[id];
+            refs[id]++;
+        }
+        set = new TagSet(arr, List.of(strs));
+        // 舊組合已被 GC 清除但尚未從佇列取出：先計入新組合再歸還，共用的 id 不會被釋放
+        if (ref != null) release(sets.remove(key));
+        sets.put(key, new SetRef(set, key, cleared));
+        return set;
+    }
+
+    /** 處理已被 GC 回收的組合：移除登錄並歸還不再被任何組合使用的 id。 */
+    private void expunge() {
+        SetRef ref;
+        while ((ref = (SetRef) cleared.poll()) != null) {
+            if (sets.get(ref.key) == ref) release(sets.remove(ref.key));
+        }
+    }
+
+    private void release(SetRef ref) {
+        for (short v : ref.key.ids) {
+            int id = Short.toUnsignedInt(v);
+            if (--refs[id] > 0) continue;
+            String s = names[id];
+            names[id] = null;
+            ids.remove(s);
+            folded.computeIfPresent(fold(s), (k, old) -> without(old, id));
+            if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+            free[freeCount++] = id;
+        }
+    }
+
+    /** 與 equalsIgnoreCase 相同的比較規則：逐碼位先轉大寫再轉小寫。 */
+    private static String fold(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        s.codePoints().forEach(cp -> sb.appendCodePoint(Character.toLowerCase(Character.toUpperCase(cp))));
+        return sb.toString();
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    private static int[] without(int[] a, int id) {
+        if (a.length == 1) return a[0] == id ? null : a; // computeIfPresent 回傳 null 即移除
+        int[] out = new int[a.length];
+        int n = 0;
+        for (int v : a) {
+            if (v != id) out[n++] = v;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /** 一組依原順序的標籤 id 與對應字串；不可變，由相同組合的任務共用。 */
+    public static final class TagSet {
+        public static final TagSet EMPTY = new TagSet(new short[0], List.of());
+
+        private final short[] ids;
+        private final List<String> names;
+
+        private TagSet(short[] ids, List<String> names) {
+            this.ids = ids;
+            this.names = names;
+        }
+
+        /** 字串的唯讀清單（建立組合時產生一次，讀取不配置物件）。 */
+        public List<String> names() {
+            return names;
+        }
+
+        /** 是否含有 mask 中任一個 id。 */
+        public boolean intersects(BitSet mask) {
+            for (short id : ids) {
+                if (mask.get(Short.toUnsignedInt(id))) return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class Key {
+        final short[] ids;
+        final int hash;
+
+        Key(short[] ids) {
+            this.ids = ids;
+            this.hash = Arrays.hashCode(ids);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(ids, ((Key) o).ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class SetRef extends WeakReference<TagSet> {
+        final Key key;
+
+        SetRef(TagSet set, Key key, ReferenceQueue<TagSet> q) {
+            super(set, q);
+            this.key = key;
+        }
+    }
+}
@@ -1,8 +1,7 @@
 package app.model;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Objects;
 
@@ -16,15 +15,35 @@ public class Task {
     private TaskStatus status;
     private LocalDateTime createdAt;
     private LocalDateTime completedAt;
-    private List<String> tags;
-    private String category;
+    private TagDictionary.TagSet tags = TagDictionary.TagSet.EMPTY; // 標籤 id 組合（依原順序），相同組合的任務共用一份
+    private TagDictionary.TagSet category;                           // 只含一個 id；null 表示未設定
     private Integer actualMinutes; // 實際花費時間（分鐘）
     private Integer reminderBeforeMinutes; // 提前提醒（分鐘），null 表示預設 60
     private Integer sortOrder; // 拖拽排序序號，數字越小越前
     private String recurrence; // 重覆規則：NONE/DAILY/WEEKLY/MONTHLY
 
     public Task() {
-        this.tags = new ArrayList<>();
+    }
+
+    /** 複製一份可修改的副本；儲存後的任務不再原地修改，讀取端拿到的物件內容保持不變。 */
+    public Task copy() {
+        Task t = new Task();
+        t.id = id;
+        t.title = title;
+        t.description = description;
+        t.priority = priority;
+        t.dueDateTime = dueDateTime;
+        t.estimatedMinutes = estimatedMinutes;
+        t.status = status;
+        t.createdAt = createdAt;
+        t.completedAt = completedAt;
+        t.tags = tags; // 不可變，可共用
+        t.category = category;
+        t.actualMinutes = actualMinutes;
+        t.reminderBeforeMinutes = reminderBeforeMinutes;
+        t.sortOrder = sortOrder;
+        t.recurrence = recurrence;
+        return t;
     }
 
     public String getId() {
@@ -99,21 +118,27 @@ public class Task {
         this.completedAt = completedAt;
     }
 
+    /** 標籤的唯讀清單（由共用的組合取得，讀取不配置物件）。 */
     public List<String> getTags() {
-        return Collections.unmodifiableList(tags);
+        return tags.names();
     }
 
+    /** null 元素會略過。 */
     public void setTags(List<String> tags) {
-        this.tags = new ArrayList<>(tags);
+        this.tags = TagDictionary.get().of(tags);
     }
 
     public void addTag(String tag) {
-        if (this.tags == null) this.tags = new ArrayList<>();
-        this.tags.add(tag);
+        this.tags = TagDictionary.get().with(tags, tag);
+    }
+
+    /** 是否含有 ids 中任一個標籤（以 {@link TagDictionary#matchingIgnoreCase} 取得）。 */
+    public boolean hasAnyTag(BitSet ids) {
+        return tags.intersects(ids);
     }
 
-    public String getCategory() { return category; }
-    public void setCategory(String category) { this.category = category; }
+    public String getCategory() { return category == null ? null : category.names().get(0); }
+    public void setCategory(String category) { this.category = TagDictionary.get().single(category); }
 
     public Integer getActualMinutes() { return actualMinutes; }
     public void setActualMinutes(Integer actualMinutes) { this.actualMinutes = actualMinutes; }
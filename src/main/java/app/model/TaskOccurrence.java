@@ -0,0 +1,31 @@
+package app.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 任務在某個日期的一次出現。非重覆任務只有一次出現（即任務本身）；
+ * 重覆任務的出現只在查詢時依區間產生，不會寫入任務儲存。
+ */
+public class TaskOccurrence {
+    private final Task task;
+    private final LocalDateTime dueDateTime;
+    private final TaskStatus status;
+    private final LocalDateTime completedAt;
+    private final boolean recurring;
+
+    public TaskOccurrence(Task task, LocalDateTime dueDateTime, TaskStatus status, LocalDateTime completedAt, boolean recurring) {
+        this.task = task;
+        this.dueDateTime = dueDateTime;
+        this.status = status;
+        this.completedAt = completedAt;
+        this.recurring = recurring;
+    }
+
+    public Task getTask() { return task; }
+    public LocalDateTime getDueDateTime() { return dueDateTime; }
+    public LocalDate getDate() { return dueDateTime.toLocalDate(); }
+    public TaskStatus getStatus() { return status; }
+    public LocalDateTime getCompletedAt() { return completedAt; }
+    public boolean isRecurring() { return recurring; }
+}
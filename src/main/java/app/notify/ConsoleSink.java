@@ -0,0 +1,12 @@
+package app.notify;
+
+import java.util.List;
+
+public class ConsoleSink implements NotificationSink {
+    @Override public String name() { return "console"; }
+
+    @Override
+    public void deliver(List<ReminderEvent> batch) {
+        for (ReminderEvent e : batch) System.out.println(e.toText());
+    }
+}
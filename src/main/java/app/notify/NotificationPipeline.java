@@ -0,0 +1,267 @@
+package app.notify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 提醒通知管線：事件先進入有界佇列，由分派執行緒批次取出、去重，
+ * 再交給各個 sink 自己的有界佇列與執行緒送出。
+ * 佇列滿時直接丟棄並計數，提醒執行緒永遠不會被慢速的 sink 阻塞。
+ */
+public class NotificationPipeline {
+    private final BlockingQueue<ReminderEvent> queue;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final int sinkQueueBatches;
+    private final List<SinkWorker> sinks = new CopyOnWriteArrayList<>();
+
+    // 使用者 + taskId -> 最後送出的去重鍵；以 LRU 限制大小，任務完成/刪除時由 forget() 移除
+    private final Map<String, String> lastDelivered;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private volatile Thread dispatcher;
+
+    public NotificationPipeline(int capacity, int batchSize, long lingerMillis, int maxTrackedTasks) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMillis = Math.max(0, lingerMillis);
+        this.sinkQueueBatches = Math.max(1, capacity / this.batchSize);
+        this.lastDelivered = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxTrackedTasks;
+            }
+        };
+    }
+
+    public NotificationPipeline() {
+        this(1024, 64, 200, 10_000);
+    }
+
+    public synchronized void addSink(NotificationSink sink) {
+        SinkWorker w = new SinkWorker(sink, sinkQueueBatches);
+        sinks.add(w);
+        if (dispatcher != null) w.start();
+    }
+
+    public synchronized void removeSink(NotificationSink sink) {
+        for (SinkWorker w : sinks) {
+            if (w.sink == sink) { sinks.remove(w); w.stop(); }
+        }
+    }
+
+    public synchronized void start() {
+        if (dispatcher != null) return;
+        for (SinkWorker w : sinks) w.start();
+        dispatcher = new Thread(this::dispatchLoop, "notify-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    public synchronized void stop() {
+        if (dispatcher == null) return;
+        dispatcher.interrupt();
+        dispatcher = null;
+        for (SinkWorker w : sinks) w.stop();
+    }
+
+    /** 非阻塞送入；佇列已滿時丟棄並回傳 false。 */
+    public boolean publish(ReminderEvent e) {
+        published.incrementAndGet();
+        if (queue.offer(e)) return true;
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /** 任務生命週期結束（完成、取消、刪除）時清除去重狀態；tenant 為 null 表示預設使用者。 */
+    public void forget(String tenant, String taskId) {
+        String key = ReminderEvent.taskKey(tenant, taskId);
+        synchronized (lastDelivered) { lastDelivered.remove(key); }
+    }
+
+    private void dispatchLoop() {
+        List<ReminderEvent> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                ReminderEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) continue;
+                    if (remaining <= 0) break;
+                    ReminderEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                List<ReminderEvent> unique = dedup(batch);
+                batch.clear();
+                if (unique.isEmpty()) continue;
+                for (SinkWorker w : sinks) w.offer(unique);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                System.err.println("[notify] dispatch failed: " + e);
+                batch.clear();
+            }
+        }
+    }
+
+    private List<ReminderEvent> dedup(List<ReminderEvent> batch) {
+        List<ReminderEvent> out = new ArrayList<>(batch.size());
+        synchronized (lastDelivered) {
+            for (ReminderEvent e : batch) {
+                String key = e.dedupKey();
+                String task = ReminderEvent.taskKey(e.getTenant(), e.getTaskId());
+                if (Objects.equals(lastDelivered.get(task), key)) {
+                    deduplicated.incrementAndGet();
+                    continue;
+                }
+                lastDelivered.put(task, key);
+                out.add(e);
+            }
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    public Stats stats() {
+        List<SinkStats> list = new ArrayList<>();
+        for (SinkWorker w : sinks) list.add(w.stats());
+        int tracked;
+        synchronized (lastDelivered) { tracked = lastDelivered.size(); }
+        return new Stats(published.get(), dropped.get(), deduplicated.get(), queue.size(), tracked, list);
+    }
+
+    private static final class SinkWorker {
+        final NotificationSink sink;
+        final BlockingQueue<List<ReminderEvent>> pending;
+        final AtomicLong delivered = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong latencyNanosSum = new AtomicLong();
+        final AtomicLong latencyNanosMax = new AtomicLong();
+        volatile Thread thread;
+
+        SinkWorker(NotificationSink sink, int capacity) {
+            this.sink = sink;
+            this.pending = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void start() {
+            thread = new Thread(this::loop, "notify-sink-" + sink.name());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() {
+            Thread t = thread;
+            thread = null;
+            if (t != null) t.interrupt();
+            sink.close();
+        }
+
+        void offer(List<ReminderEvent> batch) {
+            if (!pending.offer(batch)) dropped.addAndGet(batch.size());
+        }
+
+        private void loop() {
+            while (thread == Thread.currentThread()) {
+                List<ReminderEvent> batch;
+                try {
+                    batch = pending.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    sink.deliver(batch);
+                    delivered.addAndGet(batch.size());
+                } catch (InterruptedException e) {
+                    failed.addAndGet(batch.size());
+                    return;
+                } catch (Exception e) {
+                    failed.addAndGet(batch.size());
+                    System.err.println("[notify] sink " + sink.name() + " failed: " + e);
+                }
+                batches.incrementAndGet();
+                // 延遲：從提醒觸發到此 sink 處理完成
+                long latency = System.nanoTime() - batch.get(0).getFiredAtNanos();
+                latencyNanosSum.addAndGet(latency);
+                latencyNanosMax.accumulateAndGet(latency, Math::max);
+            }
+        }
+
+        SinkStats stats() {
+            return new SinkStats(sink.name(), delivered.get(), failed.get(), dropped.get(), batches.get(),
+                    latencyNanosSum.get(), latencyNanosMax.get(), pending.size());
+        }
+    }
+
+    public static final class Stats {
+        private final long published;
+        private final long dropped;
+        private final long deduplicated;
+        private final int queued;
+        private final int trackedTasks;
+        private final List<SinkStats> sinks;
+
+        Stats(long published, long dropped, long deduplicated, int queued, int trackedTasks, List<SinkStats> sinks) {
+            this.published = published;
+            this.dropped = dropped;
+            this.deduplicated = deduplicated;
+            this.queued = queued;
+            this.trackedTasks = trackedTasks;
+            this.sinks = sinks;
+        }
+
+        public long getPublished() { return published; }
+        public long getDropped() { return dropped; }
+        public long getDeduplicated() { return deduplicated; }
+        public int getQueued() { return queued; }
+        public int getTrackedTasks() { return trackedTasks; }
+        public List<SinkStats> getSinks() { return sinks; }
+    }
+
+    public static final class SinkStats {
+        private final String name;
+        private final long delivered;
+        private final long failed;
+        private final long dropped;
+        private final long batches;
+        private final long latencyNanosSum;
+        private final long latencyNanosMax;
+        private final int queuedBatches;
+
+        SinkStats(String name, long delivered, long failed, long dropped, long batches,
+                  long latencyNanosSum, long latencyNanosMax, int queuedBatches) {
+            this.name = name;
+            this.delivered = delivered;
+            this.failed = failed;
+            this.dropped = dropped;
+            this.batches = batches;
+            this.latencyNanosSum = latencyNanosSum;
+            this.latencyNanosMax = latencyNanosMax;
+            this.queuedBatches = queuedBatches;
+        }
+
+        public String getName() { return name; }
+        public long getDelivered() { return delivered; }
+        public long getFailed() { return failed; }
+        public long getDropped() { return dropped; }
+        public long getBatches() { return batches; }
+        public double getAvgLatencyMillis() { return batches == 0 ? 0 : latencyNanosSum / 1e6 / batches; }
+        public double getMaxLatencyMillis() { return latencyNanosMax / 1e6; }
+        public int getQueuedBatches() { return queuedBatches; }
+    }
+}
@@ -0,0 +1,16 @@
+package app.notify;
+
+import java.util.List;
+
+/**
+ * 提醒的輸出端。每個 sink 由 {@link NotificationPipeline} 以獨立執行緒與佇列驅動，
+ * 慢速或失敗的 sink 不會拖累其他 sink。
+ */
+public interface NotificationSink {
+    String name();
+
+    /** 送出一批提醒；丟出例外視為整批失敗（計入失敗數）。 */
+    void deliver(List<ReminderEvent> batch) throws Exception;
+
+    default void close() {}
+}
@@ -0,0 +1,74 @@
+package app.notify;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/** 一次提醒：某使用者的某任務進入 DUE_SOON 或 OVERDUE。 */
+public final class ReminderEvent {
+    private static final DateTimeFormatter DATE_TIME_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm", Locale.getDefault());
+
+    private final String tenant; // 使用者 id；null 表示預設使用者（既有的 data/）
+    private final String taskId;
+    private final String title;
+    private final String category; // OVERDUE or DUE_SOON
+    private final LocalDateTime due;
+    private final long firedAtNanos;
+
+    public ReminderEvent(String tenant, String taskId, String title, String category, LocalDateTime due) {
+        this.tenant = tenant;
+        this.taskId = taskId;
+        this.title = title == null ? "" : title;
+        this.category = category;
+        this.due = due;
+        this.firedAtNanos = System.nanoTime();
+    }
+
+    public String getTenant() { return tenant; }
+    public String getTaskId() { return taskId; }
+    public String getTitle() { return title; }
+    public String getCategory() { return category; }
+    public LocalDateTime getDue() { return due; }
+    public long getFiredAtNanos() { return firedAtNanos; }
+    public boolean isOverdue() { return "OVERDUE".equals(category); }
+
+    /** 去重鍵：同一任務同一截止時間的同類提醒只送一次。 */
+    String dedupKey() { return category + "@" + due; }
+
+    /** 跨使用者唯一的任務鍵（去重狀態依此保存）。 */
+    static String taskKey(String tenant, String taskId) {
+        return tenant == null ? taskId : tenant + "/" + taskId;
+    }
+
+    /** 人類可讀的一行訊息（主控台與記錄檔共用）。 */
+    public String toText() {
+        String dueStr = due == null ? "" : due.format(DATE_TIME_FMT);
+        String who = tenant == null ? "" : "[" + tenant + "]";
+        return isOverdue()
+                ? String.format("[提醒][逾期]%s 任務 %s 截止 %s 已逾期！", who, title, dueStr)
+                : String.format("[提醒][即將到期]%s 任務 %s 將於 %s 截止！", who, title, dueStr);
+    }
+
+    public String toJson() {
+        return (tenant == null ? "{" : "{\"tenant\":\"" + escape(tenant) + "\",") + "\"taskId\":\"" + escape(taskId) + "\",\"title\":\"" + escape(title) + "\",\"category\":\"" + category
+                + "\",\"dueDateTime\":\"" + (due == null ? "" : due.format(DATE_TIME_FMT)) + "\"}";
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package app.notify;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/** 依檔案大小輪替的記錄檔：reminders.log -> reminders.log.1 -> ... -> reminders.log.N。 */
+public class RollingFileSink implements NotificationSink {
+    private final Path file;
+    private final long maxBytes;
+    private final int keep;
+
+    public RollingFileSink(Path file, long maxBytes, int keep) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.keep = Math.max(1, keep);
+    }
+
+    @Override public String name() { return "file"; }
+
+    @Override
+    public void deliver(List<ReminderEvent> batch) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        if (Files.exists(file) && Files.size(file) >= maxBytes) roll();
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            String now = LocalDateTime.now().toString();
+            for (ReminderEvent e : batch) {
+                w.write(now);
+                w.write(' ');
+                w.write(e.toText());
+                w.newLine();
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        Files.deleteIfExists(sibling(keep));
+        for (int i = keep - 1; i >= 1; i--) {
+            if (Files.exists(sibling(i))) Files.move(sibling(i), sibling(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(file, sibling(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path sibling(int i) {
+        return file.resolveSibling(file.getFileName() + "." + i);
+    }
+}
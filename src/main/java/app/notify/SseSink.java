@@ -0,0 +1,69 @@
+package app.notify;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Server-Sent Events 頻道。連線註冊後 handler 即返回，之後由 sink 執行緒寫入，
+ * 不會佔用 HTTP 執行緒；寫入失敗的連線會被移除。每個連線只收到所屬使用者的提醒。
+ */
+public class SseSink implements NotificationSink {
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+
+    @Override public String name() { return "sse"; }
+
+    /** tenant 為 null 表示預設使用者。 */
+    public void register(HttpExchange exchange, String tenant) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream os = exchange.getResponseBody();
+        os.write(": connected\n\n".getBytes(StandardCharsets.UTF_8));
+        os.flush();
+        clients.add(new Client(exchange, tenant));
+    }
+
+    public int clientCount() { return clients.size(); }
+
+    @Override
+    public void deliver(List<ReminderEvent> batch) {
+        if (clients.isEmpty()) return;
+        for (Client c : clients) {
+            StringBuilder sb = new StringBuilder();
+            for (ReminderEvent e : batch) {
+                if (Objects.equals(e.getTenant(), c.tenant)) sb.append("event: reminder\ndata: ").append(e.toJson()).append("\n\n");
+            }
+            if (sb.length() == 0) continue;
+            try {
+                OutputStream os = c.exchange.getResponseBody();
+                os.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+                os.flush();
+            } catch (IOException e) {
+                clients.remove(c);
+                c.exchange.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Client c : clients) c.exchange.close();
+        clients.clear();
+    }
+
+    private static final class Client {
+        final HttpExchange exchange;
+        final String tenant;
+
+        Client(HttpExchange exchange, String tenant) {
+            this.exchange = exchange;
+            this.tenant = tenant;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package app.notify;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/** 以 JSON 陣列 POST 一整批提醒到指定 URL（例如本機的 webhook stub）。 */
+public class WebhookSink implements NotificationSink {
+    private final URI uri;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(3)).build();
+
+    public WebhookSink(URI uri) { this.uri = uri; }
+
+    @Override public String name() { return "webhook"; }
+
+    @Override
+    public void deliver(List<ReminderEvent> batch) throws IOException, InterruptedException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(batch.get(i).toJson());
+        }
+        sb.append(']');
+        HttpRequest req = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(5))
+                .header("Content-Type", "application/json; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(sb.toString()))
+                .build();
+        HttpResponse<Void> res = client.send(req, HttpResponse.BodyHandlers.discarding());
+        if (res.statusCode() / 100 != 2) throw new IOException("webhook returned " + res.statusCode());
+    }
+}
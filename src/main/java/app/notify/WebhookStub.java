@@ -0,0 +1,26 @@
+package app.notify;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 本機 webhook 測試用接收端：印出收到的提醒批次並回 204。
+ * 用法：java -cp out app.notify.WebhookStub 9099，再以 -Dreminder.webhook=http://localhost:9099/hook 啟動主程式。
+ */
+public class WebhookStub {
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9099;
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            System.out.println("[webhook] " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + " " + body);
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        System.out.println("webhook stub listening on http://127.0.0.1:" + port + "/");
+    }
+}
@@ -0,0 +1,284 @@
+package app.repo;
+
+import app.model.Task;
+import app.model.TaskStatus;
+import app.util.CsvUtil;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 已完成/已取消舊任務的冷資料層。任務依完成月份（無完成時間者用建立月份）分區，
+ * 每次封存寫出新的 gzip 區段檔（tasks-yyyy-MM-NNN.csv.gz，格式同 tasks.csv），寫好後不再修改；
+ * index.csv 記錄每個區段的筆數、狀態與截止/完成時間範圍，查詢先以索引排除不相關的區段。
+ * 解開的區段以 LRU 快取少量保留。
+ */
+public class ArchiveStore {
+    private static final String[] INDEX_HEADER = new String[]{
+            "segment","month","count","statuses","minDue","maxDue","minCompleted","maxCompleted"
+    };
+    private static final int MAX_RECORD_CHARS = 1 << 20;
+    private static final int MAX_CACHED_SEGMENTS = 8;
+
+    private final Path dir;
+    private final Path indexPath;
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<String, List<Task>> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, List<Task>> eldest) {
+            return size() > MAX_CACHED_SEGMENTS;
+        }
+    };
+
+    public ArchiveStore(Path dir) throws IOException {
+        this.dir = dir;
+        this.indexPath = dir.resolve("index.csv");
+        Files.createDirectories(dir);
+        loadIndex();
+    }
+
+    private synchronized void loadIndex() throws IOException {
+        if (!Files.exists(indexPath)) return;
+        try (BufferedReader r = Files.newBufferedReader(indexPath, StandardCharsets.UTF_8)) {
+            String line;
+            boolean first = true;
+            while ((line = r.readLine()) != null) {
+                if (first) { first = false; continue; }
+                if (line.trim().isEmpty()) continue;
+                List<String> cols = CsvUtil.parse(line);
+                try {
+                    Segment s = new Segment(cols.get(0), YearMonth.parse(cols.get(1)), Integer.parseInt(cols.get(2)), Integer.parseInt(cols.get(3)),
+                            date(cols.get(4)), date(cols.get(5)), date(cols.get(6)), date(cols.get(7)));
+                    if (Files.exists(dir.resolve(s.file))) segments.add(s);
+                } catch (Exception ignored) {}
+            }
+        }
+    }
+
+    /** 封存一批任務：每個月份寫出一個新區段，最後更新索引。 */
+    public synchronized void append(List<Task> tasks) throws IOException {
+        if (tasks.isEmpty()) return;
+        Map<YearMonth, List<Task>> byMonth = new TreeMap<>();
+        for (Task t : tasks) byMonth.computeIfAbsent(partition(t), k -> new ArrayList<>()).add(t);
+        List<Segment> added = new ArrayList<>();
+        for (Map.Entry<YearMonth, List<Task>> e : byMonth.entrySet()) added.add(writeSegment(e.getKey(), e.getValue()));
+        segments.addAll(added);
+        writeIndex();
+    }
+
+    /**
+     * 只封存同月份區段中還沒有的任務（依 id），回傳實際寫入的任務。
+     * 複本重播與快照可能重複送出同一批封存，這樣重送不會產生重複的記錄。
+     */
+    public List<Task> appendMissing(List<Task> tasks) throws IOException {
+        Set<YearMonth> months = new HashSet<>();
+        Set<String> ids = new HashSet<>();
+        for (Task t : tasks) {
+            months.add(partition(t));
+            ids.add(t.getId());
+        }
+        Set<String> present = new HashSet<>();
+        for (Task t : find(seg -> months.contains(seg.month), t -> ids.contains(t.getId()))) present.add(t.getId());
+        List<Task> missing = new ArrayList<>();
+        for (Task t : tasks) {
+            if (!present.contains(t.getId())) missing.add(t);
+        }
+        append(missing);
+        return missing;
+    }
+
+    /**
+     * 讀出符合條件的封存任務，依區段順序。segmentFilter 以索引判斷區段是否可能相關，
+     * 被排除的區段不會解壓。
+     */
+    public List<Task> find(Predicate<Segment> segmentFilter, Predicate<Task> taskFilter) throws IOException {
+        List<Segment> relevant = new ArrayList<>();
+        synchronized (this) {
+            for (Segment s : segments) {
+                if (segmentFilter == null || segmentFilter.test(s)) relevant.add(s);
+            }
+        }
+        List<Task> out = new ArrayList<>();
+        for (Segment s : relevant) {
+            for (Task t : read(s)) {
+                if (taskFilter == null || taskFilter.test(t)) out.add(t);
+            }
+        }
+        return out;
+    }
+
+    public synchronized List<Segment> segments() {
+        return Collections.unmodifiableList(new ArrayList<>(segments));
+    }
+
+    public synchronized int size() {
+        int n = 0;
+        for (Segment s : segments) n += s.count;
+        return n;
+    }
+
+    private List<Task> read(Segment s) throws IOException {
+        synchronized (this) {
+            List<Task> cached = cache.get(s.file);
+            if (cached != null) return cached;
+        }
+        List<Task> list = new ArrayList<>(s.count);
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(dir.resolve(s.file)), 64 * 1024), StandardCharsets.UTF_8))) {
+            CsvUtil.RecordReader records = new CsvUtil.RecordReader(r, MAX_RECORD_CHARS,
+                    line -> System.err.println("[archive] " + s.file + ": skipped malformed line: " + line));
+            List<String> cols;
+            boolean first = true;
+            while ((cols = records.next()) != null) {
+                if (first) { first = false; continue; }
+                if (cols.size() == 1 && cols.get(0).trim().isEmpty()) continue;
+                Task t = TaskCsv.fromColumns(cols);
+                if (t != null) list.add(t);
+            }
+        }
+        List<Task> immutable = Collections.unmodifiableList(list);
+        synchronized (this) {
+            cache.put(s.file, immutable);
+        }
+        return immutable;
+    }
+
+    private Segment writeSegment(YearMonth month, List<Task> tasks) throws IOException {
+        String name = nextName(month);
+        Path tmp = dir.resolve(name + ".tmp");
+        int statuses = 0;
+        LocalDate minDue = null, maxDue = null, minCompleted = null, maxCompleted = null;
+        try (BufferedWriter w = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024), StandardCharsets.UTF_8))) {
+            w.write(CsvUtil.join(TaskCsv.HEADER));
+            w.newLine();
+            for (Task t : tasks) {
+                w.write(CsvUtil.join(TaskCsv.toColumns(t)));
+                w.newLine();
+                statuses |= 1 << (t.getStatus() == null ? TaskStatus.PENDING : t.getStatus()).ordinal();
+                LocalDate due = t.getDueDateTime() == null ? null : t.getDueDateTime().toLocalDate();
+                LocalDate done = t.getCompletedAt() == null ? null : t.getCompletedAt().toLocalDate();
+                minDue = min(minDue, due);
+                maxDue = max(maxDue, due);
+                minCompleted = min(minCompleted, done);
+                maxCompleted = max(maxCompleted, done);
+            }
+        }
+        Files.move(tmp, dir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        return new Segment(name, month, tasks.size(), statuses, minDue, maxDue, minCompleted, maxCompleted);
+    }
+
+    private String nextName(YearMonth month) {
+        int seq = 1;
+        String prefix = "tasks-" + month + "-";
+        for (Segment s : segments) {
+            if (s.file.startsWith(prefix)) seq++;
+        }
+        String name;
+        do {
+            name = String.format(Locale.ROOT, "%s%03d.csv.gz", prefix, seq++);
+        } while (Files.exists(dir.resolve(name)));
+        return name;
+    }
+
+    private void writeIndex() throws IOException {
+        Path tmp = dir.resolve("index.csv.tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            w.write(CsvUtil.join(INDEX_HEADER));
+            w.newLine();
+            for (Segment s : segments) {
+                List<String> cols = new ArrayList<>();
+                cols.add(s.file);
+                cols.add(s.month.toString());
+                cols.add(String.valueOf(s.count));
+                cols.add(String.valueOf(s.statuses));
+                cols.add(s.minDue == null ? "" : s.minDue.toString());
+                cols.add(s.maxDue == null ? "" : s.maxDue.toString());
+                cols.add(s.minCompleted == null ? "" : s.minCompleted.toString());
+                cols.add(s.maxCompleted == null ? "" : s.maxCompleted.toString());
+                w.write(CsvUtil.join(cols));
+                w.newLine();
+            }
+        }
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static YearMonth partition(Task t) {
+        LocalDateTime at = t.getCompletedAt() != null ? t.getCompletedAt() : t.getCreatedAt();
+        return at == null ? YearMonth.of(1970, 1) : YearMonth.from(at);
+    }
+
+    private static LocalDate date(String s) {
+        return s == null || s.isEmpty() ? null : LocalDate.parse(s);
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        if (a == null) return b;
+        return b == null || !b.isBefore(a) ? a : b;
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        if (a == null) return b;
+        return b == null || !b.isAfter(a) ? a : b;
+    }
+
+    /** 索引中的一個區段。 */
+    public static final class Segment {
+        private final String file;
+        private final YearMonth month;
+        private final int count;
+        private final int statuses; // 各狀態序數的位元
+        private final LocalDate minDue;
+        private final LocalDate maxDue;
+        private final LocalDate minCompleted;
+        private final LocalDate maxCompleted;
+
+        Segment(String file, YearMonth month, int count, int statuses,
+                LocalDate minDue, LocalDate maxDue, LocalDate minCompleted, LocalDate maxCompleted) {
+            this.file = file;
+            this.month = month;
+            this.count = count;
+            this.statuses = statuses;
+            this.minDue = minDue;
+            this.maxDue = maxDue;
+            this.minCompleted = minCompleted;
+            this.maxCompleted = maxCompleted;
+        }
+
+        public String getFile() { return file; }
+        public YearMonth getMonth() { return month; }
+        public int getCount() { return count; }
+
+        public boolean hasStatus(TaskStatus s) {
+            return (statuses & (1 << s.ordinal())) != 0;
+        }
+
+        /** 區段內是否可能有截止日（或重覆系列的完成日）落在 [start, end] 的任務。 */
+        public boolean mayOverlap(LocalDate start, LocalDate end) {
+            if (minDue == null || minDue.isAfter(end)) return false;
+            LocalDate last = max(maxDue, maxCompleted);
+            return !last.isBefore(start);
+        }
+    }
+}
@@ -1,42 +1,59 @@
 package app.repo;
 
 import app.model.Note;
+import app.util.CountingOutputStream;
 import app.util.CsvUtil;
+import app.util.JfrEvents;
+import app.util.Metrics;
+import app.util.RequestTrace;
+import app.util.RequestTrace.Stage;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 public class FileNoteRepository implements NoteRepository {
-    private static final String[] HEADER = new String[]{"id","date","content","createdAt","updatedAt"};
-    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd", Locale.getDefault());
-    private static final DateTimeFormatter DATE_TIME_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm", Locale.getDefault());
+    private static final int MAX_RECORD_CHARS = 1 << 20;
+    private static final Metrics.Histogram LOAD_TIME = Metrics.histogram("repo_load_seconds", "CSV load time", Metrics.LATENCY_BUCKETS, "repo", "notes");
+    private static final Metrics.Histogram SAVE_TIME = Metrics.histogram("repo_save_seconds", "CSV write time (full rewrite or batch append)", Metrics.LATENCY_BUCKETS, "repo", "notes");
+    private static final Metrics.Counter SAVE_BYTES = Metrics.counter("repo_save_bytes_total", "Bytes written to CSV files", "repo", "notes");
 
     private final Path csvPath;
     private final List<Note> notes = new ArrayList<>();
+    private long version;
+    private Snapshot<Note> snapshot; // 上次產生的快照；寫入時作廢
 
     public FileNoteRepository(Path csvPath) throws IOException {
         this.csvPath = csvPath;
         ensureFileWithHeader();
+        JfrEvents.RepositoryLoad event = new JfrEvents.RepositoryLoad();
+        event.begin();
+        long start = System.nanoTime();
         load();
+        LOAD_TIME.observeNanos(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.repo = "notes";
+            event.path = csvPath.toString();
+            event.rows = notes.size();
+            event.bytes = csvPath.toFile().length();
+            event.commit();
+        }
     }
 
     private void ensureFileWithHeader() throws IOException {
         if (!Files.exists(csvPath)) {
             if (!Files.exists(csvPath.getParent())) Files.createDirectories(csvPath.getParent());
             try (BufferedWriter w = Files.newBufferedWriter(csvPath, StandardCharsets.UTF_8)) {
-                w.write(CsvUtil.join(HEADER)); w.newLine();
+                w.write(CsvUtil.join(NoteCsv.HEADER)); w.newLine();
             }
         }
     }
@@ -44,47 +61,65 @@ public class FileNoteRepository implements NoteRepository {
     private synchronized void load() throws IOException {
         notes.clear();
         try (BufferedReader r = Files.newBufferedReader(csvPath, StandardCharsets.UTF_8)) {
-            String line; boolean first = true;
-            while ((line = r.readLine()) != null) {
+            CsvUtil.RecordReader records = new CsvUtil.RecordReader(r, MAX_RECORD_CHARS,
+                    line -> System.err.println("[repo] " + csvPath + ": skipped malformed line: " + line));
+            List<String> cols; boolean first = true;
+            while ((cols = records.next()) != null) {
                 if (first) { first = false; continue; }
-                if (line.trim().isEmpty()) continue;
-                var cols = CsvUtil.parse(line);
-                Note n = new Note();
-                n.setId(cols.get(0));
-                n.setDate(cols.get(1).isEmpty()? null : LocalDate.parse(cols.get(1), DATE_FMT));
-                n.setContent(cols.get(2));
-                n.setCreatedAt(cols.get(3).isEmpty()? null : LocalDateTime.parse(cols.get(3), DATE_TIME_FMT));
-                n.setUpdatedAt(cols.get(4).isEmpty()? null : LocalDateTime.parse(cols.get(4), DATE_TIME_FMT));
-                notes.add(n);
+                if (cols.size() == 1 && cols.get(0).trim().isEmpty()) continue;
+                try {
+                    notes.add(NoteCsv.fromColumns(cols));
+                } catch (RuntimeException e) { // 欄位不足或日期格式錯誤（含重新同步後的殘段）：略過該筆
+                    System.err.println("[repo] " + csvPath + ": skipped malformed note: " + e);
+                }
             }
         }
     }
 
     private synchronized void save() {
-        try (BufferedWriter w = Files.newBufferedWriter(csvPath, StandardCharsets.UTF_8)) {
-            w.write(CsvUtil.join(HEADER)); w.newLine();
+        version++;
+        snapshot = null;
+        long stage = RequestTrace.start();
+        JfrEvents.RepositorySave event = new JfrEvents.RepositorySave();
+        event.begin();
+        long start = System.nanoTime();
+        CountingOutputStream counted;
+        try (BufferedWriter w = new BufferedWriter(new OutputStreamWriter(
+                counted = new CountingOutputStream(Files.newOutputStream(csvPath)), StandardCharsets.UTF_8))) {
+            w.write(CsvUtil.join(NoteCsv.HEADER)); w.newLine();
             for (Note n : notes) {
-                List<String> cols = new ArrayList<>();
-                cols.add(n.getId());
-                cols.add(n.getDate()==null?"":n.getDate().format(DATE_FMT));
-                cols.add(n.getContent()==null?"":n.getContent());
-                cols.add(n.getCreatedAt()==null?"":n.getCreatedAt().format(DATE_TIME_FMT));
-                cols.add(n.getUpdatedAt()==null?"":n.getUpdatedAt().format(DATE_TIME_FMT));
-                w.write(CsvUtil.join(cols)); w.newLine();
+                w.write(CsvUtil.join(NoteCsv.toColumns(n))); w.newLine();
             }
         } catch (IOException e) { throw new RuntimeException(e); }
+        SAVE_TIME.observeNanos(System.nanoTime() - start);
+        long bytes = counted.count();
+        SAVE_BYTES.add(bytes);
+        if (event.shouldCommit()) {
+            event.repo = "notes";
+            event.path = csvPath.toString();
+            event.rows = notes.size();
+            event.append = false;
+            event.bytes = bytes;
+            event.commit();
+        }
+        RequestTrace.end(Stage.SAVE, stage);
     }
 
     @Override
-    public synchronized List<Note> findByRange(LocalDate start, LocalDate end) {
-        return notes.stream().filter(n -> n.getDate()!=null && !n.getDate().isBefore(start) && !n.getDate().isAfter(end))
-                .collect(Collectors.toList());
+    public List<Note> findByRange(LocalDate start, LocalDate end) {
+        long wait = RequestTrace.start();
+        synchronized (this) {
+            RequestTrace.end(Stage.LOCK_WAIT, wait);
+            return notes.stream().filter(n -> n.getDate()!=null && !n.getDate().isBefore(start) && !n.getDate().isAfter(end))
+                    .collect(Collectors.toList());
+        }
     }
 
     @Override
     public synchronized void upsert(Note note) {
         if (note.getId()==null) note.setId(UUID.randomUUID().toString());
         for (int i=0;i<notes.size();i++) if (notes.get(i).getId().equals(note.getId())) { notes.set(i, note); save(); return; }
+        if (note.getCreatedAt() == null) note.setCreatedAt(note.getUpdatedAt()); // 呼叫端指定 id 的新筆記
         notes.add(note); save();
     }
 
@@ -92,6 +127,14 @@ public class FileNoteRepository implements NoteRepository {
     public synchronized void deleteById(String id) {
         notes.removeIf(n -> n.getId().equals(id)); save();
     }
-}
-
 
+    @Override
+    public Snapshot<Note> snapshot() {
+        long wait = RequestTrace.start();
+        synchronized (this) {
+            RequestTrace.end(Stage.LOCK_WAIT, wait);
+            if (snapshot == null) snapshot = new Snapshot<>(version, List.copyOf(notes));
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package app.repo;
+
+import app.model.OccurrenceOverride;
+import app.model.TaskStatus;
+import app.util.CsvUtil;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+public class FileOccurrenceRepository implements OccurrenceRepository {
+    private static final String[] HEADER = new String[]{"taskId","date","status","completedAt"};
+    private static final DateTimeFormatter DATE_TIME_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm", Locale.getDefault());
+
+    private final Path csvPath;
+    private final Map<String, TreeMap<LocalDate, OccurrenceOverride>> byTask = new HashMap<>();
+
+    public FileOccurrenceRepository(Path csvPath) throws IOException {
+        this.csvPath = csvPath;
+        ensureFileWithHeader();
+        load();
+    }
+
+    private void ensureFileWithHeader() throws IOException {
+        if (!Files.exists(csvPath)) {
+            if (!Files.exists(csvPath.getParent())) Files.createDirectories(csvPath.getParent());
+            try (BufferedWriter w = Files.newBufferedWriter(csvPath, StandardCharsets.UTF_8)) {
+                w.write(CsvUtil.join(HEADER)); w.newLine();
+            }
+        }
+    }
+
+    private synchronized void load() throws IOException {
+        byTask.clear();
+        try (BufferedReader r = Files.newBufferedReader(csvPath, StandardCharsets.UTF_8)) {
+            String line; boolean first = true;
+            while ((line = r.readLine()) != null) {
+                if (first) { first = false; continue; }
+                if (line.trim().isEmpty()) continue;
+                var cols = CsvUtil.parse(line);
+                try {
+                    OccurrenceOverride o = fromColumns(cols);
+                    byTask.computeIfAbsent(o.getTaskId(), k -> new TreeMap<>()).put(o.getDate(), o);
+                } catch (Exception ignored) {}
+            }
+        }
+    }
+
+    private synchronized void save() {
+        try (BufferedWriter w = Files.newBufferedWriter(csvPath, StandardCharsets.UTF_8)) {
+            w.write(CsvUtil.join(HEADER)); w.newLine();
+            for (TreeMap<LocalDate, OccurrenceOverride> m : byTask.values()) {
+                for (OccurrenceOverride o : m.values()) {
+                    w.write(CsvUtil.join(toColumns(o))); w.newLine();
+                }
+            }
+        } catch (IOException e) { throw new RuntimeException(e); }
+    }
+
+    public static List<String> toColumns(OccurrenceOverride o) {
+        List<String> cols = new ArrayList<>();
+        cols.add(o.getTaskId());
+        cols.add(o.getDate().toString());
+        cols.add(o.getStatus().name());
+        cols.add(o.getCompletedAt()==null?"":o.getCompletedAt().format(DATE_TIME_FMT));
+        return cols;
+    }
+
+    public static OccurrenceOverride fromColumns(List<String> cols) {
+        OccurrenceOverride o = new OccurrenceOverride();
+        o.setTaskId(cols.get(0));
+        o.setDate(LocalDate.parse(cols.get(1)));
+        o.setStatus(TaskStatus.valueOf(cols.get(2)));
+        o.setCompletedAt(cols.get(3).isEmpty()? null : LocalDateTime.parse(cols.get(3), DATE_TIME_FMT));
+        return o;
+    }
+
+    @Override
+    public synchronized List<OccurrenceOverride> findAll() {
+        List<OccurrenceOverride> out = new ArrayList<>();
+        for (TreeMap<LocalDate, OccurrenceOverride> m : byTask.values()) out.addAll(m.values());
+        return out;
+    }
+
+    @Override
+    public synchronized NavigableMap<LocalDate, OccurrenceOverride> findByTask(String taskId, LocalDate start, LocalDate end) {
+        TreeMap<LocalDate, OccurrenceOverride> m = byTask.get(taskId);
+        return m == null ? Collections.emptyNavigableMap() : new TreeMap<>(m.subMap(start, true, end, true));
+    }
+
+    @Override
+    public synchronized void upsert(OccurrenceOverride override) {
+        byTask.computeIfAbsent(override.getTaskId(), k -> new TreeMap<>()).put(override.getDate(), override);
+        save();
+    }
+
+    @Override
+    public synchronized void deleteByTask(String taskId) {
+        if (byTask.remove(taskId) != null) save();
+    }
+}
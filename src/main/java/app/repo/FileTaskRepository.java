@@ -1,38 +1,57 @@
 package app.repo;
 
 import app.model.Task;
-import app.model.TaskPriority;
-import app.model.TaskStatus;
+import app.util.CountingOutputStream;
 import app.util.CsvUtil;
+import app.util.JfrEvents;
+import app.util.Metrics;
+import app.util.RequestTrace;
+import app.util.RequestTrace.Stage;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 public class FileTaskRepository implements TaskRepository {
-    private static final String[] HEADER = new String[]{
-            "id","title","description","priority","dueDateTime","estimatedMinutes","status","createdAt","completedAt","tags","category","actualMinutes","reminderBeforeMinutes","sortOrder","recurrence"
-    };
-    private static final DateTimeFormatter DATE_TIME_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm", Locale.getDefault());
+    private static final int MAX_RECORD_CHARS = 1 << 20;
+    private static final Metrics.Histogram LOAD_TIME = Metrics.histogram("repo_load_seconds", "CSV load time", Metrics.LATENCY_BUCKETS, "repo", "tasks");
+    private static final Metrics.Histogram SAVE_TIME = Metrics.histogram("repo_save_seconds", "CSV write time (full rewrite or batch append)", Metrics.LATENCY_BUCKETS, "repo", "tasks");
+    private static final Metrics.Counter SAVE_BYTES = Metrics.counter("repo_save_bytes_total", "Bytes written to CSV files", "repo", "tasks");
 
     private final Path csvPath;
-    private final List<Task> tasks;
+    // id -> 任務；保留插入順序，寫檔順序與以往相同
+    private final Map<String, Task> tasks;
+    private long version;
+    private Snapshot<Task> snapshot; // 上次產生的快照；寫入時作廢
+    private int staleRows;          // 檔案中已被後面附加的列取代的列數
+    private boolean appendUnsafe;   // 上次寫檔失敗，下次需整檔重寫
 
     public FileTaskRepository(Path csvPath) throws IOException {
         this.csvPath = csvPath;
         ensureFileWithHeader();
+        JfrEvents.RepositoryLoad event = new JfrEvents.RepositoryLoad();
+        event.begin();
+        long start = System.nanoTime();
         this.tasks = loadFromDisk();
+        LOAD_TIME.observeNanos(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.repo = "tasks";
+            event.path = csvPath.toString();
+            event.rows = tasks.size();
+            event.bytes = csvPath.toFile().length();
+            event.commit();
+        }
     }
 
     private synchronized void ensureFileWithHeader() throws IOException {
@@ -41,119 +60,165 @@ public class FileTaskRepository implements TaskRepository {
                 Files.createDirectories(csvPath.getParent());
             }
             try (BufferedWriter writer = Files.newBufferedWriter(csvPath, StandardCharsets.UTF_8)) {
-                writer.write(CsvUtil.join(HEADER));
+                writer.write(CsvUtil.join(TaskCsv.HEADER));
                 writer.newLine();
             }
         }
     }
 
-    private synchronized List<Task> loadFromDisk() throws IOException {
-        List<Task> list = new ArrayList<>();
+    private synchronized Map<String, Task> loadFromDisk() throws IOException {
+        Map<String, Task> map = new LinkedHashMap<>();
         try (BufferedReader reader = Files.newBufferedReader(csvPath, StandardCharsets.UTF_8)) {
-            String line;
+            CsvUtil.RecordReader records = new CsvUtil.RecordReader(reader, MAX_RECORD_CHARS,
+                    line -> System.err.println("[repo] " + csvPath + ": skipped malformed line: " + line));
+            List<String> cols;
             boolean first = true;
-            while ((line = reader.readLine()) != null) {
+            // 以記錄為單位讀取：描述中含換行的任務也能正確載入；引號不成對的行只略過該行
+            while ((cols = records.next()) != null) {
                 if (first) { first = false; continue; }
-                if (line.trim().isEmpty()) continue;
-                List<String> cols = CsvUtil.parse(line);
-                Task t = fromCsv(cols);
-                if (t != null) list.add(t);
+                if (cols.size() == 1 && cols.get(0).trim().isEmpty()) continue;
+                Task t = TaskCsv.fromColumns(cols);
+                if (t != null) map.put(t.getId(), t);
             }
         }
-        return list;
+        return map;
     }
 
-    private Task fromCsv(List<String> cols) {
-        try {
-            Task t = new Task();
-            t.setId(cols.get(0));
-            t.setTitle(cols.get(1));
-            t.setDescription(cols.get(2));
-            t.setPriority(cols.get(3).isEmpty() ? TaskPriority.MEDIUM : TaskPriority.valueOf(cols.get(3)));
-            t.setDueDateTime(cols.get(4).isEmpty() ? null : LocalDateTime.parse(cols.get(4), DATE_TIME_FMT));
-            t.setEstimatedMinutes(cols.get(5).isEmpty() ? 30 : Integer.parseInt(cols.get(5)));
-            t.setStatus(cols.get(6).isEmpty() ? TaskStatus.PENDING : TaskStatus.valueOf(cols.get(6)));
-            t.setCreatedAt(cols.get(7).isEmpty() ? null : LocalDateTime.parse(cols.get(7), DATE_TIME_FMT));
-            t.setCompletedAt(cols.get(8).isEmpty() ? null : LocalDateTime.parse(cols.get(8), DATE_TIME_FMT));
-            List<String> tags = new ArrayList<>();
-            if (cols.size() > 9 && !cols.get(9).isEmpty()) {
-                for (String s : cols.get(9).split(";")) {
-                    String v = s.trim();
-                    if (!v.isEmpty()) tags.add(v);
-                }
-            }
-            t.setTags(tags);
-            t.setCategory(cols.size()>10 ? emptyToNull(cols.get(10)) : null);
-            t.setActualMinutes(cols.size()>11 && !cols.get(11).isEmpty() ? Integer.parseInt(cols.get(11)) : null);
-            t.setReminderBeforeMinutes(cols.size()>12 && !cols.get(12).isEmpty() ? Integer.parseInt(cols.get(12)) : null);
-            t.setSortOrder(cols.size()>13 && !cols.get(13).isEmpty() ? Integer.parseInt(cols.get(13)) : null);
-            t.setRecurrence(cols.size()>14 ? emptyToNull(cols.get(14)) : null);
-            return t;
-        } catch (Exception e) {
-            return null;
+    // 套件內可見：效能基準直接量測整檔重寫
+    synchronized void saveToDisk() {
+        appendUnsafe = true; // 寫到一半失敗時檔案不完整，之後不能再附加
+        write(tasks.values(), false);
+        staleRows = 0;
+        appendUnsafe = false;
+    }
+
+    /**
+     * 只把這一批附加到檔尾（批次匯入、複寫），I/O 與批次大小成正比而不是與整個檔案成正比。
+     * 同 id 的舊列留在檔案中，載入時後出現的列覆蓋先前的列（順序仍是第一次出現的位置），與記憶體內容一致；
+     * 過時的列多於現有任務數、或上次附加失敗（檔尾可能是半行）時改為整檔重寫。
+     */
+    private void appendToDisk(Collection<Task> batch) {
+        if (appendUnsafe || staleRows > tasks.size()) {
+            saveToDisk();
+            return;
         }
+        appendUnsafe = true;
+        write(batch, true);
+        appendUnsafe = false;
     }
 
-    private String emptyToNull(String s) { return (s == null || s.isEmpty()) ? null : s; }
-
-    private synchronized void saveToDisk() {
-        try (BufferedWriter writer = Files.newBufferedWriter(csvPath, StandardCharsets.UTF_8)) {
-            writer.write(CsvUtil.join(HEADER));
-            writer.newLine();
-            for (Task t : tasks) {
-                List<String> cols = new ArrayList<>();
-                cols.add(t.getId());
-                cols.add(t.getTitle() == null ? "" : t.getTitle());
-                cols.add(t.getDescription() == null ? "" : t.getDescription());
-                cols.add(t.getPriority() == null ? TaskPriority.MEDIUM.name() : t.getPriority().name());
-                cols.add(t.getDueDateTime() == null ? "" : t.getDueDateTime().format(DATE_TIME_FMT));
-                cols.add(String.valueOf(t.getEstimatedMinutes()));
-                cols.add(t.getStatus() == null ? TaskStatus.PENDING.name() : t.getStatus().name());
-                cols.add(t.getCreatedAt() == null ? "" : t.getCreatedAt().format(DATE_TIME_FMT));
-                cols.add(t.getCompletedAt() == null ? "" : t.getCompletedAt().format(DATE_TIME_FMT));
-                cols.add(t.getTags() == null ? "" : String.join(";", t.getTags()));
-                cols.add(t.getCategory()==null?"":t.getCategory());
-                cols.add(t.getActualMinutes()==null?"":String.valueOf(t.getActualMinutes()));
-                cols.add(t.getReminderBeforeMinutes()==null?"":String.valueOf(t.getReminderBeforeMinutes()));
-                cols.add(t.getSortOrder()==null?"":String.valueOf(t.getSortOrder()));
-                cols.add(t.getRecurrence()==null?"":t.getRecurrence());
-                writer.write(CsvUtil.join(cols));
+    private void write(Collection<Task> rows, boolean append) {
+        long stage = RequestTrace.start();
+        JfrEvents.RepositorySave event = new JfrEvents.RepositorySave();
+        event.begin();
+        long start = System.nanoTime();
+        CountingOutputStream counted;
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(counted = new CountingOutputStream(append
+                ? Files.newOutputStream(csvPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                : Files.newOutputStream(csvPath)), StandardCharsets.UTF_8))) {
+            if (!append) {
+                writer.write(CsvUtil.join(TaskCsv.HEADER));
+                writer.newLine();
+            }
+            for (Task t : rows) {
+                writer.write(CsvUtil.join(TaskCsv.toColumns(t)));
                 writer.newLine();
             }
         } catch (IOException e) {
             throw new RuntimeException("Failed to save tasks.csv", e);
         }
+        SAVE_TIME.observeNanos(System.nanoTime() - start);
+        long bytes = counted.count();
+        SAVE_BYTES.add(bytes);
+        if (event.shouldCommit()) {
+            event.repo = "tasks";
+            event.path = csvPath.toString();
+            event.rows = rows.size();
+            event.append = append;
+            event.bytes = bytes;
+            event.commit();
+        }
+        RequestTrace.end(Stage.SAVE, stage);
+    }
+
+    private void changed() {
+        version++;
+        snapshot = null;
+        saveToDisk();
+    }
+
+    // 請求路徑上常用的方法以 synchronized 區塊取代 synchronized 方法，量測等待監視器的時間（RequestTrace.LOCK_WAIT）
+    @Override
+    public Snapshot<Task> snapshot() {
+        long wait = RequestTrace.start();
+        synchronized (this) {
+            RequestTrace.end(Stage.LOCK_WAIT, wait);
+            if (snapshot == null) snapshot = new Snapshot<>(version, List.copyOf(tasks.values()));
+            return snapshot;
+        }
     }
 
     @Override
-    public synchronized List<Task> findAll() {
-        return new ArrayList<>(tasks);
+    public List<Task> findAll() {
+        long wait = RequestTrace.start();
+        synchronized (this) {
+            RequestTrace.end(Stage.LOCK_WAIT, wait);
+            return new ArrayList<>(tasks.values());
+        }
     }
 
     @Override
-    public synchronized Optional<Task> findById(String id) {
-        return tasks.stream().filter(t -> t.getId().equals(id)).findFirst();
+    public Optional<Task> findById(String id) {
+        long wait = RequestTrace.start();
+        synchronized (this) {
+            RequestTrace.end(Stage.LOCK_WAIT, wait);
+            return Optional.ofNullable(tasks.get(id));
+        }
     }
 
     @Override
-    public synchronized void upsert(Task task) {
-        for (int i = 0; i < tasks.size(); i++) {
-            if (tasks.get(i).getId().equals(task.getId())) {
-                tasks.set(i, task);
-                saveToDisk();
-                return;
+    public void upsert(Task task) {
+        long wait = RequestTrace.start();
+        synchronized (this) {
+            RequestTrace.end(Stage.LOCK_WAIT, wait);
+            tasks.put(task.getId(), task);
+            changed();
+        }
+    }
+
+    @Override
+    public void upsertAll(Collection<Task> batch) {
+        if (batch.isEmpty()) return;
+        long wait = RequestTrace.start();
+        synchronized (this) {
+            RequestTrace.end(Stage.LOCK_WAIT, wait);
+            for (Task t : batch) {
+                if (tasks.put(t.getId(), t) != null) staleRows++;
             }
+            version++;
+            snapshot = null;
+            appendToDisk(batch);
         }
-        tasks.add(task);
-        saveToDisk();
     }
 
     @Override
-    public synchronized boolean deleteById(String id) {
-        boolean removed = tasks.removeIf(t -> t.getId().equals(id));
-        if (removed) saveToDisk();
+    public boolean deleteById(String id) {
+        long wait = RequestTrace.start();
+        synchronized (this) {
+            RequestTrace.end(Stage.LOCK_WAIT, wait);
+            boolean removed = tasks.remove(id) != null;
+            if (removed) changed();
+            return removed;
+        }
+    }
+
+    @Override
+    public synchronized List<Task> removeUnchanged(Collection<Task> expected) {
+        List<Task> removed = new ArrayList<>();
+        for (Task t : expected) {
+            if (tasks.get(t.getId()) == t) { tasks.remove(t.getId()); removed.add(t); }
+        }
+        if (!removed.isEmpty()) changed();
         return removed;
     }
 }
-
-
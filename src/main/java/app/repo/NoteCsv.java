@@ -0,0 +1,41 @@
+package app.repo;
+
+import app.model.Note;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * notes.csv 的欄位定義與編碼/解碼，儲存與匯出共用。
+ */
+public final class NoteCsv {
+    public static final String[] HEADER = new String[]{"id","date","content","createdAt","updatedAt"};
+    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd", Locale.getDefault());
+    private static final DateTimeFormatter DATE_TIME_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm", Locale.getDefault());
+
+    private NoteCsv() {}
+
+    public static List<String> toColumns(Note n) {
+        List<String> cols = new ArrayList<>(HEADER.length);
+        cols.add(n.getId());
+        cols.add(n.getDate()==null?"":n.getDate().format(DATE_FMT));
+        cols.add(n.getContent()==null?"":n.getContent());
+        cols.add(n.getCreatedAt()==null?"":n.getCreatedAt().format(DATE_TIME_FMT));
+        cols.add(n.getUpdatedAt()==null?"":n.getUpdatedAt().format(DATE_TIME_FMT));
+        return cols;
+    }
+
+    public static Note fromColumns(List<String> cols) {
+        Note n = new Note();
+        n.setId(cols.get(0));
+        n.setDate(cols.get(1).isEmpty()? null : LocalDate.parse(cols.get(1), DATE_FMT));
+        n.setContent(cols.get(2));
+        n.setCreatedAt(cols.get(3).isEmpty()? null : LocalDateTime.parse(cols.get(3), DATE_TIME_FMT));
+        n.setUpdatedAt(cols.get(4).isEmpty()? null : LocalDateTime.parse(cols.get(4), DATE_TIME_FMT));
+        return n;
+    }
+}
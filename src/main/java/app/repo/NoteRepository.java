@@ -9,6 +9,7 @@ public interface NoteRepository {
     List<Note> findByRange(LocalDate start, LocalDate end);
     void upsert(Note note);
     void deleteById(String id);
+    Snapshot<Note> snapshot();
 }
 
 
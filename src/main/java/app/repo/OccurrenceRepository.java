@@ -0,0 +1,14 @@
+package app.repo;
+
+import app.model.OccurrenceOverride;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.NavigableMap;
+
+public interface OccurrenceRepository {
+    List<OccurrenceOverride> findAll();
+    NavigableMap<LocalDate, OccurrenceOverride> findByTask(String taskId, LocalDate start, LocalDate end);
+    void upsert(OccurrenceOverride override);
+    void deleteByTask(String taskId);
+}
@@ -0,0 +1,20 @@
+package app.repo;
+
+import java.util.List;
+
+/**
+ * 儲存庫在某個版本的唯讀快照。版本號在每次寫入後遞增；
+ * 內容物件不會再被修改，可在不持有鎖的情況下慢慢讀取。
+ */
+public final class Snapshot<T> {
+    private final long version;
+    private final List<T> items;
+
+    public Snapshot(long version, List<T> items) {
+        this.version = version;
+        this.items = items;
+    }
+
+    public long getVersion() { return version; }
+    public List<T> getItems() { return items; }
+}
@@ -2,6 +2,7 @@ package app.repo;
 
 import app.model.Task;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -9,7 +10,13 @@ public interface TaskRepository {
     List<Task> findAll();
     Optional<Task> findById(String id);
     void upsert(Task task);
+    /** 批次寫入，只落盤一次。 */
+    void upsertAll(Collection<Task> tasks);
     boolean deleteById(String id);
+    /** 批次移除（封存用），只落盤一次；只移除目前仍是同一物件的任務，期間被修改過的保留。回傳實際移除的任務。 */
+    List<Task> removeUnchanged(Collection<Task> expected);
+    /** 目前內容的一致快照；寫入端不會因讀取快照而被阻塞。 */
+    Snapshot<Task> snapshot();
 }
 
 
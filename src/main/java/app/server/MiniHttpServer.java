@@ -1,75 +1,347 @@
 package app.server;
 
 import app.model.Task;
+import app.model.TaskOccurrence;
 import app.model.TaskPriority;
 import app.service.SuggestionService;
 import app.model.Note;
+import app.notify.NotificationPipeline;
+import app.notify.SseSink;
 import app.repo.FileNoteRepository;
+import app.repo.NoteCsv;
+import app.repo.Snapshot;
+import app.repo.TaskCsv;
+import app.service.DailyRollupService;
+import app.service.IcsFeedService;
+import app.service.ImportService;
 import app.service.NoteService;
+import app.service.RecurrenceService;
+import app.service.SearchService;
+import app.service.TagService;
+import app.service.StatsService;
 import app.service.TaskService;
+import app.service.Tenant;
+import app.service.TenantRegistry;
+import app.model.TaskStatus;
+import app.util.CountingOutputStream;
+import app.util.CsvUtil;
+import app.util.InvertedIndex;
+import app.util.JfrEvents;
+import app.util.Metrics;
+import app.util.PrefixTrie;
+import app.util.RequestTrace;
+import app.util.RequestTrace.Stage;
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 
 public class MiniHttpServer {
     private HttpServer server;
-    private final TaskService taskService;
-    private final SuggestionService suggestionService = new SuggestionService();
+    private final TenantRegistry tenants;
+    private final NotificationPipeline notifications;
+    private final SseSink sseSink = new SseSink(); // 啟動時加入通知管線、停止時移除；連線依使用者分流
+    private volatile boolean readOnly; // 唯讀複本：只接受 GET/HEAD
+    private final Map<String, HttpHandler> extraContexts = new LinkedHashMap<>();
+    private SlowRequestLog slowLog;
+    private StaticHandler staticHandler;
     private static final DateTimeFormatter DATE_TIME_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm", Locale.getDefault());
 
-    public MiniHttpServer(TaskService taskService) {
-        this.taskService = taskService;
+    public MiniHttpServer(TaskService taskService, StatsService statsService, NotificationPipeline notifications,
+                          RecurrenceService recurrenceService) throws IOException {
+        this.notifications = notifications;
+        // 既有的 data/ 為預設使用者；其他使用者在第一次請求時由 data/<userId>/ 載入
+        NoteService noteService = new NoteService(new FileNoteRepository(Path.of("data","notes.csv")));
+        Tenant defaultTenant = new Tenant(TenantRegistry.DEFAULT, taskService, statsService, recurrenceService, noteService);
+        this.tenants = new TenantRegistry(Paths.get("data"), defaultTenant);
+    }
+
+    public TenantRegistry tenants() {
+        return tenants;
+    }
+
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /** 額外的路徑（如 /replication）；在 start 前或後呼叫皆可。 */
+    public synchronized void addContext(String path, HttpHandler handler) {
+        extraContexts.put(path, handler);
+        if (server != null) context(path, handler);
     }
 
     public synchronized void start(int port) throws IOException {
         if (server != null) return;
         server = HttpServer.create(new InetSocketAddress(port), 0);
-        server.createContext("/tasks", new TasksHandler(taskService, suggestionService));
+        slowLog = SlowRequestLog.fromSystemProperties();
+        tenantContext("/tasks", t -> new TasksHandler(t.getTaskService(), t.getSuggestionService(), t.getRecurrenceService(), t.getImportService()));
         // calendar notes
-        NoteService noteService = new NoteService(new FileNoteRepository(Path.of("data","notes.csv")));
-        server.createContext("/notes", new NotesHandler(noteService));
-        server.createContext("/ics", new IcsHandler(taskService));
-        server.createContext("/", new StaticHandler(Paths.get("public")));
-        server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+        tenantContext("/notes", t -> new NotesHandler(t.getNoteService()));
+        tenantContext("/export", t -> new ExportHandler(t.getTaskService(), t.getNoteService()));
+        tenantContext("/search", t -> new SearchHandler(t.getSearchService()));
+        tenantContext("/tags", t -> new TagsHandler(t.getTagService()));
+        tenantContext("/ics", t -> new IcsHandler(t.getTaskService(), t.getRecurrenceService(), t.getIcsFeed()));
+        tenantContext("/stats", t -> new StatsHandler(t.getStatsService(), t.getDailyRollups()));
+        notifications.addSink(sseSink);
+        tenantContext("/reminders", t -> new RemindersHandler(notifications, sseSink, TenantRegistry.DEFAULT.equals(t.getId()) ? null : t.getId()));
+        context("/metrics", new MetricsHandler());
+        for (Map.Entry<String, HttpHandler> e : extraContexts.entrySet()) context(e.getKey(), e.getValue());
+        staticHandler = new StaticHandler(Paths.get("public"));
+        context("/", staticHandler);
+        // 固定上限的執行緒池：忙碌時請求在佇列等待（深度見 http_executor_queue_depth），閒置 60 秒的執行緒會回收。
+        // SSE 連線註冊後即歸還執行緒，不會長期佔用；以 -Dhttp.threads= 調整上限
+        int threads = Integer.getInteger("http.threads", Math.max(32, 4 * Runtime.getRuntime().availableProcessors()));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        executor.allowCoreThreadTimeOut(true);
+        Metrics.gauge("http_executor_queue_depth", "Requests waiting for an executor thread", () -> executor.getQueue().size());
+        Metrics.gauge("http_executor_active_threads", "Executor threads running a request", executor::getActiveCount);
+        Metrics.gauge("http_executor_pool_size", "Executor threads alive", executor::getPoolSize);
+        server.setExecutor(executor);
         server.start();
     }
 
+    // 每個路徑都經過 TimedHandler 記錄請求數、錯誤數、延遲與慢請求
+    private void context(String path, HttpHandler handler) {
+        server.createContext(path, new TimedHandler(path, handler, slowLog));
+    }
+
+    // 依使用者分派的路徑；處理器以路徑為 key 快取在各 tenant 上
+    private void tenantContext(String path, Function<Tenant, HttpHandler> handlers) {
+        context(path, new TenantRouter(path, tenants, handlers, () -> readOnly));
+    }
+
     public synchronized void stop() {
         if (server != null) {
+            notifications.removeSink(sseSink);
+            staticHandler.close();
+            staticHandler = null;
             server.stop(0);
             server = null;
         }
     }
 
+    /**
+     * 依路徑與方法記錄請求數、錯誤數（5xx 或處理器拋出例外）與延遲直方圖。
+     * 每個路徑與方法的計量物件在第一次請求時登錄並保存，之後只做累加。
+     * 請求期間以 {@link RequestTrace} 分段計時，超過門檻的寫入 {@link SlowRequestLog}（SSE 長連線除外）。
+     */
+    static class TimedHandler implements HttpHandler {
+        private static final String[] METHODS = {"GET", "POST", "PUT", "PATCH", "DELETE", "HEAD", "OTHER"};
+        private static final LongAdder IN_FLIGHT = new LongAdder();
+        static {
+            Metrics.gauge("http_requests_in_flight", "Requests being handled", IN_FLIGHT::sum);
+        }
+
+        private final String route;
+        private final HttpHandler next;
+        private final SlowRequestLog slowLog;
+        private final RouteMetrics[] byMethod = new RouteMetrics[METHODS.length];
+
+        TimedHandler(String route, HttpHandler next, SlowRequestLog slowLog) {
+            this.route = route;
+            this.next = next;
+            this.slowLog = slowLog;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            RouteMetrics m = metrics(methodIndex(exchange.getRequestMethod()));
+            JfrEvents.HttpExchange event = new JfrEvents.HttpExchange();
+            CountingOutputStream counted = null;
+            if (event.isEnabled()) {
+                // 錄製中才包一層計算回應位元組數
+                counted = new CountingOutputStream(exchange.getResponseBody());
+                exchange.setStreams(null, counted);
+            }
+            event.begin();
+            boolean failed = true;
+            IN_FLIGHT.increment();
+            RequestTrace.begin();
+            try {
+                next.handle(exchange);
+                failed = exchange.getResponseCode() >= 500;
+            } finally {
+                RequestTrace trace = RequestTrace.finish();
+                IN_FLIGHT.decrement();
+                m.latency.observeNanos(trace.totalNanos());
+                m.requests.inc();
+                if (failed) m.errors.inc();
+                if (slowLog.isSlow(trace)) logSlow(exchange, trace);
+                if (event.shouldCommit()) {
+                    event.route = route;
+                    event.method = exchange.getRequestMethod();
+                    event.path = exchange.getRequestURI().getPath();
+                    event.status = exchange.getResponseCode();
+                    event.responseBytes = counted == null ? 0 : counted.count();
+                    event.lockWait = trace.stageNanos(Stage.LOCK_WAIT);
+                    event.commit();
+                }
+            }
+        }
+
+        private void logSlow(HttpExchange exchange, RequestTrace trace) {
+            String type = exchange.getResponseHeaders().getFirst("Content-Type");
+            if (type != null && type.startsWith("text/event-stream")) return;
+            slowLog.record(exchange.getRequestHeaders().getFirst("X-Request-Id"), exchange.getRequestMethod(),
+                    exchange.getRequestURI().toString(), route, exchange.getResponseCode(), trace);
+        }
+
+        // 競爭時可能建立兩次，登錄是冪等的，取得的是同一組計量物件
+        private RouteMetrics metrics(int i) {
+            RouteMetrics m = byMethod[i];
+            if (m == null) byMethod[i] = m = new RouteMetrics(route, METHODS[i]);
+            return m;
+        }
+
+        private static int methodIndex(String method) {
+            switch (method) {
+                case "GET": return 0;
+                case "POST": return 1;
+                case "PUT": return 2;
+                case "PATCH": return 3;
+                case "DELETE": return 4;
+                case "HEAD": return 5;
+                default: return 6;
+            }
+        }
+
+        private static final class RouteMetrics {
+            final Metrics.Counter requests;
+            final Metrics.Counter errors;
+            final Metrics.Histogram latency;
+
+            RouteMetrics(String route, String method) {
+                requests = Metrics.counter("http_requests_total", "HTTP requests", "route", route, "method", method);
+                errors = Metrics.counter("http_request_errors_total", "HTTP requests answered 5xx or failed", "route", route, "method", method);
+                latency = Metrics.histogram("http_request_duration_seconds", "HTTP request latency", Metrics.LATENCY_BUCKETS,
+                        "route", route, "method", method);
+            }
+        }
+    }
+
+    /** GET /metrics：Prometheus 文字格式。 */
+    static class MetricsHandler implements HttpHandler {
+        @Override public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = Metrics.render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) { os.write(body); }
+        }
+    }
+
+    /**
+     * 依請求的使用者（X-User-Id 標頭或 user 參數；未指定時為預設使用者）取得 tenant，
+     * 交給以該 tenant 服務建立的處理器（每個 tenant、每個路徑只建立一次）；請求期間 tenant 不會被釋放。唯讀模式下寫入請求回 403。
+     */
+    static class TenantRouter implements HttpHandler {
+        private final String key;
+        private final TenantRegistry registry;
+        private final Function<Tenant, HttpHandler> handlers;
+        private final BooleanSupplier readOnly;
+
+        TenantRouter(String key, TenantRegistry registry, Function<Tenant, HttpHandler> handlers, BooleanSupplier readOnly) {
+            this.key = key;
+            this.registry = registry;
+            this.handlers = handlers;
+            this.readOnly = readOnly;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            if (readOnly.getAsBoolean() && !"GET".equalsIgnoreCase(method) && !"HEAD".equalsIgnoreCase(method)) {
+                TasksHandler.sendJson(exchange, 403, "{\"ok\":false,\"error\":\"read_only\"}");
+                return;
+            }
+            String user = exchange.getRequestHeaders().getFirst("X-User-Id");
+            if (user == null) user = TasksHandler.getQueryParam(exchange, "user");
+            Tenant tenant;
+            try {
+                tenant = registry.acquire(user);
+            } catch (IllegalArgumentException e) {
+                TasksHandler.sendJson(exchange, 400, "{\"ok\":false,\"error\":\"bad_user\"}");
+                return;
+            }
+            try {
+                tenant.<HttpHandler>cached(key, handlers).handle(exchange);
+            } finally {
+                registry.release(tenant);
+            }
+        }
+    }
+
     static class TasksHandler implements HttpHandler {
         private final TaskService taskService;
         private final SuggestionService suggestionService;
-        TasksHandler(TaskService taskService, SuggestionService suggestionService) {
+        private final RecurrenceService recurrenceService;
+        private final ImportService importService;
+        TasksHandler(TaskService taskService, SuggestionService suggestionService, RecurrenceService recurrenceService,
+                     ImportService importService) {
             this.taskService = taskService;
             this.suggestionService = suggestionService;
+            this.recurrenceService = recurrenceService;
+            this.importService = importService;
+        }
+
+        // 區間查詢只需要可能落在區間內的任務；日期格式錯誤時交由後續流程回傳全部
+        private List<Task> rangeCandidates(String startStr, String endStr) {
+            try {
+                return taskService.listRangeCandidates(LocalDate.parse(startStr), LocalDate.parse(endStr));
+            } catch (Exception e) {
+                return taskService.listAll();
+            }
         }
 
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             String method = exchange.getRequestMethod();
             String path = exchange.getRequestURI().getPath();
+            if ("GET".equalsIgnoreCase(method) && path.equals("/tasks/suggested")) {
+                // 由維護中的排名直接取前 limit 個待辦/進行中任務
+                int limit = 10;
+                String l = getQueryParam(exchange, "limit");
+                try { if (l != null && !l.isEmpty()) limit = Math.max(0, Math.min(Integer.parseInt(l), 1000)); } catch (NumberFormatException ignored) {}
+                sendJson(exchange, 200, JsonUtil.toJson(suggestionService.top(limit)));
+                return;
+            }
             if ("GET".equalsIgnoreCase(method)) {
                 boolean suggested = "true".equalsIgnoreCase(getQueryParam(exchange, "suggested"));
                 String status = getQueryParam(exchange, "status");
@@ -77,22 +349,71 @@ public class MiniHttpServer {
                 String tag = getQueryParam(exchange, "tag");
                 String startStr = getQueryParam(exchange, "start");
                 String endStr = getQueryParam(exchange, "end");
-                List<Task> tasks = (status!=null||priority!=null||tag!=null) ? taskService.filter(status, priority, tag) : taskService.listAll();
+                boolean filtered = status!=null||priority!=null||tag!=null;
+                boolean range = startStr != null && endStr != null && !suggested && !filtered;
+                List<Task> tasks;
+                long stage = RequestTrace.start();
+                if (filtered) tasks = taskService.filter(status, priority, tag);
+                else if (range) tasks = rangeCandidates(startStr, endStr);
+                else tasks = taskService.listAll();
+                RequestTrace.end(Stage.FILTER, stage);
+                if (suggested) {
+                    stage = RequestTrace.start();
+                    tasks = suggestionService.sortBySmartHeuristics(tasks);
+                    RequestTrace.end(Stage.SORT, stage);
+                }
+                String json = null;
                 if (startStr != null && endStr != null) {
+                    LocalDate start = null, end = null;
                     try {
-                        java.time.LocalDate start = java.time.LocalDate.parse(startStr);
-                        java.time.LocalDate end = java.time.LocalDate.parse(endStr);
-                        tasks = tasks.stream().filter(t -> t.getDueDateTime()!=null &&
-                                !t.getDueDateTime().toLocalDate().isBefore(start) && !t.getDueDateTime().toLocalDate().isAfter(end))
-                                .toList();
+                        start = LocalDate.parse(startStr);
+                        end = LocalDate.parse(endStr);
                     } catch (Exception ignored) {}
+                    if (start != null && end != null) {
+                        // 區間查詢：重覆任務只在區間內展開
+                        stage = RequestTrace.start();
+                        List<TaskOccurrence> occurrences = recurrenceService.expand(tasks, start, end);
+                        RequestTrace.end(Stage.FILTER, stage);
+                        stage = RequestTrace.start();
+                        json = JsonUtil.toJsonOccurrences(occurrences);
+                        RequestTrace.end(Stage.SERIALIZE, stage);
+                    }
                 }
-                if (suggested) tasks = suggestionService.sortBySmartHeuristics(tasks);
-                sendJson(exchange, 200, JsonUtil.toJson(tasks));
+                if (json == null) {
+                    stage = RequestTrace.start();
+                    json = JsonUtil.toJson(tasks);
+                    RequestTrace.end(Stage.SERIALIZE, stage);
+                }
+                sendJson(exchange, 200, json);
                 return;
             }
 
             if ("POST".equalsIgnoreCase(method)) {
+                if (path.equals("/tasks/import")) {
+                    // 串流解析上傳內容，分批寫入；格式由 format 參數或 Content-Type 決定
+                    String format = getQueryParam(exchange, "format");
+                    String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                    if (format == null) format = contentType != null && contentType.toLowerCase(Locale.ROOT).contains("calendar") ? "ics" : "csv";
+                    if (!format.equalsIgnoreCase("ics") && !format.equalsIgnoreCase("csv")) {
+                        sendJson(exchange, 400, "{\"ok\":false,\"error\":\"bad_format\"}");
+                        return;
+                    }
+                    BufferedReader in = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8), 64 * 1024);
+                    ImportService.Report report = format.equalsIgnoreCase("ics") ? importService.importIcs(in) : importService.importCsv(in);
+                    int status = report.isSaveFailed() ? 500 : report.getAborted() == null ? 200 : 400;
+                    sendJson(exchange, status, JsonUtil.toJsonImport(report));
+                    return;
+                }
+                if (path.matches("^/tasks/[a-zA-Z0-9\\-]+/occurrences/\\d{4}-\\d{2}-\\d{2}/complete$")) {
+                    String[] parts = path.split("/");
+                    String id = parts[2];
+                    LocalDate date = LocalDate.parse(parts[4]);
+                    Task t = taskService.getById(id).orElse(null);
+                    if (t == null) { sendJson(exchange, 404, "{\"ok\":false,\"error\":\"not_found\"}"); return; }
+                    boolean ok = recurrenceService.completeOccurrence(t, date);
+                    sendJson(exchange, ok?200:400, ok?"{\"ok\":true}":"{\"ok\":false,\"error\":\"not_an_occurrence\"}");
+                    return;
+                }
                 if (path.matches("^/tasks/[a-zA-Z0-9\\-]+/complete$")) {
                     String id = path.substring("/tasks/".length(), path.length() - "/complete".length());
                     boolean ok = taskService.completeTask(id);
@@ -131,7 +452,12 @@ public class MiniHttpServer {
                 int estimated = 30;
                 try { estimated = Integer.parseInt(form.getOrDefault("estimatedMinutes", "30").trim()); } catch (Exception ignored) {}
                 String tags = form.getOrDefault("tags", "");
-                Task task = taskService.addTask(title, description, priority, due, estimated, tags);
+                String id = form.get("id"); // 分片路由端指定的 id
+                if (id != null) {
+                    if (!id.matches("[a-zA-Z0-9\\-]+")) { sendJson(exchange, 400, "{\"ok\":false,\"error\":\"bad_id\"}"); return; }
+                    if (taskService.getById(id).isPresent()) { sendJson(exchange, 409, "{\"ok\":false,\"error\":\"id_exists\"}"); return; }
+                }
+                Task task = taskService.addTask(title, description, priority, due, estimated, tags, form.get("recurrence"), id);
                 // optional: category, actualMinutes, reminderBeforeMinutes, sortOrder for future extension
                 sendJson(exchange, 201, JsonUtil.toJson(task));
                 return;
@@ -153,7 +479,7 @@ public class MiniHttpServer {
                         try { est = Integer.parseInt(form.get("estimatedMinutes")); } catch(Exception ignored) {}
                     }
                     String tags = form.get("tags");
-                    boolean ok = taskService.updateTask(id, title, description, priority, due, est, tags);
+                    boolean ok = taskService.updateTask(id, title, description, priority, due, est, tags, form.get("recurrence"));
                     sendJson(exchange, ok?200:404, ok?"{\"ok\":true}":"{\"ok\":false}");
                     return;
                 }
@@ -200,23 +526,37 @@ public class MiniHttpServer {
             exchange.sendResponseHeaders(405, -1);
         }
 
-        private static String getQueryParam(HttpExchange exchange, String key) {
-            String q = exchange.getRequestURI().getQuery();
-            if (q == null || q.isEmpty()) return null;
-            String[] parts = q.split("&");
-            for (String p : parts) {
-                int i = p.indexOf('=');
-                if (i > 0) {
-                    String k = URLDecoder.decode(p.substring(0, i), StandardCharsets.UTF_8);
-                    if (key.equals(k)) return URLDecoder.decode(p.substring(i + 1), StandardCharsets.UTF_8);
-                } else if (key.equals(p)) {
-                    return "";
+        static String getQueryParam(HttpExchange exchange, String key) {
+            long stage = RequestTrace.start();
+            try {
+                String q = exchange.getRequestURI().getQuery();
+                if (q == null || q.isEmpty()) return null;
+                String[] parts = q.split("&");
+                for (String p : parts) {
+                    int i = p.indexOf('=');
+                    if (i > 0) {
+                        String k = URLDecoder.decode(p.substring(0, i), StandardCharsets.UTF_8);
+                        if (key.equals(k)) return URLDecoder.decode(p.substring(i + 1), StandardCharsets.UTF_8);
+                    } else if (key.equals(p)) {
+                        return "";
+                    }
                 }
+                return null;
+            } finally {
+                RequestTrace.end(Stage.PARSE, stage);
             }
-            return null;
         }
 
         private static Map<String,String> parseForm(HttpExchange exchange) throws IOException {
+            long stage = RequestTrace.start();
+            try {
+                return parseFormBody(exchange);
+            } finally {
+                RequestTrace.end(Stage.PARSE, stage);
+            }
+        }
+
+        private static Map<String,String> parseFormBody(HttpExchange exchange) throws IOException {
             Headers headers = exchange.getRequestHeaders();
             String contentType = headers.getFirst("Content-Type");
             String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
@@ -238,52 +578,115 @@ public class MiniHttpServer {
             return map;
         }
 
-        private static void sendJson(HttpExchange exchange, int code, String json) throws IOException {
+        static void sendJson(HttpExchange exchange, int code, String json) throws IOException {
+            long stage = RequestTrace.start();
             byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            RequestTrace.end(Stage.SERIALIZE, stage);
+            stage = RequestTrace.start();
             exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
             exchange.sendResponseHeaders(code, body.length);
             try (OutputStream os = exchange.getResponseBody()) { os.write(body); }
+            RequestTrace.end(Stage.WRITE, stage);
         }
     }
 
-    static class StaticHandler implements HttpHandler {
-        private final Path baseDir;
-        StaticHandler(Path baseDir) { this.baseDir = baseDir; }
+    /**
+     * 靜態檔：由 {@link StaticAssetCache} 取得，帶內容雜湊 ETag 與 Cache-Control，If-None-Match 相符時回 304；
+     * 用戶端接受 gzip 時送預先壓縮的版本。大檔以 FileChannel.transferTo 由檔案直接寫到回應。
+     */
+    static class StaticHandler implements HttpHandler, Closeable {
+        private final StaticAssetCache cache;
+        StaticHandler(Path baseDir) { this.cache = StaticAssetCache.fromSystemProperties(baseDir); }
 
         @Override
         public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equalsIgnoreCase(method);
+            if (!head && !"GET".equalsIgnoreCase(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
             String path = exchange.getRequestURI().getPath();
             if (path.equals("/")) path = "/index.html";
-            // Silence favicon.ico 404: return 204 No Content when not present
-            if (path.equals("/favicon.ico")) {
-                if (!Files.exists(baseDir.resolve("favicon.ico"))) {
+            StaticAssetCache.Asset asset = cache.get(path.substring(1));
+            if (asset == null) {
+                // Silence favicon.ico 404: return 204 No Content when not present
+                if (path.equals("/favicon.ico")) {
                     exchange.sendResponseHeaders(204, -1);
                     return;
                 }
-            }
-            Path file = baseDir.resolve(path.substring(1)).normalize();
-            if (!file.startsWith(baseDir) || !Files.exists(file) || Files.isDirectory(file)) {
                 byte[] nf = "Not Found".getBytes(StandardCharsets.UTF_8);
                 exchange.sendResponseHeaders(404, nf.length);
                 try (OutputStream os = exchange.getResponseBody()) { os.write(nf); }
                 return;
             }
-            String contentType = guessContentType(file);
-            byte[] bytes = Files.readAllBytes(file);
-            exchange.getResponseHeaders().set("Content-Type", contentType);
-            exchange.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = exchange.getResponseBody()) { os.write(bytes); }
+            boolean gzip = asset.gzip != null && acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            String etag = gzip ? asset.gzipEtag : asset.etag;
+            Headers h = exchange.getResponseHeaders();
+            h.set("ETag", etag);
+            h.set("Cache-Control", asset.cacheControl);
+            if (asset.gzip != null) h.set("Vary", "Accept-Encoding");
+            if (etagMatches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            h.set("Content-Type", asset.contentType);
+            if (gzip) h.set("Content-Encoding", "gzip");
+            byte[] body = gzip ? asset.gzip : asset.bytes;
+            long length = body != null ? body.length : asset.length;
+            if (head || length == 0) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                if (body != null) {
+                    os.write(body);
+                    return;
+                }
+                try (FileChannel ch = FileChannel.open(asset.file, StandardOpenOption.READ)) {
+                    WritableByteChannel out = Channels.newChannel(os);
+                    for (long pos = 0; pos < length; ) {
+                        long n = ch.transferTo(pos, length - pos, out);
+                        if (n <= 0) throw new IOException(asset.file + " changed while sending");
+                        pos += n;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            cache.close();
+        }
+
+        // gzip 或 *，且 q 不為 0
+        static boolean acceptsGzip(String acceptEncoding) {
+            if (acceptEncoding == null) return false;
+            for (String part : acceptEncoding.split(",")) {
+                String[] p = part.trim().split(";");
+                String coding = p[0].trim();
+                if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) continue;
+                double q = 1;
+                for (int i = 1; i < p.length; i++) {
+                    String param = p[i].trim();
+                    if (param.startsWith("q=")) {
+                        try { q = Double.parseDouble(param.substring(2)); } catch (NumberFormatException ignored) {}
+                    }
+                }
+                return q > 0;
+            }
+            return false;
         }
 
-        private String guessContentType(Path file) {
-            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
-            if (name.endsWith(".html")) return "text/html; charset=utf-8";
-            if (name.endsWith(".css")) return "text/css; charset=utf-8";
-            if (name.endsWith(".js")) return "application/javascript; charset=utf-8";
-            if (name.endsWith(".svg")) return "image/svg+xml";
-            if (name.endsWith(".png")) return "image/png";
-            if (name.endsWith(".jpg") || name.endsWith(".jpeg")) return "image/jpeg";
-            return "application/octet-stream";
+        static boolean etagMatches(String ifNoneMatch, String etag) {
+            if (ifNoneMatch == null) return false;
+            for (String tag : ifNoneMatch.split(",")) {
+                String t = tag.trim();
+                if (t.startsWith("W/")) t = t.substring(2);
+                if (t.equals("*") || t.equals(etag)) return true;
+            }
+            return false;
         }
     }
 
@@ -295,15 +698,27 @@ public class MiniHttpServer {
             boolean first = true;
             for (Note n : notes) {
                 if (!first) sb.append(','); first=false;
-                sb.append('{')
-                        .append("\"id\":\"").append(escape(n.getId()==null?"":n.getId())).append('\"').append(',')
-                        .append("\"date\":\"").append(n.getDate()==null?"":n.getDate().toString()).append('\"').append(',')
-                        .append("\"content\":\"").append(escape(n.getContent()==null?"":n.getContent())).append('\"')
-                        .append('}');
+                sb.append(toJson(n, false));
             }
             sb.append(']');
             return sb.toString();
         }
+
+        // full=true 時含建立/更新時間（匯出用）
+        static String toJson(Note n, boolean full) {
+            StringBuilder sb = new StringBuilder();
+            sb.append('{')
+                    .append("\"id\":\"").append(escape(n.getId()==null?"":n.getId())).append('\"').append(',')
+                    .append("\"date\":\"").append(n.getDate()==null?"":n.getDate().toString()).append('\"').append(',')
+                    .append("\"content\":\"").append(escape(n.getContent()==null?"":n.getContent())).append('\"');
+            if (full) {
+                sb.append(',')
+                        .append("\"createdAt\":\"").append(n.getCreatedAt()==null?"":n.getCreatedAt().format(DATE_TIME_FMT)).append('\"').append(',')
+                        .append("\"updatedAt\":\"").append(n.getUpdatedAt()==null?"":n.getUpdatedAt().format(DATE_TIME_FMT)).append('\"');
+            }
+            sb.append('}');
+            return sb.toString();
+        }
         static String toJson(List<Task> tasks) {
             StringBuilder sb = new StringBuilder();
             sb.append('[');
@@ -317,22 +732,50 @@ public class MiniHttpServer {
             return sb.toString();
         }
 
+        static String toJsonOccurrences(List<TaskOccurrence> occurrences) {
+            StringBuilder sb = new StringBuilder();
+            sb.append('[');
+            boolean first = true;
+            for (TaskOccurrence o : occurrences) {
+                if (!first) sb.append(',');
+                first = false;
+                sb.append(toJson(o.getTask(), o.getDueDateTime(), o.getStatus(), o.isRecurring() ? o.getCompletedAt() : o.getTask().getCompletedAt(),
+                        o.isRecurring() ? o.getDate().toString() : null, false));
+            }
+            sb.append(']');
+            return sb.toString();
+        }
+
         static String toJson(Task t) {
+            return toJson(t, t.getDueDateTime(), t.getStatus(), t.getCompletedAt(), null, false);
+        }
+
+        /** 匯出用：含描述等完整欄位。 */
+        static String toJsonFull(Task t) {
+            return toJson(t, t.getDueDateTime(), t.getStatus(), t.getCompletedAt(), null, true);
+        }
+
+        // occurrenceDate 不為 null 時代表重覆任務的單次出現：截止/狀態/完成時間取自該次出現
+        private static String toJson(Task t, LocalDateTime due, TaskStatus status, LocalDateTime completedAt, String occurrenceDate,
+                                     boolean full) {
             StringBuilder sb = new StringBuilder();
             sb.append('{')
                     .append("\"id\":\"").append(escape(t.getId())).append('\"').append(',')
-                    .append("\"title\":\"").append(escape(n(t.getTitle()))).append('\"').append(',')
-                    .append("\"priority\":\"").append(t.getPriority() == null ? "" : t.getPriority().name()).append('\"').append(',')
-                    .append("\"status\":\"").append(t.getStatus() == null ? "" : t.getStatus().name()).append('\"').append(',')
-                    .append("\"dueDateTime\":\"").append(t.getDueDateTime() == null ? "" : t.getDueDateTime().format(DATE_TIME_FMT)).append('\"').append(',')
+                    .append("\"title\":\"").append(escape(n(t.getTitle()))).append('\"').append(',');
+            if (full) sb.append("\"description\":\"").append(escape(n(t.getDescription()))).append('\"').append(',');
+            sb.append("\"priority\":\"").append(t.getPriority() == null ? "" : t.getPriority().name()).append('\"').append(',')
+                    .append("\"status\":\"").append(status == null ? "" : status.name()).append('\"').append(',')
+                    .append("\"dueDateTime\":\"").append(due == null ? "" : due.format(DATE_TIME_FMT)).append('\"').append(',')
                     .append("\"estimatedMinutes\":").append(t.getEstimatedMinutes()).append(',')
                     .append("\"category\":\"").append(escape(n(t.getCategory()))).append('\"').append(',')
                     .append("\"actualMinutes\":").append(t.getActualMinutes()==null?"null":t.getActualMinutes()).append(',')
                     .append("\"reminderBeforeMinutes\":").append(t.getReminderBeforeMinutes()==null?"null":t.getReminderBeforeMinutes()).append(',')
                     .append("\"sortOrder\":").append(t.getSortOrder()==null?"null":t.getSortOrder()).append(',')
                     .append("\"createdAt\":\"").append(t.getCreatedAt()==null?"":t.getCreatedAt().format(DATE_TIME_FMT)).append('\"').append(',')
-                    .append("\"completedAt\":\"").append(t.getCompletedAt()==null?"":t.getCompletedAt().format(DATE_TIME_FMT)).append('\"').append(',')
-                    .append("\"tags\":[");
+                    .append("\"completedAt\":\"").append(completedAt==null?"":completedAt.format(DATE_TIME_FMT)).append('\"').append(',')
+                    .append("\"recurrence\":\"").append(escape(t.getRecurrence()==null?"NONE":t.getRecurrence())).append('\"').append(',');
+            if (occurrenceDate != null) sb.append("\"occurrenceDate\":\"").append(occurrenceDate).append('\"').append(',');
+            sb.append("\"tags\":[");
             boolean first = true;
             if (t.getTags() != null) {
                 for (String tag : t.getTags()) {
@@ -345,9 +788,142 @@ public class MiniHttpServer {
             return sb.toString();
         }
 
+        static String toJsonStats(StatsService.Snapshot s) {
+            StringBuilder sb = new StringBuilder();
+            sb.append('{')
+                    .append("\"total\":").append(s.getTotal()).append(',')
+                    .append("\"active\":").append(s.getActive()).append(',')
+                    .append("\"overdue\":").append(s.getOverdue()).append(',')
+                    .append("\"byStatus\":{");
+            boolean first = true;
+            for (TaskStatus st : TaskStatus.values()) {
+                if (!first) sb.append(',');
+                first = false;
+                sb.append('\"').append(st.name()).append("\":").append(s.getCount(st));
+            }
+            sb.append("},")
+                    .append("\"estimatedMinutesSum\":").append(s.getEstimatedSum()).append(',')
+                    .append("\"avgEstimatedMinutes\":").append(String.format(Locale.ROOT, "%.1f", s.getAverageEstimatedMinutes())).append(',')
+                    .append("\"completedWithDuration\":").append(s.getCompletedWithDuration()).append(',')
+                    .append("\"avgCompletionMinutes\":").append(s.getCompletedWithDuration() == 0 ? "null" : String.valueOf(s.getAverageCompletionSeconds() / 60))
+                    .append('}');
+            return sb.toString();
+        }
+
+        static String toJsonDaily(LocalDate start, LocalDate end, List<DailyRollupService.DayStats> days) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\"start\":\"").append(start).append("\",\"end\":\"").append(end).append("\",\"days\":[");
+            boolean first = true;
+            for (DailyRollupService.DayStats d : days) {
+                if (!first) sb.append(',');
+                first = false;
+                sb.append('{')
+                        .append("\"date\":\"").append(d.getDate()).append('\"').append(',')
+                        .append("\"created\":").append(d.getCreated()).append(',')
+                        .append("\"completed\":").append(d.getCompleted()).append(',')
+                        .append("\"estimatedMinutes\":").append(d.getEstimatedMinutes()).append(',')
+                        .append("\"actualMinutes\":").append(d.getActualMinutes()).append(',')
+                        .append("\"overdue\":").append(d.getOverdue())
+                        .append('}');
+            }
+            sb.append("]}");
+            return sb.toString();
+        }
+
+        static String toJsonTags(String kind, String prefix, List<PrefixTrie.Entry> items) {
+            StringBuilder sb = new StringBuilder();
+            sb.append('{')
+                    .append("\"kind\":\"").append(kind).append('\"').append(',')
+                    .append("\"prefix\":\"").append(escape(prefix)).append('\"').append(',')
+                    .append("\"items\":[");
+            boolean first = true;
+            for (PrefixTrie.Entry e : items) {
+                if (!first) sb.append(',');
+                first = false;
+                sb.append("{\"value\":\"").append(escape(e.getTerm())).append("\",\"count\":").append(e.getCount()).append('}');
+            }
+            sb.append("]}");
+            return sb.toString();
+        }
+
+        static String toJsonSearch(String q, int offset, int limit, long micros, InvertedIndex.Result<SearchService.Doc> r) {
+            StringBuilder sb = new StringBuilder();
+            sb.append('{')
+                    .append("\"q\":\"").append(escape(q)).append('\"').append(',')
+                    .append("\"total\":").append(r.getTotal()).append(',')
+                    .append("\"offset\":").append(offset).append(',')
+                    .append("\"limit\":").append(limit).append(',')
+                    .append("\"tookMicros\":").append(micros).append(',')
+                    .append("\"hits\":[");
+            boolean first = true;
+            for (InvertedIndex.Hit<SearchService.Doc> h : r.getHits()) {
+                if (!first) sb.append(',');
+                first = false;
+                SearchService.Doc d = h.getDoc();
+                sb.append('{')
+                        .append("\"type\":\"").append(d.getType()).append('\"').append(',')
+                        .append("\"id\":\"").append(escape(d.getId())).append('\"').append(',')
+                        .append("\"label\":\"").append(escape(d.getLabel())).append('\"').append(',')
+                        .append("\"date\":\"").append(d.getDate() == null ? "" : d.getDate().toString()).append('\"').append(',')
+                        .append("\"score\":").append(String.format(Locale.ROOT, "%.3f", h.getScore()))
+                        .append('}');
+            }
+            sb.append("]}");
+            return sb.toString();
+        }
+
+        static String toJsonImport(ImportService.Report r) {
+            StringBuilder sb = new StringBuilder();
+            sb.append('{')
+                    .append("\"ok\":").append(r.getAborted() == null).append(',')
+                    .append("\"rows\":").append(r.getRows()).append(',')
+                    .append("\"imported\":").append(r.getImported()).append(',')
+                    .append("\"failed\":").append(r.getFailed()).append(',')
+                    .append("\"batches\":").append(r.getBatches()).append(',');
+            if (r.getAborted() != null) sb.append("\"error\":\"").append(escape(r.getAborted())).append("\",");
+            sb.append("\"errorsTruncated\":").append(r.isErrorsTruncated()).append(',')
+                    .append("\"errors\":[");
+            boolean first = true;
+            for (ImportService.RowError e : r.getErrors()) {
+                if (!first) sb.append(',');
+                first = false;
+                sb.append("{\"row\":").append(e.getRow()).append(",\"error\":\"").append(escape(e.getError())).append("\"}");
+            }
+            sb.append("]}");
+            return sb.toString();
+        }
+
+        static String toJsonNotify(NotificationPipeline.Stats s) {
+            StringBuilder sb = new StringBuilder();
+            sb.append('{')
+                    .append("\"published\":").append(s.getPublished()).append(',')
+                    .append("\"dropped\":").append(s.getDropped()).append(',')
+                    .append("\"deduplicated\":").append(s.getDeduplicated()).append(',')
+                    .append("\"queued\":").append(s.getQueued()).append(',')
+                    .append("\"trackedTasks\":").append(s.getTrackedTasks()).append(',')
+                    .append("\"sinks\":[");
+            boolean first = true;
+            for (NotificationPipeline.SinkStats k : s.getSinks()) {
+                if (!first) sb.append(',');
+                first = false;
+                sb.append('{')
+                        .append("\"name\":\"").append(escape(k.getName())).append('\"').append(',')
+                        .append("\"delivered\":").append(k.getDelivered()).append(',')
+                        .append("\"failed\":").append(k.getFailed()).append(',')
+                        .append("\"dropped\":").append(k.getDropped()).append(',')
+                        .append("\"batches\":").append(k.getBatches()).append(',')
+                        .append("\"queuedBatches\":").append(k.getQueuedBatches()).append(',')
+                        .append("\"avgLatencyMs\":").append(String.format(Locale.ROOT, "%.3f", k.getAvgLatencyMillis())).append(',')
+                        .append("\"maxLatencyMs\":").append(String.format(Locale.ROOT, "%.3f", k.getMaxLatencyMillis()))
+                        .append('}');
+            }
+            sb.append("]}");
+            return sb.toString();
+        }
+
         private static String n(String s) { return s == null ? "" : s; }
 
-        private static String escape(String s) {
+        static String escape(String s) {
             StringBuilder sb = new StringBuilder();
             for (int i = 0; i < s.length(); i++) {
                 char c = s.charAt(i);
@@ -367,54 +943,214 @@ public class MiniHttpServer {
     }
 
     // ICS export handler
+    // ICS 訂閱：VEVENT 依任務版本快取，直接串流到回應，支援 ETag / If-None-Match
     static class IcsHandler implements HttpHandler {
         private final TaskService taskService;
-        IcsHandler(TaskService s){ this.taskService = s; }
+        private final RecurrenceService recurrenceService;
+        private final IcsFeedService icsFeed;
+        IcsHandler(TaskService s, RecurrenceService r, IcsFeedService f){ this.taskService = s; this.recurrenceService = r; this.icsFeed = f; }
         @Override public void handle(HttpExchange exchange) throws IOException {
             if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) { exchange.sendResponseHeaders(405,-1); return; }
-            Map<String,String> q = new HashMap<>();
-            String raw = exchange.getRequestURI().getQuery();
-            if (raw!=null) for(String p: raw.split("&")){ int i=p.indexOf('='); if(i>0) q.put(URLDecoder.decode(p.substring(0,i), StandardCharsets.UTF_8), URLDecoder.decode(p.substring(i+1), StandardCharsets.UTF_8)); }
-            LocalDate start = q.containsKey("start") ? LocalDate.parse(q.get("start")) : LocalDate.now().minusDays(7);
-            LocalDate end = q.containsKey("end") ? LocalDate.parse(q.get("end")) : LocalDate.now().plusDays(35);
-            List<Task> tasks = taskService.listAll().stream()
-                    .filter(t -> t.getDueDateTime()!=null && !t.getDueDateTime().toLocalDate().isBefore(start) && !t.getDueDateTime().toLocalDate().isAfter(end))
-                    .toList();
-            String ics = buildIcs(tasks);
-            byte[] body = ics.getBytes(StandardCharsets.UTF_8);
-            exchange.getResponseHeaders().set("Content-Type", "text/calendar; charset=utf-8");
-            exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=tasks.ics");
-            exchange.sendResponseHeaders(200, body.length);
-            try(OutputStream os = exchange.getResponseBody()){ os.write(body); }
+            String startStr = TasksHandler.getQueryParam(exchange, "start");
+            String endStr = TasksHandler.getQueryParam(exchange, "end");
+            LocalDate start, end;
+            try {
+                start = startStr == null || startStr.isEmpty() ? LocalDate.now().minusDays(7) : LocalDate.parse(startStr);
+                end = endStr == null || endStr.isEmpty() ? LocalDate.now().plusDays(35) : LocalDate.parse(endStr);
+            } catch (Exception e) {
+                TasksHandler.sendJson(exchange, 400, "{\"ok\":false,\"error\":\"bad_date\"}");
+                return;
+            }
+            String etag = icsFeed.etag(start, end);
+            Headers h = exchange.getResponseHeaders();
+            h.set("ETag", etag);
+            h.set("Cache-Control", "no-cache");
+            String inm = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (inm != null && (inm.trim().equals("*") || inm.contains(etag))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            List<TaskOccurrence> occurrences = recurrenceService.expand(taskService.listAll(), start, end);
+            h.set("Content-Type", "text/calendar; charset=utf-8");
+            h.set("Content-Disposition", "attachment; filename=tasks.ics");
+            exchange.sendResponseHeaders(200, 0); // chunked
+            try (OutputStream os = new BufferedOutputStream(exchange.getResponseBody(), 16 * 1024)) {
+                icsFeed.write(occurrences, os);
+            }
+        }
+    }
+    // 匯出：從儲存庫快照串流輸出，不持有鎖、也不先組出整份字串
+    static class ExportHandler implements HttpHandler {
+        private final TaskService taskService;
+        private final NoteService noteService;
+        ExportHandler(TaskService t, NoteService n){ this.taskService = t; this.noteService = n; }
+        @Override public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) { exchange.sendResponseHeaders(405,-1); return; }
+            String format = TasksHandler.getQueryParam(exchange, "format");
+            if (format == null || format.isEmpty()) format = "ndjson";
+            format = format.toLowerCase(Locale.ROOT);
+            if (!format.equals("ndjson") && !format.equals("csv")) {
+                TasksHandler.sendJson(exchange, 400, "{\"ok\":false,\"error\":\"bad_format\"}");
+                return;
+            }
+            String include = TasksHandler.getQueryParam(exchange, "include");
+            boolean withTasks = false, withNotes = false;
+            for (String part : (include == null || include.isEmpty() ? "tasks,notes" : include).split(",")) {
+                String p = part.trim().toLowerCase(Locale.ROOT);
+                if (p.equals("tasks")) withTasks = true;
+                else if (p.equals("notes")) withNotes = true;
+                else if (!p.isEmpty()) {
+                    TasksHandler.sendJson(exchange, 400, "{\"ok\":false,\"error\":\"bad_include\"}");
+                    return;
+                }
+            }
+            // 快照在開始輸出前取得；之後的寫入不影響本次下載
+            Snapshot<Task> tasks = withTasks ? taskService.snapshot() : null;
+            Snapshot<Note> notes = withNotes ? noteService.snapshot() : null;
+            Headers h = exchange.getResponseHeaders();
+            String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            h.set("Content-Type", format.equals("csv") ? "text/csv; charset=utf-8" : "application/x-ndjson; charset=utf-8");
+            h.set("Content-Disposition", "attachment; filename=export-" + stamp + "." + format);
+            h.set("X-Export-Version", "tasks=" + (tasks == null ? "-" : tasks.getVersion()) + ";notes=" + (notes == null ? "-" : notes.getVersion()));
+            exchange.sendResponseHeaders(200, 0); // chunked
+            try (Writer w = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 64 * 1024)) {
+                if (format.equals("csv")) writeCsv(w, tasks, notes);
+                else writeNdjson(w, tasks, notes);
+            }
         }
 
-        private String buildIcs(List<Task> tasks){
-            StringBuilder sb = new StringBuilder();
-            sb.append("BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//SmartTasks//EN\r\n");
-            for (Task t : tasks) {
-                java.time.LocalDateTime end = t.getDueDateTime();
-                java.time.LocalDateTime start = end;
-                if (end != null) start = end.minusMinutes(Math.max(1, t.getEstimatedMinutes()));
-                String dtStart = fmtIcs(start);
-                String dtEnd = fmtIcs(end);
-                sb.append("BEGIN:VEVENT\r\n")
-                        .append("UID:").append(t.getId()).append("\r\n")
-                        .append("DTSTART:").append(dtStart).append("\r\n")
-                        .append("DTEND:").append(dtEnd).append("\r\n")
-                        .append("SUMMARY:").append(escapeIcs(t.getTitle()==null?"":t.getTitle())).append("\r\n")
-                        .append("DESCRIPTION:").append(escapeIcs(t.getDescription()==null?"":t.getDescription())).append("\r\n")
-                        .append("END:VEVENT\r\n");
-            }
-            sb.append("END:VCALENDAR\r\n");
-            return sb.toString();
+        // 第一行為 meta，之後每行一筆 {"type":"task|note","data":{...}}
+        private static void writeNdjson(Writer w, Snapshot<Task> tasks, Snapshot<Note> notes) throws IOException {
+            w.write("{\"type\":\"meta\",\"data\":{\"exportedAt\":\"" + LocalDateTime.now().format(DATE_TIME_FMT) + "\""
+                    + (tasks == null ? "" : ",\"tasksVersion\":" + tasks.getVersion() + ",\"tasks\":" + tasks.getItems().size())
+                    + (notes == null ? "" : ",\"notesVersion\":" + notes.getVersion() + ",\"notes\":" + notes.getItems().size())
+                    + "}}\n");
+            if (tasks != null) {
+                for (Task t : tasks.getItems()) {
+                    w.write("{\"type\":\"task\",\"data\":");
+                    w.write(JsonUtil.toJsonFull(t));
+                    w.write("}\n");
+                }
+            }
+            if (notes != null) {
+                for (Note n : notes.getItems()) {
+                    w.write("{\"type\":\"note\",\"data\":");
+                    w.write(JsonUtil.toJson(n, true));
+                    w.write("}\n");
+                }
+            }
         }
 
-        private String fmtIcs(java.time.LocalDateTime dt){
-            if (dt == null) dt = java.time.LocalDateTime.now();
-            java.time.format.DateTimeFormatter f = java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
-            return dt.format(f);
+        // 每一段以自己的標題列開始（與 tasks.csv / notes.csv 相同），兩段之間以空行分隔
+        private static void writeCsv(Writer w, Snapshot<Task> tasks, Snapshot<Note> notes) throws IOException {
+            if (tasks != null) {
+                w.write(CsvUtil.join(TaskCsv.HEADER)); w.write("\r\n");
+                for (Task t : tasks.getItems()) { w.write(CsvUtil.join(TaskCsv.toColumns(t))); w.write("\r\n"); }
+            }
+            if (notes != null) {
+                if (tasks != null) w.write("\r\n");
+                w.write(CsvUtil.join(NoteCsv.HEADER)); w.write("\r\n");
+                for (Note n : notes.getItems()) { w.write(CsvUtil.join(NoteCsv.toColumns(n))); w.write("\r\n"); }
+            }
+        }
+    }
+    // 全文檢索：查詢增量維護的倒排索引，依分數分頁回傳
+    static class SearchHandler implements HttpHandler {
+        private static final int MAX_LIMIT = 1000;
+        private static final int MAX_OFFSET = 10_000;
+        private final SearchService searchService;
+        SearchHandler(SearchService s){ this.searchService = s; }
+        @Override public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) { exchange.sendResponseHeaders(405,-1); return; }
+            String q = TasksHandler.getQueryParam(exchange, "q");
+            String type = TasksHandler.getQueryParam(exchange, "type");
+            if (type != null && type.isEmpty()) type = null;
+            if (type != null && !type.equals("task") && !type.equals("note")) {
+                TasksHandler.sendJson(exchange, 400, "{\"ok\":false,\"error\":\"bad_type\"}");
+                return;
+            }
+            int offset, limit;
+            try {
+                String o = TasksHandler.getQueryParam(exchange, "offset");
+                String l = TasksHandler.getQueryParam(exchange, "limit");
+                offset = o == null || o.isEmpty() ? 0 : Integer.parseInt(o);
+                limit = l == null || l.isEmpty() ? 20 : Integer.parseInt(l);
+            } catch (NumberFormatException e) {
+                TasksHandler.sendJson(exchange, 400, "{\"ok\":false,\"error\":\"bad_paging\"}");
+                return;
+            }
+            offset = Math.max(0, Math.min(offset, MAX_OFFSET));
+            limit = Math.max(0, Math.min(limit, MAX_LIMIT));
+            long t0 = System.nanoTime();
+            InvertedIndex.Result<SearchService.Doc> r = searchService.search(q == null ? "" : q, type, offset, limit);
+            long micros = (System.nanoTime() - t0) / 1000;
+            TasksHandler.sendJson(exchange, 200, JsonUtil.toJsonSearch(q == null ? "" : q, offset, limit, micros, r));
+        }
+    }
+    // 標籤/類別自動完成：直接讀取前綴樹節點上快取的熱門值
+    static class TagsHandler implements HttpHandler {
+        private final TagService tagService;
+        TagsHandler(TagService s){ this.tagService = s; }
+        @Override public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) { exchange.sendResponseHeaders(405,-1); return; }
+            String prefix = TasksHandler.getQueryParam(exchange, "prefix");
+            String kind = TasksHandler.getQueryParam(exchange, "kind");
+            if (kind == null || kind.isEmpty()) kind = "tag";
+            if (!kind.equals("tag") && !kind.equals("category")) {
+                TasksHandler.sendJson(exchange, 400, "{\"ok\":false,\"error\":\"bad_kind\"}");
+                return;
+            }
+            int limit = 10;
+            String l = TasksHandler.getQueryParam(exchange, "limit");
+            try { if (l != null && !l.isEmpty()) limit = Math.max(0, Integer.parseInt(l)); } catch (NumberFormatException ignored) {}
+            List<PrefixTrie.Entry> items = tagService.complete(kind, prefix == null ? "" : prefix, limit);
+            TasksHandler.sendJson(exchange, 200, JsonUtil.toJsonTags(kind, prefix == null ? "" : prefix, items));
+        }
+    }
+    // Stats handler: 讀取增量維護的彙總，不掃描任務
+    static class StatsHandler implements HttpHandler {
+        private final StatsService statsService;
+        private final DailyRollupService dailyRollups;
+        StatsHandler(StatsService s, DailyRollupService d){ this.statsService = s; this.dailyRollups = d; }
+        @Override public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) { exchange.sendResponseHeaders(405,-1); return; }
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/stats")) {
+                TasksHandler.sendJson(exchange, 200, JsonUtil.toJsonStats(statsService.snapshot()));
+                return;
+            }
+            if (path.equals("/stats/daily")) {
+                String startStr = TasksHandler.getQueryParam(exchange, "start");
+                String endStr = TasksHandler.getQueryParam(exchange, "end");
+                LocalDate start, end;
+                try {
+                    end = endStr == null || endStr.isEmpty() ? LocalDate.now() : LocalDate.parse(endStr);
+                    start = startStr == null || startStr.isEmpty() ? end.minusDays(364) : LocalDate.parse(startStr);
+                } catch (Exception e) {
+                    TasksHandler.sendJson(exchange, 400, "{\"ok\":false,\"error\":\"bad_date\"}");
+                    return;
+                }
+                if (end.isBefore(start)) { TasksHandler.sendJson(exchange, 400, "{\"ok\":false,\"error\":\"bad_range\"}"); return; }
+                TasksHandler.sendJson(exchange, 200, JsonUtil.toJsonDaily(start, end, dailyRollups.range(start, end)));
+                return;
+            }
+            TasksHandler.sendJson(exchange, 404, "{\"ok\":false,\"error\":\"not_found\"}");
+        }
+    }
+    // Reminder notifications: SSE 訂閱與各 sink 的投遞統計
+    static class RemindersHandler implements HttpHandler {
+        private final NotificationPipeline pipeline;
+        private final SseSink sseSink;
+        private final String tenant; // null 表示預設使用者
+        RemindersHandler(NotificationPipeline p, SseSink sse, String tenant){ this.pipeline = p; this.sseSink = sse; this.tenant = tenant; }
+        @Override public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) { exchange.sendResponseHeaders(405,-1); return; }
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/reminders/stream")) { sseSink.register(exchange, tenant); return; }
+            if (path.equals("/reminders/sinks")) { TasksHandler.sendJson(exchange, 200, JsonUtil.toJsonNotify(pipeline.stats())); return; }
+            TasksHandler.sendJson(exchange, 404, "{\"ok\":false,\"error\":\"not_found\"}");
         }
-        private String escapeIcs(String s){ return s.replace("\\", "\\\\").replace(";","\\;").replace(",","\\,").replace("\n","\\n"); }
     }
     // Notes handler
     static class NotesHandler implements HttpHandler {
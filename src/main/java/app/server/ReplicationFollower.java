@@ -0,0 +1,297 @@
+package app.server;
+
+import app.model.Note;
+import app.model.Task;
+import app.repo.FileOccurrenceRepository;
+import app.repo.NoteCsv;
+import app.repo.TaskCsv;
+import app.service.Tenant;
+import app.service.TenantRegistry;
+import app.util.CsvUtil;
+
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 唯讀複本：連到 {@link ReplicationLeader}，把收到的異動經由各 tenant 的服務套用
+ * （衍生的索引、統計、日曆快取照常更新），HTTP 端以唯讀模式提供查詢。
+ * 已套用的位置存在 {@code data/replication.state}（epoch,序號），重新啟動後由下一筆接續；
+ * 主節點重新啟動（epoch 改變）或複本落後超過主節點保留的記錄時，由快照重建。
+ * 斷線後以 1 秒起、最多 30 秒的間隔重連。
+ * <p>
+ * 系統屬性：{@code replication.leader}（host:port）。
+ */
+public class ReplicationFollower {
+    private static final int MAX_RECORD_CHARS = 1 << 20;
+    private static final int MAX_BATCH = 500;
+
+    private final TenantRegistry tenants;
+    private final String host;
+    private final int port;
+    private final Path stateFile;
+    private volatile boolean running;
+    private volatile Socket socket;
+    private Thread thread;
+
+    private volatile boolean connected;
+    private volatile String epoch = "";
+    private volatile long appliedSeq;
+    private volatile long leaderSeq;
+    private volatile long appliedMillis; // 最後套用那筆在主節點寫入的時間
+    private volatile int snapshots;
+
+    // 連續的同 tenant、同種類任務寫入合併成一批（整批落盤一次）
+    private String batchTenant;
+    private char batchOp;
+    private final List<Task> batch = new ArrayList<>();
+    private long pendingSeq;    // 已收到、待批次落盤後才算套用的序號
+    private long pendingMillis;
+    // 快照中目前 tenant 出現過的 id，E 時刪除複本上多出來的資料
+    private Set<String> seenTasks;
+    private Set<String> seenNotes;
+
+    public ReplicationFollower(TenantRegistry tenants, String leader, Path stateFile) {
+        int colon = leader.lastIndexOf(':');
+        if (colon <= 0) throw new IllegalArgumentException("replication.leader must be host:port: " + leader);
+        this.tenants = tenants;
+        this.host = leader.substring(0, colon);
+        this.port = Integer.parseInt(leader.substring(colon + 1));
+        this.stateFile = stateFile;
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) return;
+        loadState();
+        running = true;
+        thread = new Thread(this::connectLoop, "replication-follower");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        Socket s = socket;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+            }
+        }
+        thread.interrupt();
+    }
+
+    /** GET /replication：複本的套用進度與落後量。 */
+    public HttpHandler statusHandler() {
+        return exchange -> {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            long applied = appliedSeq;
+            long lagEntries = Math.max(0, leaderSeq - applied);
+            long lagMillis = lagEntries == 0 || appliedMillis == 0 ? 0 : Math.max(0, System.currentTimeMillis() - appliedMillis);
+            String json = "{\"role\":\"follower\",\"leader\":\"" + MiniHttpServer.JsonUtil.escape(host + ":" + port) + '"' +
+                    ",\"connected\":" + connected +
+                    ",\"epoch\":\"" + MiniHttpServer.JsonUtil.escape(epoch) + '"' +
+                    ",\"appliedSeq\":" + applied +
+                    ",\"leaderSeq\":" + leaderSeq +
+                    ",\"lagEntries\":" + lagEntries +
+                    ",\"lagMillis\":" + lagMillis +
+                    ",\"snapshots\":" + snapshots +
+                    '}';
+            MiniHttpServer.TasksHandler.sendJson(exchange, 200, json);
+        };
+    }
+
+    private void connectLoop() {
+        long backoff = 1000;
+        while (running) {
+            try (Socket s = new Socket()) {
+                socket = s;
+                s.connect(new InetSocketAddress(host, port), 3000);
+                connected = true;
+                backoff = 1000;
+                follow(s);
+            } catch (IOException | RuntimeException e) {
+                if (running) System.err.println("[replication] leader " + host + ":" + port + " failed: " + e);
+            } finally {
+                connected = false;
+                socket = null;
+                batch.clear();
+            }
+            if (!running) return;
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(30_000, backoff * 2);
+        }
+    }
+
+    private void follow(Socket s) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8), 1 << 16);
+        Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8));
+        out.write(CsvUtil.join(new String[]{"FOLLOW", epoch, Long.toString(appliedSeq + 1)}));
+        out.write('\n');
+        out.flush();
+        long snapshotSeq = -1;
+        String snapshotEpoch = null;
+        List<String> rec;
+        while ((rec = CsvUtil.readRecord(in, MAX_RECORD_CHARS)) != null) {
+            String kind = rec.get(0);
+            switch (kind) {
+                case "H":
+                    flush();
+                    leaderSeq = Long.parseLong(rec.get(1));
+                    saveState();
+                    out.write("ACK," + appliedSeq + "\n");
+                    out.flush();
+                    continue;
+                case "R":
+                    continue;
+                case "S":
+                    flush();
+                    snapshotEpoch = rec.get(1);
+                    snapshotSeq = Long.parseLong(rec.get(2));
+                    continue;
+                case "B":
+                    seenTasks = new HashSet<>();
+                    seenNotes = new HashSet<>();
+                    continue;
+                case "E":
+                    flush();
+                    removeUnseen(rec.get(1));
+                    seenTasks = null;
+                    seenNotes = null;
+                    continue;
+                case "F":
+                    epoch = snapshotEpoch;
+                    appliedSeq = snapshotSeq;
+                    pendingSeq = snapshotSeq;
+                    leaderSeq = snapshotSeq; // epoch 可能已改變，不沿用舊的最大值
+                    appliedMillis = 0;
+                    snapshots++;
+                    saveState();
+                    continue;
+                default:
+                    break;
+            }
+            if (rec.size() < 5) throw new IOException("bad record: " + rec);
+            long seq = Long.parseLong(kind);
+            apply(rec.get(2), rec.get(3).charAt(0), rec.subList(4, rec.size()));
+            if (seq > 0) {
+                pendingSeq = seq;
+                pendingMillis = Long.parseLong(rec.get(1));
+                leaderSeq = Math.max(leaderSeq, seq);
+                if (batch.isEmpty()) commit();
+            }
+            if (!in.ready()) flush();
+        }
+        flush();
+    }
+
+    private void apply(String tenantId, char op, List<String> cols) {
+        if (op == ReplicationLog.TASK_SAVED || op == ReplicationLog.TASK_ARCHIVED) {
+            if (!tenantId.equals(batchTenant) || op != batchOp || batch.size() >= MAX_BATCH) flush();
+            Task t = TaskCsv.fromColumns(cols);
+            if (seenTasks != null && op == ReplicationLog.TASK_SAVED) seenTasks.add(t.getId());
+            batchTenant = tenantId;
+            batchOp = op;
+            batch.add(t);
+            return;
+        }
+        flush();
+        Tenant t = tenants.acquire(tenantId);
+        try {
+            switch (op) {
+                case ReplicationLog.TASK_DELETED:
+                    t.getTaskService().deleteTask(cols.get(0));
+                    break;
+                case ReplicationLog.NOTE_SAVED:
+                    Note n = NoteCsv.fromColumns(cols);
+                    if (seenNotes != null) seenNotes.add(n.getId());
+                    t.getNoteService().apply(n);
+                    break;
+                case ReplicationLog.NOTE_DELETED:
+                    t.getNoteService().delete(cols.get(0));
+                    break;
+                case ReplicationLog.OVERRIDE:
+                    t.getRecurrenceService().applyOverride(FileOccurrenceRepository.fromColumns(cols));
+                    break;
+                default:
+                    System.err.println("[replication] unknown op " + op + " ignored");
+            }
+        } finally {
+            tenants.release(t);
+        }
+    }
+
+    private void flush() {
+        if (batch.isEmpty()) return;
+        Tenant t = tenants.acquire(batchTenant);
+        try {
+            if (batchOp == ReplicationLog.TASK_SAVED) t.getTaskService().saveAll(new ArrayList<>(batch));
+            else t.getTaskService().applyArchived(new ArrayList<>(batch));
+        } finally {
+            tenants.release(t);
+            batch.clear();
+        }
+        commit();
+    }
+
+    private void commit() {
+        appliedSeq = pendingSeq;
+        appliedMillis = pendingMillis;
+    }
+
+    // 快照中沒有出現的任務與筆記已在主節點刪除（或複本自己殘留的），一併移除
+    private void removeUnseen(String tenantId) {
+        Tenant t = tenants.acquire(tenantId);
+        try {
+            for (Task task : t.getTaskService().snapshot().getItems()) {
+                if (!seenTasks.contains(task.getId())) t.getTaskService().deleteTask(task.getId());
+            }
+            for (Note n : t.getNoteService().snapshot().getItems()) {
+                if (!seenNotes.contains(n.getId())) t.getNoteService().delete(n.getId());
+            }
+        } finally {
+            tenants.release(t);
+        }
+    }
+
+    private void loadState() throws IOException {
+        if (!Files.exists(stateFile)) return;
+        List<String> cols = CsvUtil.parse(Files.readString(stateFile, StandardCharsets.UTF_8).trim());
+        if (cols.size() < 2) return;
+        try {
+            appliedSeq = Long.parseLong(cols.get(1));
+            epoch = cols.get(0);
+        } catch (NumberFormatException e) {
+            System.err.println("[replication] state " + stateFile + " ignored: " + e);
+        }
+    }
+
+    private void saveState() throws IOException {
+        Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        Files.writeString(tmp, CsvUtil.join(new String[]{epoch, Long.toString(appliedSeq)}) + "\n", StandardCharsets.UTF_8);
+        Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,231 @@
+package app.server;
+
+import app.service.Tenant;
+import app.service.TenantRegistry;
+import app.util.CsvUtil;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 複寫主節點：在本機 socket 上把 {@link ReplicationLog} 串流給複本。
+ * <p>
+ * 協定為逐行 CSV。複本連線後送 {@code FOLLOW,<epoch>,<下一個序號>}；epoch 相同且序號仍在記錄中時，
+ * 主節點回 {@code R,<epoch>,<序號>} 接著串流，否則先送快照：
+ * {@code S,<epoch>,<快照時的序號>}，每個 tenant 以 {@code B,<tenant>} 與 {@code E,<tenant>} 包住序號為 0 的資料記錄，
+ * 最後 {@code F,<序號>}，之後由快照序號的下一筆開始串流。快照期間的異動會在之後重送一次，套用是冪等的。
+ * 資料記錄為 {@code <序號>,<毫秒>,<tenant>,<種類>,<欄位...>}；每批之後送 {@code H,<最新序號>,<毫秒>} 作為心跳，
+ * 複本以 {@code ACK,<已套用序號>} 回覆。串流中複本落後到記錄已被覆蓋時，同樣改送快照。
+ * <p>
+ * 系統屬性：{@code replication.port}（只綁 127.0.0.1）、{@code replication.logSize}。
+ */
+public class ReplicationLeader {
+    private static final int BATCH = 1000;
+    private static final long HEARTBEAT_MILLIS = 1000;
+    private static final int MAX_RECORD_CHARS = 1024;
+
+    private final ReplicationLog log;
+    private final TenantRegistry tenants;
+    private final List<FollowerConn> followers = new CopyOnWriteArrayList<>();
+    private ServerSocket socket;
+
+    public ReplicationLeader(ReplicationLog log, TenantRegistry tenants) {
+        this.log = log;
+        this.tenants = tenants;
+    }
+
+    public synchronized void start(int port) throws IOException {
+        if (socket != null) return;
+        socket = new ServerSocket();
+        socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        ServerSocket s = socket;
+        Thread t = new Thread(() -> acceptLoop(s), "replication-accept");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public synchronized void stop() {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        socket = null;
+        for (FollowerConn f : followers) f.close();
+    }
+
+    /** GET /replication：目前序號與各複本的確認進度。 */
+    public HttpHandler statusHandler() {
+        return exchange -> {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            long head = log.head();
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\"role\":\"leader\",\"epoch\":\"").append(log.epoch()).append('"')
+              .append(",\"headSeq\":").append(head)
+              .append(",\"oldestSeq\":").append(log.oldest())
+              .append(",\"followers\":[");
+            boolean first = true;
+            for (FollowerConn f : followers) {
+                if (!first) sb.append(',');
+                first = false;
+                long acked = f.ackedSeq;
+                sb.append("{\"remote\":\"").append(MiniHttpServer.JsonUtil.escape(f.remote)).append('"')
+                  .append(",\"sentSeq\":").append(f.sentSeq)
+                  .append(",\"ackedSeq\":").append(acked)
+                  .append(",\"lagEntries\":").append(Math.max(0, head - acked))
+                  .append(",\"snapshots\":").append(f.snapshots)
+                  .append('}');
+            }
+            sb.append("]}");
+            MiniHttpServer.TasksHandler.sendJson(exchange, 200, sb.toString());
+        };
+    }
+
+    private void acceptLoop(ServerSocket s) {
+        while (!s.isClosed()) {
+            try {
+                Socket client = s.accept();
+                FollowerConn f = new FollowerConn(client);
+                Thread t = new Thread(f::run, "replication-" + f.remote);
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!s.isClosed()) System.err.println("[replication] accept failed: " + e);
+            }
+        }
+    }
+
+    private final class FollowerConn {
+        private final Socket client;
+        private final String remote;
+        private volatile long sentSeq;
+        private volatile long ackedSeq;
+        private volatile int snapshots;
+
+        FollowerConn(Socket client) {
+            this.client = client;
+            this.remote = client.getRemoteSocketAddress().toString();
+        }
+
+        void run() {
+            followers.add(this);
+            try (Socket c = client;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(c.getInputStream(), StandardCharsets.UTF_8));
+                 Writer out = new BufferedWriter(new OutputStreamWriter(c.getOutputStream(), StandardCharsets.UTF_8))) {
+                List<String> hello = CsvUtil.readRecord(in, MAX_RECORD_CHARS);
+                if (hello == null || hello.size() < 3 || !hello.get(0).equals("FOLLOW")) return;
+                long next = Long.parseLong(hello.get(2));
+                Thread acks = new Thread(() -> readAcks(in), "replication-ack-" + remote);
+                acks.setDaemon(true);
+                acks.start();
+
+                if (!hello.get(1).equals(log.epoch()) || next < log.oldest() || next > log.head() + 1) {
+                    next = sendSnapshot(out) + 1;
+                } else {
+                    write(out, "R", log.epoch(), Long.toString(next));
+                    out.flush();
+                }
+                while (!c.isClosed()) {
+                    List<ReplicationLog.Entry> batch = log.readFrom(next, BATCH, HEARTBEAT_MILLIS);
+                    if (batch == null) {
+                        // 落後太多，記錄已被覆蓋
+                        next = sendSnapshot(out) + 1;
+                        continue;
+                    }
+                    for (ReplicationLog.Entry e : batch) writeEntry(out, e);
+                    if (!batch.isEmpty()) {
+                        next = batch.get(batch.size() - 1).seq + 1;
+                        sentSeq = next - 1;
+                    }
+                    write(out, "H", Long.toString(log.head()), Long.toString(System.currentTimeMillis()));
+                    out.flush();
+                }
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("[replication] follower " + remote + " failed: " + e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                followers.remove(this);
+            }
+        }
+
+        private long sendSnapshot(Writer out) throws IOException {
+            long seq = log.head();
+            write(out, "S", log.epoch(), Long.toString(seq));
+            for (String id : tenants.listIds()) {
+                Tenant t;
+                try {
+                    t = tenants.acquire(id);
+                } catch (RuntimeException e) {
+                    System.err.println("[replication] snapshot of " + id + " failed: " + e);
+                    continue;
+                }
+                try {
+                    write(out, "B", t.getId());
+                    for (ReplicationLog.Entry e : ReplicationLog.snapshotOf(t)) writeEntry(out, e);
+                    write(out, "E", t.getId());
+                } finally {
+                    tenants.release(t);
+                }
+            }
+            write(out, "F", Long.toString(seq));
+            out.flush();
+            snapshots++;
+            sentSeq = seq;
+            return seq;
+        }
+
+        private void readAcks(BufferedReader in) {
+            try {
+                List<String> rec;
+                while ((rec = CsvUtil.readRecord(in, MAX_RECORD_CHARS)) != null) {
+                    if (rec.size() == 2 && rec.get(0).equals("ACK")) ackedSeq = Long.parseLong(rec.get(1));
+                }
+            } catch (IOException | NumberFormatException e) {
+                // 連線關閉，由串流執行緒處理
+            }
+            close();
+        }
+
+        void close() {
+            try {
+                client.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static void writeEntry(Writer out, ReplicationLog.Entry e) throws IOException {
+        List<String> rec = new ArrayList<>(4 + e.cols.size());
+        rec.add(Long.toString(e.seq));
+        rec.add(Long.toString(e.millis));
+        rec.add(e.tenant);
+        rec.add(String.valueOf(e.op));
+        rec.addAll(e.cols);
+        out.write(CsvUtil.join(rec));
+        out.write('\n');
+    }
+
+    private static void write(Writer out, String... fields) throws IOException {
+        out.write(CsvUtil.join(fields));
+        out.write('\n');
+    }
+}
@@ -0,0 +1,148 @@
+package app.server;
+
+import app.model.Note;
+import app.model.OccurrenceOverride;
+import app.model.Task;
+import app.repo.FileOccurrenceRepository;
+import app.repo.NoteCsv;
+import app.repo.TaskCsv;
+import app.service.NoteListener;
+import app.service.TaskListener;
+import app.service.TaskService;
+import app.service.Tenant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 主節點的異動記錄（複寫用）。每筆寫入依序編號，保留最近 {@code replication.logSize} 筆（預設 20000）於環狀緩衝；
+ * 複本要求的位置已被覆蓋時改送快照。epoch 每次啟動重新產生，複本據此判斷序號是否仍然有效。
+ * <p>
+ * 異動種類：T 任務寫入、D 任務刪除、A 任務封存（欄位同 tasks.csv）；N 筆記寫入、M 筆記刪除（欄位同 notes.csv）；
+ * O 重覆任務單次完成（欄位同 occurrences.csv）。
+ */
+public class ReplicationLog {
+    public static final char TASK_SAVED = 'T';
+    public static final char TASK_DELETED = 'D';
+    public static final char TASK_ARCHIVED = 'A';
+    public static final char NOTE_SAVED = 'N';
+    public static final char NOTE_DELETED = 'M';
+    public static final char OVERRIDE = 'O';
+
+    public static final class Entry {
+        final long seq;
+        final long millis;
+        final String tenant;
+        final char op;
+        final List<String> cols;
+
+        Entry(long seq, long millis, String tenant, char op, List<String> cols) {
+            this.seq = seq;
+            this.millis = millis;
+            this.tenant = tenant;
+            this.op = op;
+            this.cols = cols;
+        }
+    }
+
+    private final String epoch = UUID.randomUUID().toString();
+    private final Entry[] ring;
+    private long head; // 最後一筆的序號，第一筆為 1
+
+    public ReplicationLog() {
+        this(Integer.getInteger("replication.logSize", 20_000));
+    }
+
+    public ReplicationLog(int capacity) {
+        this.ring = new Entry[Math.max(16, capacity)];
+    }
+
+    public String epoch() {
+        return epoch;
+    }
+
+    public synchronized long head() {
+        return head;
+    }
+
+    /** 仍保留在緩衝中的最舊序號。 */
+    public synchronized long oldest() {
+        return Math.max(1, head - ring.length + 1);
+    }
+
+    public synchronized long append(String tenant, char op, List<String> cols) {
+        long seq = ++head;
+        ring[(int) (seq % ring.length)] = new Entry(seq, System.currentTimeMillis(), tenant, op, cols);
+        notifyAll();
+        return seq;
+    }
+
+    /**
+     * 讀取序號 from 起最多 max 筆；尚無新資料時最多等待 waitMillis，逾時回傳空清單。
+     * from 已被覆蓋時回傳 null（需改送快照）。
+     */
+    public synchronized List<Entry> readFrom(long from, int max, long waitMillis) throws InterruptedException {
+        if (from < oldest()) return null;
+        if (from > head && waitMillis > 0) wait(waitMillis);
+        if (from < oldest()) return null;
+        List<Entry> out = new ArrayList<>();
+        for (long s = from; s <= head && out.size() < max; s++) out.add(ring[(int) (s % ring.length)]);
+        return out;
+    }
+
+    /**
+     * 對 tenant 的服務掛上監聽器。任務寫入時記錄的是當下儲存庫中的版本（已不存在則記為刪除），
+     * 同一任務的並行寫入不論通知先後，記錄中最後一筆都是最終狀態。
+     */
+    public void attach(Tenant t) {
+        String tenant = t.getId();
+        TaskService tasks = t.getTaskService();
+        AtomicBoolean ready = new AtomicBoolean(); // addListener 會以現有資料補送 onTaskSaved/onNoteSaved，不需記錄
+        tasks.addListener(new TaskListener() {
+            @Override public void onTaskSaved(Task task) {
+                if (!ready.get()) return;
+                synchronized (ReplicationLog.this) {
+                    Optional<Task> current = tasks.getById(task.getId());
+                    if (current.isPresent()) append(tenant, TASK_SAVED, TaskCsv.toColumns(current.get()));
+                    else append(tenant, TASK_DELETED, List.of(task.getId()));
+                }
+            }
+
+            @Override public void onTaskDeleted(String id) {
+                append(tenant, TASK_DELETED, List.of(id));
+            }
+
+            @Override public void onTaskArchived(Task task) {
+                append(tenant, TASK_ARCHIVED, TaskCsv.toColumns(task));
+            }
+        });
+        t.getNoteService().addListener(new NoteListener() {
+            @Override public void onNoteSaved(Note note) {
+                if (ready.get()) append(tenant, NOTE_SAVED, NoteCsv.toColumns(note));
+            }
+
+            @Override public void onNoteDeleted(String id) {
+                append(tenant, NOTE_DELETED, List.of(id));
+            }
+        });
+        t.getRecurrenceService().addOverrideListener(o -> append(tenant, OVERRIDE, FileOccurrenceRepository.toColumns(o)));
+        ready.set(true);
+    }
+
+    /** 快照用：tenant 目前的完整資料，依 T、A、N、O 的順序，序號為 0。 */
+    static List<Entry> snapshotOf(Tenant t) {
+        String tenant = t.getId();
+        long now = System.currentTimeMillis();
+        List<Entry> out = new ArrayList<>();
+        for (Task task : t.getTaskService().snapshot().getItems()) out.add(new Entry(0, now, tenant, TASK_SAVED, TaskCsv.toColumns(task)));
+        for (Task task : t.getTaskService().listArchived()) out.add(new Entry(0, now, tenant, TASK_ARCHIVED, TaskCsv.toColumns(task)));
+        for (Note n : t.getNoteService().snapshot().getItems()) out.add(new Entry(0, now, tenant, NOTE_SAVED, NoteCsv.toColumns(n)));
+        for (OccurrenceOverride o : t.getRecurrenceService().listOverrides()) {
+            out.add(new Entry(0, now, tenant, OVERRIDE, FileOccurrenceRepository.toColumns(o)));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,135 @@
+package app.server;
+
+import app.model.Note;
+import app.model.OccurrenceOverride;
+import app.model.Task;
+import app.repo.FileNoteRepository;
+import app.repo.FileOccurrenceRepository;
+import app.repo.FileTaskRepository;
+import app.service.TenantRegistry;
+import app.util.HashRing;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 增減 shard 後的資料搬移，需在所有 shard 程序停止時執行。
+ * 叢集根目錄下每個 shard 一個工作目錄（{@code <root>/<name>/data}）；依新的 shard 清單重算每筆任務與筆記的歸屬，
+ * 只搬移歸屬改變的資料（新增第 N 個 shard 時約 1/N），各使用者目錄分開處理，重覆任務的單次完成紀錄跟著任務走。
+ * 先寫入新的 shard 再自原 shard 移除，中途中斷時重新執行即可。封存區段不搬移：歷史查詢本來就會詢問所有 shard。
+ * <p>
+ * 執行：{@code java -cp out -Dcluster.shards=<與路由相同> app.server.ShardRebalancer <root>}
+ */
+public class ShardRebalancer {
+    private final Path root;
+    private final HashRing ring;
+    private final Map<String, int[]> moves = new TreeMap<>(); // "from -> to" -> {任務, 筆記}
+    private long total;
+
+    public ShardRebalancer(Path root, List<String> shards) {
+        this.root = root;
+        this.ring = new HashRing(shards);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String spec = System.getProperty("cluster.shards");
+        if (args.length < 1 || spec == null || spec.isBlank()) {
+            System.err.println("usage: java -Dcluster.shards=s1=http://127.0.0.1:8081,... app.server.ShardRebalancer <root>");
+            System.exit(2);
+        }
+        ShardRebalancer r = new ShardRebalancer(Paths.get(args[0]), new ArrayList<>(ShardRouter.parseShards(spec).keySet()));
+        r.run();
+        long moved = 0;
+        for (Map.Entry<String, int[]> e : r.moves.entrySet()) {
+            System.out.println(e.getKey() + ": " + e.getValue()[0] + " tasks, " + e.getValue()[1] + " notes");
+            moved += e.getValue()[0];
+        }
+        System.out.printf("moved %d of %d tasks (%.1f%%)%n", moved, r.total, r.total == 0 ? 0.0 : 100.0 * moved / r.total);
+    }
+
+    public void run() throws IOException {
+        for (String shard : ring.nodes()) Files.createDirectories(root.resolve(shard).resolve("data"));
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                Path data = dir.resolve("data");
+                if (!Files.isDirectory(data)) continue;
+                String shard = dir.getFileName().toString();
+                rebalanceTenant(shard, data, null);
+                try (DirectoryStream<Path> users = Files.newDirectoryStream(data, Files::isDirectory)) {
+                    for (Path user : users) {
+                        String id = user.getFileName().toString();
+                        if (TenantRegistry.isValidId(id)) rebalanceTenant(shard, user, id);
+                    }
+                }
+            }
+        }
+    }
+
+    private void rebalanceTenant(String shard, Path dir, String user) throws IOException {
+        Map<String, List<Task>> tasksTo = new LinkedHashMap<>();
+        FileTaskRepository tasks = Files.exists(dir.resolve("tasks.csv")) ? new FileTaskRepository(dir.resolve("tasks.csv")) : null;
+        if (tasks != null) {
+            for (Task t : tasks.findAll()) {
+                total++;
+                String owner = ring.ownerOf(t.getId());
+                if (!owner.equals(shard)) tasksTo.computeIfAbsent(owner, k -> new ArrayList<>()).add(t);
+            }
+        }
+        Map<String, List<Note>> notesTo = new LinkedHashMap<>();
+        FileNoteRepository notes = Files.exists(dir.resolve("notes.csv")) ? new FileNoteRepository(dir.resolve("notes.csv")) : null;
+        if (notes != null) {
+            for (Note n : notes.snapshot().getItems()) {
+                String owner = ring.ownerOf(n.getId());
+                if (!owner.equals(shard)) notesTo.computeIfAbsent(owner, k -> new ArrayList<>()).add(n);
+            }
+        }
+        if (tasksTo.isEmpty() && notesTo.isEmpty()) return;
+        FileOccurrenceRepository occurrences = Files.exists(dir.resolve("occurrences.csv"))
+                ? new FileOccurrenceRepository(dir.resolve("occurrences.csv")) : null;
+
+        for (Map.Entry<String, List<Task>> e : tasksTo.entrySet()) {
+            Path target = tenantDir(e.getKey(), user);
+            new FileTaskRepository(target.resolve("tasks.csv")).upsertAll(e.getValue());
+            if (occurrences != null) {
+                FileOccurrenceRepository dst = null;
+                for (Task t : e.getValue()) {
+                    for (OccurrenceOverride o : occurrences.findByTask(t.getId(), LocalDate.MIN, LocalDate.MAX).values()) {
+                        if (dst == null) dst = new FileOccurrenceRepository(target.resolve("occurrences.csv"));
+                        dst.upsert(o);
+                    }
+                }
+            }
+            moves.computeIfAbsent(shard + " -> " + e.getKey(), k -> new int[2])[0] += e.getValue().size();
+        }
+        for (Map.Entry<String, List<Note>> e : notesTo.entrySet()) {
+            FileNoteRepository dst = new FileNoteRepository(tenantDir(e.getKey(), user).resolve("notes.csv"));
+            for (Note n : e.getValue()) dst.upsert(n);
+            moves.computeIfAbsent(shard + " -> " + e.getKey(), k -> new int[2])[1] += e.getValue().size();
+        }
+
+        // 新的 shard 都寫好後才自原 shard 移除
+        for (List<Task> moved : tasksTo.values()) {
+            tasks.removeUnchanged(moved);
+            if (occurrences != null) {
+                for (Task t : moved) occurrences.deleteByTask(t.getId());
+            }
+        }
+        for (List<Note> moved : notesTo.values()) {
+            for (Note n : moved) notes.deleteById(n.getId());
+        }
+    }
+
+    private Path tenantDir(String shard, String user) {
+        Path data = root.resolve(shard).resolve("data");
+        return user == null ? data : data.resolve(user);
+    }
+}
@@ -0,0 +1,839 @@
+package app.server;
+
+import app.model.Task;
+import app.model.TaskPriority;
+import app.model.TaskStatus;
+import app.service.ImportService;
+import app.service.SuggestionService;
+import app.service.TaskService;
+import app.util.CsvUtil;
+import app.util.HashRing;
+import app.util.IcsUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 分片部署的路由前端。任務與筆記依 id 以一致性雜湊（{@link HashRing}）分配到各 shard，
+ * 每個 shard 是一個有自己 data/ 目錄的 {@code app.Main serve <port>} 程序：
+ * <ul>
+ *   <li>指定 id 的請求（/tasks/{id}/...、筆記的修改與刪除）轉送給擁有該 id 的 shard；</li>
+ *   <li>新增任務/筆記時由路由端產生 id，再交給擁有它的 shard；</li>
+ *   <li>列表查詢同時送往所有 shard，依單機相同的順序合併（各 shard 的結果已排序，只需 k 路合併）；</li>
+ *   <li>匯入依每列的 id 拆開（沒有 id 的列由路由端配給），分別送往各 shard，錯誤列號換回原檔的列號；</li>
+ *   <li>/ics 合併各 shard 的 VEVENT，ETag 由各 shard 的 ETag 組成，條件請求照樣可回 304。</li>
+ * </ul>
+ * 使用者（X-User-Id 標頭或 user 參數）原樣轉送，每個 shard 各自保存該使用者的一部分資料。
+ * 任一 shard 無法連線時回 502，不回傳不完整的結果。
+ * <p>
+ * 執行：{@code java -cp out -Dcluster.shards=s1=http://127.0.0.1:8081,s2=http://127.0.0.1:8082 app.server.ShardRouter [port]}
+ */
+public class ShardRouter {
+    private static final DateTimeFormatter DATE_TIME_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm", Locale.getDefault());
+    private static final Pattern TASK_PATH = Pattern.compile("^/tasks/([a-zA-Z0-9\\-]+)(/.*)?$");
+    private static final String[] FORWARDED_HEADERS = {"Content-Type", "X-User-Id", "Accept"};
+    private static final String[] RELAYED_HEADERS = {"Content-Type", "Content-Disposition", "Cache-Control", "ETag"};
+    private static final String FORM = "application/x-www-form-urlencoded";
+    private static final int MAX_RECORD_CHARS = 1 << 20;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final Map<String, String> shards; // 名稱 -> base URL，依設定順序
+    private final HashRing ring;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(3)).build();
+    private HttpServer server;
+    private MiniHttpServer.StaticHandler staticHandler;
+
+    public ShardRouter(Map<String, String> shards) {
+        this.shards = new LinkedHashMap<>(shards);
+        this.ring = new HashRing(new ArrayList<>(shards.keySet()));
+    }
+
+    /** 解析 {@code name=url,name=url,...}；只給 url 時以 s1、s2... 命名。 */
+    public static Map<String, String> parseShards(String spec) {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) continue;
+            int eq = part.indexOf('=');
+            String name = eq > 0 && !part.substring(0, eq).contains(":") ? part.substring(0, eq).trim() : "s" + (out.size() + 1);
+            String url = eq > 0 && !part.substring(0, eq).contains(":") ? part.substring(eq + 1).trim() : part;
+            while (url.endsWith("/")) url = url.substring(0, url.length() - 1);
+            out.put(name, url);
+        }
+        if (out.isEmpty()) throw new IllegalArgumentException("no shards in: " + spec);
+        return out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String spec = System.getProperty("cluster.shards");
+        if (spec == null || spec.isBlank()) {
+            System.err.println("usage: java -Dcluster.shards=s1=http://127.0.0.1:8081,s2=http://127.0.0.1:8082 app.server.ShardRouter [port]");
+            System.exit(2);
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        ShardRouter router = new ShardRouter(parseShards(spec));
+        router.start(port);
+        System.out.println("分片路由啟動於 http://localhost:" + port + "/tasks，shards=" + router.shards);
+    }
+
+    public synchronized void start(int port) throws IOException {
+        if (server != null) return;
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/tasks", guarded(this::handleTasks));
+        server.createContext("/notes", guarded(this::handleNotes));
+        server.createContext("/ics", guarded(this::handleIcs));
+        // 其餘 API 需要跨 shard 彙總的語意（統計、搜尋排名、標籤計數、匯出、提醒串流），尚未支援
+        for (String ctx : new String[]{"/export", "/search", "/tags", "/stats", "/reminders"}) {
+            server.createContext(ctx, ex -> MiniHttpServer.TasksHandler.sendJson(ex, 501, "{\"ok\":false,\"error\":\"not_sharded\"}"));
+        }
+        staticHandler = new MiniHttpServer.StaticHandler(Paths.get("public"));
+        server.createContext("/", staticHandler);
+        server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            staticHandler.close();
+            staticHandler = null;
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private HttpHandler guarded(HttpHandler h) {
+        return ex -> {
+            try {
+                h.handle(ex);
+            } catch (ShardUnavailableException e) {
+                System.err.println("[router] shard " + e.shard + " failed: " + e.getCause());
+                MiniHttpServer.TasksHandler.sendJson(ex, 502, "{\"ok\":false,\"error\":\"shard_unavailable\",\"shard\":\""
+                        + MiniHttpServer.JsonUtil.escape(e.shard) + "\"}");
+            }
+        };
+    }
+
+    // ---- /tasks ----
+
+    private void handleTasks(HttpExchange ex) throws IOException {
+        String method = ex.getRequestMethod().toUpperCase(Locale.ROOT);
+        String path = ex.getRequestURI().getPath();
+        if (method.equals("GET") && (path.equals("/tasks") || path.equals("/tasks/suggested"))) {
+            listTasks(ex, path.equals("/tasks/suggested"));
+            return;
+        }
+        if (method.equals("POST") && path.equals("/tasks/import")) {
+            importTasks(ex);
+            return;
+        }
+        if (method.equals("POST") && path.equals("/tasks")) {
+            createWithId(ex);
+            return;
+        }
+        if (method.equals("PATCH") && path.equals("/tasks/reorder")) {
+            // 排序值由各 shard 自行維護，只能在同一個 shard 的任務之間調整
+            String form = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String from = formValue(form, "from"), to = formValue(form, "to");
+            if (from == null || to == null) { MiniHttpServer.TasksHandler.sendJson(ex, 400, "{\"ok\":false}"); return; }
+            String owner = ring.ownerOf(from);
+            if (!owner.equals(ring.ownerOf(to))) {
+                MiniHttpServer.TasksHandler.sendJson(ex, 409, "{\"ok\":false,\"error\":\"cross_shard\"}");
+                return;
+            }
+            relay(ex, send(owner, request(ex, owner, pathAndQuery(ex)).method(method, HttpRequest.BodyPublishers.ofString(form)).build()));
+            return;
+        }
+        Matcher m = TASK_PATH.matcher(path);
+        if (m.matches()) {
+            forward(ex, ring.ownerOf(m.group(1)));
+            return;
+        }
+        ex.sendResponseHeaders(405, -1);
+    }
+
+    private void listTasks(HttpExchange ex, boolean suggestedPath) throws IOException {
+        List<HttpResponse<byte[]>> responses = scatter(ex, pathAndQuery(ex), null);
+        HttpResponse<byte[]> failed = firstNotOk(responses);
+        if (failed != null) { relay(ex, failed); return; }
+        boolean suggested = suggestedPath || "true".equalsIgnoreCase(MiniHttpServer.TasksHandler.getQueryParam(ex, "suggested"));
+        boolean filtered = MiniHttpServer.TasksHandler.getQueryParam(ex, "status") != null
+                || MiniHttpServer.TasksHandler.getQueryParam(ex, "priority") != null
+                || MiniHttpServer.TasksHandler.getQueryParam(ex, "tag") != null;
+        // 與單機相同的順序：建議排序 > 篩選（建立時間）> listAll
+        Comparator<Task> order = suggested ? SuggestionService.order(LocalDateTime.now())
+                : filtered ? Comparator.comparing(Task::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()))
+                : TaskService.LIST_ORDER;
+        int limit = Integer.MAX_VALUE;
+        if (suggestedPath) {
+            limit = 10;
+            String l = MiniHttpServer.TasksHandler.getQueryParam(ex, "limit");
+            try { if (l != null && !l.isEmpty()) limit = Math.max(0, Math.min(Integer.parseInt(l), 1000)); } catch (NumberFormatException ignored) {}
+        }
+        List<List<String>> parts = new ArrayList<>();
+        for (HttpResponse<byte[]> r : responses) parts.add(Json.elements(new String(r.body(), StandardCharsets.UTF_8)));
+        MiniHttpServer.TasksHandler.sendJson(ex, 200, mergeArrays(parts, Json::taskKey, order, limit));
+    }
+
+    // POST /tasks、POST /notes：沿用呼叫端給的 id，否則由路由端產生，讓 id 決定 shard
+    private void createWithId(HttpExchange ex) throws IOException {
+        String form = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        String id = formValue(form, "id");
+        if (id == null || id.isEmpty()) {
+            id = UUID.randomUUID().toString();
+            form = form.isEmpty() ? "id=" + id : form + "&id=" + id;
+        }
+        String owner = ring.ownerOf(id);
+        HttpRequest.Builder b = request(ex, owner, pathAndQuery(ex)).setHeader("Content-Type", FORM);
+        relay(ex, send(owner, b.POST(HttpRequest.BodyPublishers.ofString(form)).build()));
+    }
+
+    // ---- /tasks/import ----
+
+    private void importTasks(HttpExchange ex) throws IOException {
+        String format = MiniHttpServer.TasksHandler.getQueryParam(ex, "format");
+        String contentType = ex.getRequestHeaders().getFirst("Content-Type");
+        if (format == null) format = contentType != null && contentType.toLowerCase(Locale.ROOT).contains("calendar") ? "ics" : "csv";
+        boolean ics = format.equalsIgnoreCase("ics");
+        if (!ics && !format.equalsIgnoreCase("csv")) {
+            MiniHttpServer.TasksHandler.sendJson(ex, 400, "{\"ok\":false,\"error\":\"bad_format\"}");
+            return;
+        }
+        ImportSplit split = new ImportSplit();
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(ex.getRequestBody(), StandardCharsets.UTF_8), 64 * 1024);
+            try {
+                if (ics) split.ics(in); else split.csv(in);
+            } catch (IOException e) {
+                split.aborted = e.getMessage() == null ? "read_failed" : e.getMessage(); // 已拆出的列照常送出，與單機相同
+            }
+            split.close();
+            // 各 shard 的部分並行送出；暫存檔讓大檔案不必整份放在記憶體
+            Map<String, CompletableFuture<HttpResponse<byte[]>>> pending = new LinkedHashMap<>();
+            for (Map.Entry<String, Path> e : split.files.entrySet()) {
+                HttpRequest req = request(ex, e.getKey(), pathAndQuery(ex)).timeout(Duration.ofMinutes(10))
+                        .POST(HttpRequest.BodyPublishers.ofFile(e.getValue())).build();
+                pending.put(e.getKey(), client.sendAsync(req, HttpResponse.BodyHandlers.ofByteArray()));
+            }
+            List<String> reports = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            boolean saveFailed = false;
+            for (Map.Entry<String, CompletableFuture<HttpResponse<byte[]>>> e : pending.entrySet()) {
+                HttpResponse<byte[]> r = join(e.getKey(), e.getValue());
+                // 500 是 shard 寫檔失敗的匯入報告，照樣加總，其他 shard 的計數不會遺失
+                if (r.statusCode() != 200 && r.statusCode() != 400 && r.statusCode() != 500) { relay(ex, r); return; }
+                saveFailed |= r.statusCode() == 500;
+                reports.add(new String(r.body(), StandardCharsets.UTF_8));
+                names.add(e.getKey());
+            }
+            String json = split.mergeReports(names, reports);
+            MiniHttpServer.TasksHandler.sendJson(ex, saveFailed ? 500 : json.startsWith("{\"ok\":true") ? 200 : 400, json);
+        } finally {
+            split.delete();
+        }
+    }
+
+    /** 把上傳內容依每列的 id 拆到各 shard 的暫存檔，並記下各 shard 的列對應回原檔的列號。 */
+    private final class ImportSplit {
+        final Map<String, Path> files = new LinkedHashMap<>();
+        final Map<String, BufferedWriter> writers = new LinkedHashMap<>();
+        final Map<String, int[]> rowMap = new LinkedHashMap<>();
+        final Map<String, Integer> rowCount = new LinkedHashMap<>();
+        final List<int[]> localErrors = new ArrayList<>(); // 路由端判定失敗的列（列號, 錯誤索引）
+        final List<String> localMessages = new ArrayList<>();
+        int localRows;
+        int rowBase; // CSV 標題列占第 1 列，shard 的第 2 列對應第一筆資料
+        String aborted;
+        String header;
+
+        BufferedWriter writer(String shard) throws IOException {
+            BufferedWriter w = writers.get(shard);
+            if (w != null) return w;
+            Path f = Files.createTempFile("import-" + shard + "-", ".part");
+            files.put(shard, f);
+            w = Files.newBufferedWriter(f, StandardCharsets.UTF_8);
+            writers.put(shard, w);
+            if (header != null) w.write(header);
+            return w;
+        }
+
+        void mapRow(String shard, int row) {
+            int n = rowCount.getOrDefault(shard, 0);
+            int[] map = rowMap.computeIfAbsent(shard, k -> new int[64]);
+            if (n == map.length) rowMap.put(shard, map = Arrays.copyOf(map, n * 2));
+            map[n] = row;
+            rowCount.put(shard, n + 1);
+        }
+
+        void csv(BufferedReader in) throws IOException {
+            List<String> head = CsvUtil.readRecord(in, MAX_RECORD_CHARS);
+            if (head == null) return;
+            rowBase = 2;
+            int idCol = -1;
+            boolean hasTitle = false;
+            for (int i = 0; i < head.size(); i++) {
+                String name = head.get(i).trim();
+                if (i == 0 && name.startsWith("\uFEFF")) name = name.substring(1);
+                if (name.equalsIgnoreCase("id")) idCol = i;
+                if (name.equalsIgnoreCase("title")) hasTitle = true;
+            }
+            int width = head.size();
+            List<String> outHead = new ArrayList<>(head);
+            if (idCol < 0) {
+                idCol = outHead.size();
+                outHead.add("id");
+            }
+            header = CsvUtil.join(outHead) + "\n";
+            if (!hasTitle) {
+                writer(ring.nodes().get(0)); // 交給一個 shard 回報缺少 title 欄
+                return;
+            }
+            List<String> cols;
+            int row = 1;
+            while ((cols = CsvUtil.readRecord(in, MAX_RECORD_CHARS)) != null) {
+                row++;
+                if (cols.size() == 1 && cols.get(0).trim().isEmpty()) continue;
+                if (cols.size() > width) {
+                    localRows++;
+                    localError(row, "too_many_columns");
+                    continue;
+                }
+                List<String> out = new ArrayList<>(cols);
+                while (out.size() <= idCol) out.add("");
+                String id = out.get(idCol).trim();
+                if (id.isEmpty()) out.set(idCol, id = UUID.randomUUID().toString());
+                String shard = ring.ownerOf(id);
+                BufferedWriter w = writer(shard);
+                w.write(CsvUtil.join(out));
+                w.write('\n');
+                mapRow(shard, row);
+            }
+        }
+
+        // 事件的 id 由 UID 推導（與 ImportService 相同）；沒有 UID 的事件補上一個，id 因此在路由端就能確定
+        void ics(BufferedReader in) throws IOException {
+            rowBase = 1;
+            header = "BEGIN:VCALENDAR\r\n";
+            List<String> event = null;
+            String uid = null;
+            int uidLine = -1;
+            int row = 0;
+            String line;
+            while ((line = IcsUtil.readContentLine(in, MAX_RECORD_CHARS)) != null) {
+                if (line.equalsIgnoreCase("BEGIN:VEVENT") || line.equalsIgnoreCase("BEGIN:VTODO")) {
+                    event = new ArrayList<>();
+                    event.add(line);
+                    uid = null;
+                    uidLine = -1;
+                    row++;
+                    continue;
+                }
+                if (event == null) continue;
+                if (line.equalsIgnoreCase("END:VEVENT") || line.equalsIgnoreCase("END:VTODO")) {
+                    if (uid == null || uid.isEmpty()) {
+                        // 單機對沒有 UID 的事件產生隨機 id；這裡改為補上隨機 UID，shard 推導出的 id 才會與路由一致
+                        uid = UUID.randomUUID().toString();
+                        if (uidLine < 0) event.add("UID:" + uid);
+                        else event.set(uidLine, "UID:" + uid);
+                    }
+                    event.add(line);
+                    String shard = ring.ownerOf(UUID.nameUUIDFromBytes(uid.getBytes(StandardCharsets.UTF_8)).toString());
+                    BufferedWriter w = writer(shard);
+                    for (String l : event) {
+                        w.write(l);
+                        w.write("\r\n");
+                    }
+                    mapRow(shard, row);
+                    event = null;
+                    continue;
+                }
+                if (uidLine < 0 && propertyName(line).equals("UID")) {
+                    uid = line.substring(valueSeparator(line) + 1);
+                    uidLine = event.size();
+                }
+                event.add(line);
+            }
+            if (event != null) localRows++; // 未結束的事件：單機也只計入列數
+        }
+
+        void localError(int row, String message) {
+            localErrors.add(new int[]{row, localMessages.size()});
+            localMessages.add(message);
+        }
+
+        void close() throws IOException {
+            for (BufferedWriter w : writers.values()) {
+                if (header != null && header.startsWith("BEGIN:VCALENDAR")) w.write("END:VCALENDAR\r\n");
+                w.close();
+            }
+        }
+
+        void delete() {
+            for (BufferedWriter w : writers.values()) {
+                try { w.close(); } catch (IOException ignored) {}
+            }
+            for (Path f : files.values()) {
+                try { Files.deleteIfExists(f); } catch (IOException ignored) {}
+            }
+        }
+
+        // 加總各 shard 的報告；列號換回原檔的列號後依列號排序
+        String mergeReports(List<String> names, List<String> reports) {
+            int rows = localRows, imported = 0, failed = localErrors.size(), batches = 0;
+            boolean truncated = false;
+            String error = aborted;
+            List<long[]> errors = new ArrayList<>(); // (原列號, 訊息索引)
+            List<String> messages = new ArrayList<>(localMessages);
+            for (int[] e : localErrors) errors.add(new long[]{e[0], e[1]});
+            for (int i = 0; i < reports.size(); i++) {
+                Map<String, String> r = Json.fields(reports.get(i));
+                rows += intOr(r.get("rows"));
+                imported += intOr(r.get("imported"));
+                failed += intOr(r.get("failed"));
+                batches += intOr(r.get("batches"));
+                truncated |= "true".equals(r.get("errorsTruncated"));
+                if (error == null && r.get("error") != null) error = r.get("error");
+                int[] map = rowMap.get(names.get(i));
+                int mapped = rowCount.getOrDefault(names.get(i), 0);
+                String errs = r.get("errors");
+                if (errs == null) continue;
+                for (String obj : Json.elements(errs)) {
+                    Map<String, String> e = Json.fields(obj);
+                    int local = intOr(e.get("row"));
+                    int idx = local - rowBase;
+                    int global = idx >= 0 && idx < mapped ? map[idx] : local; // 標題列等不對應資料列的列號保持原樣
+                    errors.add(new long[]{global, messages.size()});
+                    messages.add(e.get("error"));
+                }
+            }
+            errors.sort(Comparator.comparingLong((long[] e) -> e[0]));
+            boolean dropped = errors.size() > ImportService.MAX_ERRORS;
+            if (dropped) errors = errors.subList(0, ImportService.MAX_ERRORS);
+            StringBuilder sb = new StringBuilder();
+            sb.append('{')
+                    .append("\"ok\":").append(error == null).append(',')
+                    .append("\"rows\":").append(rows).append(',')
+                    .append("\"imported\":").append(imported).append(',')
+                    .append("\"failed\":").append(failed).append(',')
+                    .append("\"batches\":").append(batches).append(',');
+            if (error != null) sb.append("\"error\":\"").append(MiniHttpServer.JsonUtil.escape(error)).append("\",");
+            sb.append("\"errorsTruncated\":").append(truncated || dropped).append(',')
+                    .append("\"errors\":[");
+            boolean first = true;
+            for (long[] e : errors) {
+                if (!first) sb.append(',');
+                first = false;
+                sb.append("{\"row\":").append(e[0]).append(",\"error\":\"")
+                        .append(MiniHttpServer.JsonUtil.escape(messages.get((int) e[1]))).append("\"}");
+            }
+            sb.append("]}");
+            return sb.toString();
+        }
+    }
+
+    // ---- /notes ----
+
+    private void handleNotes(HttpExchange ex) throws IOException {
+        String method = ex.getRequestMethod().toUpperCase(Locale.ROOT);
+        if (method.equals("GET")) {
+            List<HttpResponse<byte[]>> responses = scatter(ex, pathAndQuery(ex), null);
+            HttpResponse<byte[]> failed = firstNotOk(responses);
+            if (failed != null) { relay(ex, failed); return; }
+            List<List<String>> parts = new ArrayList<>();
+            for (HttpResponse<byte[]> r : responses) parts.add(Json.elements(new String(r.body(), StandardCharsets.UTF_8)));
+            // 單機依新增順序輸出；合併時依日期，同日保留各 shard 內的順序
+            MiniHttpServer.TasksHandler.sendJson(ex, 200, mergeArrays(parts, f -> f.get("date"),
+                    Comparator.nullsLast(Comparator.<String>naturalOrder()), Integer.MAX_VALUE));
+            return;
+        }
+        if (method.equals("POST")) {
+            createWithId(ex);
+            return;
+        }
+        if (method.equals("DELETE")) {
+            String form = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String id = formValue(form, "id");
+            if (id == null) { MiniHttpServer.TasksHandler.sendJson(ex, 200, "{\"ok\":true}"); return; }
+            String owner = ring.ownerOf(id);
+            relay(ex, send(owner, request(ex, owner, pathAndQuery(ex)).method("DELETE", HttpRequest.BodyPublishers.ofString(form)).build()));
+            return;
+        }
+        ex.sendResponseHeaders(405, -1);
+    }
+
+    // ---- /ics ----
+
+    private void handleIcs(HttpExchange ex) throws IOException {
+        if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) { ex.sendResponseHeaders(405, -1); return; }
+        String[] tags = splitEtag(ex.getRequestHeaders().getFirst("If-None-Match"));
+        List<HttpResponse<byte[]>> responses = scatter(ex, pathAndQuery(ex), tags);
+        List<String> names = new ArrayList<>(shards.keySet());
+        boolean allNotModified = true;
+        for (int i = 0; i < responses.size(); i++) {
+            int code = responses.get(i).statusCode();
+            if (code != 200 && code != 304) { relay(ex, responses.get(i)); return; }
+            if (code != 304) allNotModified = false;
+        }
+        if (!allNotModified) {
+            // 部分 shard 未變：這些 shard 需要重新取內容才能組出完整的日曆
+            for (int i = 0; i < responses.size(); i++) {
+                if (responses.get(i).statusCode() != 304) continue;
+                String shard = names.get(i);
+                responses.set(i, send(shard, request(ex, shard, pathAndQuery(ex)).GET().build()));
+                if (responses.get(i).statusCode() != 200) { relay(ex, responses.get(i)); return; }
+            }
+        }
+        StringBuilder etag = new StringBuilder("\"");
+        for (int i = 0; i < responses.size(); i++) {
+            String t = responses.get(i).headers().firstValue("ETag").orElse("");
+            if (i > 0) etag.append(';');
+            etag.append(t.replace("\"", ""));
+        }
+        etag.append('"');
+        ex.getResponseHeaders().set("ETag", etag.toString());
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        if (allNotModified) {
+            ex.sendResponseHeaders(304, -1);
+            ex.close();
+            return;
+        }
+        // 各 shard 的內容是同樣的 VCALENDAR 標頭 + VEVENT + 結尾，取第一份的標頭，接上所有事件
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < responses.size(); i++) {
+            String body = new String(responses.get(i).body(), StandardCharsets.UTF_8);
+            int end = body.lastIndexOf("END:VCALENDAR");
+            if (end < 0) end = body.length();
+            int start = body.indexOf("\r\nBEGIN:", 1);
+            start = start < 0 || start > end ? end : start + 2;
+            if (i == 0) sb.append(body, 0, start);
+            sb.append(body, start, end);
+        }
+        sb.append("END:VCALENDAR\r\n");
+        byte[] out = sb.toString().getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/calendar; charset=utf-8");
+        ex.getResponseHeaders().set("Content-Disposition", "attachment; filename=tasks.ics");
+        ex.sendResponseHeaders(200, out.length);
+        try (OutputStream os = ex.getResponseBody()) { os.write(out); }
+    }
+
+    // 組合 ETag 拆回各 shard 的 ETag；數量不符（shard 增減）時視為沒有條件
+    private String[] splitEtag(String inm) {
+        if (inm == null) return null;
+        String v = inm.trim();
+        if (v.startsWith("W/")) v = v.substring(2);
+        if (v.length() < 2 || !v.startsWith("\"") || !v.endsWith("\"")) return null;
+        String[] parts = v.substring(1, v.length() - 1).split(";", -1);
+        if (parts.length != shards.size()) return null;
+        for (int i = 0; i < parts.length; i++) parts[i] = "\"" + parts[i] + "\"";
+        return parts;
+    }
+
+    // ---- 轉送 ----
+
+    private void forward(HttpExchange ex, String shard) throws IOException {
+        byte[] body = ex.getRequestBody().readAllBytes();
+        HttpRequest.Builder b = request(ex, shard, pathAndQuery(ex));
+        String inm = ex.getRequestHeaders().getFirst("If-None-Match");
+        if (inm != null) b.header("If-None-Match", inm);
+        b.method(ex.getRequestMethod(), body.length == 0 ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body));
+        relay(ex, send(shard, b.build()));
+    }
+
+    private HttpRequest.Builder request(HttpExchange ex, String shard, String pathAndQuery) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(shards.get(shard) + pathAndQuery)).timeout(TIMEOUT);
+        for (String h : FORWARDED_HEADERS) {
+            String v = ex.getRequestHeaders().getFirst(h);
+            if (v != null) b.header(h, v);
+        }
+        return b;
+    }
+
+    private HttpResponse<byte[]> send(String shard, HttpRequest req) throws IOException {
+        return join(shard, client.sendAsync(req, HttpResponse.BodyHandlers.ofByteArray()));
+    }
+
+    // 同一個請求並行送往所有 shard（ifNoneMatch 為各 shard 的條件 ETag，可為 null），依設定順序回傳
+    private List<HttpResponse<byte[]>> scatter(HttpExchange ex, String pathAndQuery, String[] ifNoneMatch) throws IOException {
+        List<String> names = new ArrayList<>(shards.keySet());
+        List<CompletableFuture<HttpResponse<byte[]>>> futures = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            HttpRequest.Builder b = request(ex, names.get(i), pathAndQuery);
+            if (ifNoneMatch != null) b.header("If-None-Match", ifNoneMatch[i]);
+            futures.add(client.sendAsync(b.GET().build(), HttpResponse.BodyHandlers.ofByteArray()));
+        }
+        List<HttpResponse<byte[]>> out = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) out.add(join(names.get(i), futures.get(i)));
+        return out;
+    }
+
+    private static HttpResponse<byte[]> join(String shard, CompletableFuture<HttpResponse<byte[]>> f) throws ShardUnavailableException {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            throw new ShardUnavailableException(shard, e.getCause());
+        }
+    }
+
+    private static HttpResponse<byte[]> firstNotOk(List<HttpResponse<byte[]>> responses) {
+        for (HttpResponse<byte[]> r : responses) {
+            if (r.statusCode() != 200) return r;
+        }
+        return null;
+    }
+
+    private static void relay(HttpExchange ex, HttpResponse<byte[]> r) throws IOException {
+        for (String h : RELAYED_HEADERS) {
+            r.headers().firstValue(h).ifPresent(v -> ex.getResponseHeaders().set(h, v));
+        }
+        byte[] body = r.body();
+        if (body.length == 0) {
+            ex.sendResponseHeaders(r.statusCode(), -1);
+            ex.close();
+            return;
+        }
+        ex.sendResponseHeaders(r.statusCode(), body.length);
+        try (OutputStream os = ex.getResponseBody()) { os.write(body); }
+    }
+
+    private static String pathAndQuery(HttpExchange ex) {
+        URI u = ex.getRequestURI();
+        return u.getRawPath() + (u.getRawQuery() == null ? "" : "?" + u.getRawQuery());
+    }
+
+    private static String formValue(String form, String key) {
+        for (String pair : form.split("&")) {
+            int i = pair.indexOf('=');
+            String k = URLDecoder.decode(i >= 0 ? pair.substring(0, i) : pair, StandardCharsets.UTF_8);
+            if (k.equals(key)) return i >= 0 ? URLDecoder.decode(pair.substring(i + 1), StandardCharsets.UTF_8) : "";
+        }
+        return null;
+    }
+
+    private static int intOr(String s) {
+        try { return s == null ? 0 : Integer.parseInt(s); } catch (NumberFormatException e) { return 0; }
+    }
+
+    // 內容行的屬性名稱（大寫，不含參數）
+    private static String propertyName(String line) {
+        int colon = valueSeparator(line);
+        if (colon < 0) return "";
+        String nameAndParams = line.substring(0, colon);
+        int semi = nameAndParams.indexOf(';');
+        return (semi < 0 ? nameAndParams : nameAndParams.substring(0, semi)).toUpperCase(Locale.ROOT);
+    }
+
+    // 名稱/參數與值之間的冒號；參數值可用雙引號包住冒號
+    private static int valueSeparator(String line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') quoted = !quoted;
+            else if (c == ':' && !quoted) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * k 路合併各 shard 已排序的 JSON 陣列。相鄰且 id 相同的元素（重覆任務的各次出現）視為一組一起移動；
+     * 排序鍵相同時先取設定順序在前的 shard，組內與 shard 內的順序不變。
+     */
+    private static <K> String mergeArrays(List<List<String>> parts, Function<Map<String, String>, K> keyOf,
+                                          Comparator<K> order, int limit) {
+        List<List<Group<K>>> groups = new ArrayList<>();
+        for (List<String> part : parts) {
+            List<Group<K>> gs = new ArrayList<>();
+            Group<K> cur = null;
+            for (String obj : part) {
+                Map<String, String> f = Json.fields(obj);
+                String id = f.get("id");
+                if (cur == null || id == null || !id.equals(cur.id)) {
+                    cur = new Group<>(id, keyOf.apply(f));
+                    gs.add(cur);
+                }
+                cur.items.add(obj);
+            }
+            groups.add(gs);
+        }
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> {
+            int c = order.compare(groups.get(a[0]).get(a[1]).key, groups.get(b[0]).get(b[1]).key);
+            return c != 0 ? c : Integer.compare(a[0], b[0]);
+        });
+        for (int i = 0; i < groups.size(); i++) {
+            if (!groups.get(i).isEmpty()) heads.add(new int[]{i, 0});
+        }
+        StringBuilder sb = new StringBuilder("[");
+        int emitted = 0;
+        while (!heads.isEmpty() && emitted < limit) {
+            int[] h = heads.poll();
+            for (String obj : groups.get(h[0]).get(h[1]).items) {
+                if (emitted > 0) sb.append(',');
+                sb.append(obj);
+                emitted++;
+            }
+            if (++h[1] < groups.get(h[0]).size()) heads.add(h);
+        }
+        return sb.append(']').toString();
+    }
+
+    private static final class Group<K> {
+        final String id;
+        final K key;
+        final List<String> items = new ArrayList<>(1);
+        Group(String id, K key) { this.id = id; this.key = key; }
+    }
+
+    private static final class ShardUnavailableException extends IOException {
+        private static final long serialVersionUID = 1L;
+        final String shard;
+        ShardUnavailableException(String shard, Throwable cause) {
+            super("shard " + shard + " unavailable", cause);
+            this.shard = shard;
+        }
+    }
+
+    /** 只處理各 shard 回應格式所需的最小 JSON 讀取：拆陣列元素、讀物件的頂層欄位。 */
+    static final class Json {
+        private Json() {}
+
+        /** 陣列的頂層元素（原始 JSON 字串）。 */
+        static List<String> elements(String array) {
+            List<String> out = new ArrayList<>();
+            int i = skipWs(array, 0);
+            if (i >= array.length() || array.charAt(i) != '[') return out;
+            i = skipWs(array, i + 1);
+            while (i < array.length() && array.charAt(i) != ']') {
+                int end = valueEnd(array, i);
+                out.add(array.substring(i, end));
+                i = skipWs(array, end);
+                if (i < array.length() && array.charAt(i) == ',') i = skipWs(array, i + 1);
+            }
+            return out;
+        }
+
+        /** 物件的頂層欄位：字串值已還原跳脫字元，其餘（數字、陣列、物件、null）為原始 JSON。 */
+        static Map<String, String> fields(String object) {
+            Map<String, String> out = new LinkedHashMap<>();
+            int i = skipWs(object, 0);
+            if (i >= object.length() || object.charAt(i) != '{') return out;
+            i = skipWs(object, i + 1);
+            while (i < object.length() && object.charAt(i) == '"') {
+                int keyEnd = valueEnd(object, i);
+                String key = unescape(object, i + 1, keyEnd - 1);
+                i = skipWs(object, keyEnd);
+                if (i >= object.length() || object.charAt(i) != ':') break;
+                i = skipWs(object, i + 1);
+                int end = valueEnd(object, i);
+                out.put(key, object.charAt(i) == '"' ? unescape(object, i + 1, end - 1) : object.substring(i, end));
+                i = skipWs(object, end);
+                if (i < object.length() && object.charAt(i) == ',') i = skipWs(object, i + 1);
+            }
+            return out;
+        }
+
+        // 任務 JSON 中排序需要的欄位還原成 Task（其餘欄位不讀）
+        static Task taskKey(Map<String, String> f) {
+            Task t = new Task();
+            t.setId(f.get("id"));
+            try { t.setPriority(TaskPriority.valueOf(f.get("priority"))); } catch (RuntimeException ignored) {}
+            try { t.setStatus(TaskStatus.valueOf(f.get("status"))); } catch (RuntimeException ignored) {}
+            t.setDueDateTime(dateTime(f.get("dueDateTime")));
+            t.setCreatedAt(dateTime(f.get("createdAt")));
+            t.setEstimatedMinutes(intOr(f.get("estimatedMinutes")));
+            String sort = f.get("sortOrder");
+            t.setSortOrder(sort == null || sort.equals("null") ? null : intOr(sort));
+            return t;
+        }
+
+        private static LocalDateTime dateTime(String s) {
+            if (s == null || s.isEmpty()) return null;
+            try { return LocalDateTime.parse(s, DATE_TIME_FMT); } catch (RuntimeException e) { return null; }
+        }
+
+        private static int skipWs(String s, int i) {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+            return i;
+        }
+
+        // 從 i 開始的一個值的結束位置（不含）
+        private static int valueEnd(String s, int i) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                for (int j = i + 1; j < s.length(); j++) {
+                    char d = s.charAt(j);
+                    if (d == '\\') j++;
+                    else if (d == '"') return j + 1;
+                }
+                return s.length();
+            }
+            if (c == '{' || c == '[') {
+                int depth = 0;
+                for (int j = i; j < s.length(); j++) {
+                    char d = s.charAt(j);
+                    if (d == '"') j = valueEnd(s, j) - 1;
+                    else if (d == '{' || d == '[') depth++;
+                    else if ((d == '}' || d == ']') && --depth == 0) return j + 1;
+                }
+                return s.length();
+            }
+            int j = i;
+            while (j < s.length() && ",}] \t\r\n".indexOf(s.charAt(j)) < 0) j++;
+            return j;
+        }
+
+        private static String unescape(String s, int from, int to) {
+            StringBuilder sb = new StringBuilder(to - from);
+            for (int i = from; i < to; i++) {
+                char c = s.charAt(i);
+                if (c != '\\' || i + 1 >= to) { sb.append(c); continue; }
+                char e = s.charAt(++i);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (i + 4 < to) {
+                            sb.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16));
+                            i += 4;
+                        }
+                        break;
+                    default: sb.append(e);
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
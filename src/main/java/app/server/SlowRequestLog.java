@@ -0,0 +1,91 @@
+package app.server;
+
+import app.util.RequestTrace;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 慢請求記錄：總時間超過門檻的請求以一行 JSON 寫入 {@code data/logs/slow-requests.log}
+ * （1 MB 輪替、保留 5 份），含各階段的毫秒數，方便用 jq 彙總。
+ * id 取自請求的 X-Request-Id；未帶時在寫記錄時以「程序啟動時間-序號」產生，未超過門檻的請求不產生。
+ * <p>
+ * 系統屬性：{@code http.slowMillis}（預設 500，0 以下關閉）。
+ */
+class SlowRequestLog {
+    private static final long MAX_BYTES = 1024 * 1024;
+    private static final int KEEP = 5;
+
+    private final Path file;
+    private final long thresholdNanos;
+    private final String idPrefix = Long.toHexString(System.currentTimeMillis() & 0xFFFFFF) + "-";
+    private final AtomicLong seq = new AtomicLong();
+
+    SlowRequestLog(Path file, long thresholdMillis) {
+        this.file = file;
+        this.thresholdNanos = thresholdMillis <= 0 ? Long.MAX_VALUE : thresholdMillis * 1_000_000;
+    }
+
+    static SlowRequestLog fromSystemProperties() {
+        return new SlowRequestLog(Path.of("data", "logs", "slow-requests.log"), Long.getLong("http.slowMillis", 500));
+    }
+
+    boolean isSlow(RequestTrace trace) {
+        return trace.totalNanos() >= thresholdNanos;
+    }
+
+    void record(String requestId, String method, String uri, String route, int status, RequestTrace trace) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"time\":\"").append(LocalDateTime.now()).append('"')
+          .append(",\"requestId\":\"").append(MiniHttpServer.JsonUtil.escape(requestId != null ? requestId : idPrefix + Long.toHexString(seq.incrementAndGet()))).append('"')
+          .append(",\"method\":\"").append(MiniHttpServer.JsonUtil.escape(method)).append('"')
+          .append(",\"route\":\"").append(MiniHttpServer.JsonUtil.escape(route)).append('"')
+          .append(",\"uri\":\"").append(MiniHttpServer.JsonUtil.escape(uri)).append('"')
+          .append(",\"status\":").append(status)
+          .append(",\"totalMs\":").append(millis(trace.totalNanos()))
+          .append(",\"stagesMs\":{");
+        for (RequestTrace.Stage s : RequestTrace.Stage.values()) {
+            sb.append('"').append(s.label).append("\":").append(millis(trace.stageNanos(s))).append(',');
+        }
+        sb.append("\"other\":").append(millis(trace.otherNanos())).append("}}");
+        append(sb.toString());
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private synchronized void append(String line) {
+        try {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            if (Files.exists(file) && Files.size(file) >= MAX_BYTES) roll();
+            try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                w.write(line);
+                w.newLine();
+            }
+        } catch (IOException e) {
+            System.err.println("[slow-log] write failed: " + e);
+        }
+    }
+
+    private void roll() throws IOException {
+        Files.deleteIfExists(sibling(KEEP));
+        for (int i = KEEP - 1; i >= 1; i--) {
+            if (Files.exists(sibling(i))) Files.move(sibling(i), sibling(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(file, sibling(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path sibling(int i) {
+        return file.resolveSibling(file.getFileName() + "." + i);
+    }
+}
@@ -0,0 +1,255 @@
+package app.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * public/ 靜態檔的記憶體快取。啟動時載入全部檔案，每個檔案預先算好內容雜湊（ETag）、Content-Type、
+ * Cache-Control，文字類檔案另存 gzip 版本（壓縮後較小才保留）；超過 {@link #LARGE_BYTES} 的檔案只存中繼資料，
+ * 送出時由檔案直接傳。快取為不可變的 Map，更新時整份替換，讀取不需加鎖。
+ * 檔案監看（預設開啟）在檔案新增、修改、刪除時重新載入該檔，開發時改完前端即生效。
+ * <p>
+ * 系統屬性：{@code static.watch}（預設 true）、{@code static.maxAge}（非 HTML 檔的 max-age 秒數，預設 300）。
+ */
+class StaticAssetCache implements Closeable {
+    static final int LARGE_BYTES = 1 << 20;
+
+    static final class Asset {
+        final Path file;
+        final String contentType;
+        final String cacheControl;
+        final long length;
+        final String etag;
+        final byte[] bytes;     // 大檔為 null
+        final byte[] gzip;      // 不壓縮時為 null
+        final String gzipEtag;
+
+        Asset(Path file, String contentType, String cacheControl, long length, String etag, byte[] bytes, byte[] gzip) {
+            this.file = file;
+            this.contentType = contentType;
+            this.cacheControl = cacheControl;
+            this.length = length;
+            this.etag = '"' + etag + '"';
+            this.bytes = bytes;
+            this.gzip = gzip;
+            this.gzipEtag = '"' + etag + "-gz\"";
+        }
+    }
+
+    private final Path baseDir;
+    private final int maxAge;
+    private volatile Map<String, Asset> assets = Map.of();
+    private WatchService watcher;
+
+    StaticAssetCache(Path baseDir, boolean watch, int maxAge) {
+        this.baseDir = realPath(baseDir);
+        this.maxAge = maxAge;
+        reloadAll();
+        if (watch) startWatcher();
+    }
+
+    static StaticAssetCache fromSystemProperties(Path baseDir) {
+        return new StaticAssetCache(baseDir, !"false".equalsIgnoreCase(System.getProperty("static.watch")),
+                Integer.getInteger("static.maxAge", 300));
+    }
+
+    // public 可能是符號連結；以實際路徑走訪與監看
+    private static Path realPath(Path dir) {
+        try {
+            return dir.toRealPath();
+        } catch (IOException e) {
+            return dir.toAbsolutePath().normalize();
+        }
+    }
+
+    /** 以相對路徑（"app.js"、"img/logo.png"）查詢；不存在時為 null。 */
+    Asset get(String relativePath) {
+        return assets.get(relativePath);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watcher == null) return;
+        try {
+            watcher.close();
+        } catch (IOException ignored) {
+        }
+        watcher = null;
+    }
+
+    private synchronized void reloadAll() {
+        Map<String, Asset> map = new HashMap<>();
+        if (Files.isDirectory(baseDir)) {
+            try (Stream<Path> files = Files.walk(baseDir)) {
+                for (Path f : (Iterable<Path>) files::iterator) {
+                    if (!Files.isRegularFile(f)) continue;
+                    Asset a = load(f);
+                    if (a != null) map.put(keyOf(f), a);
+                }
+            } catch (IOException e) {
+                System.err.println("[static] load " + baseDir + " failed: " + e);
+            }
+        }
+        assets = Map.copyOf(map);
+    }
+
+    private synchronized void reload(Path f) {
+        Map<String, Asset> map = new HashMap<>(assets);
+        Asset a = Files.isRegularFile(f) ? load(f) : null;
+        if (a != null) map.put(keyOf(f), a);
+        else map.remove(keyOf(f));
+        assets = Map.copyOf(map);
+    }
+
+    private String keyOf(Path f) {
+        return baseDir.relativize(f).toString().replace('\\', '/');
+    }
+
+    private Asset load(Path f) {
+        try {
+            long size = Files.size(f);
+            String type = contentType(f);
+            String cache = cacheControl(f);
+            if (size > LARGE_BYTES) {
+                MessageDigest md = sha256();
+                try (InputStream in = Files.newInputStream(f)) {
+                    byte[] buf = new byte[64 * 1024];
+                    for (int n; (n = in.read(buf)) > 0; ) md.update(buf, 0, n);
+                }
+                return new Asset(f, type, cache, size, hex(md.digest()), null, null);
+            }
+            byte[] bytes = Files.readAllBytes(f);
+            byte[] gzip = compressible(type) ? gzip(bytes) : null;
+            if (gzip != null && gzip.length >= bytes.length) gzip = null;
+            return new Asset(f, type, cache, bytes.length, hex(sha256().digest(bytes)), bytes, gzip);
+        } catch (NoSuchFileException e) {
+            return null; // 監看事件與刪除競爭
+        } catch (IOException e) {
+            System.err.println("[static] load " + f + " failed: " + e);
+            return null;
+        }
+    }
+
+    private void startWatcher() {
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            if (Files.isDirectory(baseDir)) registerTree(baseDir);
+        } catch (IOException e) {
+            System.err.println("[static] watch " + baseDir + " failed: " + e);
+            return;
+        }
+        WatchService ws = watcher;
+        Thread t = new Thread(() -> watchLoop(ws), "static-watch");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void registerTree(Path dir) throws IOException {
+        try (Stream<Path> dirs = Files.walk(dir)) {
+            for (Path d : (Iterable<Path>) dirs::iterator) {
+                if (Files.isDirectory(d)) {
+                    d.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                            StandardWatchEventKinds.ENTRY_DELETE);
+                }
+            }
+        }
+    }
+
+    private void watchLoop(WatchService ws) {
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> ev : key.pollEvents()) {
+                    if (ev.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        reloadAll();
+                        continue;
+                    }
+                    Path f = dir.resolve((Path) ev.context());
+                    if (Files.isDirectory(f)) {
+                        synchronized (this) {
+                            if (watcher != null) registerTree(f);
+                        }
+                        reloadAll();
+                    } else if (ev.kind() == StandardWatchEventKinds.ENTRY_DELETE && !assets.containsKey(keyOf(f))) {
+                        reloadAll(); // 刪除的是目錄
+                    } else {
+                        reload(f);
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 關閉
+        } catch (IOException e) {
+            System.err.println("[static] watch " + baseDir + " failed: " + e);
+        }
+    }
+
+    private String cacheControl(Path f) {
+        String name = f.getFileName().toString().toLowerCase(Locale.ROOT);
+        // 頁面、service worker 與 manifest 沒有版本化的檔名，每次都以 ETag 驗證
+        if (name.endsWith(".html") || name.equals("sw.js") || name.endsWith(".webmanifest")) return "no-cache";
+        return "public, max-age=" + maxAge;
+    }
+
+    static String contentType(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".html")) return "text/html; charset=utf-8";
+        if (name.endsWith(".css")) return "text/css; charset=utf-8";
+        if (name.endsWith(".js")) return "application/javascript; charset=utf-8";
+        if (name.endsWith(".json")) return "application/json; charset=utf-8";
+        if (name.endsWith(".webmanifest")) return "application/manifest+json; charset=utf-8";
+        if (name.endsWith(".svg")) return "image/svg+xml";
+        if (name.endsWith(".png")) return "image/png";
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) return "image/jpeg";
+        if (name.endsWith(".ico")) return "image/x-icon";
+        return "application/octet-stream";
+    }
+
+    private static boolean compressible(String type) {
+        return type.startsWith("text/") || type.startsWith("application/javascript") || type.startsWith("application/json")
+                || type.startsWith("application/manifest+json") || type.startsWith("image/svg+xml");
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 取前 16 bytes 即足以區分版本
+    private static String hex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(32);
+        for (int i = 0; i < 16; i++) sb.append(Character.forDigit(digest[i] >> 4 & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package app.service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定期把舊的已完成/已取消任務移入封存層（啟動後一分鐘執行一次，之後每 6 小時）。
+ * 保留天數由 {@code tasks.archiveAfterDays} 設定。
+ */
+public class ArchiveService {
+    private final TaskService taskService;
+    private final int afterDays;
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean started = false;
+
+    public ArchiveService(TaskService taskService, int afterDays) {
+        this.taskService = taskService;
+        this.afterDays = afterDays;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "archive-thread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public synchronized void start() {
+        if (started) return;
+        started = true;
+        scheduler.scheduleWithFixedDelay(this::runOnce, 1, 6 * 60, TimeUnit.MINUTES);
+    }
+
+    public synchronized void stop() {
+        if (!started) return;
+        scheduler.shutdownNow();
+        started = false;
+    }
+
+    /** 立即封存一次，回傳移出熱資料的筆數。 */
+    public int runOnce() {
+        try {
+            return taskService.archiveOlderThan(LocalDateTime.now().minusDays(afterDays));
+        } catch (RuntimeException e) {
+            System.err.println("[archive] run failed: " + e);
+            return 0;
+        }
+    }
+}
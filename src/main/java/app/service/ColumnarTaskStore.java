@@ -0,0 +1,289 @@
+package app.service;
+
+import app.model.Task;
+import app.model.TaskStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 任務集合的欄式鏡像，供彙總與篩選掃描使用。每個欄位是一個基本型別陣列：
+ * 狀態/優先順序存序數、截止/建立/完成時間存 epoch 分鐘、預估/實際分鐘存 int，
+ * 掃描時只讀取需要的欄位，迴圈內不配置物件；命中的列才透過 rows 取回任務。
+ * <p>
+ * 以 {@link TaskListener} 與列式儲存同步：更新就地覆寫同一列，刪除只標記，
+ * 累積過多時依原順序壓縮，因此列的順序與儲存庫的插入順序一致。
+ * 時間以分鐘為精度（與 CSV 保存的精度相同）。讀寫以讀寫鎖保護。
+ */
+public class ColumnarTaskStore implements TaskListener {
+    /** 無值（截止/建立/完成時間、實際分鐘）。 */
+    private static final long NONE = Long.MIN_VALUE;
+    private static final int NONE_INT = Integer.MIN_VALUE;
+    private static final byte DEAD = -1;
+    private static final int MIN_COMPACT_DEAD = 1024;
+    private static final int ACTIVE = (1 << TaskStatus.PENDING.ordinal()) | (1 << TaskStatus.IN_PROGRESS.ordinal());
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private Task[] rows = new Task[1024];
+    private byte[] status = new byte[1024];
+    private byte[] priority = new byte[1024];   // 序數 + 1；0 表示未設定
+    private boolean[] recurring = new boolean[1024];
+    private long[] due = new long[1024];
+    private long[] created = new long[1024];
+    private long[] completed = new long[1024];
+    private int[] estimated = new int[1024];
+    private int[] actual = new int[1024];
+    private int size;
+    private int dead;
+
+    @Override
+    public void onTaskSaved(Task task) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(task.getId());
+            int i;
+            if (slot != null) {
+                i = slot;
+            } else {
+                if (size == rows.length) grow(size * 2);
+                i = size++;
+                slots.put(task.getId(), i);
+            }
+            write(i, task);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onTaskDeleted(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(id);
+            if (slot == null) return;
+            status[slot] = DEAD;
+            rows[slot] = null;
+            dead++;
+            if (dead >= MIN_COMPACT_DEAD && dead > slots.size()) compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 狀態遮罩：各狀態序數對應的位元；-1 表示全部。 */
+    public static int statusMask(TaskStatus s) {
+        return s == null ? -1 : 1 << s.ordinal();
+    }
+
+    public static int activeMask() {
+        return ACTIVE;
+    }
+
+    /**
+     * 依狀態/優先順序篩選（priority 為 -1 表示不限，否則為序數），extra 只對命中的列檢查；
+     * 結果依建立時間穩定排序（未設定者排最後，同時間保留儲存順序）。
+     */
+    public List<Task> select(int statusMask, int priorityOrdinal, Predicate<Task> extra) {
+        lock.readLock().lock();
+        try {
+            int wantPriority = priorityOrdinal < 0 ? -1 : priorityOrdinal + 1;
+            int[] hits = new int[Math.min(size, 1024)];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                int s = status[i];
+                if (s == DEAD || (statusMask & (1 << s)) == 0) continue;
+                if (wantPriority >= 0 && priority[i] != wantPriority) continue;
+                if (extra != null && !extra.test(rows[i])) continue;
+                if (n == hits.length) hits = Arrays.copyOf(hits, n * 2);
+                hits[n++] = i;
+            }
+            // 以 (建立時間, 命中序) 打包成 long 排序：不需比較器，也自然是穩定排序
+            long[] keys = new long[n];
+            for (int j = 0; j < n; j++) {
+                long c = created[hits[j]];
+                long k = c == NONE ? 0xFFFFFFFFL : (Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE - 1, c)) - Integer.MIN_VALUE);
+                keys[j] = (k << 32) | j;
+            }
+            Arrays.sort(keys);
+            List<Task> out = new ArrayList<>(n);
+            for (int j = 0; j < n; j++) out.add(rows[hits[(int) keys[j]]]);
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 狀態符合的任務，依儲存順序。 */
+    public List<Task> byStatus(int statusMask) {
+        lock.readLock().lock();
+        try {
+            List<Task> out = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                int s = status[i];
+                if (s != DEAD && (statusMask & (1 << s)) != 0) out.add(rows[i]);
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 狀態符合且截止時間在 [from, to) 的任務，依儲存順序；from/to 為 null 表示不設界。 */
+    public List<Task> dueBetween(int statusMask, LocalDateTime from, LocalDateTime to) {
+        long lo = from == null ? NONE + 1 : ceilMinutes(from);
+        long hi = to == null ? Long.MAX_VALUE : ceilMinutes(to);
+        lock.readLock().lock();
+        try {
+            List<Task> out = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                int s = status[i];
+                if (s == DEAD || (statusMask & (1 << s)) == 0) continue;
+                long d = due[i];
+                if (d >= lo && d < hi) out.add(rows[i]);
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 區間 [start, end] 內可能有出現的任務（依儲存順序）：非重覆任務的截止日在區間內，
+     * 或重覆任務的起始不晚於區間結束。實際展開仍交給 {@link RecurrenceService}。
+     */
+    public List<Task> candidatesForRange(LocalDate start, LocalDate end) {
+        long lo = minutes(start.atStartOfDay());
+        long hi = minutes(end.plusDays(1).atStartOfDay());
+        lock.readLock().lock();
+        try {
+            List<Task> out = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (status[i] == DEAD) continue;
+                long d = due[i];
+                if (d == NONE || d >= hi) continue;
+                if (recurring[i] || d >= lo) out.add(rows[i]);
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 與 {@link StatsService#snapshot()} 相同定義的彙總，單次掃描欄位陣列；完成耗時以分鐘精度計算。 */
+    public StatsService.Snapshot aggregate(LocalDateTime now) {
+        long nowMin = ceilMinutes(now);
+        long[] byStatus = new long[TaskStatus.values().length];
+        long estimatedSum = 0, completionMinutes = 0, completedWithDuration = 0, overdue = 0;
+        int completedOrdinal = TaskStatus.COMPLETED.ordinal();
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                int s = status[i];
+                if (s == DEAD) continue;
+                byStatus[s]++;
+                estimatedSum += estimated[i];
+                if (s == completedOrdinal && created[i] != NONE && completed[i] != NONE) {
+                    completionMinutes += completed[i] - created[i];
+                    completedWithDuration++;
+                }
+                if ((ACTIVE & (1 << s)) != 0 && due[i] != NONE && due[i] < nowMin) overdue++;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new StatsService.Snapshot(byStatus, estimatedSum, completionMinutes * 60, completedWithDuration, overdue);
+    }
+
+    /** 實際分鐘的總和與筆數（未填者不計）。 */
+    public long[] actualMinutesSumAndCount() {
+        lock.readLock().lock();
+        try {
+            long sum = 0, count = 0;
+            for (int i = 0; i < size; i++) {
+                if (status[i] == DEAD || actual[i] == NONE_INT) continue;
+                sum += actual[i];
+                count++;
+            }
+            return new long[] {sum, count};
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(int i, Task t) {
+        rows[i] = t;
+        status[i] = (byte) (t.getStatus() == null ? TaskStatus.PENDING : t.getStatus()).ordinal();
+        priority[i] = (byte) (t.getPriority() == null ? 0 : t.getPriority().ordinal() + 1);
+        recurring[i] = RecurrenceService.ruleOf(t) != RecurrenceService.Rule.NONE;
+        due[i] = minutes(t.getDueDateTime());
+        created[i] = minutes(t.getCreatedAt());
+        completed[i] = minutes(t.getCompletedAt());
+        estimated[i] = t.getEstimatedMinutes();
+        actual[i] = t.getActualMinutes() == null ? NONE_INT : t.getActualMinutes();
+    }
+
+    private static long minutes(LocalDateTime dt) {
+        return dt == null ? NONE : Math.floorDiv(dt.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    // 以分鐘精度的時間 d 滿足 d < t 等價於 d < ceil(t)
+    private static long ceilMinutes(LocalDateTime dt) {
+        long sec = dt.toEpochSecond(ZoneOffset.UTC);
+        return Math.floorDiv(sec, 60) + (Math.floorMod(sec, 60) != 0 || dt.getNano() != 0 ? 1 : 0);
+    }
+
+    private void grow(int capacity) {
+        rows = Arrays.copyOf(rows, capacity);
+        status = Arrays.copyOf(status, capacity);
+        priority = Arrays.copyOf(priority, capacity);
+        recurring = Arrays.copyOf(recurring, capacity);
+        due = Arrays.copyOf(due, capacity);
+        created = Arrays.copyOf(created, capacity);
+        completed = Arrays.copyOf(completed, capacity);
+        estimated = Arrays.copyOf(estimated, capacity);
+        actual = Arrays.copyOf(actual, capacity);
+    }
+
+    // 移除已刪除的列並保持原順序
+    private void compact() {
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (status[i] == DEAD) continue;
+            if (n != i) {
+                rows[n] = rows[i];
+                status[n] = status[i];
+                priority[n] = priority[i];
+                recurring[n] = recurring[i];
+                due[n] = due[i];
+                created[n] = created[i];
+                completed[n] = completed[i];
+                estimated[n] = estimated[i];
+                actual[n] = actual[i];
+                slots.put(rows[n].getId(), n);
+            }
+            n++;
+        }
+        Arrays.fill(rows, n, size, null);
+        size = n;
+        dead = 0;
+        if (rows.length > 4096 && size < rows.length / 4) grow(Math.max(1024, size * 2));
+    }
+}
@@ -0,0 +1,172 @@
+package app.service;
+
+import app.model.Task;
+import app.model.TaskStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 以日期為鍵的每日彙總（建立數、完成數、預估/實際工時、逾期數），
+ * 隨任務異動增量更新，供熱力圖與生產力圖表直接讀取區間，不需下載全部任務。
+ *
+ * 逾期定義：截止於當日、且目前仍未完成已過截止時間，或完成時間晚於截止時間的任務。
+ * 封存的任務仍計入各日彙總（只是不再保留逐筆的記錄），封存不會改變過去日期的數字。
+ */
+public class DailyRollupService implements TaskListener {
+    private final TreeMap<LocalDate, Day> days = new TreeMap<>();
+    // taskId -> 該任務目前計入的貢獻
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    @Override
+    public synchronized void onTaskSaved(Task task) {
+        Entry old = entries.remove(task.getId());
+        if (old != null) apply(old, -1);
+        Entry e = new Entry(task);
+        entries.put(e.id, e);
+        apply(e, 1);
+    }
+
+    @Override
+    public synchronized void onTaskDeleted(String id) {
+        Entry old = entries.remove(id);
+        if (old != null) apply(old, -1);
+    }
+
+    /** 以封存時的版本保留貢獻；之後不再依 id 更新。 */
+    @Override
+    public synchronized void onTaskArchived(Task task) {
+        onTaskDeleted(task.getId());
+        onArchivedTaskLoaded(task);
+    }
+
+    @Override
+    public boolean coversArchive() {
+        return true;
+    }
+
+    @Override
+    public synchronized void onArchivedTaskLoaded(Task task) {
+        apply(new Entry(task), 1);
+    }
+
+    /** 回傳 [start, end] 區間內有資料的日期（稀疏），依日期排序。 */
+    public synchronized List<DayStats> range(LocalDate start, LocalDate end) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate today = now.toLocalDate();
+        int nowSecond = now.toLocalTime().toSecondOfDay();
+        List<DayStats> out = new ArrayList<>();
+        for (Map.Entry<LocalDate, Day> me : days.subMap(start, true, end, true).entrySet()) {
+            LocalDate date = me.getKey();
+            Day d = me.getValue();
+            int overdue = d.late;
+            if (date.isBefore(today)) overdue += d.openDue;
+            else if (date.equals(today) && d.openDueBySecond != null) {
+                for (int c : d.openDueBySecond.headMap(nowSecond).values()) overdue += c;
+            }
+            if (d.created == 0 && d.completed == 0 && overdue == 0) continue;
+            out.add(new DayStats(date, d.created, d.completed, d.estimatedMinutes, d.actualMinutes, overdue));
+        }
+        return out;
+    }
+
+    private void apply(Entry e, int sign) {
+        if (e.createdDate != null) day(e.createdDate).created += sign;
+        if (e.completedDate != null) {
+            Day d = day(e.completedDate);
+            d.completed += sign;
+            d.estimatedMinutes += sign * e.estimatedMinutes;
+            if (e.actualMinutes != null) d.actualMinutes += sign * e.actualMinutes;
+        }
+        if (e.due != null) {
+            Day d = day(e.due.toLocalDate());
+            if (e.late) d.late += sign;
+            if (e.open) {
+                d.openDue += sign;
+                if (d.openDueBySecond == null) d.openDueBySecond = new TreeMap<>();
+                d.openDueBySecond.merge(e.due.toLocalTime().toSecondOfDay(), sign, (a, b) -> a + b == 0 ? null : a + b);
+                if (d.openDueBySecond.isEmpty()) d.openDueBySecond = null;
+            }
+        }
+        if (e.createdDate != null) prune(e.createdDate);
+        if (e.completedDate != null) prune(e.completedDate);
+        if (e.due != null) prune(e.due.toLocalDate());
+    }
+
+    private Day day(LocalDate date) {
+        return days.computeIfAbsent(date, k -> new Day());
+    }
+
+    private void prune(LocalDate date) {
+        Day d = days.get(date);
+        if (d != null && d.isEmpty()) days.remove(date);
+    }
+
+    private static final class Day {
+        int created;
+        int completed;
+        long estimatedMinutes;
+        long actualMinutes;
+        int late;
+        int openDue;
+        TreeMap<Integer, Integer> openDueBySecond; // 只有當日需要精確到時間判斷逾期
+
+        boolean isEmpty() {
+            return created == 0 && completed == 0 && estimatedMinutes == 0 && actualMinutes == 0 && late == 0 && openDue == 0;
+        }
+    }
+
+    private static final class Entry {
+        final String id;
+        final LocalDate createdDate;
+        final LocalDate completedDate;
+        final int estimatedMinutes;
+        final Integer actualMinutes;
+        final LocalDateTime due;
+        final boolean open;
+        final boolean late;
+
+        Entry(Task t) {
+            this.id = t.getId();
+            TaskStatus status = t.getStatus() == null ? TaskStatus.PENDING : t.getStatus();
+            boolean completed = status == TaskStatus.COMPLETED && t.getCompletedAt() != null;
+            this.createdDate = t.getCreatedAt() == null ? null : t.getCreatedAt().toLocalDate();
+            this.completedDate = completed ? t.getCompletedAt().toLocalDate() : null;
+            this.estimatedMinutes = t.getEstimatedMinutes();
+            this.actualMinutes = t.getActualMinutes();
+            this.due = t.getDueDateTime();
+            this.open = status == TaskStatus.PENDING || status == TaskStatus.IN_PROGRESS;
+            this.late = completed && due != null && t.getCompletedAt().isAfter(due);
+        }
+    }
+
+    public static final class DayStats {
+        private final LocalDate date;
+        private final int created;
+        private final int completed;
+        private final long estimatedMinutes;
+        private final long actualMinutes;
+        private final int overdue;
+
+        DayStats(LocalDate date, int created, int completed, long estimatedMinutes, long actualMinutes, int overdue) {
+            this.date = date;
+            this.created = created;
+            this.completed = completed;
+            this.estimatedMinutes = estimatedMinutes;
+            this.actualMinutes = actualMinutes;
+            this.overdue = overdue;
+        }
+
+        public LocalDate getDate() { return date; }
+        public int getCreated() { return created; }
+        public int getCompleted() { return completed; }
+        public long getEstimatedMinutes() { return estimatedMinutes; }
+        public long getActualMinutes() { return actualMinutes; }
+        public int getOverdue() { return overdue; }
+    }
+}
@@ -0,0 +1,121 @@
+package app.service;
+
+import app.model.Task;
+import app.model.TaskOccurrence;
+import app.util.IcsUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ICS 訂閱內容。每個任務的 VEVENT 以 UTF-8 位元組快取，鍵為任務物件本身
+ * （copy-on-write：每次儲存都是新的物件，物件即版本），只有異動過的任務需要重新編碼；
+ * 輸出時直接把快取的位元組依序寫到回應串流。
+ * 只有仍是最後一次儲存的任務物件才會讀寫快取：列出任務後才落地的修改不會讓舊內容被快取在新版本下。
+ * 整體版本號用於 ETag，內容未變時客戶端可以 304 取回。
+ */
+public class IcsFeedService implements TaskListener {
+    private static final byte[] HEADER = "BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//SmartTasks//EN\r\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FOOTER = "END:VCALENDAR\r\n".getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_EVENTS_PER_TASK = 512;
+
+    private final AtomicLong feedVersion = new AtomicLong();
+    // taskId -> 最後一次儲存的任務物件
+    private final Map<String, Task> current = new ConcurrentHashMap<>();
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Override
+    public void onTaskSaved(Task task) {
+        current.put(task.getId(), task);
+        cache.remove(task.getId()); // 舊版本的 VEVENT 不會再用到
+        feedVersion.incrementAndGet();
+    }
+
+    @Override
+    public void onTaskDeleted(String id) {
+        current.remove(id);
+        cache.remove(id);
+        feedVersion.incrementAndGet();
+    }
+
+    /** 同一版本、同一區間的內容相同；區間預設值隨日期改變，所以也納入 ETag。 */
+    public String etag(LocalDate start, LocalDate end) {
+        return "\"" + feedVersion.get() + "-" + start + "-" + end + "\"";
+    }
+
+    public void write(List<TaskOccurrence> occurrences, OutputStream out) throws IOException {
+        out.write(HEADER);
+        for (TaskOccurrence o : occurrences) out.write(event(o));
+        out.write(FOOTER);
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    private byte[] event(TaskOccurrence o) {
+        Task t = o.getTask();
+        if (current.get(t.getId()) != t) { // 尚未登錄、已刪除（含封存），或列出後又被修改：不快取
+            misses.incrementAndGet();
+            return encode(o);
+        }
+        Cached c = cache.get(t.getId());
+        if (c == null || c.task != t) {
+            c = new Cached(t);
+            cache.put(t.getId(), c);
+        }
+        synchronized (c) {
+            byte[] b = c.events.get(o.getDueDateTime());
+            if (b != null) {
+                hits.incrementAndGet();
+                return b;
+            }
+            misses.incrementAndGet();
+            b = encode(o);
+            c.events.put(o.getDueDateTime(), b);
+            return b;
+        }
+    }
+
+    private static byte[] encode(TaskOccurrence o) {
+        Task t = o.getTask();
+        LocalDateTime end = o.getDueDateTime();
+        LocalDateTime start = end.minusMinutes(Math.max(1, t.getEstimatedMinutes()));
+        // 重覆任務每次出現各自一個 UID
+        String uid = o.isRecurring() ? t.getId() + "-" + o.getDate().toString().replace("-", "") : t.getId();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        IcsUtil.writeLine(out, "BEGIN:VEVENT");
+        IcsUtil.writeLine(out, "UID:" + uid);
+        IcsUtil.writeLine(out, "DTSTAMP:" + IcsUtil.formatUtc(t.getCreatedAt()));
+        IcsUtil.writeLine(out, "DTSTART:" + IcsUtil.format(start));
+        IcsUtil.writeLine(out, "DTEND:" + IcsUtil.format(end));
+        IcsUtil.writeLine(out, "SUMMARY:" + IcsUtil.escape(t.getTitle()));
+        IcsUtil.writeLine(out, "DESCRIPTION:" + IcsUtil.escape(t.getDescription()));
+        IcsUtil.writeLine(out, "END:VEVENT");
+        return out.toByteArray();
+    }
+
+    private static final class Cached {
+        final Task task;
+        // 出現時間 -> 編碼後的 VEVENT；日曆區間移動時舊的出現以 LRU 淘汰
+        final Map<LocalDateTime, byte[]> events = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<LocalDateTime, byte[]> eldest) {
+                return size() > MAX_EVENTS_PER_TASK;
+            }
+        };
+
+        Cached(Task task) {
+            this.task = task;
+        }
+    }
+}
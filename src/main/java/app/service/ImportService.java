@@ -0,0 +1,330 @@
+package app.service;
+
+import app.model.Task;
+import app.model.TaskPriority;
+import app.model.TaskStatus;
+import app.repo.TaskCsv;
+import app.util.CsvUtil;
+import app.util.IcsUtil;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 批次匯入 CSV 或 ICS。逐筆讀取串流、逐筆驗證，累積到 BATCH_SIZE 筆才寫入一次（儲存庫只把該批附加到檔尾），
+ * 記憶體只保留一個批次與有上限的錯誤清單，與上傳大小無關。
+ * 驗證失敗的列會略過並記錄在報告中，其餘列照常匯入；寫檔失敗時停止匯入，報告標記為 save_failed。
+ */
+public class ImportService {
+    public static final int BATCH_SIZE = 1000;
+    public static final int MAX_ERRORS = 200;
+    private static final int MAX_RECORD_CHARS = 1 << 20;
+
+    private final TaskService taskService;
+
+    public ImportService(TaskService taskService) {
+        this.taskService = taskService;
+    }
+
+    /**
+     * CSV 第一列為欄位名稱（與 tasks.csv 相同，大小寫不拘，可只提供部分欄位），title 為必填。
+     * 提供 id 時以 upsert 覆寫同 id 的任務；列號以試算表的列號計算（標題列為第 1 列）。
+     */
+    public Report importCsv(BufferedReader in) {
+        return run((report, batch) -> readCsv(in, report, batch));
+    }
+
+    /** 匯入 VEVENT 與 VTODO；列號為事件在檔案中的序號（從 1 起算）。 */
+    public Report importIcs(BufferedReader in) {
+        return run((report, batch) -> readIcs(in, report, batch));
+    }
+
+    private interface Source {
+        void read(Report report, Batch batch) throws IOException;
+    }
+
+    private Report run(Source source) {
+        Report report = new Report();
+        Batch batch = new Batch(report);
+        try {
+            source.read(report, batch);
+            batch.flush();
+        } catch (IOException e) {
+            if (report.isSaveFailed()) return report;
+            report.abort(e.getMessage());
+            try {
+                batch.flush();
+            } catch (IOException ignored) {
+                // 寫檔失敗已記在報告中
+            }
+        }
+        return report;
+    }
+
+    private void readCsv(BufferedReader in, Report report, Batch batch) throws IOException {
+        List<String> header = CsvUtil.readRecord(in, MAX_RECORD_CHARS);
+        if (header == null) return;
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim();
+            if (i == 0 && name.startsWith("\uFEFF")) name = name.substring(1);
+            index.put(name.toLowerCase(Locale.ROOT), i);
+        }
+        if (!index.containsKey("title")) {
+            report.error(1, "missing_title_column");
+            return;
+        }
+        List<String> cols;
+        int row = 1;
+        while ((cols = CsvUtil.readRecord(in, MAX_RECORD_CHARS)) != null) {
+            row++;
+            if (cols.size() == 1 && cols.get(0).trim().isEmpty()) continue;
+            report.rows++;
+            if (cols.size() > header.size()) { report.error(row, "too_many_columns"); continue; }
+            try {
+                batch.add(fromCsv(index, cols));
+            } catch (IllegalArgumentException e) {
+                report.error(row, e.getMessage());
+            }
+        }
+    }
+
+    private void readIcs(BufferedReader in, Report report, Batch batch) throws IOException {
+        Map<String, String> props = null;
+        int row = 0;
+        String line;
+        while ((line = IcsUtil.readContentLine(in, MAX_RECORD_CHARS)) != null) {
+            if (line.equalsIgnoreCase("BEGIN:VEVENT") || line.equalsIgnoreCase("BEGIN:VTODO")) {
+                props = new HashMap<>();
+                row++;
+                report.rows++;
+                continue;
+            }
+            if (props == null) continue;
+            if (line.equalsIgnoreCase("END:VEVENT") || line.equalsIgnoreCase("END:VTODO")) {
+                try {
+                    batch.add(fromIcs(props));
+                } catch (IllegalArgumentException e) {
+                    report.error(row, e.getMessage());
+                }
+                props = null;
+                continue;
+            }
+            int colon = valueSeparator(line);
+            if (colon < 0) continue;
+            String nameAndParams = line.substring(0, colon);
+            int semi = nameAndParams.indexOf(';');
+            String name = (semi < 0 ? nameAndParams : nameAndParams.substring(0, semi)).toUpperCase(Locale.ROOT);
+            props.putIfAbsent(name, line.substring(colon + 1)); // 巢狀元件（如 VALARM）的同名屬性不覆蓋事件本身
+        }
+    }
+
+    private static Task fromCsv(Map<String, Integer> index, List<String> cols) {
+        String title = col(index, cols, "title");
+        if (title == null || title.trim().isEmpty()) throw new IllegalArgumentException("missing_title");
+        Task t = newTask(col(index, cols, "id"), title.trim());
+        String v;
+        if ((v = col(index, cols, "description")) != null) t.setDescription(v);
+        if ((v = col(index, cols, "priority")) != null) t.setPriority(parseEnum(TaskPriority.class, v, "bad_priority"));
+        if ((v = col(index, cols, "duedatetime")) != null) t.setDueDateTime(parseDateTime(v, "bad_dueDateTime"));
+        if ((v = col(index, cols, "estimatedminutes")) != null) t.setEstimatedMinutes(Math.max(1, parseInt(v, "bad_estimatedMinutes")));
+        if ((v = col(index, cols, "status")) != null) t.setStatus(parseEnum(TaskStatus.class, v, "bad_status"));
+        if ((v = col(index, cols, "createdat")) != null) t.setCreatedAt(parseDateTime(v, "bad_createdAt"));
+        if ((v = col(index, cols, "completedat")) != null) t.setCompletedAt(parseDateTime(v, "bad_completedAt"));
+        if ((v = col(index, cols, "tags")) != null) t.setTags(TaskService.parseTags(v));
+        if ((v = col(index, cols, "category")) != null) t.setCategory(v);
+        if ((v = col(index, cols, "actualminutes")) != null) t.setActualMinutes(parseInt(v, "bad_actualMinutes"));
+        if ((v = col(index, cols, "reminderbeforeminutes")) != null) t.setReminderBeforeMinutes(parseInt(v, "bad_reminderBeforeMinutes"));
+        if ((v = col(index, cols, "recurrence")) != null) t.setRecurrence(TaskService.normalizeRecurrence(v));
+        if (t.getStatus() == TaskStatus.COMPLETED && t.getCompletedAt() == null) t.setCompletedAt(LocalDateTime.now());
+        return t;
+    }
+
+    private static Task fromIcs(Map<String, String> props) {
+        String summary = IcsUtil.unescape(props.get("SUMMARY"));
+        if (summary == null || summary.trim().isEmpty()) throw new IllegalArgumentException("missing_summary");
+        // 以 UID 推導固定的任務 id，重覆匯入同一份行事曆會更新而不是重複建立
+        String uid = props.get("UID");
+        String id = uid == null || uid.isEmpty() ? null : UUID.nameUUIDFromBytes(uid.getBytes(StandardCharsets.UTF_8)).toString();
+        Task t = newTask(id, summary.trim());
+        String description = IcsUtil.unescape(props.get("DESCRIPTION"));
+        if (description != null) t.setDescription(description);
+        LocalDateTime start = props.containsKey("DTSTART") ? parseIcsDate(props.get("DTSTART"), "bad_DTSTART") : null;
+        LocalDateTime end = props.containsKey("DTEND") ? parseIcsDate(props.get("DTEND"), "bad_DTEND") : null;
+        LocalDateTime due = props.containsKey("DUE") ? parseIcsDate(props.get("DUE"), "bad_DUE") : null;
+        t.setDueDateTime(due != null ? due : end != null ? end : start);
+        if (start != null && (end != null || due != null)) {
+            long minutes = Duration.between(start, end != null ? end : due).toMinutes();
+            if (minutes > 0) t.setEstimatedMinutes((int) Math.min(minutes, Integer.MAX_VALUE));
+        }
+        String categories = props.get("CATEGORIES");
+        if (categories != null) t.setTags(TaskService.parseTags(IcsUtil.unescape(categories).replace(',', ';')));
+        String rrule = props.get("RRULE");
+        if (rrule != null) {
+            for (String part : rrule.split(";")) {
+                if (part.toUpperCase(Locale.ROOT).startsWith("FREQ=")) t.setRecurrence(TaskService.normalizeRecurrence(part.substring(5)));
+            }
+        }
+        String priority = props.get("PRIORITY");
+        if (priority != null && !priority.trim().isEmpty()) {
+            int p = parseInt(priority, "bad_PRIORITY"); // RFC 5545：1 最高、9 最低、0 未定義
+            t.setPriority(p >= 1 && p <= 4 ? TaskPriority.HIGH : p >= 6 ? TaskPriority.LOW : TaskPriority.MEDIUM);
+        }
+        String status = props.get("STATUS");
+        if (status != null) {
+            switch (status.trim().toUpperCase(Locale.ROOT)) {
+                case "COMPLETED": t.setStatus(TaskStatus.COMPLETED); break;
+                case "CANCELLED": t.setStatus(TaskStatus.CANCELLED); break;
+                case "IN-PROCESS": t.setStatus(TaskStatus.IN_PROGRESS); break;
+                default: break;
+            }
+        }
+        if (t.getStatus() == TaskStatus.COMPLETED) {
+            String completed = props.get("COMPLETED");
+            t.setCompletedAt(completed != null ? parseIcsDate(completed, "bad_COMPLETED") : LocalDateTime.now());
+        }
+        return t;
+    }
+
+    private static Task newTask(String id, String title) {
+        if (id != null && !id.trim().matches("[a-zA-Z0-9\\-]+")) throw new IllegalArgumentException("bad_id");
+        Task t = new Task();
+        t.setId(id == null ? UUID.randomUUID().toString() : id.trim());
+        t.setTitle(title);
+        t.setDescription("");
+        t.setPriority(TaskPriority.MEDIUM);
+        t.setEstimatedMinutes(30);
+        t.setStatus(TaskStatus.PENDING);
+        t.setCreatedAt(LocalDateTime.now());
+        t.setTags(new ArrayList<>());
+        t.setRecurrence("NONE");
+        return t;
+    }
+
+    // 空欄視為未提供
+    private static String col(Map<String, Integer> index, List<String> cols, String name) {
+        Integer i = index.get(name);
+        if (i == null || i >= cols.size()) return null;
+        String v = cols.get(i);
+        return v.isEmpty() ? null : v;
+    }
+
+    private static int valueSeparator(String line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') quoted = !quoted;
+            else if (c == ':' && !quoted) return i;
+        }
+        return -1;
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String v, String error) {
+        try { return Enum.valueOf(type, v.trim().toUpperCase(Locale.ROOT)); } catch (IllegalArgumentException e) { throw new IllegalArgumentException(error); }
+    }
+
+    private static int parseInt(String v, String error) {
+        try { return Integer.parseInt(v.trim()); } catch (NumberFormatException e) { throw new IllegalArgumentException(error); }
+    }
+
+    // 接受 yyyy-MM-dd HH:mm（與 tasks.csv 相同）及 ISO-8601 yyyy-MM-ddTHH:mm[:ss]
+    private static LocalDateTime parseDateTime(String v, String error) {
+        String s = v.trim();
+        try {
+            return s.indexOf('T') > 0 ? LocalDateTime.parse(s) : LocalDateTime.parse(s, TaskCsv.DATE_TIME_FMT);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(error);
+        }
+    }
+
+    private static LocalDateTime parseIcsDate(String v, String error) {
+        try { return IcsUtil.parseDateTime(v); } catch (Exception e) { throw new IllegalArgumentException(error); }
+    }
+
+    private final class Batch {
+        final Report report;
+        final List<Task> pending = new ArrayList<>(BATCH_SIZE);
+
+        Batch(Report report) {
+            this.report = report;
+        }
+
+        void add(Task t) throws IOException {
+            pending.add(t);
+            if (pending.size() >= BATCH_SIZE) flush();
+        }
+
+        void flush() throws IOException {
+            if (pending.isEmpty()) return;
+            try {
+                taskService.saveAll(pending);
+            } catch (RuntimeException e) {
+                System.err.println("[import] save failed: " + e);
+                report.saveFailed();
+                throw new IOException("save_failed", e);
+            }
+            report.imported += pending.size();
+            report.batches++;
+            pending.clear();
+        }
+    }
+
+    public static final class Report {
+        private int rows;
+        private int imported;
+        private int failed;
+        private int batches;
+        private String aborted;
+        private boolean saveFailed;
+        private final List<RowError> errors = new ArrayList<>();
+
+        // 讀取中斷（連線中斷或單筆記錄過大）：已驗證的列仍會寫入
+        void abort(String reason) {
+            aborted = reason == null ? "read_failed" : reason;
+        }
+
+        // 寫檔失敗：該批與之後的列都未匯入
+        void saveFailed() {
+            aborted = "save_failed";
+            saveFailed = true;
+        }
+
+        void error(int row, String message) {
+            failed++;
+            if (errors.size() < MAX_ERRORS) errors.add(new RowError(row, message));
+        }
+
+        public int getRows() { return rows; }
+        public int getImported() { return imported; }
+        public int getFailed() { return failed; }
+        public int getBatches() { return batches; }
+        public List<RowError> getErrors() { return errors; }
+        public String getAborted() { return aborted; }
+        /** 中斷原因是伺服器端寫檔失敗（回應 500），而不是上傳內容的問題。 */
+        public boolean isSaveFailed() { return saveFailed; }
+        /** 錯誤超過 MAX_ERRORS 筆時只保留前面的明細，failed 仍是完整計數。 */
+        public boolean isErrorsTruncated() { return failed > errors.size(); }
+    }
+
+    public static final class RowError {
+        private final int row;
+        private final String error;
+
+        RowError(int row, String error) {
+            this.row = row;
+            this.error = error;
+        }
+
+        public int getRow() { return row; }
+        public String getError() { return error; }
+    }
+}
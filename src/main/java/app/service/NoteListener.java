@@ -0,0 +1,12 @@
+package app.service;
+
+import app.model.Note;
+
+/**
+ * 筆記異動通知，與 {@link TaskListener} 相同：寫入儲存庫後同步呼叫，依寫入順序逐一送達。
+ */
+public interface NoteListener {
+    void onNoteSaved(Note note);
+
+    void onNoteDeleted(String id);
+}
@@ -2,16 +2,28 @@ package app.service;
 
 import app.model.Note;
 import app.repo.NoteRepository;
+import app.repo.Snapshot;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class NoteService {
     private final NoteRepository repo;
+    private final List<NoteListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object writeLock = new Object(); // 寫入 + 通知，監聽器收到的順序即寫入順序
 
     public NoteService(NoteRepository repo) { this.repo = repo; }
 
+    /** 註冊異動監聽器，並先以現有筆記補送一次 onNoteSaved 作為初始狀態。 */
+    public void addListener(NoteListener listener) {
+        synchronized (writeLock) {
+            listeners.add(listener);
+            for (Note n : repo.snapshot().getItems()) listener.onNoteSaved(n);
+        }
+    }
+
     public List<Note> listByRange(LocalDate start, LocalDate end) { return repo.findByRange(start, end); }
 
     public Note upsert(LocalDate date, String content, String id) {
@@ -21,11 +33,26 @@ public class NoteService {
         n.setContent(content);
         n.setUpdatedAt(LocalDateTime.now());
         if (id == null) n.setCreatedAt(n.getUpdatedAt());
-        repo.upsert(n);
+        apply(n);
         return n;
     }
 
-    public void delete(String id) { repo.deleteById(id); }
+    /** 原樣寫入（複本套用主節點的異動，保留建立/更新時間）。 */
+    public void apply(Note n) {
+        synchronized (writeLock) {
+            repo.upsert(n);
+            for (NoteListener l : listeners) l.onNoteSaved(n);
+        }
+    }
+
+    public void delete(String id) {
+        synchronized (writeLock) {
+            repo.deleteById(id);
+            for (NoteListener l : listeners) l.onNoteDeleted(id);
+        }
+    }
+
+    public Snapshot<Note> snapshot() { return repo.snapshot(); }
 }
 
 
@@ -0,0 +1,220 @@
+package app.service;
+
+import app.model.OccurrenceOverride;
+import app.model.Task;
+import app.model.TaskOccurrence;
+import app.model.TaskStatus;
+import app.repo.OccurrenceRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 重覆任務展開。只針對查詢區間 [start, end] 以日期算術直接跳到區間內的第一次出現，
+ * 成本與區間內的出現次數成正比，與整個系列的長度無關。
+ * 每個任務保留最近一次展開的區間（LRU），任務被編輯或刪除時失效；
+ * 單次出現的完成狀態以覆寫記錄保存，不會把出現物化成任務。
+ */
+public class RecurrenceService implements TaskListener {
+    public enum Rule { NONE, DAILY, WEEKLY, MONTHLY }
+
+    private static final int MAX_CACHED_SERIES = 10_000;
+
+    private final OccurrenceRepository overrides;
+    // taskId -> 最近一次展開的區間
+    private final Map<String, Window> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+            return size() > MAX_CACHED_SERIES;
+        }
+    };
+
+    private final List<Consumer<OccurrenceOverride>> overrideListeners = new CopyOnWriteArrayList<>();
+
+    public RecurrenceService(OccurrenceRepository overrides) {
+        this.overrides = overrides;
+    }
+
+    /** 單次出現的覆寫記錄寫入後通知（複寫用）。 */
+    public void addOverrideListener(Consumer<OccurrenceOverride> listener) {
+        overrideListeners.add(listener);
+    }
+
+    public List<OccurrenceOverride> listOverrides() {
+        return overrides.findAll();
+    }
+
+    /** 直接寫入一筆覆寫記錄（複本套用主節點的異動）。 */
+    public void applyOverride(OccurrenceOverride o) {
+        overrides.upsert(o);
+    }
+
+    public static Rule ruleOf(Task t) {
+        String r = t.getRecurrence();
+        if (r == null || r.isEmpty()) return Rule.NONE;
+        try { return Rule.valueOf(r.toUpperCase(Locale.ROOT)); } catch (IllegalArgumentException e) { return Rule.NONE; }
+    }
+
+    @Override
+    public synchronized void onTaskSaved(Task task) {
+        cache.remove(task.getId());
+    }
+
+    @Override
+    public synchronized void onTaskArchived(Task task) {
+        cache.remove(task.getId()); // 保留單次出現的完成記錄，封存的系列在區間查詢時仍會展開
+    }
+
+    @Override
+    public synchronized void onTaskDeleted(String id) {
+        cache.remove(id);
+        overrides.deleteByTask(id);
+    }
+
+    /** 依序展開多個任務在區間內的出現；保留輸入順序，同一任務依時間排序。 */
+    public List<TaskOccurrence> expand(List<Task> tasks, LocalDate start, LocalDate end) {
+        List<TaskOccurrence> out = new ArrayList<>();
+        for (Task t : tasks) out.addAll(expand(t, start, end));
+        return out;
+    }
+
+    public List<TaskOccurrence> expand(Task t, LocalDate start, LocalDate end) {
+        LocalDateTime base = t.getDueDateTime();
+        if (base == null || end.isBefore(start)) return Collections.emptyList();
+        Rule rule = ruleOf(t);
+        if (rule == Rule.NONE) {
+            LocalDate d = base.toLocalDate();
+            if (d.isBefore(start) || d.isAfter(end)) return Collections.emptyList();
+            return List.of(new TaskOccurrence(t, base, t.getStatus(), t.getCompletedAt(), false));
+        }
+        List<LocalDateTime> instants = instants(t, rule, start, end);
+        if (instants.isEmpty()) return Collections.emptyList();
+        NavigableMap<LocalDate, OccurrenceOverride> ov = overrides.findByTask(t.getId(), start, end);
+        List<TaskOccurrence> out = new ArrayList<>(instants.size());
+        for (LocalDateTime at : instants) {
+            OccurrenceOverride o = ov.get(at.toLocalDate());
+            if (o != null) out.add(new TaskOccurrence(t, at, o.getStatus(), o.getCompletedAt(), true));
+            else out.add(new TaskOccurrence(t, at, t.getStatus(), null, true));
+        }
+        return out;
+    }
+
+    /** 判斷 date 是否為此任務的一次出現。 */
+    public boolean occursOn(Task t, LocalDate date) {
+        if (t.getDueDateTime() == null) return false;
+        Rule rule = ruleOf(t);
+        if (rule == Rule.NONE) return t.getDueDateTime().toLocalDate().equals(date);
+        return !generate(t, rule, date, date).isEmpty(); // 不經快取，避免以單日區間覆蓋日曆常用的區間
+    }
+
+    /** 將單次出現標記為完成；date 不是出現日時回傳 false。 */
+    public boolean completeOccurrence(Task t, LocalDate date) {
+        if (ruleOf(t) == Rule.NONE || !occursOn(t, date)) return false;
+        OccurrenceOverride o = new OccurrenceOverride();
+        o.setTaskId(t.getId());
+        o.setDate(date);
+        o.setStatus(TaskStatus.COMPLETED);
+        o.setCompletedAt(LocalDateTime.now());
+        overrides.upsert(o);
+        for (Consumer<OccurrenceOverride> l : overrideListeners) l.accept(o);
+        return true;
+    }
+
+    private List<LocalDateTime> instants(Task t, Rule rule, LocalDate start, LocalDate end) {
+        synchronized (this) {
+            Window w = cache.get(t.getId());
+            if (w != null && w.matches(t) && !start.isBefore(w.start) && !end.isAfter(w.end)) return w.slice(start, end);
+        }
+        List<LocalDateTime> list = generate(t, rule, start, end);
+        synchronized (this) {
+            cache.put(t.getId(), new Window(t, start, end, list));
+        }
+        return list;
+    }
+
+    private static List<LocalDateTime> generate(Task t, Rule rule, LocalDate start, LocalDate end) {
+        LocalDateTime base = t.getDueDateTime();
+        LocalDate last = end;
+        // 已完成或取消的系列在完成日之後不再產生出現
+        if ((t.getStatus() == TaskStatus.COMPLETED || t.getStatus() == TaskStatus.CANCELLED)) {
+            LocalDate stop = t.getCompletedAt() != null ? t.getCompletedAt().toLocalDate() : base.toLocalDate();
+            if (stop.isBefore(last)) last = stop;
+        }
+        List<LocalDateTime> out = new ArrayList<>();
+        long k = firstIndex(base, rule, start);
+        while (true) {
+            LocalDateTime at = nth(base, rule, k);
+            LocalDate d = at.toLocalDate();
+            if (d.isAfter(last)) break;
+            if (!d.isBefore(start)) out.add(at);
+            k++;
+        }
+        return out;
+    }
+
+    // 區間起點之前最後一個可能的序號（可能仍早於 start，由呼叫端略過）
+    private static long firstIndex(LocalDateTime base, Rule rule, LocalDate start) {
+        LocalDate b = base.toLocalDate();
+        if (!start.isAfter(b)) return 0;
+        switch (rule) {
+            case DAILY: return ChronoUnit.DAYS.between(b, start);
+            case WEEKLY: return ChronoUnit.DAYS.between(b, start) / 7;
+            case MONTHLY: default: return Math.max(0, ChronoUnit.MONTHS.between(YearMonth.from(b), YearMonth.from(start)) - 1);
+        }
+    }
+
+    private static LocalDateTime nth(LocalDateTime base, Rule rule, long k) {
+        switch (rule) {
+            case DAILY: return base.plusDays(k);
+            case WEEKLY: return base.plusWeeks(k);
+            case MONTHLY: default: return base.plusMonths(k); // 以起始日計算，月底自動調整（1/31 -> 2/28 -> 3/31）
+        }
+    }
+
+    private static final class Window {
+        // 展開時的系列參數；與目前任務不符時視為失效（防止與編輯交錯時寫入舊結果）
+        final LocalDateTime base;
+        final String recurrence;
+        final TaskStatus status;
+        final LocalDateTime completedAt;
+        final LocalDate start;
+        final LocalDate end;
+        final List<LocalDateTime> instants;
+
+        Window(Task t, LocalDate start, LocalDate end, List<LocalDateTime> instants) {
+            this.base = t.getDueDateTime();
+            this.recurrence = t.getRecurrence();
+            this.status = t.getStatus();
+            this.completedAt = t.getCompletedAt();
+            this.start = start;
+            this.end = end;
+            this.instants = instants;
+        }
+
+        boolean matches(Task t) {
+            return Objects.equals(base, t.getDueDateTime()) && Objects.equals(recurrence, t.getRecurrence())
+                    && status == t.getStatus() && Objects.equals(completedAt, t.getCompletedAt());
+        }
+
+        List<LocalDateTime> slice(LocalDate from, LocalDate to) {
+            if (from.equals(start) && to.equals(end)) return instants;
+            List<LocalDateTime> out = new ArrayList<>();
+            for (LocalDateTime at : instants) {
+                LocalDate d = at.toLocalDate();
+                if (!d.isBefore(from) && !d.isAfter(to)) out.add(at);
+            }
+            return out;
+        }
+    }
+}
@@ -2,26 +2,52 @@ package app.service;
 
 import app.model.Task;
 import app.model.TaskStatus;
+import app.notify.NotificationPipeline;
+import app.notify.ReminderEvent;
+import app.util.JfrEvents;
+import app.util.Metrics;
+import app.util.TimingWheel;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
-public class ReminderService {
-    private final TaskService taskService;
+/**
+ * 提醒排程。每個待辦/進行中且有截止時間的任務會在時間輪上排兩個時間點：
+ * 提醒時間（截止前 reminderBeforeMinutes，預設 60 分）與截止時間。
+ * 任務異動（延後、改期、完成、刪除）經由 {@link TaskListener} 即時更新排程，
+ * 背景執行緒每秒推進一次，只處理真正到期的提醒，並交給 {@link NotificationPipeline} 送出。
+ * <p>
+ * 所有使用者共用同一個時間輪與執行緒：本身即預設使用者的監聽器，其他使用者載入時以 {@link #attach} 各掛一個。
+ * 使用者被釋放後排程仍保留（每筆只有 id、標題與時間），提醒照常送出；
+ * 尚未載入的使用者可先以 {@link #preload} 依磁碟上的任務排程。
+ */
+public class ReminderService implements TaskListener {
+    private static final int DEFAULT_BEFORE_MINUTES = 60;
+    private static final Metrics.Histogram TICK_TIME = Metrics.histogram("reminder_tick_seconds", "Reminder tick duration", Metrics.LATENCY_BUCKETS);
+    private static final Metrics.Counter SCANNED = Metrics.counter("reminder_tasks_scanned_total", "Due timer entries examined by reminder ticks");
+
     private final ScheduledExecutorService scheduler;
+    private final NotificationPipeline pipeline;
+    private final TimingWheel<Fire> wheel = new TimingWheel<>(epochSecond(LocalDateTime.now()));
+    // 使用者 + taskId -> 目前排程中的提醒；任務完成、取消或刪除即移除
+    private final Map<String, Scheduled> scheduled = new HashMap<>();
+    private final Set<String> attached = new HashSet<>(); // 已掛上監聽器的使用者，之後以監聽器為準
     private volatile boolean started = false;
+    private volatile int watching; // 排程中的任務數，tick 時更新（供 /metrics 讀取，不需取鎖）
 
-    // taskId -> last category (OVERDUE or DUE_SOON)
-    private final Map<String, String> lastNotified = new HashMap<>();
-
-    public ReminderService(TaskService taskService) {
-        this.taskService = taskService;
+    public ReminderService(NotificationPipeline pipeline) {
+        this.pipeline = pipeline;
+        Metrics.gauge("reminder_scheduled_tasks", "Tasks with pending reminders", () -> watching);
         this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread t = new Thread(r, "reminder-thread");
             t.setDaemon(true);
@@ -32,7 +58,7 @@ public class ReminderService {
     public synchronized void start() {
         if (started) return;
         started = true;
-        scheduler.scheduleAtFixedRate(this::tick, 5, 30, TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(this::tick, 1, 1, TimeUnit.SECONDS);
     }
 
     public synchronized void stop() {
@@ -41,39 +67,129 @@ public class ReminderService {
         started = false;
     }
 
+    /** 預設使用者的任務異動。 */
+    @Override
+    public void onTaskSaved(Task task) {
+        saved(null, task);
+    }
+
+    @Override
+    public void onTaskDeleted(String id) {
+        deleted(null, id);
+    }
+
+    /** 使用者 tenant 的監聽器（載入該使用者時掛到其 TaskService）。 */
+    public synchronized TaskListener attach(String tenant) {
+        attached.add(tenant);
+        return new TaskListener() {
+            @Override public void onTaskSaved(Task task) { saved(tenant, task); }
+            @Override public void onTaskDeleted(String id) { deleted(tenant, id); }
+        };
+    }
+
+    /** 依磁碟上的任務為尚未載入的使用者排程；已掛上監聽器的使用者略過（監聽器的版本較新）。 */
+    public synchronized void preload(String tenant, Collection<Task> tasks) {
+        if (attached.contains(tenant)) return;
+        for (Task t : tasks) saved(tenant, t);
+    }
+
+    private synchronized void saved(String tenant, Task task) {
+        String key = key(tenant, task.getId());
+        Scheduled cur = scheduled.get(key);
+        boolean active = task.getStatus() == TaskStatus.PENDING || task.getStatus() == TaskStatus.IN_PROGRESS;
+        if (!active || task.getDueDateTime() == null) {
+            if (cur != null) unschedule(scheduled.remove(key));
+            if (!active) pipeline.forget(tenant, task.getId());
+            return;
+        }
+        int before = task.getReminderBeforeMinutes() == null ? DEFAULT_BEFORE_MINUTES : Math.max(1, task.getReminderBeforeMinutes());
+        if (cur != null && cur.due.equals(task.getDueDateTime()) && cur.beforeMinutes == before) {
+            cur.title = task.getTitle(); // 時間未變：保留原排程，避免重複提醒
+            return;
+        }
+        if (cur != null) unschedule(cur);
+        Scheduled s = new Scheduled(tenant, task.getId(), task.getTitle(), task.getDueDateTime(), before);
+        long dueSecond = epochSecond(s.due);
+        if (dueSecond > wheel.currentTick()) {
+            s.dueSoon = wheel.schedule(dueSecond - before * 60L, new Fire(s, "DUE_SOON"));
+        }
+        s.overdue = wheel.schedule(dueSecond, new Fire(s, "OVERDUE"));
+        scheduled.put(key, s);
+    }
+
+    private synchronized void deleted(String tenant, String id) {
+        Scheduled s = scheduled.remove(key(tenant, id));
+        if (s != null) unschedule(s);
+        pipeline.forget(tenant, id);
+    }
+
+    private static String key(String tenant, String id) {
+        return tenant == null ? id : tenant + "/" + id;
+    }
+
+    private void unschedule(Scheduled s) {
+        wheel.cancel(s.dueSoon);
+        wheel.cancel(s.overdue);
+    }
+
     private void tick() {
+        JfrEvents.ReminderTick event = new JfrEvents.ReminderTick();
+        event.begin();
+        long start = System.nanoTime();
+        int published = 0;
         try {
-            LocalDateTime now = LocalDateTime.now();
-            List<Task> tasks = taskService.listPendingOrInProgress();
-            for (Task t : tasks) {
-                if (t.getDueDateTime() == null) continue;
-                if (t.getStatus() == TaskStatus.COMPLETED || t.getStatus() == TaskStatus.CANCELLED) continue;
-
-                String category = null;
-                if (t.getDueDateTime().isBefore(now)) {
-                    category = "OVERDUE";
-                } else {
-                    int before = t.getReminderBeforeMinutes() == null ? 60 : Math.max(1, t.getReminderBeforeMinutes());
-                    if (!t.getDueDateTime().isAfter(now.plusMinutes(before))) {
-                        category = "DUE_SOON";
-                    }
-                }
-
-                if (category != null) {
-                    String prev = lastNotified.get(t.getId());
-                    if (!Objects.equals(prev, category)) {
-                        if ("OVERDUE".equals(category)) {
-                            System.out.printf("[提醒][逾期] 任務 %s 截止 %s 已逾期！%n", t.getTitle(), t.getDueDateTime());
-                        } else {
-                            System.out.printf("[提醒][即將到期] 任務 %s 將於 %s 截止！%n", t.getTitle(), t.getDueDateTime());
-                        }
-                        lastNotified.put(t.getId(), category);
-                    }
-                }
+            List<Fire> fired = new ArrayList<>();
+            synchronized (this) {
+                wheel.advanceTo(epochSecond(LocalDateTime.now()), fired::add);
+                watching = scheduled.size();
+            }
+            SCANNED.add(fired.size());
+            event.scanned = fired.size();
+            for (Fire f : fired) {
+                pipeline.publish(new ReminderEvent(f.task.tenant, f.task.id, f.task.title, f.category, f.task.due));
+                published++;
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[reminder] tick failed: " + e);
+        } finally {
+            TICK_TIME.observeNanos(System.nanoTime() - start);
+            if (event.shouldCommit()) {
+                event.fired = published;
+                event.scheduled = watching;
+                event.commit();
             }
-        } catch (Exception ignored) {
         }
     }
-}
 
+    private static long epochSecond(LocalDateTime t) {
+        return t.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    private static final class Scheduled {
+        final String tenant; // null 表示預設使用者
+        final String id;
+        volatile String title;
+        final LocalDateTime due;
+        final int beforeMinutes;
+        TimingWheel.Timeout<Fire> dueSoon;
+        TimingWheel.Timeout<Fire> overdue;
+
+        Scheduled(String tenant, String id, String title, LocalDateTime due, int beforeMinutes) {
+            this.tenant = tenant;
+            this.id = id;
+            this.title = title;
+            this.due = due;
+            this.beforeMinutes = beforeMinutes;
+        }
+    }
+
+    private static final class Fire {
+        final Scheduled task;
+        final String category; // OVERDUE or DUE_SOON
 
+        Fire(Scheduled task, String category) {
+            this.task = task;
+            this.category = category;
+        }
+    }
+}
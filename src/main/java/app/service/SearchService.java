@@ -0,0 +1,102 @@
+package app.service;
+
+import app.model.Note;
+import app.model.Task;
+import app.util.InvertedIndex;
+import app.util.TextTokenizer;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 任務標題/描述與筆記內容的全文檢索。隨任務與筆記異動增量更新倒排索引，
+ * 中文以相鄰兩字為詞，另外為標題建立單字索引，讓一個字的查詢也能命中標題。
+ * 標題的詞權重較高，因此標題命中的任務排在只有描述命中的前面。
+ */
+public class SearchService implements TaskListener, NoteListener {
+    private static final int TITLE_WEIGHT = 3;
+    private static final int BODY_WEIGHT = 1;
+    private static final int LABEL_MAX = 80;
+
+    private final InvertedIndex<Doc> index = new InvertedIndex<>();
+
+    @Override
+    public void onTaskSaved(Task task) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, TextTokenizer.tokenize(task.getTitle()), TITLE_WEIGHT);
+        addTerms(terms, TextTokenizer.cjkUnigrams(task.getTitle()), BODY_WEIGHT);
+        addTerms(terms, TextTokenizer.tokenize(task.getDescription()), BODY_WEIGHT);
+        LocalDate date = task.getDueDateTime() == null ? null : task.getDueDateTime().toLocalDate();
+        index.put("task:" + task.getId(), new Doc("task", task.getId(), label(task.getTitle()), date), terms);
+    }
+
+    @Override
+    public void onTaskDeleted(String id) {
+        index.remove("task:" + id);
+    }
+
+    @Override
+    public void onNoteSaved(Note note) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, TextTokenizer.tokenize(note.getContent()), BODY_WEIGHT);
+        index.put("note:" + note.getId(), new Doc("note", note.getId(), label(note.getContent()), note.getDate()), terms);
+    }
+
+    @Override
+    public void onNoteDeleted(String id) {
+        index.remove("note:" + id);
+    }
+
+    /**
+     * type 為 null 時同時搜尋任務與筆記。查詢最後一個詞以前綴比對（輸入到一半的「mee」也能找到「meeting」），
+     * 查詢以空白結尾時視為已輸完，全部以完整詞比對。
+     */
+    public InvertedIndex.Result<Doc> search(String query, String type, int offset, int limit) {
+        List<String> tokens = TextTokenizer.tokenize(query);
+        String prefix = null;
+        if (!tokens.isEmpty() && !Character.isWhitespace(query.charAt(query.length() - 1))) {
+            prefix = tokens.remove(tokens.size() - 1);
+        }
+        LinkedHashSet<String> terms = new LinkedHashSet<>(tokens);
+        if (terms.contains(prefix)) prefix = null; // 同一個詞已是完整詞條件，前綴條件多餘
+        return index.search(new ArrayList<>(terms), prefix, type == null ? null : d -> d.type.equals(type), offset, limit);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private static void addTerms(Map<String, Integer> terms, List<String> tokens, int weight) {
+        for (String t : tokens) terms.merge(t, weight, Integer::sum);
+    }
+
+    private static String label(String text) {
+        if (text == null) return "";
+        String s = text.replace('\n', ' ').trim();
+        return s.length() <= LABEL_MAX ? s : s.substring(0, LABEL_MAX) + "…";
+    }
+
+    /** 索引中的文件摘要；查詢結果不需回頭讀取儲存庫。 */
+    public static final class Doc {
+        private final String type;
+        private final String id;
+        private final String label;
+        private final LocalDate date;
+
+        Doc(String type, String id, String label, LocalDate date) {
+            this.type = type;
+            this.id = id;
+            this.label = label;
+            this.date = date;
+        }
+
+        public String getType() { return type; }
+        public String getId() { return id; }
+        public String getLabel() { return label; }
+        public LocalDate getDate() { return date; }
+    }
+}
@@ -2,54 +2,217 @@ package app.service;
 
 import app.model.Task;
 import app.model.TaskStatus;
+import app.util.ParallelExec;
 
 import java.time.Duration;
-import java.util.DoubleSummaryStatistics;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
-public class StatsService {
-    public String buildStatsReport(List<Task> tasks) {
-        int total = tasks.size();
-        long completed = tasks.stream().filter(t -> t.getStatus() == TaskStatus.COMPLETED).count();
-        long active = tasks.stream().filter(t -> t.getStatus() == TaskStatus.PENDING || t.getStatus() == TaskStatus.IN_PROGRESS).count();
-        long cancelled = tasks.stream().filter(t -> t.getStatus() == TaskStatus.CANCELLED).count();
+/**
+ * 統計彙總。註冊為 {@link TaskListener} 後隨任務異動增量維護，
+ * 查詢只讀取計數器；逾期數量以截止時間排序的集合推進，不需重掃。
+ * 封存的任務仍計入彙總（只是不再保留逐筆的記錄），封存不會改變報告的歷史數字。
+ */
+public class StatsService implements TaskListener {
+    private static final Comparator<Entry> BY_DUE = Comparator
+            .comparing((Entry e) -> e.due)
+            .thenComparing(e -> e.id);
+
+    // taskId -> 該任務目前計入彙總的貢獻（更新時先扣除再加回）
+    private final Map<String, Entry> entries = new HashMap<>();
+    // 待辦/進行中且尚未逾期的任務，依截止時間排序
+    private final TreeSet<Entry> upcoming = new TreeSet<>(BY_DUE);
+    private final Totals totals = new Totals();
+
+    @Override
+    public synchronized void onTaskSaved(Task task) {
+        LocalDateTime now = LocalDateTime.now();
+        advance(now);
+        Entry old = entries.remove(task.getId());
+        if (old != null) remove(old);
+        Entry e = new Entry(task);
+        entries.put(e.id, e);
+        add(e, now);
+    }
+
+    @Override
+    public synchronized void onTaskDeleted(String id) {
+        Entry old = entries.remove(id);
+        if (old != null) remove(old);
+    }
+
+    /** 以封存時的版本保留貢獻；之後不再依 id 更新。 */
+    @Override
+    public synchronized void onTaskArchived(Task task) {
+        onTaskDeleted(task.getId());
+        onArchivedTaskLoaded(task);
+    }
+
+    @Override
+    public boolean coversArchive() {
+        return true;
+    }
 
-        DoubleSummaryStatistics estStats = tasks.stream().mapToDouble(Task::getEstimatedMinutes).summaryStatistics();
+    @Override
+    public synchronized void onArchivedTaskLoaded(Task task) {
+        LocalDateTime now = LocalDateTime.now();
+        advance(now);
+        add(new Entry(task), now);
+    }
 
-        long overdue = tasks.stream()
-                .filter(t -> (t.getStatus() == TaskStatus.PENDING || t.getStatus() == TaskStatus.IN_PROGRESS))
-                .filter(t -> t.getDueDateTime() != null && t.getDueDateTime().isBefore(java.time.LocalDateTime.now()))
-                .count();
+    /** 目前彙總的快照；成本與任務數無關（僅推進剛逾期的任務）。 */
+    public synchronized Snapshot snapshot() {
+        advance(LocalDateTime.now());
+        return totals.toSnapshot();
+    }
 
-        List<Duration> completionDurations = tasks.stream()
-                .filter(t -> t.getStatus() == TaskStatus.COMPLETED && t.getCreatedAt() != null && t.getCompletedAt() != null)
-                .map(t -> Duration.between(t.getCreatedAt(), t.getCompletedAt()))
-                .collect(Collectors.toList());
+    public String buildStatsReport() {
+        return formatReport(snapshot());
+    }
 
-        String avgCompletion = completionDurations.isEmpty() ? "—" : humanizeAverage(completionDurations);
+    /**
+     * 對任意任務清單做一次性統計（單次走訪，共用同一個 now）。
+     * 大量清單在專屬 ForkJoinPool 分段累加後合併；計數皆為整數加總，結果與循序相同。
+     */
+    public String buildStatsReport(List<Task> tasks) {
+        LocalDateTime now = LocalDateTime.now();
+        Totals t;
+        if (ParallelExec.worthIt(tasks.size())) {
+            t = ParallelExec.invoke(() -> tasks.parallelStream()
+                    .collect(Totals::new, (acc, task) -> acc.add(new Entry(task), now), Totals::merge));
+        } else {
+            t = new Totals();
+            for (Task task : tasks) t.add(new Entry(task), now);
+        }
+        return formatReport(t.toSnapshot());
+    }
+
+    private void advance(LocalDateTime now) {
+        while (!upcoming.isEmpty() && upcoming.first().due.isBefore(now)) {
+            Entry e = upcoming.pollFirst();
+            e.overdue = true;
+            totals.overdue++;
+        }
+    }
 
+    private void add(Entry e, LocalDateTime now) {
+        totals.add(e, now);
+        if (e.isActive() && e.due != null && !e.overdue) upcoming.add(e);
+    }
+
+    private void remove(Entry e) {
+        totals.remove(e);
+        if (e.isActive() && e.due != null && !e.overdue) upcoming.remove(e);
+    }
+
+    private String formatReport(Snapshot s) {
+        String avgCompletion = s.getCompletedWithDuration() == 0 ? "—" : humanize(s.getAverageCompletionSeconds());
         StringBuilder sb = new StringBuilder();
         sb.append("統計報告\n");
-        sb.append(String.format(Locale.getDefault(), "- 總任務數: %d%n", total));
-        sb.append(String.format(Locale.getDefault(), "- 進行中/待辦: %d%n", active));
-        sb.append(String.format(Locale.getDefault(), "- 已完成: %d%n", completed));
-        sb.append(String.format(Locale.getDefault(), "- 已取消: %d%n", cancelled));
-        sb.append(String.format(Locale.getDefault(), "- 逾期數量: %d%n", overdue));
-        sb.append(String.format(Locale.getDefault(), "- 平均預估時間: %.1f 分鐘%n", estStats.getAverage()));
+        sb.append(String.format(Locale.getDefault(), "- 總任務數: %d%n", s.getTotal()));
+        sb.append(String.format(Locale.getDefault(), "- 進行中/待辦: %d%n", s.getActive()));
+        sb.append(String.format(Locale.getDefault(), "- 已完成: %d%n", s.getCount(TaskStatus.COMPLETED)));
+        sb.append(String.format(Locale.getDefault(), "- 已取消: %d%n", s.getCount(TaskStatus.CANCELLED)));
+        sb.append(String.format(Locale.getDefault(), "- 逾期數量: %d%n", s.getOverdue()));
+        sb.append(String.format(Locale.getDefault(), "- 平均預估時間: %.1f 分鐘%n", s.getAverageEstimatedMinutes()));
         sb.append(String.format(Locale.getDefault(), "- 平均完成時間: %s%n", avgCompletion));
         return sb.toString();
     }
 
-    private String humanizeAverage(List<Duration> durations) {
-        long avgMillis = (long) durations.stream().mapToLong(Duration::toMillis).average().orElse(0);
-        long hours = TimeUnit.MILLISECONDS.toHours(avgMillis);
-        long minutes = TimeUnit.MILLISECONDS.toMinutes(avgMillis) - hours * 60;
+    private String humanize(long avgSeconds) {
+        long hours = TimeUnit.SECONDS.toHours(avgSeconds);
+        long minutes = TimeUnit.SECONDS.toMinutes(avgSeconds) - hours * 60;
         if (hours > 0) return String.format(Locale.getDefault(), "%d 小時 %d 分鐘", hours, minutes);
         return String.format(Locale.getDefault(), "%d 分鐘", minutes);
     }
-}
 
+    /** 單一任務對彙總的貢獻，只保留統計需要的欄位。 */
+    private static final class Entry {
+        final String id;
+        final TaskStatus status;
+        final int estimatedMinutes;
+        final LocalDateTime due;
+        final long completionSeconds; // -1 表示無完成時間
+        boolean overdue;
+
+        Entry(Task t) {
+            this.id = t.getId();
+            this.status = t.getStatus() == null ? TaskStatus.PENDING : t.getStatus();
+            this.estimatedMinutes = t.getEstimatedMinutes();
+            this.due = t.getDueDateTime();
+            this.completionSeconds = (status == TaskStatus.COMPLETED && t.getCreatedAt() != null && t.getCompletedAt() != null)
+                    ? Duration.between(t.getCreatedAt(), t.getCompletedAt()).getSeconds() : -1;
+        }
+
+        boolean isActive() {
+            return status == TaskStatus.PENDING || status == TaskStatus.IN_PROGRESS;
+        }
+    }
+
+    /** 可加減的計數器組合。 */
+    private static final class Totals {
+        final long[] byStatus = new long[TaskStatus.values().length];
+        long estimatedSum;
+        long completionSecondsSum;
+        long completedWithDuration;
+        long overdue;
+
+        void add(Entry e, LocalDateTime now) {
+            byStatus[e.status.ordinal()]++;
+            estimatedSum += e.estimatedMinutes;
+            if (e.completionSeconds >= 0) { completionSecondsSum += e.completionSeconds; completedWithDuration++; }
+            if (e.isActive() && e.due != null && e.due.isBefore(now)) { e.overdue = true; overdue++; }
+        }
 
+        void remove(Entry e) {
+            byStatus[e.status.ordinal()]--;
+            estimatedSum -= e.estimatedMinutes;
+            if (e.completionSeconds >= 0) { completionSecondsSum -= e.completionSeconds; completedWithDuration--; }
+            if (e.overdue) overdue--;
+        }
+
+        void merge(Totals o) {
+            for (int i = 0; i < byStatus.length; i++) byStatus[i] += o.byStatus[i];
+            estimatedSum += o.estimatedSum;
+            completionSecondsSum += o.completionSecondsSum;
+            completedWithDuration += o.completedWithDuration;
+            overdue += o.overdue;
+        }
+
+        Snapshot toSnapshot() {
+            return new Snapshot(byStatus.clone(), estimatedSum, completionSecondsSum, completedWithDuration, overdue);
+        }
+    }
+
+    public static final class Snapshot {
+        private final long[] byStatus;
+        private final long estimatedSum;
+        private final long completionSecondsSum;
+        private final long completedWithDuration;
+        private final long overdue;
+
+        Snapshot(long[] byStatus, long estimatedSum, long completionSecondsSum, long completedWithDuration, long overdue) {
+            this.byStatus = byStatus;
+            this.estimatedSum = estimatedSum;
+            this.completionSecondsSum = completionSecondsSum;
+            this.completedWithDuration = completedWithDuration;
+            this.overdue = overdue;
+        }
+
+        public long getCount(TaskStatus status) { return byStatus[status.ordinal()]; }
+        public long getTotal() { long n = 0; for (long c : byStatus) n += c; return n; }
+        public long getActive() { return getCount(TaskStatus.PENDING) + getCount(TaskStatus.IN_PROGRESS); }
+        public long getOverdue() { return overdue; }
+        public long getEstimatedSum() { return estimatedSum; }
+        public double getAverageEstimatedMinutes() { long n = getTotal(); return n == 0 ? 0 : (double) estimatedSum / n; }
+        public long getCompletedWithDuration() { return completedWithDuration; }
+        public long getCompletionSecondsSum() { return completionSecondsSum; }
+        public long getAverageCompletionSeconds() { return completedWithDuration == 0 ? 0 : completionSecondsSum / completedWithDuration; }
+    }
+}
@@ -3,27 +3,136 @@ package app.service;
 import app.model.Task;
 import app.model.TaskPriority;
 import app.model.TaskStatus;
+import app.util.ParallelExec;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
-public class SuggestionService {
+/**
+ * 建議排序。sortBySmartHeuristics 對任意清單排序時每個任務只計算一次分數；
+ * 另外以 {@link TaskListener} 維護進行中任務的排名（分數快取於各任務），
+ * 分數只在任務異動或時間跨過門檻（截止前 24h/4h/1h、逾期、建立滿 3 天/7 天）時重算，
+ * 因此 top(k) 只需 O(k log n)。
+ */
+public class SuggestionService implements TaskListener {
+    private static final Comparator<Ranked> ORDER = Comparator
+            .comparingInt((Ranked r) -> -r.score)
+            .thenComparing((Ranked r) -> r.task.getDueDateTime(), Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingInt((Ranked r) -> priorityRank(r.task.getPriority()))
+            .thenComparingInt((Ranked r) -> r.task.getEstimatedMinutes());
+    private static final Comparator<Ranked> RANK = ORDER.thenComparing((Ranked r) -> r.task.getId());
+    private static final Comparator<Ranked> BY_NEXT_CHANGE = Comparator
+            .comparing((Ranked r) -> r.nextChange)
+            .thenComparing((Ranked r) -> r.task.getId());
 
+    private final Map<String, Ranked> ranked = new HashMap<>();
+    private final TreeSet<Ranked> ranking = new TreeSet<>(RANK);
+    private final TreeSet<Ranked> pending = new TreeSet<>(BY_NEXT_CHANGE); // 有下一個門檻的任務，依門檻時間排序
+
+    /**
+     * 依建議度排序（同分時依截止時間、優先順序、預估時間，再相同則保留原順序）。
+     * 每個任務只計算一次分數並共用同一個 now；大量清單在專屬 ForkJoinPool 平行計分與排序，
+     * 平行排序為穩定排序，結果與循序路徑相同。
+     */
     public List<Task> sortBySmartHeuristics(List<Task> tasks) {
         LocalDateTime now = LocalDateTime.now();
-        return tasks.stream()
-                .sorted(Comparator
-                        .comparingInt((Task t) -> -score(t, now))
-                        .thenComparing(t -> t.getDueDateTime(), Comparator.nullsLast(Comparator.naturalOrder()))
-                        .thenComparing((Task t) -> priorityRank(t.getPriority()))
-                        .thenComparingInt(Task::getEstimatedMinutes))
-                .collect(Collectors.toList());
+        if (ParallelExec.worthIt(tasks.size())) {
+            return ParallelExec.invoke(() -> tasks.parallelStream()
+                    .map(t -> new Ranked(t, score(t, now), null))
+                    .sorted(ORDER)
+                    .map(r -> r.task)
+                    .collect(Collectors.toList()));
+        }
+        List<Ranked> list = new ArrayList<>(tasks.size());
+        for (Task t : tasks) list.add(new Ranked(t, score(t, now), null));
+        list.sort(ORDER);
+        List<Task> out = new ArrayList<>(list.size());
+        for (Ranked r : list) out.add(r.task);
+        return out;
+    }
+
+    /** 與 sortBySmartHeuristics 相同的順序（不含保留原順序的部分），用於合併多個已排序的清單。 */
+    public static Comparator<Task> order(LocalDateTime now) {
+        return Comparator.comparingInt((Task t) -> -score(t, now))
+                .thenComparing(Task::getDueDateTime, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparingInt((Task t) -> priorityRank(t.getPriority()))
+                .thenComparingInt(Task::getEstimatedMinutes);
+    }
+
+    @Override
+    public synchronized void onTaskSaved(Task task) {
+        remove(task.getId());
+        if (task.getStatus() != TaskStatus.PENDING && task.getStatus() != TaskStatus.IN_PROGRESS) return;
+        insert(task, LocalDateTime.now());
+    }
+
+    @Override
+    public synchronized void onTaskDeleted(String id) {
+        remove(id);
+    }
+
+    /** 待辦/進行中任務中建議度最高的前 limit 個。 */
+    public synchronized List<Task> top(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        // 只重算門檻已到的任務
+        while (!pending.isEmpty() && !pending.first().nextChange.isAfter(now)) {
+            Ranked r = pending.pollFirst();
+            ranking.remove(r);
+            ranked.remove(r.task.getId());
+            insert(r.task, now);
+        }
+        List<Task> out = new ArrayList<>(Math.min(limit, ranking.size()));
+        Iterator<Ranked> it = ranking.iterator();
+        while (out.size() < limit && it.hasNext()) out.add(it.next().task);
+        return out;
+    }
+
+    private void insert(Task task, LocalDateTime now) {
+        Ranked r = new Ranked(task, score(task, now), nextChange(task, now));
+        ranked.put(task.getId(), r);
+        ranking.add(r);
+        if (r.nextChange != null) pending.add(r);
     }
 
-    private int score(Task t, LocalDateTime now) {
+    private void remove(String id) {
+        Ranked old = ranked.remove(id);
+        if (old == null) return;
+        ranking.remove(old);
+        if (old.nextChange != null) pending.remove(old);
+    }
+
+    // 分數下一次可能改變的時間（嚴格晚於 now）；與 score() 的門檻一致：
+    // toMinutes() 向零截斷，<= 60 分鐘即 due - now < 61 分鐘，逾期即 now >= due + 1 分鐘
+    private static LocalDateTime nextChange(Task t, LocalDateTime now) {
+        LocalDateTime next = null;
+        if (t.getDueDateTime() != null) {
+            LocalDateTime due = t.getDueDateTime();
+            next = earliestAfter(next, due.minusMinutes(24 * 60 + 1).plusNanos(1), now);
+            next = earliestAfter(next, due.minusMinutes(241).plusNanos(1), now);
+            next = earliestAfter(next, due.minusMinutes(61).plusNanos(1), now);
+            next = earliestAfter(next, due.plusMinutes(1), now);
+        }
+        if (t.getCreatedAt() != null) {
+            next = earliestAfter(next, t.getCreatedAt().plusDays(3), now);
+            next = earliestAfter(next, t.getCreatedAt().plusDays(7), now);
+        }
+        return next;
+    }
+
+    private static LocalDateTime earliestAfter(LocalDateTime current, LocalDateTime candidate, LocalDateTime now) {
+        if (!candidate.isAfter(now)) return current;
+        return current == null || candidate.isBefore(current) ? candidate : current;
+    }
+
+    static int score(Task t, LocalDateTime now) {
         int s = 0;
         if (t.getStatus() == TaskStatus.COMPLETED || t.getStatus() == TaskStatus.CANCELLED) return -1000;
 
@@ -62,7 +171,7 @@ public class SuggestionService {
         return s;
     }
 
-    private int priorityRank(TaskPriority p) {
+    private static int priorityRank(TaskPriority p) {
         if (p == null) return 2;
         switch (p) {
             case CRITICAL: return 0;
@@ -71,6 +180,16 @@ public class SuggestionService {
             default: return 3;
         }
     }
-}
 
+    private static final class Ranked {
+        final Task task;
+        final int score;
+        final LocalDateTime nextChange;
 
+        Ranked(Task task, int score, LocalDateTime nextChange) {
+            this.task = task;
+            this.score = score;
+            this.nextChange = nextChange;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package app.service;
+
+import app.model.Task;
+import app.util.PrefixTrie;
+
+import java.text.Normalizer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 標籤與類別的自動完成。以前綴樹記錄每個值被多少任務使用，隨任務異動增量更新；
+ * 同一任務重複的標籤只計一次。
+ */
+public class TagService implements TaskListener {
+    public static final int MAX_LIMIT = 20;
+
+    private final PrefixTrie tags = new PrefixTrie(MAX_LIMIT);
+    private final PrefixTrie categories = new PrefixTrie(MAX_LIMIT);
+    // taskId -> 該任務目前計入的標籤與類別
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    @Override
+    public synchronized void onTaskSaved(Task task) {
+        Entry e = new Entry(task);
+        Entry old = entries.put(task.getId(), e);
+        if (old != null) {
+            for (String t : old.tags) if (!e.tags.contains(t)) tags.add(t, -1);
+            for (String t : e.tags) if (!old.tags.contains(t)) tags.add(t, 1);
+            if (!old.category.equals(e.category)) {
+                categories.add(old.category, -1);
+                categories.add(e.category, 1);
+            }
+        } else {
+            for (String t : e.tags) tags.add(t, 1);
+            categories.add(e.category, 1);
+        }
+    }
+
+    @Override
+    public synchronized void onTaskDeleted(String id) {
+        Entry old = entries.remove(id);
+        if (old == null) return;
+        for (String t : old.tags) tags.add(t, -1);
+        categories.add(old.category, -1);
+    }
+
+    /** kind 為 "tag" 或 "category"；回傳以 prefix 開頭、使用次數最高的值。 */
+    public synchronized List<PrefixTrie.Entry> complete(String kind, String prefix, int limit) {
+        PrefixTrie trie = "category".equals(kind) ? categories : "tag".equals(kind) ? tags : null;
+        if (trie == null) return Collections.emptyList();
+        return trie.top(normalize(prefix), Math.min(limit, MAX_LIMIT));
+    }
+
+    static String normalize(String s) {
+        if (s == null) return "";
+        return Normalizer.normalize(s, Normalizer.Form.NFKC).trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entry {
+        final Set<String> tags = new LinkedHashSet<>();
+        final String category; // 空字串表示未設定，PrefixTrie 會忽略
+
+        Entry(Task t) {
+            if (t.getTags() != null) {
+                for (String tag : t.getTags()) {
+                    String v = normalize(tag);
+                    if (!v.isEmpty()) tags.add(v);
+                }
+            }
+            this.category = normalize(t.getCategory());
+        }
+    }
+}
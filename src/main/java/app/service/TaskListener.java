@@ -0,0 +1,34 @@
+package app.service;
+
+import app.model.Task;
+
+/**
+ * 任務異動通知。由 {@link TaskService} 在每次寫入後呼叫，
+ * 讓統計、索引等衍生資料可以增量維護，而不必每次查詢都重掃全部任務。
+ * 同一個 TaskService 的通知依寫入順序逐一送達（不會並行，也不會顛倒），
+ * 但實作仍需自行保證與查詢端之間的執行緒安全。
+ */
+public interface TaskListener {
+    /** 任務新增或更新後呼叫；同一 id 可能重複送達，實作應以 id 覆蓋舊狀態。 */
+    void onTaskSaved(Task task);
+
+    /** 任務刪除後呼叫。 */
+    void onTaskDeleted(String id);
+
+    /**
+     * 任務移入封存層後呼叫；預設視同刪除（衍生資料只涵蓋熱資料）。
+     * 涵蓋歷史的彙總（{@link #coversArchive()} 為 true）應覆寫為保留該任務的貢獻。
+     */
+    default void onTaskArchived(Task task) {
+        onTaskDeleted(task.getId());
+    }
+
+    /** 是否需要封存層中既有的任務；為 true 時，註冊或設定封存層時會以 {@link #onArchivedTaskLoaded} 補送。 */
+    default boolean coversArchive() {
+        return false;
+    }
+
+    /** 封存層中既有的任務（熱資料中有同 id 者除外，熱資料為較新的版本）；預設忽略。 */
+    default void onArchivedTaskLoaded(Task task) {
+    }
+}
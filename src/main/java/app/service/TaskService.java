@@ -1,33 +1,141 @@
 package app.service;
 
+import app.model.TagDictionary;
 import app.model.Task;
 import app.model.TaskPriority;
 import app.model.TaskStatus;
+import app.repo.ArchiveStore;
+import app.repo.Snapshot;
 import app.repo.TaskRepository;
+import app.util.ParallelExec;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * 任務的增刪改。修改一律作用在副本上再整筆寫回（copy-on-write），
+ * 已存入儲存庫的任務物件不會被原地修改，快照與監聽器看到的內容因此保持一致。
+ * 寫入儲存庫與通知監聽器在同一把鎖內完成，監聽器收到的順序即寫入順序。
+ */
 public class TaskService {
+    /** listAll 的順序：sortOrder（未設定者在後），再依建立時間。 */
+    public static final Comparator<Task> LIST_ORDER = Comparator
+            .comparing((Task t) -> t.getSortOrder(), Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Task::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()));
+
     private final TaskRepository repository;
+    private final List<TaskListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object writeLock = new Object(); // 寫入 + 通知；同一 id 的並行寫入不會以相反順序送達監聽器
+    private final ColumnarTaskStore columns; // -Dtasks.columnar=true 時啟用；篩選改掃欄位陣列
+    private volatile ArchiveStore archive;   // 冷資料層；未設定時不封存
 
     public TaskService(TaskRepository repository) {
         this.repository = repository;
+        this.columns = Boolean.getBoolean("tasks.columnar") ? new ColumnarTaskStore() : null;
+        if (columns != null) addListener(columns);
+    }
+
+    /**
+     * 設定封存層；之後查詢歷史（已完成/已取消、日期區間）會一併讀取封存區段，
+     * 涵蓋歷史的監聽器也會收到封存層中既有的任務。
+     */
+    public void setArchive(ArchiveStore archive) {
+        synchronized (writeLock) {
+            this.archive = archive;
+            List<TaskListener> history = new ArrayList<>();
+            for (TaskListener l : listeners) {
+                if (l.coversArchive()) history.add(l);
+            }
+            loadArchived(history);
+        }
+    }
+
+    /**
+     * 將完成（或無完成時間時以建立時間計）早於 cutoff 的已完成/已取消任務移入封存層。
+     * 先寫出區段再自熱資料移除；期間被修改的任務保留在熱資料（封存中的舊版本在查詢時被熱資料蓋過）。
+     */
+    public int archiveOlderThan(LocalDateTime cutoff) {
+        ArchiveStore a = archive;
+        if (a == null) return 0;
+        List<Task> old = new ArrayList<>();
+        for (Task t : repository.findAll()) {
+            if (t.getStatus() != TaskStatus.COMPLETED && t.getStatus() != TaskStatus.CANCELLED) continue;
+            LocalDateTime at = t.getCompletedAt() != null ? t.getCompletedAt() : t.getCreatedAt();
+            if (at != null && at.isBefore(cutoff)) old.add(t);
+        }
+        if (old.isEmpty()) return 0;
+        try {
+            a.append(old);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to archive tasks", e);
+        }
+        synchronized (writeLock) {
+            List<Task> removed = repository.removeUnchanged(old);
+            for (Task t : removed) {
+                for (TaskListener l : listeners) l.onTaskArchived(t);
+            }
+            return removed.size();
+        }
+    }
+
+    /** 欄式鏡像；未啟用時為 null。 */
+    public ColumnarTaskStore columns() {
+        return columns;
+    }
+
+    /**
+     * 註冊異動監聽器，並先以現有任務補送一次 onTaskSaved 作為初始狀態；
+     * 涵蓋歷史的監聽器另以 onArchivedTaskLoaded 補送封存層中的任務。
+     */
+    public void addListener(TaskListener listener) {
+        synchronized (writeLock) {
+            listeners.add(listener);
+            for (Task t : repository.findAll()) listener.onTaskSaved(t);
+            if (listener.coversArchive()) loadArchived(List.of(listener));
+        }
+    }
+
+    private void loadArchived(List<TaskListener> targets) {
+        if (archive == null || targets.isEmpty()) return;
+        for (Task t : readArchive(null, t -> true)) {
+            for (TaskListener l : targets) l.onArchivedTaskLoaded(t);
+        }
+    }
+
+    private void save(Task t) {
+        synchronized (writeLock) {
+            repository.upsert(t);
+            for (TaskListener l : listeners) l.onTaskSaved(t);
+        }
+    }
+
+    /** 批次寫入（匯入用）：整批只落盤一次，再逐筆通知監聽器。 */
+    public void saveAll(List<Task> batch) {
+        synchronized (writeLock) {
+            repository.upsertAll(batch);
+            for (Task t : batch) {
+                for (TaskListener l : listeners) l.onTaskSaved(t);
+            }
+        }
     }
 
     public List<Task> listAll() {
         List<Task> list = new ArrayList<>(repository.findAll());
-        list.sort(Comparator
-                .comparing((Task t) -> t.getSortOrder(), Comparator.nullsLast(Comparator.naturalOrder()))
-                .thenComparing(Task::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())));
+        list.sort(LIST_ORDER);
         return list;
     }
 
@@ -37,8 +145,30 @@ public class TaskService {
                         LocalDateTime due,
                         int estimatedMinutes,
                         String rawTags) {
+        return addTask(title, description, priority, due, estimatedMinutes, rawTags, null);
+    }
+
+    public Task addTask(String title,
+                        String description,
+                        TaskPriority priority,
+                        LocalDateTime due,
+                        int estimatedMinutes,
+                        String rawTags,
+                        String recurrence) {
+        return addTask(title, description, priority, due, estimatedMinutes, rawTags, recurrence, null);
+    }
+
+    /** id 為 null 時自動產生（分片部署時由路由端指定，讓 id 對應到擁有它的 shard）。 */
+    public Task addTask(String title,
+                        String description,
+                        TaskPriority priority,
+                        LocalDateTime due,
+                        int estimatedMinutes,
+                        String rawTags,
+                        String recurrence,
+                        String id) {
         Task t = new Task();
-        t.setId(UUID.randomUUID().toString());
+        t.setId(id == null ? UUID.randomUUID().toString() : id);
         t.setTitle(title == null ? "" : title);
         t.setDescription(description == null ? "" : description);
         t.setPriority(priority == null ? TaskPriority.MEDIUM : priority);
@@ -47,77 +177,74 @@ public class TaskService {
         t.setStatus(TaskStatus.PENDING);
         t.setCreatedAt(LocalDateTime.now());
         t.setCompletedAt(null);
-        List<String> tags = new ArrayList<>();
-        if (rawTags != null && !rawTags.trim().isEmpty()) {
-            for (String s : rawTags.split(";")) {
-                String v = s.trim();
-                if (!v.isEmpty()) tags.add(v.toLowerCase(Locale.ROOT));
-            }
-        }
-        t.setTags(tags);
+        t.setTags(parseTags(rawTags));
         t.setCategory(null);
         t.setActualMinutes(null);
         t.setReminderBeforeMinutes(null);
         t.setSortOrder(null);
-        t.setRecurrence("NONE");
-        repository.upsert(t);
+        t.setRecurrence(normalizeRecurrence(recurrence));
+        save(t);
         return t;
     }
 
     public boolean completeTask(String id) {
         Optional<Task> opt = repository.findById(id);
         if (opt.isEmpty()) return false;
-        Task t = opt.get();
+        Task t = opt.get().copy();
         t.setStatus(TaskStatus.COMPLETED);
         t.setCompletedAt(LocalDateTime.now());
-        repository.upsert(t);
+        save(t);
         return true;
     }
 
     public boolean deleteTask(String id) {
-        return repository.deleteById(id);
+        synchronized (writeLock) {
+            boolean removed = repository.deleteById(id);
+            if (removed) for (TaskListener l : listeners) l.onTaskDeleted(id);
+            return removed;
+        }
     }
 
     public boolean startTask(String id) {
         Optional<Task> opt = repository.findById(id);
         if (opt.isEmpty()) return false;
-        Task t = opt.get();
+        Task t = opt.get().copy();
         t.setStatus(TaskStatus.IN_PROGRESS);
-        repository.upsert(t);
+        save(t);
         return true;
     }
 
     public boolean snoozeTask(String id, int minutes) {
         Optional<Task> opt = repository.findById(id);
         if (opt.isEmpty()) return false;
-        Task t = opt.get();
+        Task t = opt.get().copy();
         LocalDateTime due = t.getDueDateTime();
         if (due == null) due = LocalDateTime.now();
         t.setDueDateTime(due.plusMinutes(Math.max(1, minutes)));
-        repository.upsert(t);
+        save(t);
         return true;
     }
 
     public boolean rescheduleDate(String id, LocalDate newDate, LocalTime keepOrUseTime) {
         Optional<Task> opt = repository.findById(id);
         if (opt.isEmpty()) return false;
-        Task t = opt.get();
+        Task t = opt.get().copy();
         LocalTime time = keepOrUseTime;
         if (time == null) {
             LocalDateTime due = t.getDueDateTime();
             time = (due != null) ? due.toLocalTime() : LocalTime.NOON;
         }
         t.setDueDateTime(LocalDateTime.of(newDate, time));
-        repository.upsert(t);
+        save(t);
         return true;
     }
 
     public boolean updateDuration(String id, int minutes) {
         Optional<Task> opt = repository.findById(id);
         if (opt.isEmpty()) return false;
-        Task t = opt.get();
+        Task t = opt.get().copy();
         t.setEstimatedMinutes(Math.max(1, minutes));
-        repository.upsert(t);
+        save(t);
         return true;
     }
 
@@ -128,42 +255,120 @@ public class TaskService {
                               LocalDateTime due,
                               Integer estimatedMinutes,
                               String rawTags) {
+        return updateTask(id, title, description, priority, due, estimatedMinutes, rawTags, null);
+    }
+
+    public boolean updateTask(String id,
+                              String title,
+                              String description,
+                              TaskPriority priority,
+                              LocalDateTime due,
+                              Integer estimatedMinutes,
+                              String rawTags,
+                              String recurrence) {
         Optional<Task> opt = repository.findById(id);
         if (opt.isEmpty()) return false;
-        Task t = opt.get();
+        Task t = opt.get().copy();
         if (title != null) t.setTitle(title);
         if (description != null) t.setDescription(description);
         if (priority != null) t.setPriority(priority);
         if (due != null) t.setDueDateTime(due);
         if (estimatedMinutes != null) t.setEstimatedMinutes(Math.max(1, estimatedMinutes));
-        if (rawTags != null) {
-            List<String> tags = new ArrayList<>();
+        if (rawTags != null) t.setTags(parseTags(rawTags));
+        if (recurrence != null) t.setRecurrence(normalizeRecurrence(recurrence));
+        save(t);
+        return true;
+    }
+
+    static List<String> parseTags(String rawTags) {
+        List<String> tags = new ArrayList<>();
+        if (rawTags != null && !rawTags.trim().isEmpty()) {
             for (String s : rawTags.split(";")) {
                 String v = s.trim();
                 if (!v.isEmpty()) tags.add(v.toLowerCase(Locale.ROOT));
             }
-            t.setTags(tags);
         }
-        repository.upsert(t);
-        return true;
+        return tags;
+    }
+
+    static String normalizeRecurrence(String recurrence) {
+        if (recurrence == null || recurrence.trim().isEmpty()) return "NONE";
+        String r = recurrence.trim().toUpperCase(Locale.ROOT);
+        switch (r) {
+            case "DAILY": case "WEEKLY": case "MONTHLY": return r;
+            default: return "NONE";
+        }
     }
 
+    /** 依條件篩選並依建立時間排序；status 為 COMPLETED/CANCELLED 時包含封存的任務。 */
     public List<Task> filter(String status, String priority, String tag) {
-        return repository.findAll().stream()
+        List<Task> hot = filterHot(status, priority, tag);
+        TaskStatus history = historyStatus(status);
+        if (archive == null || history == null) return hot;
+        BitSet tagMatch = tag == null || tag.isEmpty() ? null : TagDictionary.get().matchingIgnoreCase(tag);
+        List<Task> cold = readArchive(seg -> seg.hasStatus(history),
+                t -> t.getStatus() == history
+                        && (priority == null || priority.isEmpty() || (t.getPriority() != null && t.getPriority().name().equalsIgnoreCase(priority)))
+                        && (tagMatch == null || t.hasAnyTag(tagMatch)));
+        if (cold.isEmpty()) return hot;
+        List<Task> all = new ArrayList<>(hot);
+        all.addAll(cold);
+        all.sort(Comparator.comparing(Task::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())));
+        return all;
+    }
+
+    private static TaskStatus historyStatus(String status) {
+        if (TaskStatus.COMPLETED.name().equalsIgnoreCase(status)) return TaskStatus.COMPLETED;
+        if (TaskStatus.CANCELLED.name().equalsIgnoreCase(status)) return TaskStatus.CANCELLED;
+        return null;
+    }
+
+    // 封存中符合條件、且 id 不在熱資料中的任務（熱資料為較新的版本）
+    private List<Task> readArchive(Predicate<ArchiveStore.Segment> segments, Predicate<Task> match) {
+        try {
+            return archive.find(segments, t -> match.test(t) && repository.findById(t.getId()).isEmpty());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archive", e);
+        }
+    }
+
+    // 熱資料篩選：欄式鏡像啟用時掃欄位，否則大量任務在專屬 ForkJoinPool 平行處理（順序與循序相同）
+    private List<Task> filterHot(String status, String priority, String tag) {
+        if (columns != null) {
+            int statusMask = -1, priorityOrdinal = -1;
+            try {
+                if (status != null && !status.isEmpty()) statusMask = ColumnarTaskStore.statusMask(TaskStatus.valueOf(status.toUpperCase(Locale.ROOT)));
+                if (priority != null && !priority.isEmpty()) priorityOrdinal = TaskPriority.valueOf(priority.toUpperCase(Locale.ROOT)).ordinal();
+            } catch (IllegalArgumentException e) {
+                return new ArrayList<>(); // 不存在的狀態/優先順序
+            }
+            BitSet tagMatch = tag == null || tag.isEmpty() ? null : TagDictionary.get().matchingIgnoreCase(tag);
+            return columns.select(statusMask, priorityOrdinal, tagMatch == null ? null : t -> t.hasAnyTag(tagMatch));
+        }
+        List<Task> all = repository.findAll();
+        if (ParallelExec.worthIt(all.size())) return ParallelExec.invoke(() -> filter(all.parallelStream(), status, priority, tag));
+        return filter(all.stream(), status, priority, tag);
+    }
+
+    private static List<Task> filter(Stream<Task> tasks, String status, String priority, String tag) {
+        BitSet tagMatch = tag == null || tag.isEmpty() ? null : TagDictionary.get().matchingIgnoreCase(tag);
+        return tasks
                 .filter(t -> status == null || status.isEmpty() || t.getStatus().name().equalsIgnoreCase(status))
                 .filter(t -> priority == null || priority.isEmpty() || (t.getPriority() != null && t.getPriority().name().equalsIgnoreCase(priority)))
-                .filter(t -> tag == null || tag.isEmpty() || (t.getTags() != null && t.getTags().stream().anyMatch(x -> x.equalsIgnoreCase(tag))))
+                .filter(t -> tagMatch == null || t.hasAnyTag(tagMatch))
                 .sorted(Comparator.comparing(Task::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())))
                 .collect(Collectors.toList());
     }
 
     public int batchCompleteByTag(String tag) {
         int count = 0;
-        for (Task t : repository.findAll()) {
-            if (t.getStatus() != TaskStatus.COMPLETED && t.getTags() != null && t.getTags().stream().anyMatch(x -> x.equalsIgnoreCase(tag))) {
+        BitSet tagMatch = TagDictionary.get().matchingIgnoreCase(tag);
+        for (Task cur : repository.findAll()) {
+            if (cur.getStatus() != TaskStatus.COMPLETED && cur.hasAnyTag(tagMatch)) {
+                Task t = cur.copy();
                 t.setStatus(TaskStatus.COMPLETED);
                 t.setCompletedAt(LocalDateTime.now());
-                repository.upsert(t);
+                save(t);
                 count++;
             }
         }
@@ -171,6 +376,7 @@ public class TaskService {
     }
 
     public List<Task> listPendingOrInProgress() {
+        if (columns != null) return columns.byStatus(ColumnarTaskStore.activeMask());
         return repository.findAll().stream()
                 .filter(t -> t.getStatus() == TaskStatus.PENDING || t.getStatus() == TaskStatus.IN_PROGRESS)
                 .collect(Collectors.toList());
@@ -178,11 +384,49 @@ public class TaskService {
 
     public List<Task> listOverdue() {
         LocalDateTime now = LocalDateTime.now();
+        if (columns != null) return columns.dueBetween(ColumnarTaskStore.activeMask(), null, now);
         return listPendingOrInProgress().stream()
                 .filter(t -> t.getDueDateTime() != null && t.getDueDateTime().isBefore(now))
                 .collect(Collectors.toList());
     }
 
+    public Snapshot<Task> snapshot() {
+        return repository.snapshot();
+    }
+
+    /** 封存層中的全部任務（未設定封存層時為空）。 */
+    public List<Task> listArchived() {
+        ArchiveStore a = archive;
+        if (a == null) return new ArrayList<>();
+        try {
+            return a.find(null, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archive", e);
+        }
+    }
+
+    /**
+     * 複本套用主節點的封存：寫入封存層（已封存的 id 略過，重送不會重複），再自熱資料移除同 id 的任務。
+     * 未設定封存層時只自熱資料移除。
+     */
+    public void applyArchived(List<Task> tasks) {
+        ArchiveStore a = archive;
+        if (a != null) {
+            try {
+                a.appendMissing(tasks);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to archive tasks", e);
+            }
+        }
+        synchronized (writeLock) {
+            List<Task> hot = new ArrayList<>();
+            for (Task t : tasks) repository.findById(t.getId()).ifPresent(hot::add);
+            for (Task t : repository.removeUnchanged(hot)) {
+                for (TaskListener l : listeners) l.onTaskArchived(t);
+            }
+        }
+    }
+
     public Optional<Task> getById(String id) {
         return repository.findById(id);
     }
@@ -198,22 +442,43 @@ public class TaskService {
         Task moving = tasks.remove(fromIdx);
         if (toIdx > fromIdx) toIdx--; // adjust index after removal
         tasks.add(toIdx, moving);
-        // reassign sortOrder sequentially
+        // reassign sortOrder sequentially；只寫入順序有變的任務，整批落盤一次
+        List<Task> changed = new ArrayList<>();
         for (int i = 0; i < tasks.size(); i++) {
-            Task t = tasks.get(i);
+            Task cur = tasks.get(i);
+            if (cur.getSortOrder() != null && cur.getSortOrder() == i) continue;
+            Task t = cur.copy();
             t.setSortOrder(i);
-            repository.upsert(t);
+            changed.add(t);
         }
+        saveAll(changed);
         return true;
     }
 
     public List<Task> listDueWithinMinutes(int minutes) {
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime threshold = now.plusMinutes(minutes);
+        if (columns != null) return columns.dueBetween(ColumnarTaskStore.activeMask(), now, threshold);
         return listPendingOrInProgress().stream()
                 .filter(t -> t.getDueDateTime() != null && !t.getDueDateTime().isBefore(now) && t.getDueDateTime().isBefore(threshold))
                 .collect(Collectors.toList());
     }
-}
-
 
+    /**
+     * 區間 [start, end] 內可能有出現的任務，順序同 listAll（交給 RecurrenceService 展開）。
+     * 熱資料在未啟用欄式鏡像時回傳全部；封存層只讀取索引顯示可能重疊的區段。
+     */
+    public List<Task> listRangeCandidates(LocalDate start, LocalDate end) {
+        List<Task> list = columns == null ? new ArrayList<>(repository.findAll()) : columns.candidatesForRange(start, end);
+        if (archive != null) {
+            list.addAll(readArchive(seg -> seg.mayOverlap(start, end), t -> {
+                if (t.getDueDateTime() == null) return false;
+                LocalDate due = t.getDueDateTime().toLocalDate();
+                if (due.isAfter(end)) return false;
+                return RecurrenceService.ruleOf(t) != RecurrenceService.Rule.NONE || !due.isBefore(start);
+            }));
+        }
+        list.sort(LIST_ORDER);
+        return list;
+    }
+}
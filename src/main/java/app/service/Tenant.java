@@ -0,0 +1,169 @@
+package app.service;
+
+import app.model.Note;
+import app.model.Task;
+import app.repo.ArchiveStore;
+import app.repo.FileNoteRepository;
+import app.repo.FileOccurrenceRepository;
+import app.repo.FileTaskRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 單一使用者的任務資料與衍生服務（統計、搜尋、標籤、建議、日曆等），
+ * 資料放在各自的目錄（tasks.csv、notes.csv、occurrences.csv、archive/）。
+ * 由 {@link TenantRegistry} 在第一次存取時載入，閒置時整組釋放。
+ * 記憶體估計由監聽器隨任務與筆記異動增量維護，讀取不需走訪資料、也不經過登錄表的鎖。
+ */
+public class Tenant {
+    private static final int BYTES_PER_TASK = 2048; // 任務本體加上各索引的固定估計值，文字另計
+    private static final int BYTES_PER_NOTE = 512;
+
+    private final String id;
+    private final TaskService taskService;
+    private final StatsService statsService;
+    private final RecurrenceService recurrenceService;
+    private final NoteService noteService;
+    private final DailyRollupService dailyRollups = new DailyRollupService();
+    private final IcsFeedService icsFeed = new IcsFeedService();
+    private final SearchService searchService = new SearchService();
+    private final TagService tagService = new TagService();
+    private final SuggestionService suggestionService = new SuggestionService();
+    private final ImportService importService;
+    private final Footprint footprint = new Footprint();
+    private final Map<Object, Object> cached = new ConcurrentHashMap<>();
+    int refs;    // 進行中的請求數，由 TenantRegistry 同步維護
+
+    public Tenant(String id, TaskService taskService, StatsService statsService,
+                  RecurrenceService recurrenceService, NoteService noteService) {
+        this.id = id;
+        this.taskService = taskService;
+        this.statsService = statsService;
+        this.recurrenceService = recurrenceService;
+        this.noteService = noteService;
+        this.importService = new ImportService(taskService);
+        taskService.addListener(dailyRollups);
+        taskService.addListener(icsFeed);
+        taskService.addListener(searchService);
+        taskService.addListener(tagService);
+        taskService.addListener(suggestionService);
+        noteService.addListener(searchService);
+    }
+
+    /** 由目錄載入（不存在時建立空的資料檔）。 */
+    public static Tenant open(String id, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        TaskService tasks = new TaskService(new FileTaskRepository(dir.resolve("tasks.csv")));
+        StatsService stats = new StatsService();
+        tasks.addListener(stats);
+        RecurrenceService recurrence = new RecurrenceService(new FileOccurrenceRepository(dir.resolve("occurrences.csv")));
+        tasks.addListener(recurrence);
+        if (Integer.getInteger("tasks.archiveAfterDays", 30) > 0 || Files.isDirectory(dir.resolve("archive"))) {
+            tasks.setArchive(new ArchiveStore(dir.resolve("archive")));
+        }
+        NoteService notes = new NoteService(new FileNoteRepository(dir.resolve("notes.csv")));
+        Tenant t = new Tenant(id, tasks, stats, recurrence, notes);
+        // 只有會被釋放的 tenant 需要記憶體估計；預設 tenant 常駐，不維護
+        tasks.addListener(t.footprint);
+        notes.addListener(t.footprint);
+        return t;
+    }
+
+    public String getId() { return id; }
+    public TaskService getTaskService() { return taskService; }
+    public StatsService getStatsService() { return statsService; }
+    public RecurrenceService getRecurrenceService() { return recurrenceService; }
+    public NoteService getNoteService() { return noteService; }
+    public DailyRollupService getDailyRollups() { return dailyRollups; }
+    public IcsFeedService getIcsFeed() { return icsFeed; }
+    public SearchService getSearchService() { return searchService; }
+    public TagService getTagService() { return tagService; }
+    public SuggestionService getSuggestionService() { return suggestionService; }
+    public ImportService getImportService() { return importService; }
+
+    /** 依 key 快取以此 tenant 建立的物件（各路徑的 HTTP 處理器），隨 tenant 一起釋放。 */
+    @SuppressWarnings("unchecked")
+    public <T> T cached(Object key, Function<Tenant, T> factory) {
+        Object v = cached.get(key);
+        if (v == null) v = cached.computeIfAbsent(key, k -> factory.apply(this));
+        return (T) v;
+    }
+
+    /** 常駐記憶體的估計值：每筆任務/筆記的固定成本加上文字（含標籤、類別）的字元數；預設 tenant 為 0。 */
+    public long estimatedBytes() {
+        return footprint.bytes;
+    }
+
+    /** 開始把估計值的變化累加到 total（TenantRegistry 載入後呼叫），並先加上目前的估計值。 */
+    void attach(LongAdder total) {
+        footprint.attach(total);
+    }
+
+    /** 從 total 扣除目前的估計值並停止累加（釋放時呼叫）。 */
+    void detach() {
+        footprint.detach();
+    }
+
+    // 每筆任務/筆記的估計值依 id 保存，更新時只累加差額
+    private static final class Footprint implements TaskListener, NoteListener {
+        private final Map<String, Integer> tasks = new ConcurrentHashMap<>();
+        private final Map<String, Integer> notes = new ConcurrentHashMap<>();
+        private volatile long bytes;
+        private LongAdder total; // 由 this 保護
+
+        @Override
+        public void onTaskSaved(Task task) {
+            int w = BYTES_PER_TASK + 2 * (length(task.getTitle()) + length(task.getDescription()) + length(task.getCategory()));
+            List<String> tags = task.getTags();
+            for (int i = 0; i < tags.size(); i++) w += 2 * tags.get(i).length();
+            Integer old = tasks.put(task.getId(), w);
+            add(w - (old == null ? 0 : old));
+        }
+
+        @Override
+        public void onTaskDeleted(String id) {
+            Integer old = tasks.remove(id);
+            if (old != null) add(-old);
+        }
+
+        @Override
+        public void onNoteSaved(Note note) {
+            int w = BYTES_PER_NOTE + 2 * length(note.getContent());
+            Integer old = notes.put(note.getId(), w);
+            add(w - (old == null ? 0 : old));
+        }
+
+        @Override
+        public void onNoteDeleted(String id) {
+            Integer old = notes.remove(id);
+            if (old != null) add(-old);
+        }
+
+        private synchronized void add(long delta) {
+            bytes += delta;
+            if (total != null) total.add(delta);
+        }
+
+        synchronized void attach(LongAdder total) {
+            this.total = total;
+            total.add(bytes);
+        }
+
+        synchronized void detach() {
+            if (total == null) return;
+            total.add(-bytes);
+            total = null;
+        }
+
+        private static int length(String s) {
+            return s == null ? 0 : s.length();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package app.service;
+
+import app.repo.FileTaskRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * 使用者（tenant）登錄表。tenant 在第一次存取時由 {@code <root>/<userId>/} 載入，
+ * 依存取順序保存（LRU）；估計的常駐記憶體超過預算時，由最久未用且沒有進行中請求的 tenant 開始釋放。
+ * 各 tenant 的估計值隨資料異動增量累加到總量，釋放請求時只比較總量，不重新估計。
+ * 資料每次寫入即落盤，釋放時不需額外寫檔。預設 tenant（既有的 {@code data/} 目錄）常駐不釋放。
+ * <p>
+ * 載入在鎖外進行，同一 tenant 的並行請求共用同一次載入。
+ * 設定提醒服務後，每個載入的 tenant 都掛上自己的提醒監聽器（共用同一個時間輪與通知管線）。
+ * 系統屬性：{@code tenants.memoryBudgetMb}（預設 256）。
+ */
+public class TenantRegistry {
+    public static final String DEFAULT = "default";
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final Set<String> RESERVED = Set.of("archive", "logs"); // 與 data/ 下既有目錄同名
+
+    private final Path root;
+    private final Tenant defaultTenant;
+    private final long budgetBytes;
+    private final Map<String, Tenant> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Tenant>> loading = new LinkedHashMap<>();
+    private final LongAdder usedBytes = new LongAdder(); // 已載入 tenant 的估計記憶體總量（不含預設 tenant）
+    private long evictions;
+    private volatile Consumer<Tenant> onLoad;       // 載入後、開放請求前呼叫（複寫記錄掛監聽器用）
+    private volatile boolean archiveOnLoad = true; // 唯讀複本不自行封存，封存由主節點的異動帶過來
+    private volatile ReminderService reminders;    // 未設定時只有預設 tenant 有提醒
+
+    public TenantRegistry(Path root, Tenant defaultTenant) {
+        this(root, defaultTenant, Long.getLong("tenants.memoryBudgetMb", 256) * 1024 * 1024);
+    }
+
+    public TenantRegistry(Path root, Tenant defaultTenant, long budgetBytes) {
+        this.root = root;
+        this.defaultTenant = defaultTenant;
+        this.budgetBytes = budgetBytes;
+    }
+
+    public void setOnLoad(Consumer<Tenant> onLoad) {
+        this.onLoad = onLoad;
+    }
+
+    public void setArchiveOnLoad(boolean archiveOnLoad) {
+        this.archiveOnLoad = archiveOnLoad;
+    }
+
+    public void setReminders(ReminderService reminders) {
+        this.reminders = reminders;
+    }
+
+    /**
+     * 為尚未載入的 tenant 預先排程提醒：逐一讀取任務檔、交給提醒服務後即丟棄，不保留 tenant。
+     * 啟動後在背景執行一次，讓從未被存取的使用者也會收到提醒。
+     */
+    public void preloadReminders() throws IOException {
+        ReminderService r = reminders;
+        if (r == null) return;
+        for (String id : listIds()) {
+            if (id.equals(DEFAULT)) continue;
+            synchronized (this) {
+                if (loaded.containsKey(id) || loading.containsKey(id)) continue;
+            }
+            Path tasks = root.resolve(id).resolve("tasks.csv");
+            if (!Files.exists(tasks)) continue;
+            try {
+                r.preload(id, new FileTaskRepository(tasks).findAll());
+            } catch (IOException | RuntimeException e) {
+                System.err.println("[tenant] reminder preload for " + id + " failed: " + e);
+            }
+        }
+    }
+
+    /** 預設 tenant 加上資料目錄下所有使用者的 id（含尚未載入的）。 */
+    public List<String> listIds() throws IOException {
+        List<String> ids = new ArrayList<>();
+        ids.add(DEFAULT);
+        if (!Files.isDirectory(root)) return ids;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                String id = dir.getFileName().toString();
+                if (isValidId(id) && !id.equals(DEFAULT)) ids.add(id);
+            }
+        }
+        Collections.sort(ids.subList(1, ids.size()));
+        return ids;
+    }
+
+    public static boolean isValidId(String id) {
+        return id != null && VALID_ID.matcher(id).matches() && !RESERVED.contains(id);
+    }
+
+    /** 取得 tenant 並標記使用中；用完必須呼叫 {@link #release}。id 不合法時丟出 IllegalArgumentException。 */
+    public Tenant acquire(String id) {
+        if (id == null || id.isEmpty() || id.equals(DEFAULT)) return defaultTenant;
+        if (!isValidId(id)) throw new IllegalArgumentException("invalid tenant id: " + id);
+        while (true) {
+            CompletableFuture<Tenant> pending;
+            boolean mine = false;
+            synchronized (this) {
+                Tenant t = loaded.get(id);
+                if (t != null) {
+                    t.refs++;
+                    return t;
+                }
+                pending = loading.get(id);
+                if (pending == null) {
+                    pending = new CompletableFuture<>();
+                    loading.put(id, pending);
+                    mine = true;
+                }
+            }
+            if (mine) return load(id, pending);
+            Tenant t;
+            try {
+                t = pending.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+            synchronized (this) {
+                if (loaded.get(id) == t) {
+                    t.refs++;
+                    return t;
+                }
+            }
+            // 載入後又被釋放，重試
+        }
+    }
+
+    public void release(Tenant t) {
+        if (t == defaultTenant) return;
+        synchronized (this) {
+            t.refs--;
+            evictIfOverBudget();
+        }
+    }
+
+    public synchronized int loadedCount() {
+        return loaded.size();
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /** 已載入 tenant 的估計記憶體總量（不含預設 tenant）。 */
+    public long estimatedBytes() {
+        return usedBytes.sum();
+    }
+
+    private Tenant load(String id, CompletableFuture<Tenant> pending) {
+        Tenant t;
+        try {
+            t = Tenant.open(id, root.resolve(id));
+            ReminderService r = reminders;
+            if (r != null) t.getTaskService().addListener(r.attach(id));
+            Consumer<Tenant> hook = onLoad;
+            if (hook != null) hook.accept(t);
+            int archiveAfterDays = Integer.getInteger("tasks.archiveAfterDays", 30);
+            if (archiveAfterDays > 0 && archiveOnLoad) t.getTaskService().archiveOlderThan(LocalDateTime.now().minusDays(archiveAfterDays));
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                loading.remove(id);
+            }
+            RuntimeException ex = e instanceof IOException ? new UncheckedIOException((IOException) e) : (RuntimeException) e;
+            pending.completeExceptionally(ex);
+            throw ex;
+        }
+        synchronized (this) {
+            loading.remove(id);
+            loaded.put(id, t);
+            t.refs++;
+            t.attach(usedBytes);
+            evictIfOverBudget();
+        }
+        pending.complete(t);
+        return t;
+    }
+
+    // 由最久未用的開始，跳過仍有請求在使用的 tenant
+    private void evictIfOverBudget() {
+        if (usedBytes.sum() <= budgetBytes) return;
+        Iterator<Tenant> it = loaded.values().iterator();
+        while (usedBytes.sum() > budgetBytes && it.hasNext()) {
+            Tenant t = it.next();
+            if (t.refs > 0) continue;
+            t.detach();
+            it.remove();
+            evictions++;
+        }
+    }
+}
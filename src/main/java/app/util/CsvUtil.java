@@ -1,7 +1,10 @@
 package app.util;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class CsvUtil {
     public static String join(String[] fields) {
@@ -55,6 +58,125 @@ public class CsvUtil {
         return out;
     }
 
+    /**
+     * 從串流讀取一筆記錄；引號內的換行屬於欄位內容，所以一筆記錄可能跨多行。
+     * 檔案結尾回傳 null；空白行回傳只含一個空字串的清單。
+     * 記錄超過 maxChars 字元時丟出 IOException，避免單筆異常資料佔滿記憶體。
+     * 讀取自己寫出的資料檔時改用 {@link RecordReader}，單筆壞資料不會影響其後的記錄。
+     */
+    public static List<String> readRecord(Reader in, int maxChars) throws IOException {
+        return new RecordReader(in, maxChars, null).next();
+    }
+
+    /**
+     * 逐筆讀取 CSV 記錄。給了 onSkip 時為容錯模式：引號未閉合的欄位讀到檔尾、或記錄超過 maxChars 字元時，
+     * 只略過該記錄的第一個實體行（交給 onSkip，過長時截斷），其後已讀入的內容重新解析，
+     * 一個多出來的引號不會把後面的記錄全部併成一筆。onSkip 為 null 時即 {@link #readRecord} 的行為（超過上限丟出 IOException）。
+     */
+    public static final class RecordReader {
+        private static final int SKIP_LOG_CHARS = 200;
+        private static final List<String> RESYNC = new ArrayList<>(0); // tryNext 已重新同步，需再讀一次
+
+        private final Reader in;
+        private final int maxChars;
+        private final Consumer<String> onSkip;
+        private final StringBuilder raw; // 容錯模式下目前記錄已讀的原始字元，重新同步時使用
+        private CharSequence pending;    // 重新同步後待重新解析的字元
+        private int pendingPos;
+
+        public RecordReader(Reader in, int maxChars, Consumer<String> onSkip) {
+            this.in = in;
+            this.maxChars = maxChars;
+            this.onSkip = onSkip;
+            this.raw = onSkip != null ? new StringBuilder() : null;
+        }
+
+        public List<String> next() throws IOException {
+            while (true) {
+                List<String> rec = tryNext();
+                if (rec != RESYNC) return rec;
+            }
+        }
+
+        private int read() throws IOException {
+            if (pending != null) {
+                if (pendingPos < pending.length()) return pending.charAt(pendingPos++);
+                pending = null;
+            }
+            return in.read();
+        }
+
+        private List<String> tryNext() throws IOException {
+            if (raw != null) raw.setLength(0);
+            List<String> out = new ArrayList<>();
+            StringBuilder cur = new StringBuilder();
+            boolean inQuotes = false;
+            boolean quoteSeen = false; // 引號內讀到 '"'：可能是跳脫的 "" 或欄位結束
+            int total = 0;
+            int c;
+            while ((c = read()) != -1) {
+                if (++total > maxChars) {
+                    if (raw == null) throw new IOException("record exceeds " + maxChars + " characters");
+                    raw.append((char) c);
+                    resync();
+                    return RESYNC;
+                }
+                if (raw != null) raw.append((char) c);
+                if (quoteSeen) {
+                    quoteSeen = false;
+                    if (c == '"') { cur.append('"'); continue; }
+                    inQuotes = false;
+                }
+                if (inQuotes) {
+                    if (c == '"') quoteSeen = true;
+                    else cur.append((char) c);
+                    continue;
+                }
+                if (c == '\n') {
+                    out.add(cur.toString());
+                    return out;
+                }
+                if (c == '\r') continue;
+                if (c == ',') {
+                    out.add(cur.toString());
+                    cur.setLength(0);
+                } else if (c == '"') {
+                    inQuotes = true;
+                } else {
+                    cur.append((char) c);
+                }
+            }
+            if (total == 0) return null;
+            if (inQuotes && !quoteSeen && raw != null) {
+                resync();
+                return RESYNC;
+            }
+            out.add(cur.toString());
+            return out;
+        }
+
+        // 丟掉目前記錄的第一個實體行，其餘已讀內容（加上尚未讀完的 pending）下次重新解析
+        private void resync() throws IOException {
+            int nl = raw.indexOf("\n");
+            int lineLength = nl >= 0 ? nl : raw.length();
+            String skipped = raw.substring(0, Math.min(lineLength, SKIP_LOG_CHARS));
+            if (nl >= 0) {
+                StringBuilder rest = new StringBuilder(raw.length() - nl);
+                rest.append(raw, nl + 1, raw.length());
+                if (pending != null) rest.append(pending, pendingPos, pending.length());
+                pending = rest.length() > 0 ? rest : null;
+                pendingPos = 0;
+            } else {
+                // 第一行本身就超過上限：讀到行尾為止全部丟棄
+                int c;
+                while ((c = read()) != -1 && c != '\n') lineLength++;
+            }
+            if (lineLength > skipped.length()) skipped += "...";
+            onSkip.accept(skipped.replace("\r", ""));
+            raw.setLength(0);
+        }
+    }
+
     private static String escape(String s) {
         boolean needQuotes = s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0;
         if (!needQuotes) return s;
@@ -0,0 +1,56 @@
+package app.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一致性雜湊環。每個節點在環上放 vnodes 個虛擬點，鍵歸屬於順時針方向第一個虛擬點的節點；
+ * 新增第 N 個節點時只有約 1/N 的鍵改變歸屬，其餘鍵維持原節點。
+ * 雜湊為 64 位元 FNV-1a 再經 murmur3 的 fmix64 打散，與 JVM 的 hashCode 無關，各程序計算結果一致。
+ */
+public final class HashRing {
+    public static final int DEFAULT_VNODES = 128;
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final List<String> nodes;
+
+    public HashRing(List<String> nodes) {
+        this(nodes, DEFAULT_VNODES);
+    }
+
+    public HashRing(List<String> nodes, int vnodes) {
+        if (nodes.isEmpty()) throw new IllegalArgumentException("ring needs at least one node");
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        for (String node : nodes) {
+            for (int i = 0; i < vnodes; i++) ring.putIfAbsent(hash(node + "#" + i), node);
+        }
+    }
+
+    public List<String> nodes() {
+        return nodes;
+    }
+
+    /** 擁有 key 的節點。 */
+    public String ownerOf(String key) {
+        Map.Entry<Long, String> e = ring.ceilingEntry(hash(key));
+        return (e != null ? e : ring.firstEntry()).getValue();
+    }
+
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,113 @@
+package app.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * iCalendar（RFC 5545）輸出工具：日期格式、文字跳脫與行摺疊。
+ */
+public class IcsUtil {
+    public static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final int MAX_LINE_OCTETS = 75;
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    public static String format(LocalDateTime dt) {
+        return (dt == null ? LocalDateTime.now() : dt).format(DATE_TIME);
+    }
+
+    /** UTC 時間（DTSTAMP 等必須為 UTC 的欄位），以 'Z' 結尾。 */
+    public static String formatUtc(LocalDateTime dt) {
+        LocalDateTime local = dt == null ? LocalDateTime.now() : dt;
+        return local.atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneOffset.UTC).format(DATE_TIME) + "Z";
+    }
+
+    public static String escape(String s) {
+        if (s == null) return "";
+        return s.replace("\\", "\\\\").replace(";", "\\;").replace(",", "\\,")
+                .replace("\r\n", "\\n").replace("\n", "\\n").replace("\r", "\\n");
+    }
+
+    /**
+     * 寫入一行內容並以 CRLF 結尾；超過 75 octets 時摺疊，續行以一個空白開頭。
+     * 以 UTF-8 位元組計算長度，且不會在多位元組字元中間斷行。
+     */
+    public static void writeLine(ByteArrayOutputStream out, String line) {
+        byte[] b = line.getBytes(StandardCharsets.UTF_8);
+        int pos = 0;
+        int limit = MAX_LINE_OCTETS;
+        while (b.length - pos > limit) {
+            int cut = pos + limit;
+            while (cut > pos && (b[cut] & 0xC0) == 0x80) cut--; // 退到字元邊界
+            out.write(b, pos, cut - pos);
+            out.write(CRLF, 0, 2);
+            out.write(' ');
+            pos = cut;
+            limit = MAX_LINE_OCTETS - 1; // 續行的前導空白也算在 75 octets 內
+        }
+        out.write(b, pos, b.length - pos);
+        out.write(CRLF, 0, 2);
+    }
+
+    /**
+     * 讀取一行展開後的內容行（續行以空白或 tab 開頭，併回上一行）；檔案結尾回傳 null。
+     * 展開後超過 maxChars 字元時丟出 IOException。
+     */
+    public static String readContentLine(BufferedReader in, int maxChars) throws IOException {
+        String line = in.readLine();
+        if (line == null) return null;
+        StringBuilder sb = null;
+        while (true) {
+            in.mark(1);
+            int c = in.read();
+            if (c != ' ' && c != '\t') {
+                if (c != -1) in.reset();
+                break;
+            }
+            String next = in.readLine();
+            if (sb == null) sb = new StringBuilder(line);
+            sb.append(next == null ? "" : next);
+            if (sb.length() > maxChars) throw new IOException("content line exceeds " + maxChars + " characters");
+        }
+        String out = sb == null ? line : sb.toString();
+        if (out.length() > maxChars) throw new IOException("content line exceeds " + maxChars + " characters");
+        return out;
+    }
+
+    public static String unescape(String s) {
+        if (s == null || s.indexOf('\\') < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char n = s.charAt(++i);
+                sb.append(n == 'n' || n == 'N' ? '\n' : n);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解析 DATE-TIME 或 DATE 值。以 'Z' 結尾者視為 UTC 並轉為本地時間；
+     * 其餘（含 TZID 參數）以浮動時間看待；純日期以當日 00:00 表示。
+     */
+    public static LocalDateTime parseDateTime(String value) {
+        String v = value.trim();
+        if (v.length() == 8) return LocalDate.parse(v, DATE).atTime(LocalTime.MIDNIGHT);
+        if (v.endsWith("Z")) {
+            LocalDateTime utc = LocalDateTime.parse(v.substring(0, v.length() - 1), DATE_TIME);
+            return utc.atOffset(ZoneOffset.UTC).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        }
+        return LocalDateTime.parse(v, DATE_TIME);
+    }
+}
@@ -0,0 +1,263 @@
+package app.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 記憶體內的倒排索引。每份文件以字串鍵識別，內部配給遞增的序號；
+ * posting 是依序號遞增的 int 陣列（附權重），新增只需附加到尾端。
+ * 更新文件時舊序號標記為刪除並配給新序號，刪除的序號在查詢時略過，
+ * 累積過多時整批壓縮重新編號，因此單筆更新的成本只與該文件的詞數有關。
+ * 查詢為 AND 語意：從最短的 posting 出發，以二分搜尋檢查其他詞，分數為權重 × idf 的總和。
+ * 詞典依字典序排列，最後一個詞可做前綴比對（邊輸入邊查詢），展開的詞數有上限。
+ * 讀寫以讀寫鎖保護，查詢彼此不互斥。
+ */
+public class InvertedIndex<D> {
+    private static final int MIN_COMPACT_DEAD = 10_000;
+    /** 前綴展開的詞數上限；太短的前綴只取字典序最前面的詞。 */
+    public static final int MAX_PREFIX_TERMS = 128;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Posting> postings = new TreeMap<>();
+    private final Map<String, Integer> ordinals = new HashMap<>(); // key -> 目前序號
+    private Doc<D>[] docs = newDocs(1024); // 序號 -> 文件；已刪除為 null
+    private int next;
+    private int dead;
+
+    /** 新增或取代文件；terms 為詞 -> 權重（出現次數乘以欄位權重）。 */
+    public void put(String key, D payload, Map<String, Integer> terms) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+            if (terms.isEmpty()) return;
+            if (next == docs.length) docs = Arrays.copyOf(docs, docs.length * 2);
+            int ord = next++;
+            docs[ord] = new Doc<>(key, payload);
+            ordinals.put(key, ord);
+            for (Map.Entry<String, Integer> e : terms.entrySet()) {
+                postings.computeIfAbsent(e.getKey(), k -> new Posting()).add(ord, e.getValue());
+            }
+            if (dead >= MIN_COMPACT_DEAD && dead > ordinals.size()) compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 所有詞都出現的文件，依分數由高到低，取 [offset, offset+limit)。 */
+    public Result<D> search(List<String> terms, Predicate<D> filter, int offset, int limit) {
+        return search(terms, null, filter, offset, limit);
+    }
+
+    /** 同 {@link #search(List, Predicate, int, int)}，另外要求文件含有以 prefix 開頭的詞（prefix 為 null 時不限）。 */
+    public Result<D> search(List<String> terms, String prefix, Predicate<D> filter, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            int n = terms.size() + (prefix == null ? 0 : 1);
+            if (n == 0) return new Result<>(0, Collections.emptyList());
+            Posting[] ps = new Posting[n];
+            double[] idf = new double[n];
+            int live = Math.max(1, ordinals.size());
+            for (int i = 0; i < terms.size(); i++) {
+                ps[i] = postings.get(terms.get(i));
+                if (ps[i] == null) return new Result<>(0, Collections.emptyList());
+            }
+            if (prefix != null) {
+                ps[n - 1] = prefixPosting(prefix);
+                if (ps[n - 1] == null) return new Result<>(0, Collections.emptyList());
+            }
+            Arrays.sort(ps, Comparator.comparingInt(p -> p.size));
+            for (int i = 0; i < ps.length; i++) idf[i] = Math.log(1.0 + (double) live / ps[i].size);
+            int want = offset + limit;
+            PriorityQueue<Hit<D>> top = new PriorityQueue<>(Math.max(1, want), HIT_ORDER);
+            int total = 0;
+            Posting first = ps[0];
+            outer:
+            for (int j = 0; j < first.size; j++) {
+                int ord = first.docs[j];
+                Doc<D> doc = docs[ord];
+                if (doc == null) continue;
+                double score = first.weights[j] * idf[0];
+                for (int i = 1; i < ps.length; i++) {
+                    int k = Arrays.binarySearch(ps[i].docs, 0, ps[i].size, ord);
+                    if (k < 0) continue outer;
+                    score += ps[i].weights[k] * idf[i];
+                }
+                if (filter != null && !filter.test(doc.payload)) continue;
+                total++;
+                if (want == 0) continue;
+                if (top.size() < want) top.add(new Hit<>(doc.payload, score, ord));
+                else if (score > top.peek().score || (score == top.peek().score && ord > top.peek().ord)) {
+                    top.poll();
+                    top.add(new Hit<>(doc.payload, score, ord));
+                }
+            }
+            List<Hit<D>> sorted = new ArrayList<>(top);
+            sorted.sort(HIT_ORDER.reversed());
+            List<Hit<D>> page = offset >= sorted.size() ? Collections.emptyList() : sorted.subList(offset, sorted.size());
+            return new Result<>(total, page);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 以 prefix 開頭的詞的 posting 聯集（同一文件取最大權重）；只有一個詞時直接用該 posting
+    private Posting prefixPosting(String prefix) {
+        List<Posting> matched = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<String, Posting> e : postings.tailMap(prefix, true).entrySet()) {
+            if (!e.getKey().startsWith(prefix) || matched.size() == MAX_PREFIX_TERMS) break;
+            matched.add(e.getValue());
+            total += e.getValue().size;
+        }
+        if (matched.isEmpty()) return null;
+        if (matched.size() == 1) return matched.get(0);
+        long[] entries = new long[total]; // 序號在高 32 位、權重在低 32 位，排序後即依序號遞增
+        int k = 0;
+        for (Posting p : matched) {
+            for (int j = 0; j < p.size; j++) entries[k++] = (long) p.docs[j] << 32 | p.weights[j];
+        }
+        Arrays.sort(entries);
+        Posting union = new Posting();
+        for (long e : entries) {
+            int ord = (int) (e >>> 32);
+            int weight = (int) e;
+            if (union.size > 0 && union.docs[union.size - 1] == ord) {
+                union.weights[union.size - 1] = (short) weight; // 排序後同序號的最後一筆權重最大
+            } else {
+                union.add(ord, weight);
+            }
+        }
+        return union;
+    }
+
+    // 分數相同時較新的文件（序號大）排前面，結果穩定
+    private static final Comparator<Hit<?>> HIT_ORDER = Comparator.<Hit<?>>comparingDouble(h -> h.score).thenComparingInt(h -> h.ord);
+
+    private void removeLocked(String key) {
+        Integer ord = ordinals.remove(key);
+        if (ord == null) return;
+        docs[ord] = null; // posting 中的序號留待壓縮時清除
+        dead++;
+    }
+
+    // 丟棄已刪除的序號並重新編號；posting 維持遞增順序
+    private void compact() {
+        int[] remap = new int[next];
+        Doc<D>[] live = newDocs(Math.max(1024, ordinals.size() * 2));
+        int n = 0;
+        for (int i = 0; i < next; i++) {
+            if (docs[i] == null) { remap[i] = -1; continue; }
+            remap[i] = n;
+            live[n] = docs[i];
+            ordinals.put(docs[i].key, n);
+            n++;
+        }
+        postings.values().removeIf(p -> p.compact(remap) == 0);
+        docs = live;
+        next = n;
+        dead = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <D> Doc<D>[] newDocs(int n) {
+        return (Doc<D>[]) new Doc<?>[n];
+    }
+
+    private static final class Doc<D> {
+        final String key;
+        final D payload;
+
+        Doc(String key, D payload) {
+            this.key = key;
+            this.payload = payload;
+        }
+    }
+
+    private static final class Posting {
+        int[] docs = new int[4];
+        short[] weights = new short[4];
+        int size;
+
+        void add(int ord, int weight) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = ord;
+            weights[size] = (short) Math.min(weight, Short.MAX_VALUE);
+            size++;
+        }
+
+        int compact(int[] remap) {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                int to = remap[docs[i]];
+                if (to < 0) continue;
+                docs[n] = to;
+                weights[n] = weights[i];
+                n++;
+            }
+            size = n;
+            if (docs.length > 16 && n < docs.length / 4) {
+                docs = Arrays.copyOf(docs, Math.max(4, n * 2));
+                weights = Arrays.copyOf(weights, Math.max(4, n * 2));
+            }
+            return n;
+        }
+    }
+
+    public static final class Hit<D> {
+        private final D doc;
+        private final double score;
+        private final int ord;
+
+        Hit(D doc, double score, int ord) {
+            this.doc = doc;
+            this.score = score;
+            this.ord = ord;
+        }
+
+        public D getDoc() { return doc; }
+        public double getScore() { return score; }
+    }
+
+    public static final class Result<D> {
+        private final int total;
+        private final List<Hit<D>> hits;
+
+        Result(int total, List<Hit<D>> hits) {
+            this.total = total;
+            this.hits = hits;
+        }
+
+        public int getTotal() { return total; }
+        public List<Hit<D>> getHits() { return hits; }
+    }
+}
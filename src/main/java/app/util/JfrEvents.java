@@ -0,0 +1,68 @@
+package app.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 應用程式自訂的 Java Flight Recorder 事件。事件以 begin/commit 計時，未錄製時 {@code isEnabled()} 為 false、
+ * 呼叫端直接略過（事件物件經逃逸分析後不會配置）。搭配 {@code jfr/app.jfc} 錄製時，
+ * HTTP 事件與同一執行緒上的 jdk.JavaMonitorEnter（儲存庫監視器）可在同一份記錄中對照。
+ */
+public final class JfrEvents {
+    private JfrEvents() {}
+
+    @Name("app.RepositoryLoad")
+    @Label("Repository Load")
+    @Category({"Task App", "Persistence"})
+    @Description("CSV 載入")
+    @StackTrace(false)
+    public static final class RepositoryLoad extends Event {
+        @Label("Repository") public String repo;
+        @Label("Path") public String path;
+        @Label("Rows") public int rows;
+        @Label("Bytes") @DataAmount public long bytes;
+    }
+
+    @Name("app.RepositorySave")
+    @Label("Repository Save")
+    @Category({"Task App", "Persistence"})
+    @Description("CSV 整檔重寫或批次附加")
+    public static final class RepositorySave extends Event {
+        @Label("Repository") public String repo;
+        @Label("Path") public String path;
+        @Label("Rows") public int rows;
+        @Label("Append") public boolean append;
+        @Label("Bytes") @DataAmount public long bytes;
+    }
+
+    @Name("app.ReminderTick")
+    @Label("Reminder Tick")
+    @Category({"Task App", "Reminders"})
+    @Description("提醒時間輪推進一次")
+    @StackTrace(false)
+    public static final class ReminderTick extends Event {
+        @Label("Tasks Scanned") public int scanned;
+        @Label("Reminders Fired") public int fired;
+        @Label("Tasks Scheduled") public int scheduled;
+    }
+
+    @Name("app.HttpExchange")
+    @Label("HTTP Exchange")
+    @Category({"Task App", "HTTP"})
+    @Description("一個 HTTP 請求從進入處理器到回應送出")
+    @StackTrace(false)
+    public static final class HttpExchange extends Event {
+        @Label("Route") public String route;
+        @Label("Method") public String method;
+        @Label("Path") public String path;
+        @Label("Status") public int status;
+        @Label("Response Bytes") @DataAmount public long responseBytes;
+        @Label("Repository Lock Wait") @Timespan public long lockWait;
+    }
+}
@@ -0,0 +1,153 @@
+package app.util;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 程序內的計量指標，由 GET /metrics 以 Prometheus 文字格式輸出。
+ * 指標（含標籤）在啟動時或第一次使用前登錄一次，呼叫端保存取得的 {@link Counter}/{@link Histogram}；
+ * 記錄時只有 {@link LongAdder} 累加（分散在多個 cell，執行緒之間不互搶同一個變數）與固定邊界的搜尋，不配置物件。
+ * 同名同標籤重複登錄時回傳既有的指標；gauge 則以新的取值函式取代（伺服器重新啟動時重新綁定）。
+ */
+public final class Metrics {
+    /** 延遲的桶邊界（秒）：0.5 ms 到 10 s。 */
+    public static final double[] LATENCY_BUCKETS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private static final Map<String, Family> FAMILIES = new LinkedHashMap<>();
+
+    private Metrics() {}
+
+    public static Counter counter(String name, String help, String... labels) {
+        return (Counter) register(name, help, "counter", labels, Counter::new, false);
+    }
+
+    public static Histogram histogram(String name, String help, double[] bounds, String... labels) {
+        return (Histogram) register(name, help, "histogram", labels, () -> new Histogram(bounds), false);
+    }
+
+    public static void gauge(String name, String help, LongSupplier value, String... labels) {
+        register(name, help, "gauge", labels, () -> value, true);
+    }
+
+    private static Object register(String name, String help, String type, String[] labels,
+                                   Supplier<Object> factory, boolean replace) {
+        String key = labelString(labels);
+        synchronized (FAMILIES) {
+            Family f = FAMILIES.computeIfAbsent(name, n -> new Family(help, type));
+            if (!f.type.equals(type)) throw new IllegalArgumentException(name + " already registered as " + f.type);
+            if (replace) {
+                Object v = factory.get();
+                f.series.put(key, v);
+                return v;
+            }
+            return f.series.computeIfAbsent(key, k -> factory.get());
+        }
+    }
+
+    /** Prometheus 文字格式（version 0.0.4）。 */
+    public static String render() {
+        StringBuilder sb = new StringBuilder(8192);
+        synchronized (FAMILIES) {
+            for (Map.Entry<String, Family> e : FAMILIES.entrySet()) {
+                String name = e.getKey();
+                Family f = e.getValue();
+                sb.append("# HELP ").append(name).append(' ').append(f.help).append('\n');
+                sb.append("# TYPE ").append(name).append(' ').append(f.type).append('\n');
+                for (Map.Entry<String, Object> s : f.series.entrySet()) {
+                    Object m = s.getValue();
+                    if (m instanceof Histogram) {
+                        ((Histogram) m).render(sb, name, s.getKey());
+                    } else {
+                        long v = m instanceof Counter ? ((Counter) m).get() : ((LongSupplier) m).getAsLong();
+                        sb.append(name).append(s.getKey()).append(' ').append(v).append('\n');
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    // {k="v",...}；值中的 \ " 換行需跳脫
+    private static String labelString(String[] labels) {
+        if (labels.length % 2 != 0) throw new IllegalArgumentException("labels must be name/value pairs");
+        if (labels.length == 0) return "";
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(labels[i]).append("=\"")
+              .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static final class Family {
+        final String help;
+        final String type;
+        final Map<String, Object> series = new LinkedHashMap<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /** 固定邊界的直方圖；以奈秒記錄，輸出為秒。 */
+    public static final class Histogram {
+        private final double[] bounds;
+        private final long[] boundsNanos;
+        private final LongAdder[] buckets; // 最後一格為 +Inf
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram(double[] bounds) {
+            this.bounds = bounds.clone();
+            this.boundsNanos = new long[bounds.length];
+            for (int i = 0; i < bounds.length; i++) boundsNanos[i] = Math.round(bounds[i] * 1e9);
+            this.buckets = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        public void observeNanos(long nanos) {
+            int i = Arrays.binarySearch(boundsNanos, nanos);
+            buckets[i >= 0 ? i : -i - 1].increment(); // 等於邊界時算在該桶（le）
+            sumNanos.add(nanos);
+        }
+
+        void render(StringBuilder sb, String name, String labels) {
+            String prefix = labels.isEmpty() ? "{" : labels.substring(0, labels.length() - 1) + ",";
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i].sum();
+                String le = i < bounds.length ? formatDouble(bounds[i]) : "+Inf";
+                sb.append(name).append("_bucket").append(prefix).append("le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+            }
+            sb.append(name).append("_sum").append(labels).append(' ').append(formatDouble(sumNanos.sum() / 1e9)).append('\n');
+            sb.append(name).append("_count").append(labels).append(' ').append(cumulative).append('\n');
+        }
+    }
+
+    private static String formatDouble(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) return Long.toString((long) v);
+        return BigDecimal.valueOf(v).stripTrailingZeros().toPlainString();
+    }
+}
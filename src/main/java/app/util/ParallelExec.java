@@ -0,0 +1,52 @@
+package app.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * 大量任務運算的平行執行路徑。使用專屬的 {@link ForkJoinPool}（不占用 common pool），
+ * 資料量低於門檻時維持循序執行，避免小清單付出切分與排程的成本。
+ * 在池內執行的 parallel stream 會使用此池；呼叫端需確保結果與循序路徑相同
+ * （有序串流、可結合的彙總、同一個 now）。
+ * <p>
+ * 系統屬性：{@code tasks.parallelism}（預設為 CPU 核心數）、{@code tasks.parallelThreshold}（預設 50000）。
+ */
+public final class ParallelExec {
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Math.max(1, Integer.getInteger("tasks.parallelism", Runtime.getRuntime().availableProcessors())),
+            pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("tasks-parallel-" + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            },
+            null, false);
+    private static volatile int threshold = Integer.getInteger("tasks.parallelThreshold", 50_000);
+
+    private ParallelExec() {}
+
+    /** 資料量 n 是否值得走平行路徑。 */
+    public static boolean worthIt(int n) {
+        return n >= threshold && POOL.getParallelism() > 1;
+    }
+
+    public static int threshold() {
+        return threshold;
+    }
+
+    /** 調整門檻（基準測試用來強制走某一條路徑）。 */
+    public static void setThreshold(int n) {
+        threshold = n;
+    }
+
+    public static int parallelism() {
+        return POOL.getParallelism();
+    }
+
+    /** 在專屬池內執行（內含的 parallel stream 會在此池中切分）。 */
+    public static <T> T invoke(Callable<T> work) {
+        return POOL.invoke(ForkJoinTask.adapt(work));
+    }
+}
@@ -0,0 +1,137 @@
+package app.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 附使用次數的前綴樹。每個節點快取子樹內次數最高的前 K 個詞，
+ * 查詢只需走到前綴節點後取快取，成本與前綴長度成正比，與詞或任務數量無關。
+ * 次數變動時沿路徑由下而上更新快取：增加時直接插入/調整，減少時才由子節點快取重新合併。
+ * 非執行緒安全，由呼叫端負責同步。
+ */
+public class PrefixTrie {
+    private static final Comparator<Entry> ORDER =
+            Comparator.comparingInt((Entry e) -> -e.count).thenComparing(e -> e.term);
+
+    private final int k;
+    private final Node root = new Node(null, '\0');
+
+    public PrefixTrie(int k) {
+        this.k = k;
+    }
+
+    /** 調整詞的次數（delta 可為負）；次數歸零的詞會移除，空的節點一併剪除。 */
+    public void add(String term, int delta) {
+        if (term.isEmpty() || delta == 0) return;
+        Node[] path = new Node[term.length() + 1];
+        path[0] = root;
+        Node n = root;
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            Node child = n.children.get(c);
+            if (child == null) {
+                if (delta < 0) return; // 不存在的詞
+                child = new Node(n, c);
+                n.children.put(c, child);
+            }
+            n = child;
+            path[i + 1] = n;
+        }
+        n.count = Math.max(0, n.count + delta);
+        for (int i = path.length - 1; i >= 0; i--) {
+            Node p = path[i];
+            if (delta > 0) promote(p, term, n.count);
+            else demote(p, term);
+        }
+        // 由葉往上剪除沒有詞也沒有子節點的節點
+        for (int i = path.length - 1; i > 0; i--) {
+            Node p = path[i];
+            if (p.count > 0 || !p.children.isEmpty()) break;
+            p.parent.children.remove(p.ch);
+        }
+    }
+
+    public int count(String term) {
+        Node n = find(term);
+        return n == null ? 0 : n.count;
+    }
+
+    /** 以 prefix 開頭、次數最高的前 limit 個詞（limit 最多為 K）。 */
+    public List<Entry> top(String prefix, int limit) {
+        Node n = find(prefix);
+        if (n == null || limit <= 0) return Collections.emptyList();
+        List<Entry> top = n.top;
+        return new ArrayList<>(top.subList(0, Math.min(limit, top.size())));
+    }
+
+    private Node find(String prefix) {
+        Node n = root;
+        for (int i = 0; i < prefix.length() && n != null; i++) n = n.children.get(prefix.charAt(i));
+        return n;
+    }
+
+    // 次數增加：只可能把該詞往前移或擠進快取
+    private void promote(Node p, String term, int count) {
+        List<Entry> top = p.top;
+        for (int i = 0; i < top.size(); i++) {
+            if (top.get(i).term.equals(term)) { top.remove(i); break; }
+        }
+        Entry e = new Entry(term, count);
+        int pos = Collections.binarySearch(top, e, ORDER);
+        if (pos < 0) pos = -pos - 1;
+        if (pos < k) {
+            top.add(pos, e);
+            if (top.size() > k) top.remove(top.size() - 1);
+        }
+    }
+
+    // 次數減少：若該詞在快取中，快取外的詞可能需要遞補，由自身與子節點快取重新合併
+    private void demote(Node p, String term) {
+        boolean cached = false;
+        for (Entry e : p.top) {
+            if (e.term.equals(term)) { cached = true; break; }
+        }
+        if (!cached) return;
+        List<Entry> merged = new ArrayList<>();
+        if (p.count > 0) merged.add(new Entry(termOf(p), p.count));
+        for (Node c : p.children.values()) merged.addAll(c.top);
+        merged.sort(ORDER);
+        p.top = merged.size() > k ? new ArrayList<>(merged.subList(0, k)) : merged;
+    }
+
+    private static String termOf(Node n) {
+        StringBuilder sb = new StringBuilder();
+        for (Node x = n; x.parent != null; x = x.parent) sb.append(x.ch);
+        return sb.reverse().toString();
+    }
+
+    private static final class Node {
+        final Node parent;
+        final char ch;
+        final Map<Character, Node> children = new HashMap<>(4);
+        int count;
+        List<Entry> top = new ArrayList<>(2);
+
+        Node(Node parent, char ch) {
+            this.parent = parent;
+            this.ch = ch;
+        }
+    }
+
+    public static final class Entry {
+        private final String term;
+        private final int count;
+
+        Entry(String term, int count) {
+            this.term = term;
+            this.count = count;
+        }
+
+        public String getTerm() { return term; }
+        public int getCount() { return count; }
+    }
+}
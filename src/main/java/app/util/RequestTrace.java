@@ -0,0 +1,81 @@
+package app.util;
+
+import java.util.Arrays;
+
+/**
+ * 單一 HTTP 請求的分段計時（執行緒區域）。伺服器在請求開始時 {@link #begin()}、結束時 {@link #finish()}，
+ * 期間各處以 {@code long t = RequestTrace.start(); ... RequestTrace.end(Stage.FILTER, t);} 累計階段時間。
+ * 階段可巢狀，各階段只計自身時間（扣除其中的子階段），總時間扣掉所有階段即為 other。
+ * 每個執行緒重用同一個物件，計時過程不配置記憶體；不在請求中的執行緒（背景工作、平行串流的工作執行緒）
+ * 呼叫時只讀一次 ThreadLocal，不做其他事。
+ */
+public final class RequestTrace {
+    public enum Stage {
+        PARSE("parse"), LOCK_WAIT("lock_wait"), FILTER("filter"), SORT("sort"),
+        SERIALIZE("serialize"), SAVE("save"), WRITE("write");
+
+        public final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final int MAX_DEPTH = 16;
+    private static final ThreadLocal<RequestTrace> CURRENT = ThreadLocal.withInitial(RequestTrace::new);
+
+    private boolean active;
+    private long begin;
+    private long total;
+    private final long[] stageNanos = new long[Stage.values().length];
+    private final long[] childNanos = new long[MAX_DEPTH + 1]; // 各層已結束的子階段時間
+    private int depth;
+
+    private RequestTrace() {}
+
+    /** 開始目前執行緒上的請求計時。 */
+    public static void begin() {
+        RequestTrace t = CURRENT.get();
+        t.active = true;
+        t.depth = 0;
+        t.childNanos[0] = 0;
+        Arrays.fill(t.stageNanos, 0);
+        t.begin = System.nanoTime();
+    }
+
+    /** 結束請求計時並回傳本次的紀錄（同一執行緒的下一個請求會覆寫，需要保留時自行複製）。 */
+    public static RequestTrace finish() {
+        RequestTrace t = CURRENT.get();
+        t.total = System.nanoTime() - t.begin;
+        t.active = false;
+        return t;
+    }
+
+    public static long start() {
+        RequestTrace t = CURRENT.get();
+        if (!t.active || t.depth == MAX_DEPTH) return 0;
+        t.childNanos[++t.depth] = 0;
+        return System.nanoTime();
+    }
+
+    public static void end(Stage stage, long start) {
+        RequestTrace t = CURRENT.get();
+        if (!t.active || start == 0 || t.depth == 0) return;
+        long elapsed = System.nanoTime() - start;
+        t.stageNanos[stage.ordinal()] += Math.max(0, elapsed - t.childNanos[t.depth]);
+        t.childNanos[--t.depth] += elapsed;
+    }
+
+    public long totalNanos() {
+        return total;
+    }
+
+    public long stageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    /** 總時間中不屬於任何階段的部分。 */
+    public long otherNanos() {
+        return Math.max(0, total - childNanos[0]);
+    }
+}
@@ -0,0 +1,71 @@
+package app.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 全文檢索用的斷詞：先做 NFKC 正規化（全形英數轉半形）與小寫化，
+ * 拉丁字母與數字以連續字元為一個詞；中日韓文字沒有空白分詞，改以相鄰兩字（bigram）為詞，
+ * 只有單一字的片段則輸出該字。
+ */
+public final class TextTokenizer {
+    private TextTokenizer() {}
+
+    public static List<String> tokenize(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null || text.isEmpty()) return out;
+        String s = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder word = new StringBuilder();
+        int prevCjk = -1; // 前一個 CJK 字元；-1 表示不在 CJK 片段中
+        boolean runEmitted = false; // 目前的 CJK 片段是否已輸出過 bigram
+        for (int i = 0; i < s.length(); ) {
+            int cp = s.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isCjk(cp)) {
+                flushWord(word, out);
+                if (prevCjk >= 0) {
+                    out.add(new StringBuilder().appendCodePoint(prevCjk).appendCodePoint(cp).toString());
+                    runEmitted = true;
+                }
+                prevCjk = cp;
+            } else {
+                if (prevCjk >= 0 && !runEmitted) out.add(new String(Character.toChars(prevCjk)));
+                prevCjk = -1;
+                runEmitted = false;
+                if (Character.isLetterOrDigit(cp)) word.appendCodePoint(cp);
+                else flushWord(word, out);
+            }
+        }
+        if (prevCjk >= 0 && !runEmitted) out.add(new String(Character.toChars(prevCjk)));
+        flushWord(word, out);
+        return out;
+    }
+
+    /** 中日韓文字的單字（不組 bigram），供標題建立單字索引，讓一個字的查詢也能命中。 */
+    public static List<String> cjkUnigrams(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null || text.isEmpty()) return out;
+        String s = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        for (int i = 0; i < s.length(); ) {
+            int cp = s.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isCjk(cp)) out.add(new String(Character.toChars(cp)));
+        }
+        return out;
+    }
+
+    public static boolean isCjk(int cp) {
+        Character.UnicodeScript sc = Character.UnicodeScript.of(cp);
+        return sc == Character.UnicodeScript.HAN || sc == Character.UnicodeScript.HIRAGANA
+                || sc == Character.UnicodeScript.KATAKANA || sc == Character.UnicodeScript.HANGUL;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> out) {
+        if (word.length() > 0) {
+            out.add(word.toString());
+            word.setLength(0);
+        }
+    }
+}
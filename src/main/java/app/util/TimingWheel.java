@@ -0,0 +1,129 @@
+package app.util;
+
+import java.util.function.Consumer;
+
+/**
+ * 階層式時間輪（hierarchical timing wheel）。
+ * 以 tick（呼叫端自訂單位，例如秒）為刻度，共 6 層、每層 64 格，可涵蓋 64^6 個 tick。
+ * 排程與取消皆為 O(1)；推進一個 tick 只處理到期的格子與偶爾的上層降級，
+ * 工作量與實際到期的項目數成正比，而不是與排程總數成正比。
+ * 非執行緒安全，由呼叫端負責同步。
+ */
+public class TimingWheel<T> {
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 6;
+
+    private final Timeout<?>[][] wheels = new Timeout<?>[LEVELS][SLOTS];
+    private long current; // 已處理到的 tick
+    private int size;
+
+    public TimingWheel(long startTick) {
+        this.current = startTick;
+        for (int l = 0; l < LEVELS; l++) {
+            for (int i = 0; i < SLOTS; i++) {
+                Timeout<T> head = new Timeout<>(0, null);
+                head.prev = head;
+                head.next = head;
+                wheels[l][i] = head;
+            }
+        }
+    }
+
+    /** 於 deadline tick 觸發；已過期的 deadline 會在下一個 tick 觸發。 */
+    public Timeout<T> schedule(long deadline, T payload) {
+        Timeout<T> t = new Timeout<>(deadline, payload);
+        insert(t);
+        size++;
+        return t;
+    }
+
+    /** 取消尚未觸發的項目；已觸發或已取消時回傳 false。 */
+    public boolean cancel(Timeout<T> t) {
+        if (t == null || t.prev == null) return false;
+        unlink(t);
+        size--;
+        return true;
+    }
+
+    /** 推進至 now（含），依序交出到期項目，回傳觸發數量。 */
+    public int advanceTo(long now, Consumer<T> expired) {
+        int fired = 0;
+        while (current < now) {
+            current++;
+            int idx = (int) (current & MASK);
+            if (idx == 0) cascade(1);
+            Timeout<T> head = slot(0, idx);
+            while (head.next != head) {
+                Timeout<T> t = head.next;
+                unlink(t);
+                size--;
+                fired++;
+                expired.accept(t.payload);
+            }
+        }
+        return fired;
+    }
+
+    public long currentTick() { return current; }
+
+    public int size() { return size; }
+
+    // 下層轉完一圈時，把上層對應格子的項目依剩餘時間重新分配到較低層
+    private void cascade(int level) {
+        if (level >= LEVELS) return;
+        int idx = (int) ((current >>> (BITS * level)) & MASK);
+        if (idx == 0) cascade(level + 1);
+        Timeout<T> head = slot(level, idx);
+        Timeout<T> t = head.next;
+        head.next = head;
+        head.prev = head;
+        while (t != head) {
+            Timeout<T> next = t.next;
+            insert(t);
+            t = next;
+        }
+    }
+
+    private void insert(Timeout<T> t) {
+        long d = Math.max(t.deadline, current + 1);
+        long delta = d - current;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) level++;
+        Timeout<T> head = slot(level, (int) ((d >>> (BITS * level)) & MASK));
+        t.prev = head.prev;
+        t.next = head;
+        head.prev.next = t;
+        head.prev = t;
+    }
+
+    private void unlink(Timeout<T> t) {
+        t.prev.next = t.next;
+        t.next.prev = t.prev;
+        t.prev = null;
+        t.next = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Timeout<T> slot(int level, int idx) {
+        return (Timeout<T>) wheels[level][idx];
+    }
+
+    /** 排程控制代碼，可用於取消。 */
+    public static final class Timeout<T> {
+        private final long deadline;
+        private final T payload;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(long deadline, T payload) {
+            this.deadline = deadline;
+            this.payload = payload;
+        }
+
+        public long getDeadline() { return deadline; }
+        public T getPayload() { return payload; }
+        public boolean isPending() { return prev != null; }
+    }
+}